@@ -0,0 +1,113 @@
+#!/usr/bin/env bash
+#
+# 通过 URL 上传图片的压测脚本，用于对比平台线程和虚拟线程下的并发能力
+#
+# 脚本在本机启动一个慢速图片服务（每次请求延迟 DELAY_MS 毫秒，每次返回内容不同的 PNG，避免被去重），
+# 登录后以 CONCURRENCY 并发调用 /picture/upload/url 共 TOTAL 次，输出吞吐量和耗时分布。
+#
+# 对比方式（同一台机器、同一组参数各跑一次）：
+#   1. 平台线程：mvn package 后启动
+#        java -jar target/yu-picture-backend-0.0.1-SNAPSHOT.jar \
+#          --picture.upload.http-per-host-concurrency=1000 --picture.upload.http-per-host-queue-capacity=1000
+#   2. 虚拟线程：使用 JDK 21，mvn -Pjdk21 package 后启动
+#        java -jar target/yu-picture-backend-0.0.1-SNAPSHOT.jar --picture.upload.virtual-threads=true \
+#          --picture.upload.http-per-host-concurrency=1000 --picture.upload.http-per-host-queue-capacity=1000
+#   所有请求都访问同一个图片域名，需要调大单域名并发限制，否则两种模式都会被限制在默认的 16 并发。
+#   平台线程模式下 Tomcat 最多 200 个线程，并发超过 200 后请求开始排队；虚拟线程模式下不受线程数限制。
+#
+# 用法：
+#   USER_ACCOUNT=xxx USER_PASSWORD=xxx ./loadtest/upload-by-url.sh
+#
+# 可选环境变量：
+#   BASE_URL      后端地址，默认 http://localhost:8123/api
+#   TOTAL         请求总数，默认 1000
+#   CONCURRENCY   并发数，默认 400
+#   DELAY_MS      图片服务的响应延迟（毫秒），默认 500
+#   IMAGE_PORT    图片服务端口，默认 18080
+
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-http://localhost:8123/api}
+TOTAL=${TOTAL:-1000}
+CONCURRENCY=${CONCURRENCY:-400}
+DELAY_MS=${DELAY_MS:-500}
+IMAGE_PORT=${IMAGE_PORT:-18080}
+: "${USER_ACCOUNT:?请设置 USER_ACCOUNT}"
+: "${USER_PASSWORD:?请设置 USER_PASSWORD}"
+
+WORK_DIR=$(mktemp -d)
+trap 'kill "$IMAGE_SERVER_PID" 2>/dev/null || true; rm -rf "$WORK_DIR"' EXIT
+
+# 1. 启动慢速图片服务
+cat > "$WORK_DIR/image_server.py" <<'EOF'
+import random, struct, sys, time, zlib
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+DELAY = int(sys.argv[2]) / 1000.0
+
+
+def png(size=64):
+    color = bytes(random.randrange(256) for _ in range(3))
+    raw = b''.join(b'\x00' + color * size for _ in range(size))
+
+    def chunk(tag, data):
+        return struct.pack('>I', len(data)) + tag + data + struct.pack('>I', zlib.crc32(tag + data) & 0xffffffff)
+
+    return (b'\x89PNG\r\n\x1a\n' + chunk(b'IHDR', struct.pack('>IIBBBBB', size, size, 8, 2, 0, 0, 0))
+            + chunk(b'IDAT', zlib.compress(raw)) + chunk(b'IEND', b''))
+
+
+class Handler(BaseHTTPRequestHandler):
+    protocol_version = 'HTTP/1.1'
+
+    def send_image_headers(self, body):
+        self.send_response(200)
+        self.send_header('Content-Type', 'image/png')
+        self.send_header('Content-Length', str(len(body)))
+        self.end_headers()
+
+    def do_HEAD(self):
+        self.send_image_headers(png())
+
+    def do_GET(self):
+        time.sleep(DELAY)
+        body = png()
+        self.send_image_headers(body)
+        self.wfile.write(body)
+
+    def log_message(self, *args):
+        pass
+
+
+ThreadingHTTPServer(('0.0.0.0', int(sys.argv[1])), Handler).serve_forever()
+EOF
+python3 "$WORK_DIR/image_server.py" "$IMAGE_PORT" "$DELAY_MS" &
+IMAGE_SERVER_PID=$!
+sleep 1
+
+# 2. 登录
+curl -s -c "$WORK_DIR/cookie" -H 'Content-Type: application/json' \
+  -d "{\"userAccount\":\"$USER_ACCOUNT\",\"userPassword\":\"$USER_PASSWORD\"}" \
+  "$BASE_URL/user/login" > /dev/null
+
+# 3. 并发上传，每行输出响应体和耗时（秒）
+export BASE_URL IMAGE_PORT WORK_DIR
+START=$(date +%s.%N)
+seq "$TOTAL" | xargs -P "$CONCURRENCY" -I{} sh -c '
+  curl -s -w " %{time_total}\n" -b "$WORK_DIR/cookie" \
+    -H "Content-Type: application/json" \
+    -d "{\"fileUrl\":\"http://127.0.0.1:$IMAGE_PORT/image-{}.png\"}" \
+    "$BASE_URL/picture/upload/url"
+' > "$WORK_DIR/result"
+END=$(date +%s.%N)
+
+# 4. 统计（按耗时排序后计算分位数）
+awk '{ print $NF, ($0 ~ /"code":0/) ? 1 : 0 }' "$WORK_DIR/result" | sort -n | awk -v start="$START" -v end="$END" '
+  { n++; ok += $2; times[n] = $1 }
+  END {
+    total = n
+    elapsed = end - start
+    printf "请求数: %d, 成功: %d, 总耗时: %.2fs, 吞吐量: %.1f req/s\n", total, ok, elapsed, total / elapsed
+    printf "耗时 p50: %.3fs, p90: %.3fs, p99: %.3fs, max: %.3fs\n",
+      times[int(n * 0.5) + 1], times[int(n * 0.9) + 1], times[int(n * 0.99) + 1], times[n]
+  }'
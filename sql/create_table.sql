@@ -63,3 +63,89 @@ CREATE INDEX idx_reviewStatus ON picture (reviewStatus);
 ALTER TABLE picture
     -- 添加新列
     ADD COLUMN thumbnailUrl varchar(512) NULL COMMENT '缩略图 url';
+
+ALTER TABLE picture
+    -- 添加新列
+    ADD COLUMN contentHash char(64) NULL COMMENT '图片内容 SHA-256（用于去重）';
+
+-- 创建基于 contentHash 列的索引
+CREATE INDEX idx_contentHash ON picture (contentHash);
+
+ALTER TABLE picture
+    -- 添加新列，存量图片都是同步处理完成的
+    ADD COLUMN processStatus tinyint default 1 not null comment '处理状态：0-处理中; 1-处理完成; 2-处理失败';
+
+ALTER TABLE picture
+    -- 添加新列
+    ADD COLUMN renditions varchar(2048) NULL COMMENT '多分辨率缩略图（JSON 对象，宽度 => 地址）';
+
+-- 批量导入图片任务表
+create table if not exists picture_import_job
+(
+    id            bigint auto_increment comment 'id' primary key,
+    searchText    varchar(256)                       not null comment '搜索词',
+    namePrefix    varchar(128)                       null comment '图片名称前缀',
+    count         int                                not null comment '计划导入数量',
+    status        tinyint  default 0                 not null comment '任务状态：0-等待中; 1-执行中; 2-成功; 3-失败',
+    total         int      default 0                 not null comment '抓取到的图片数量',
+    successCount  int      default 0                 not null comment '导入成功数量',
+    failCount     int      default 0                 not null comment '导入失败数量',
+    message       varchar(512)                       null comment '任务失败原因',
+    userId        bigint                             not null comment '创建用户 id',
+    executorId    varchar(64)                        null comment '执行实例 id',
+    heartbeatTime datetime                           null comment '执行实例的心跳时间, 长时间未更新视为实例崩溃, 由其他实例接着执行',
+    startTime     datetime                           null comment '开始执行时间',
+    finishTime    datetime                           null comment '结束时间',
+    createTime    datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime    datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    isDelete      tinyint  default 0                 not null comment '是否删除',
+    INDEX idx_status_heartbeatTime (status, heartbeatTime),
+    INDEX idx_userId (userId)
+) comment '批量导入图片任务' collate = utf8mb4_unicode_ci;
+
+-- 批量导入图片明细表
+create table if not exists picture_import_item
+(
+    id         bigint auto_increment comment 'id' primary key,
+    jobId      bigint                             not null comment '任务 id',
+    itemIndex  int                                not null comment '序号（从 1 开始）',
+    url        varchar(1024)                      not null comment '图片地址',
+    status     tinyint  default 0                 not null comment '导入状态：0-等待中; 1-执行中; 2-成功; 3-失败',
+    pictureId  bigint                             null comment '导入成功的图片 id',
+    message    varchar(512)                       null comment '导入失败原因',
+    createTime datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    UNIQUE KEY uk_jobId_itemIndex (jobId, itemIndex)
+) comment '批量导入图片明细' collate = utf8mb4_unicode_ci;
+
+-- 添加主色板字段（最多 5 个颜色及占比）
+ALTER TABLE picture
+    -- 添加新列
+    ADD COLUMN picPalette varchar(64) NULL COMMENT '图片主色板（RRGGBBWW 拼接，WW 为占比）';
+
+-- 添加感知哈希字段（相似图片搜索）
+ALTER TABLE picture
+    -- 添加新列
+    ADD COLUMN picHash bigint NULL COMMENT '图片感知哈希（64 位 pHash）';
+
+-- 空间用量刷新记录表（Redis 缓冲的用量增量写入空间表时记录批次号，保证同一批次只写入一次）
+create table if not exists space_usage_flush
+(
+    id         varchar(64)                        not null comment '批次号' primary key,
+    createTime datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    INDEX idx_createTime (createTime)
+) comment '空间用量刷新记录' collate = utf8mb4_unicode_ci;
+
+-- 空间额度对账按空间汇总图片数量和大小，使用覆盖索引避免回表
+CREATE INDEX idx_spaceId_picSize ON picture (spaceId, isDelete, picSize);
+
+-- 恢复丢失的图片处理任务时按处理状态和更新时间查找超时的图片
+CREATE INDEX idx_processStatus_updateTime ON picture (processStatus, updateTime);
+
+-- 锁防护令牌表（受锁保护的写入在同一事务中以令牌为条件更新，拒绝租期已过期的持有者）
+create table if not exists lock_fence
+(
+    lockKey      varchar(128)                       not null comment '锁的 key' primary key,
+    fencingToken bigint                             not null comment '已写入的最大防护令牌',
+    updateTime   datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间'
+) comment '锁防护令牌' collate = utf8mb4_unicode_ci;
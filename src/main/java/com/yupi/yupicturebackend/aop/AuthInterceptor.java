@@ -3,7 +3,6 @@ package com.yupi.yupicturebackend.aop;
 import com.yupi.yupicturebackend.annotation.AuthCheck;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
-import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.enums.UserRoleEnum;
 import com.yupi.yupicturebackend.service.UserService;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -36,15 +35,15 @@ public class AuthInterceptor {
         String mustRole = authCheck.mustRole();
         RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
         HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
-        // 获取当前登录用户
-        User loginUser = userService.getLoginUser(request);
+        // 获取当前登录用户的角色（未登录时抛出异常）
+        String loginUserRole = userService.getLoginUserRole(request);
         UserRoleEnum mustRoleEnum = UserRoleEnum.getEnumByValue(mustRole);
         // 如果不需要权限，放行
         if (mustRoleEnum == null) {
             return joinPoint.proceed();
         }
         // 以下的代码：必须有权限，才会通过
-        UserRoleEnum userRoleEnum = UserRoleEnum.getEnumByValue(loginUser.getUserRole());
+        UserRoleEnum userRoleEnum = UserRoleEnum.getEnumByValue(loginUserRole);
         if (userRoleEnum == null) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR);
         }
@@ -4,23 +4,25 @@ import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
 import com.yupi.yupicturebackend.api.imagesearch.sub.GetImageFirstUrlApi;
 import com.yupi.yupicturebackend.api.imagesearch.sub.GetImageListApi;
 import com.yupi.yupicturebackend.api.imagesearch.sub.GetImagePageUrlApi;
+import com.yupi.yupicturebackend.manager.HttpClientManager;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class ImageSearchApiFacade {
 
     /**
-     * 搜索图片
+     * 搜索图片（异步，三步请求依次执行，等待响应期间不占用线程）
+     * @param httpClientManager 外部请求
      * @param imageUrl
      * @return
      */
-    public static List<ImageSearchResult> searchImage(String imageUrl) {
-        String imagePageUrl = GetImagePageUrlApi.getImagePageUrl(imageUrl);
-        String imageFirstUrl = GetImageFirstUrlApi.getImageFirstUrl(imagePageUrl);
-        List<ImageSearchResult> imageList = GetImageListApi.getImageList(imageFirstUrl);
-        return imageList;
+    public static CompletableFuture<List<ImageSearchResult>> searchImage(HttpClientManager httpClientManager, String imageUrl) {
+        return GetImagePageUrlApi.getImagePageUrl(httpClientManager, imageUrl)
+                .thenCompose(imagePageUrl -> GetImageFirstUrlApi.getImageFirstUrl(httpClientManager, imagePageUrl))
+                .thenCompose(imageFirstUrl -> GetImageListApi.getImageList(httpClientManager, imageFirstUrl));
     }
 
 
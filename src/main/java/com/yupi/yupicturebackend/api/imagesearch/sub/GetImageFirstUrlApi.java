@@ -2,12 +2,16 @@ package com.yupi.yupicturebackend.api.imagesearch.sub;
 
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.HttpClientManager;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,40 +24,47 @@ public class GetImageFirstUrlApi {
     /**
      * 获取图片列表页面地址
      *
+     * @param httpClientManager 外部请求
      * @param url
      * @return
      */
-    public static String getImageFirstUrl(String url) {
-        try {
-            // 使用 Jsoup 获取 HTML 内容
-            Document document = Jsoup.connect(url)
-                    .timeout(5000)
-                    .get();
-
-            // 获取所有 <script> 标签
-            Elements scriptElements = document.getElementsByTag("script");
-
-            // 遍历找到包含 `firstUrl` 的脚本内容
-            for (Element script : scriptElements) {
-                String scriptContent = script.html();
-                if (scriptContent.contains("\"firstUrl\"")) {
-                    // 正则表达式提取 firstUrl 的值
-                    Pattern pattern = Pattern.compile("\"firstUrl\"\\s*:\\s*\"(.*?)\"");
-                    Matcher matcher = pattern.matcher(scriptContent);
-                    if (matcher.find()) {
-                        String firstUrl = matcher.group(1);
-                        // 处理转义字符
-                        firstUrl = firstUrl.replace("\\/", "/");
-                        return firstUrl;
-                    }
+    public static CompletableFuture<String> getImageFirstUrl(HttpClientManager httpClientManager, String url) {
+        return httpClientManager.sendAsync(httpClientManager.newRequest(url).timeout(Duration.ofMillis(5000)).GET().build(),
+                        HttpResponse.BodyHandlers.ofString())
+                .thenApply(httpResponse -> parseFirstUrl(httpResponse.body(), url))
+                .exceptionally(e -> {
+                    log.error("搜索失败", e);
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
+                });
+    }
+
+    /**
+     * 从页面中解析图片列表接口地址
+     */
+    private static String parseFirstUrl(String html, String url) {
+        // 使用 Jsoup 解析 HTML 内容
+        Document document = Jsoup.parse(html, url);
+
+        // 获取所有 <script> 标签
+        Elements scriptElements = document.getElementsByTag("script");
+
+        // 遍历找到包含 `firstUrl` 的脚本内容
+        for (Element script : scriptElements) {
+            String scriptContent = script.html();
+            if (scriptContent.contains("\"firstUrl\"")) {
+                // 正则表达式提取 firstUrl 的值
+                Pattern pattern = Pattern.compile("\"firstUrl\"\\s*:\\s*\"(.*?)\"");
+                Matcher matcher = pattern.matcher(scriptContent);
+                if (matcher.find()) {
+                    String firstUrl = matcher.group(1);
+                    // 处理转义字符
+                    firstUrl = firstUrl.replace("\\/", "/");
+                    return firstUrl;
                 }
             }
-
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "未找到 url");
-        } catch (Exception e) {
-            log.error("搜索失败", e);
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
         }
+
+        throw new BusinessException(ErrorCode.OPERATION_ERROR, "未找到 url");
     }
 
 
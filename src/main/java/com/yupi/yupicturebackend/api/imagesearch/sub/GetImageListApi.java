@@ -1,16 +1,17 @@
 package com.yupi.yupicturebackend.api.imagesearch.sub;
 
-import cn.hutool.http.HttpResponse;
-import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.HttpClientManager;
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.http.HttpResponse;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 获取图片列表（step 3）
@@ -21,29 +22,30 @@ public class GetImageListApi {
     /**
      * 获取图片列表
      *
+     * @param httpClientManager 外部请求
      * @param url
      * @return
      */
-    public static List<ImageSearchResult> getImageList(String url) {
-        try {
-            // 发起GET请求
-            HttpResponse response = HttpUtil.createGet(url).execute();
+    public static CompletableFuture<List<ImageSearchResult>> getImageList(HttpClientManager httpClientManager, String url) {
+        // 发起GET请求
+        return httpClientManager.getStringAsync(url)
+                .thenApply(response -> {
+                    // 获取响应内容
+                    int statusCode = response.statusCode();
+                    String body = response.body();
 
-            // 获取响应内容
-            int statusCode = response.getStatus();
-            String body = response.body();
-
-            // 处理响应
-            if (statusCode == 200) {
-                // 解析 JSON 数据并处理
-                return processResponse(body);
-            } else {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
-            }
-        } catch (Exception e) {
-            log.error("获取图片列表失败", e);
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取图片列表失败");
-        }
+                    // 处理响应
+                    if (statusCode == 200) {
+                        // 解析 JSON 数据并处理
+                        return processResponse(body);
+                    } else {
+                        throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
+                    }
+                })
+                .exceptionally(e -> {
+                    log.error("获取图片列表失败", e);
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取图片列表失败");
+                });
     }
 
     /**
@@ -2,17 +2,20 @@ package com.yupi.yupicturebackend.api.imagesearch.sub;
 
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.core.util.URLUtil;
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
 import cn.hutool.http.HttpStatus;
 import cn.hutool.json.JSONUtil;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.HttpClientManager;
 import lombok.extern.slf4j.Slf4j;
 
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 获取以图搜图页面地址（step 1）
@@ -23,10 +26,11 @@ public class GetImagePageUrlApi {
     /**
      * 获取以图搜图页面地址
      *
+     * @param httpClientManager 外部请求
      * @param imageUrl
      * @return
      */
-    public static String getImagePageUrl(String imageUrl) {
+    public static CompletableFuture<String> getImagePageUrl(HttpClientManager httpClientManager, String imageUrl) {
         // image: https%3A%2F%2Fwww.codefather.cn%2Flogo.png
         //tn: pc
         //from: pc
@@ -42,36 +46,44 @@ public class GetImagePageUrlApi {
         long uptime = System.currentTimeMillis();
         // 请求地址
         String url = "https://graph.baidu.com/upload?uptime=" + uptime;
-        try {
-            // 2. 发送请求
-            HttpResponse httpResponse = HttpRequest.post(url)
-                    .form(formData)
-                    .timeout(5000)
-                    .execute();
-            if (httpResponse.getStatus() != HttpStatus.HTTP_OK) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
-            }
-            // 解析响应
-            // {"status":0,"msg":"Success","data":{"url":"https://graph.baidu.com/sc","sign":"1262fe97cd54acd88139901734784257"}}
-            String body = httpResponse.body();
-            Map<String, Object> result = JSONUtil.toBean(body, Map.class);
-            // 3. 处理响应结果
-            if (result == null || !Integer.valueOf(0).equals(result.get("status"))) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
-            }
-            Map<String, Object> data = (Map<String, Object>) result.get("data");
-            // 对 URL 进行解码
-            String rawUrl = (String) data.get("url");
-            String searchResultUrl = URLUtil.decode(rawUrl, StandardCharsets.UTF_8);
-            // 如果 URL 为空
-            if (StrUtil.isBlank(searchResultUrl)) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "未返回有效的结果地址");
-            }
-            return searchResultUrl;
-        } catch (Exception e) {
-            log.error("调用百度以图搜图接口失败", e);
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
+        // 2. 发送请求
+        HttpRequest httpRequest = httpClientManager.newRequest(url)
+                .timeout(Duration.ofMillis(5000))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpClientManager.ofForm(formData))
+                .build();
+        return httpClientManager.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
+                .thenApply(GetImagePageUrlApi::parseResponse)
+                .exceptionally(e -> {
+                    log.error("调用百度以图搜图接口失败", e);
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
+                });
+    }
+
+    /**
+     * 解析响应，获取搜索结果页面地址
+     */
+    private static String parseResponse(HttpResponse<String> httpResponse) {
+        if (httpResponse.statusCode() != HttpStatus.HTTP_OK) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
+        }
+        // 解析响应
+        // {"status":0,"msg":"Success","data":{"url":"https://graph.baidu.com/sc","sign":"1262fe97cd54acd88139901734784257"}}
+        String body = httpResponse.body();
+        Map<String, Object> result = JSONUtil.toBean(body, Map.class);
+        // 3. 处理响应结果
+        if (result == null || !Integer.valueOf(0).equals(result.get("status"))) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "接口调用失败");
+        }
+        Map<String, Object> data = (Map<String, Object>) result.get("data");
+        // 对 URL 进行解码
+        String rawUrl = (String) data.get("url");
+        String searchResultUrl = URLUtil.decode(rawUrl, StandardCharsets.UTF_8);
+        // 如果 URL 为空
+        if (StrUtil.isBlank(searchResultUrl)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "未返回有效的结果地址");
         }
+        return searchResultUrl;
     }
 
 
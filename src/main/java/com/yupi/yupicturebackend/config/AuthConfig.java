@@ -0,0 +1,34 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 登录认证配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "auth")
+@Data
+public class AuthConfig {
+
+    /**
+     * 登录认证方式：session（Redis 会话）或 token（签名令牌，本机校验，不需要读取会话）
+     */
+    private String mode = "session";
+
+    /**
+     * 令牌签名密钥（HMAC-SHA256），令牌认证时必须配置，所有实例相同
+     */
+    private String tokenSecret;
+
+    /**
+     * 令牌有效期（秒）
+     */
+    private long tokenExpireSeconds = 604800L;
+
+    /**
+     * 各实例重建令牌吊销布隆过滤器的间隔（毫秒），吊销通知丢失时最多这么久后生效
+     */
+    private long tokenRevocationRefreshMillis = 60000L;
+}
@@ -0,0 +1,44 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 外部请求（下载网络图片、以图搜图、抓取页面）的 HTTP 客户端配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "http.client")
+@Data
+public class HttpClientConfig {
+
+    /**
+     * 连接超时时间（毫秒）
+     */
+    private int connectTimeoutMillis = 3000;
+
+    /**
+     * 读取超时时间（毫秒）
+     */
+    private int readTimeoutMillis = 10000;
+
+    /**
+     * 同一域名的最大并发数，超出的请求排队
+     */
+    private int perHostConcurrency = 16;
+
+    /**
+     * 同一域名的最大排队数，超出时请求直接失败
+     */
+    private int perHostQueueCapacity = 200;
+
+    /**
+     * 处理响应的线程数
+     */
+    private int threads = 4;
+
+    /**
+     * 同步等待请求结果的最长时间（毫秒），包括排队、建立连接和接收响应的时间
+     */
+    private int awaitTimeoutMillis = 60000;
+}
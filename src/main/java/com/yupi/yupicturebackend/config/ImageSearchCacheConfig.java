@@ -0,0 +1,24 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 以图搜图结果缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache.image-search")
+@Data
+public class ImageSearchCacheConfig {
+
+    /**
+     * 新鲜期（秒），期间直接返回缓存
+     */
+    private int freshSeconds = 3600;
+
+    /**
+     * 过了新鲜期后仍可返回的时间（秒），期间返回旧结果并在后台刷新，之后缓存过期
+     */
+    private int staleSeconds = 86400;
+}
@@ -0,0 +1,24 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 锁服务配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "lock")
+@Data
+public class LockConfig {
+
+    /**
+     * 锁服务的实现：local（本机分段锁）或 redis（分布式锁，多实例部署时使用）
+     */
+    private String type = "local";
+
+    /**
+     * 本机分段锁的分段数（取不小于该值的 2 的幂）
+     */
+    private int stripes = 1024;
+}
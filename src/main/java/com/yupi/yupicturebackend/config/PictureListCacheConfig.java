@@ -0,0 +1,24 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 图片分页列表缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache.picture-list")
+@Data
+public class PictureListCacheConfig {
+
+    /**
+     * 新鲜期（秒），临近到期时按概率提前在后台刷新
+     */
+    private int freshSeconds = 300;
+
+    /**
+     * 过了新鲜期后仍可返回的时间（秒），期间返回旧结果并在后台刷新，之后缓存过期
+     */
+    private int staleSeconds = 60;
+}
@@ -0,0 +1,124 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 图片上传配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "picture.upload")
+@Data
+public class PictureUploadConfig {
+
+    /**
+     * 是否开启流式上传（跳过本地临时文件，直接把输入流写入对象存储）
+     * 仅在能拿到文件大小时生效，否则自动回退到临时文件方式
+     */
+    private boolean streaming = true;
+
+    /**
+     * 是否按图片内容（SHA-256）去重，内容相同的图片复用已上传的对象存储文件
+     */
+    private boolean deduplicate = true;
+
+    /**
+     * 分片上传的分片大小（字节），除最后一片外每片都必须是该大小，对象存储要求不小于 1MB
+     */
+    private long chunkPartSize = 5 * 1024 * 1024L;
+
+    /**
+     * 分片上传允许的最大文件大小（字节）
+     */
+    private long chunkMaxFileSize = 100 * 1024 * 1024L;
+
+    /**
+     * 同时上传到对象存储的分片数上限（所有请求共享），超出时请求等待
+     */
+    private int chunkUploadConcurrency = 8;
+
+    /**
+     * 分片上传进度在 Redis 中的保留时间（小时），过期后需要重新上传
+     */
+    private int chunkSessionExpireHours = 24;
+
+    /**
+     * 是否异步处理图片：上传原图后立即入库（处理中），压缩图、缩略图和主色调由后台任务生成
+     */
+    private boolean asyncProcess = true;
+
+    /**
+     * 图片处理引擎：cos（数据万象，生成 webp 压缩图）或 local（本机 ImageIO 处理，不做 webp 压缩，
+     * 遇到本机不支持的格式时自动改用数据万象）
+     */
+    private String processEngine = "cos";
+
+    /**
+     * 多分辨率缩略图的宽度（像素），首次访问时按需生成
+     */
+    private List<Integer> renditionWidths = Arrays.asList(128, 256, 512, 1024);
+
+    /**
+     * 异步处理队列的实现：local（本机内存队列）或 redis（Redis Stream，多实例部署时使用）
+     */
+    private String processQueue = "local";
+
+    /**
+     * 异步处理的并发线程数
+     */
+    private int processThreads = 4;
+
+    /**
+     * 本机内存队列的容量，队列满时不再接收任务，由定时恢复任务稍后重新提交
+     */
+    private int processQueueCapacity = 1000;
+
+    /**
+     * 处理中的图片超过该时间（秒）未完成，视为任务丢失（实例重启、队列已满、消费者下线），重新提交处理
+     */
+    private int processStaleSeconds = 600;
+
+    /**
+     * 检查丢失的图片处理任务的间隔（毫秒）
+     */
+    private long processRecoverIntervalMillis = 300_000L;
+
+    /**
+     * 单个批量导入任务最多导入的图片数
+     */
+    private int batchMaxCount = 5000;
+
+    /**
+     * 批量导入任务心跳超时时间（秒），执行中的任务超过该时间未更新心跳，视为执行实例崩溃，由调度器重新拉取执行
+     */
+    private int batchJobHeartbeatTimeoutSeconds = 120;
+
+    /**
+     * 每个实例同时执行的批量导入任务数，等待中的任务保存在数据库中
+     */
+    private int batchJobThreads = 2;
+
+    /**
+     * 批量导入时下载、上传单张图片的并发线程数（所有任务共享）
+     */
+    private int batchItemThreads = 8;
+
+    /**
+     * 批量导入时同一个图片域名的最大并发数（所有任务共享）
+     */
+    private int batchPerHostConcurrency = 4;
+
+    /**
+     * 批量导入时单张图片的超时时间（秒），超时后放弃该图片
+     */
+    private int batchItemTimeoutSeconds = 30;
+
+    /**
+     * Redis Stream 队列中本实例的消费者编号，同一台机器部署多个实例时需要区分
+     */
+    private String processConsumerId = "0";
+}
@@ -0,0 +1,19 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 预序列化响应缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache.rendered-response")
+@Data
+public class RenderedResponseConfig {
+
+    /**
+     * 是否预序列化热点读接口的响应（公共图库列表、图片详情、标签分类），命中时直接写入字节，支持 ETag 和 304
+     */
+    private boolean enabled = true;
+}
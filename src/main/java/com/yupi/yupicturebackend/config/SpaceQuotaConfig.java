@@ -0,0 +1,40 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 空间额度配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "space.quota")
+@Data
+public class SpaceQuotaConfig {
+
+    /**
+     * 空间用量缓冲的实现：redis（默认，实例崩溃后可重新写入，多实例部署时必须使用）
+     * 或 local（本机内存，仅用于单实例部署，实例崩溃时丢失的增量由额度对账修正）
+     */
+    private String usageBuffer = "redis";
+
+    /**
+     * 空间用量缓冲写入空间表的间隔（毫秒）
+     */
+    private int usageFlushMillis = 1000;
+
+    /**
+     * 空间额度对账的间隔（毫秒）
+     */
+    private long reconcileIntervalMillis = 600_000L;
+
+    /**
+     * 空间额度对账每批检查的空间数
+     */
+    private int reconcileChunkSize = 200;
+
+    /**
+     * 空间额度对账每批之间的最短暂停时间（毫秒），实际暂停时间不少于该批的查询耗时，避免占满数据库
+     */
+    private long reconcileChunkPauseMillis = 100L;
+}
@@ -0,0 +1,19 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 线程配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "threads")
+@Data
+public class ThreadConfig {
+
+    /**
+     * 是否使用虚拟线程（需要 JDK 21），开启后 Tomcat 请求处理、@Async 异步任务、批量导入、缓存刷新都使用虚拟线程
+     */
+    private boolean virtual = false;
+}
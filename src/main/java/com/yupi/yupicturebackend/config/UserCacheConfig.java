@@ -0,0 +1,29 @@
+package com.yupi.yupicturebackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 用户缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache.user")
+@Data
+public class UserCacheConfig {
+
+    /**
+     * 用户缓存的过期时间（秒），用户信息修改后主动失效，过期时间只用于兜底
+     */
+    private int expireSeconds = 600;
+
+    /**
+     * 用户本地缓存的最大条数
+     */
+    private long maxSize = 10000L;
+
+    /**
+     * 是否使用 Redis 作为二级缓存（多实例部署时减少实例冷启动后对数据库的查询）
+     */
+    private boolean redis = false;
+}
@@ -0,0 +1,46 @@
+package com.yupi.yupicturebackend.config;
+
+import com.yupi.yupicturebackend.utils.VirtualThreadUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * 虚拟线程配置（需要 JDK 21，使用 jdk21 构建配置打包）
+ * 开启 threads.virtual 后，Tomcat 请求处理和 @Async 异步任务都使用虚拟线程，
+ * 阻塞在数据库、Redis、对象存储、外部请求上的线程不再占用平台线程
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "threads", name = "virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    public VirtualThreadConfig() {
+        if (!VirtualThreadUtils.isSupported()) {
+            throw new IllegalStateException("已开启虚拟线程，但当前 JDK 不支持，需要 JDK 21 及以上");
+        }
+        log.info("已开启虚拟线程");
+    }
+
+    /**
+     * Tomcat 请求处理使用虚拟线程，每个请求一个线程
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(
+                VirtualThreadUtils.newVirtualThreadPerTaskExecutor("tomcat-handler-"));
+    }
+
+    /**
+     * @Async 异步任务（如清理图片文件）使用虚拟线程，替代默认的有界线程池
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(VirtualThreadUtils.newVirtualThreadPerTaskExecutor("async-"));
+    }
+}
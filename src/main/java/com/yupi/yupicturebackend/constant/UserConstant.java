@@ -6,7 +6,7 @@ package com.yupi.yupicturebackend.constant;
 public interface UserConstant {
 
     /**
-     * 用户登录态键
+     * 用户登录态键，值为 "用户 id:登录态版本号"
      */
     String USER_LOGIN_STATE = "user_login";
 
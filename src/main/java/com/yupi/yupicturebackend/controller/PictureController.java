@@ -1,43 +1,55 @@
 package com.yupi.yupicturebackend.controller;
 
-import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import com.yupi.yupicturebackend.annotation.AuthCheck;
-import com.yupi.yupicturebackend.api.imagesearch.ImageSearchApiFacade;
 import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
 import com.yupi.yupicturebackend.common.BaseResponse;
 import com.yupi.yupicturebackend.common.DeleteRequest;
 import com.yupi.yupicturebackend.common.ResultUtils;
+import com.yupi.yupicturebackend.config.RenderedResponseConfig;
 import com.yupi.yupicturebackend.constant.UserConstant;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.cache.PictureListCache;
+import com.yupi.yupicturebackend.manager.cache.RenderedResponse;
+import com.yupi.yupicturebackend.manager.cache.ResponseRenderer;
+import com.yupi.yupicturebackend.manager.search.ImageSearchCache;
+import com.yupi.yupicturebackend.manager.search.PictureColorIndex;
+import com.yupi.yupicturebackend.manager.search.PictureHashIndex;
+import com.yupi.yupicturebackend.manager.upload.PictureImportJobExecutor;
 import com.yupi.yupicturebackend.model.dto.picture.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureImportItem;
+import com.yupi.yupicturebackend.model.entity.PictureImportJob;
 import com.yupi.yupicturebackend.model.entity.Space;
 import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.enums.PictureReviewStatusEnum;
+import com.yupi.yupicturebackend.model.vo.PictureBatchUploadMetricsVO;
+import com.yupi.yupicturebackend.model.vo.PictureChunkUploadVO;
+import com.yupi.yupicturebackend.model.vo.PictureImportJobVO;
+import com.yupi.yupicturebackend.model.vo.PictureListCacheMetricsVO;
 import com.yupi.yupicturebackend.model.vo.PictureTagCategory;
 import com.yupi.yupicturebackend.model.vo.PictureVO;
+import com.yupi.yupicturebackend.service.PictureImportItemService;
+import com.yupi.yupicturebackend.service.PictureImportJobService;
 import com.yupi.yupicturebackend.service.PictureService;
 import com.yupi.yupicturebackend.service.SpaceService;
 import com.yupi.yupicturebackend.service.UserService;
 import org.springframework.beans.BeanUtils;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
-import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @RequestMapping("/picture")
 @RestController
@@ -49,18 +61,39 @@ public class PictureController {
     private PictureService pictureService;
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private SpaceService spaceService;
 
     @Resource
-    private SpaceService spaceService;
+    private PictureImportJobService pictureImportJobService;
+
+    @Resource
+    private PictureImportItemService pictureImportItemService;
+
+    @Resource
+    private PictureImportJobExecutor pictureImportJobExecutor;
+
+    @Resource
+    private ImageSearchCache imageSearchCache;
 
+    @Resource
+    private PictureListCache pictureListCache;
+
+    @Resource
+    private PictureHashIndex pictureHashIndex;
+
+    @Resource
+    private PictureColorIndex pictureColorIndex;
 
-    private final Cache<String, String> LOCAL_CACHE =
-            Caffeine.newBuilder().initialCapacity(1024)
-                    .maximumSize(10000L)
+    @Resource
+    private ResponseRenderer responseRenderer;
 
-                    .expireAfterWrite(5L, TimeUnit.MINUTES)
-                    .build();
+    @Resource
+    private RenderedResponseConfig renderedResponseConfig;
+
+    /**
+     * 序列化后的标签分类响应，内容固定，首次访问时生成
+     */
+    private volatile RenderedResponse renderedTagCategory;
 
     /**
      * 上传图片（可重新上传）
@@ -94,6 +127,63 @@ public class PictureController {
     }
 
 
+    /**
+     * 分片上传：初始化, 返回分片上传 id 和分片大小
+     */
+    @PostMapping("/upload/chunk/init")
+    public BaseResponse<PictureChunkUploadVO> initPictureChunkUpload(
+            @RequestBody PictureChunkUploadInitRequest pictureChunkUploadInitRequest,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        PictureChunkUploadVO pictureChunkUploadVO = pictureService.initPictureChunkUpload(pictureChunkUploadInitRequest, loginUser);
+        return ResultUtils.success(pictureChunkUploadVO);
+    }
+
+    /**
+     * 分片上传：上传单个分片, 客户端可以并发上传多个分片
+     */
+    @PostMapping("/upload/chunk/part")
+    public BaseResponse<Boolean> uploadPictureChunk(@RequestPart("file") MultipartFile multipartFile,
+                                                    PictureChunkUploadRequest pictureChunkUploadRequest,
+                                                    HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        pictureService.uploadPictureChunk(pictureChunkUploadRequest, multipartFile, loginUser);
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 分片上传：查询进度, 断点续传时跳过已上传的分片
+     */
+    @GetMapping("/upload/chunk/status")
+    public BaseResponse<PictureChunkUploadVO> getPictureChunkUpload(String uploadId, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(pictureService.getPictureChunkUpload(uploadId, loginUser));
+    }
+
+    /**
+     * 分片上传：合并分片并保存图片
+     */
+    @PostMapping("/upload/chunk/complete")
+    public BaseResponse<PictureVO> completePictureChunkUpload(@RequestBody PictureChunkUploadRequest pictureChunkUploadRequest,
+                                                              HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureChunkUploadRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        PictureVO pictureVO = pictureService.completePictureChunkUpload(pictureChunkUploadRequest.getUploadId(), loginUser);
+        return ResultUtils.success(pictureVO);
+    }
+
+    /**
+     * 分片上传：取消上传, 清理已上传的分片
+     */
+    @PostMapping("/upload/chunk/abort")
+    public BaseResponse<Boolean> abortPictureChunkUpload(@RequestBody PictureChunkUploadRequest pictureChunkUploadRequest,
+                                                         HttpServletRequest request) {
+        ThrowUtils.throwIf(pictureChunkUploadRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        pictureService.abortPictureChunkUpload(pictureChunkUploadRequest.getUploadId(), loginUser);
+        return ResultUtils.success(true);
+    }
+
     /**
      * 删除图片
      */
@@ -137,6 +227,10 @@ public class PictureController {
         // 操作数据库
         boolean result = pictureService.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        pictureListCache.invalidate(oldPicture.getSpaceId());
+        // 审核状态可能变化，同步更新检索索引
+        pictureHashIndex.put(oldPicture.getSpaceId(), id, oldPicture.getPicHash(), picture.getReviewStatus());
+        pictureColorIndex.put(oldPicture.getSpaceId(), id, oldPicture.getPicColor(), oldPicture.getPicPalette());
         return ResultUtils.success(true);
     }
 
@@ -158,8 +252,17 @@ public class PictureController {
      * 根据 id 获取图片（封装类）
      */
     @GetMapping("/get/vo")
-    public BaseResponse<PictureVO> getPictureVOById(long id, HttpServletRequest request) {
+    public void getPictureVOById(long id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        // 响应体为 BaseResponse<PictureVO>，公共图片命中缓存时不查询数据库，直接写入序列化后的响应
+        RenderedResponse renderedResponse = renderedResponseConfig.isEnabled()
+                ? pictureListCache.getRenderedPicture(id, () -> doGetPictureVOById(id, request))
+                : responseRenderer.render(doGetPictureVOById(id, request));
+        responseRenderer.write(renderedResponse, ResponseRenderer.CACHE_CONTROL_REVALIDATE, request, response);
+    }
+
+    private PictureVO doGetPictureVOById(long id, HttpServletRequest request) {
         // 查询数据库
         Picture picture = pictureService.getById(id);
         ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
@@ -170,7 +273,29 @@ public class PictureController {
             pictureService.checkPictureAuth(loginUser, picture);
         }
         // 获取封装类
-        return ResultUtils.success(pictureService.getPictureVO(picture, request));
+        return pictureService.getPictureVO(picture, request);
+    }
+
+    /**
+     * 获取指定宽度的缩略图（不存在时生成），重定向到缩略图地址
+     */
+    @GetMapping("/rendition")
+    public void getPictureRendition(long id, int width, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        // 查询数据库
+        Picture picture = pictureService.getById(id);
+        ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
+        // 权限校验
+        Long spaceId = picture.getSpaceId();
+        if (spaceId != null) {
+            User loginUser = userService.getLoginUser(request);
+            pictureService.checkPictureAuth(loginUser, picture);
+        }
+        String renditionUrl = pictureService.getPictureRenditionUrl(picture, width);
+        // 缩略图生成后地址不变，允许浏览器缓存重定向结果
+        response.setHeader("Cache-Control", spaceId == null ? "public, max-age=3600" : "private, max-age=3600");
+        response.sendRedirect(renditionUrl);
     }
 
     /**
@@ -191,7 +316,8 @@ public class PictureController {
      * 分页获取图片列表（封装类）
      */
     @PostMapping("/list/page/vo")
-    public BaseResponse<Page<PictureVO>> listPictureVOByPage(@RequestBody PictureQueryRequest pictureQueryRequest, HttpServletRequest request) {
+    public void listPictureVOByPage(@RequestBody PictureQueryRequest pictureQueryRequest,
+                                    HttpServletRequest request, HttpServletResponse response) throws IOException {
         long current = pictureQueryRequest.getCurrent();
         long size = pictureQueryRequest.getPageSize();
         // 限制爬虫
@@ -212,66 +338,49 @@ public class PictureController {
             }
         }
 
-        // 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
+        // 查询缓存，未命中时查询数据库并获取封装类（可能在后台刷新时执行，此时请求已结束，不传入请求对象）
+        Supplier<Page<PictureVO>> loader = () -> {
+            Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
+                    pictureService.getQueryWrapper(pictureQueryRequest));
+            return pictureService.getPictureVOPage(picturePage, null);
+        };
+        // 响应体为 BaseResponse<Page<PictureVO>>
+        RenderedResponse renderedResponse = renderedResponseConfig.isEnabled()
+                ? pictureListCache.getRenderedPage(pictureQueryRequest, loader)
+                : responseRenderer.render(pictureListCache.getPictureVOPage(pictureQueryRequest, loader));
+        responseRenderer.write(renderedResponse, ResponseRenderer.CACHE_CONTROL_REVALIDATE, request, response);
+    }
 
-        // 获取封装类
-        return ResultUtils.success(pictureService.getPictureVOPage(picturePage, request));
+    /**
+     * 分页获取图片列表（封装类，GET 方式，查询条件放在查询参数中）
+     * 浏览器可以缓存结果，再次请求时带上 If-None-Match，结果未变化时返回 304
+     */
+    @GetMapping("/list/page/vo")
+    public void listPictureVOByPageByGet(PictureQueryRequest pictureQueryRequest,
+                                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        listPictureVOByPage(pictureQueryRequest, request, response);
+    }
+
+    /**
+     * 获取本实例图片分页列表缓存的指标（命中次数、缓存大小）
+     */
+    @GetMapping("/list/page/vo/cache/metrics")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<PictureListCacheMetricsVO> getPictureListCacheMetrics() {
+        return ResultUtils.success(pictureListCache.getMetrics());
     }
 
     /**
      * 分页获取图片列表（封装类，有缓存）
+     * 主接口已带缓存，保留该接口兼容旧版前端
      */
     @Deprecated
     @PostMapping("/list/page/vo/cache")
-    public BaseResponse<Page<PictureVO>> listPictureVOByPageWithCache(@RequestBody PictureQueryRequest pictureQueryRequest,
-                                                                      HttpServletRequest request) {
-        long current = pictureQueryRequest.getCurrent();
-        long size = pictureQueryRequest.getPageSize();
-        // 限制爬虫
-        ThrowUtils.throwIf(size > 20, ErrorCode.PARAMS_ERROR);
-        // 普通用户默认只能看到审核通过的数据
-        pictureQueryRequest.setReviewStatus(PictureReviewStatusEnum.PASS.getValue());
-        // 查询缓存，缓存中没有，再查询数据库
-        // 构建缓存的 key
-        String queryCondition = JSONUtil.toJsonStr(pictureQueryRequest);
-        String hashKey = DigestUtils.md5DigestAsHex(queryCondition.getBytes());
-        String cacheKey = String.format("yupicture:listPictureVOByPage:%s", hashKey);
-        // 1. 先从本地缓存中查询
-        String cachedValue = LOCAL_CACHE.getIfPresent(cacheKey);
-        if (cachedValue != null) {
-            // 如果缓存命中，返回结果
-            Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-            return ResultUtils.success(cachedPage);
-        }
-        // 2. 本地缓存未命中，查询 Redis 分布式缓存
-        ValueOperations<String, String> opsForValue = stringRedisTemplate.opsForValue();
-        //
-        cachedValue = opsForValue.get(cacheKey);
-        if (cachedValue != null) {
-            // 如果缓存命中，更新本地缓存，返回结果
-            LOCAL_CACHE.put(cacheKey, cachedValue);
-            Page<PictureVO> cachedPage = JSONUtil.toBean(cachedValue, Page.class);
-            return ResultUtils.success(cachedPage);
-        }
-        // 3. 查询数据库
-        Page<Picture> picturePage = pictureService.page(new Page<>(current, size),
-                pictureService.getQueryWrapper(pictureQueryRequest));
-        Page<PictureVO> pictureVOPage = pictureService.getPictureVOPage(picturePage, request);
-        // 4. 更新缓存
-        // 更新 Redis 缓存
-        String cacheValue = JSONUtil.toJsonStr(pictureVOPage);
-        // 设置缓存的过期时间，5 - 10 分钟过期，防止缓存雪崩
-        int cacheExpireTime = 300 + RandomUtil.randomInt(0, 300);
-        opsForValue.set(cacheKey, cacheValue, cacheExpireTime, TimeUnit.SECONDS);
-        // 写入本地缓存
-        LOCAL_CACHE.put(cacheKey, cacheValue);
-        // 获取封装类
-        return ResultUtils.success(pictureVOPage);
+    public void listPictureVOByPageWithCache(@RequestBody PictureQueryRequest pictureQueryRequest,
+                                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        listPictureVOByPage(pictureQueryRequest, request, response);
     }
 
-
     /**
      * 编辑图片（给用户使用）
      */
@@ -288,13 +397,25 @@ public class PictureController {
 
 
     @GetMapping("/tag_category")
-    public BaseResponse<PictureTagCategory> listPictureTagCategory() {
+    public void listPictureTagCategory(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 响应体为 BaseResponse<PictureTagCategory>
+        RenderedResponse renderedResponse = renderedResponseConfig.isEnabled() ? renderedTagCategory : null;
+        if (renderedResponse == null) {
+            renderedResponse = responseRenderer.render(buildPictureTagCategory());
+            if (renderedResponseConfig.isEnabled()) {
+                renderedTagCategory = renderedResponse;
+            }
+        }
+        responseRenderer.write(renderedResponse, ResponseRenderer.CACHE_CONTROL_REVALIDATE, request, response);
+    }
+
+    private PictureTagCategory buildPictureTagCategory() {
         PictureTagCategory pictureTagCategory = new PictureTagCategory();
         List<String> tagList = Arrays.asList("热门", "真人", "生活", "高清", "艺术", "校园", "背景", "二次元", "简约", "中国风");
         List<String> categoryList = Arrays.asList("头像", "壁纸", "表情包", "素材", "海报");
         pictureTagCategory.setTagList(tagList);
         pictureTagCategory.setCategoryList(categoryList);
-        return ResultUtils.success(pictureTagCategory);
+        return pictureTagCategory;
     }
 
     /**
@@ -319,20 +440,72 @@ public class PictureController {
      * 批量上传图片接口
      * @param pictureUploadByBatchRequest 批量上传图片请求参数
      * @param request HTTP请求对象，用于获取登录用户信息
-     * @return 返回成功上传的图片数量
+     * @return 返回批量导入任务 id, 任务由调度器异步执行, 通过 /upload/batch/get 查询进度
      */
     @PostMapping("/upload/batch")
     @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)  // 管理员权限检查注解
-    public BaseResponse<Integer> uploadPictureByBatch(
+    public BaseResponse<Long> uploadPictureByBatch(
             @RequestBody PictureUploadByBatchRequest pictureUploadByBatchRequest,  // 请求体参数，包含批量上传图片的信息
             HttpServletRequest request) {
     // 参数校验：如果请求参数为空，则抛出参数错误异常
         ThrowUtils.throwIf(pictureUploadByBatchRequest == null, ErrorCode.PARAMS_ERROR);
     // 获取当前登录用户信息
         User loginUser = userService.getLoginUser(request);
-        //批量穿图片
-        int uploadCount = pictureService.uploadPictureByBatch(pictureUploadByBatchRequest, loginUser);
-        return ResultUtils.success(uploadCount);
+        // 创建批量导入任务
+        long jobId = pictureImportJobService.addImportJob(pictureUploadByBatchRequest, loginUser);
+        return ResultUtils.success(jobId);
+    }
+
+    /**
+     * 获取批量导入图片任务进度（包含失败率和吞吐量）
+     */
+    @GetMapping("/upload/batch/get")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<PictureImportJobVO> getPictureImportJobById(long id) {
+        ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        PictureImportJob pictureImportJob = pictureImportJobService.getById(id);
+        ThrowUtils.throwIf(pictureImportJob == null, ErrorCode.NOT_FOUND_ERROR, "任务不存在");
+        return ResultUtils.success(PictureImportJobVO.objToVo(pictureImportJob));
+    }
+
+    /**
+     * 分页获取批量导入图片任务列表
+     */
+    @PostMapping("/upload/batch/list/page")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Page<PictureImportJobVO>> listPictureImportJobByPage(
+            @RequestBody PictureImportJobQueryRequest pictureImportJobQueryRequest) {
+        ThrowUtils.throwIf(pictureImportJobQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        long current = pictureImportJobQueryRequest.getCurrent();
+        long size = pictureImportJobQueryRequest.getPageSize();
+        Page<PictureImportJob> pictureImportJobPage = pictureImportJobService.page(new Page<>(current, size),
+                pictureImportJobService.getQueryWrapper(pictureImportJobQueryRequest));
+        return ResultUtils.success(pictureImportJobService.getImportJobVOPage(pictureImportJobPage));
+    }
+
+    /**
+     * 分页获取批量导入图片任务明细（每张图片的导入状态和失败原因）
+     */
+    @PostMapping("/upload/batch/item/list/page")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Page<PictureImportItem>> listPictureImportItemByPage(
+            @RequestBody PictureImportItemQueryRequest pictureImportItemQueryRequest) {
+        ThrowUtils.throwIf(pictureImportItemQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        long current = pictureImportItemQueryRequest.getCurrent();
+        long size = pictureImportItemQueryRequest.getPageSize();
+        ThrowUtils.throwIf(size > 100, ErrorCode.PARAMS_ERROR);
+        Page<PictureImportItem> pictureImportItemPage = pictureImportItemService.page(new Page<>(current, size),
+                pictureImportItemService.getQueryWrapper(pictureImportItemQueryRequest));
+        return ResultUtils.success(pictureImportItemPage);
+    }
+
+    /**
+     * 获取本实例批量导入图片线程池指标（执行数、排队数）
+     */
+    @GetMapping("/upload/batch/metrics")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<PictureBatchUploadMetricsVO> getPictureBatchUploadMetrics() {
+        return ResultUtils.success(pictureImportJobExecutor.getMetrics());
     }
 
     /**
@@ -355,12 +528,30 @@ public class PictureController {
         Picture oldPicture = pictureService.getById(pictureId);
     // 检查图片是否存在，如果不存在则抛出未找到错误异常
         ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR);
-    // 调用图像搜索API，根据图片URL进行相似图片搜索，获取搜索结果列表
-        List<ImageSearchResult> resultList = ImageSearchApiFacade.searchImage(oldPicture.getUrl());
+    // 调用图像搜索API（带缓存），根据图片URL进行相似图片搜索，获取搜索结果列表
+        List<ImageSearchResult> resultList = imageSearchCache.searchImage(oldPicture.getUrl());
     // 返回成功的搜索结果
         return ResultUtils.success(resultList);
     }
 
+    /**
+     * 相似图片搜索（站内以图搜图）
+     * 按感知哈希在源图片所在空间（或公共图库）中查找相似图片，不依赖外部搜索接口
+     *
+     * @param searchPictureByPictureRequest 包含图片ID的请求对象
+     * @param request HTTP请求对象，用于获取当前登录用户信息
+     * @return 返回相似图片列表，按相似度降序排列
+     */
+    @PostMapping("/search/similar")
+    public BaseResponse<List<PictureVO>> searchSimilarPicture(@RequestBody SearchPictureByPictureRequest searchPictureByPictureRequest,
+                                                              HttpServletRequest request) {
+        ThrowUtils.throwIf(searchPictureByPictureRequest == null, ErrorCode.PARAMS_ERROR);
+        Long pictureId = searchPictureByPictureRequest.getPictureId();
+        ThrowUtils.throwIf(pictureId == null || pictureId <= 0, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(pictureService.searchSimilarPicture(pictureId, loginUser));
+    }
+
     /**
      * 按颜色图片搜索
      * 根据指定的颜色值搜索图片，支持在特定空间内搜索
@@ -380,8 +571,11 @@ public class PictureController {
         Long spaceId = searchPictureByColorRequest.getSpaceId();
         // 获取当前登录用户信息
         User loginUser = userService.getLoginUser(request);
-        // 执行颜色搜索并返回结果
-        List<PictureVO> result = pictureService.searchPictureByColor(spaceId, picColor, loginUser);
+        // 执行颜色搜索并返回结果, 指定了多个颜色时按主色板搜索
+        List<String> picColorList = searchPictureByColorRequest.getPicColorList();
+        List<PictureVO> result = CollUtil.isNotEmpty(picColorList)
+                ? pictureService.searchPictureByPalette(spaceId, picColorList, searchPictureByColorRequest.getWeightList(), loginUser)
+                : pictureService.searchPictureByColor(spaceId, picColor, loginUser);
         // 返回成功响应
         return ResultUtils.success(result);
     }
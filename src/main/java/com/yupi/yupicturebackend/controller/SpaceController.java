@@ -11,10 +11,12 @@ import com.yupi.yupicturebackend.constant.UserConstant;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.quota.SpaceQuotaReconciler;
 import com.yupi.yupicturebackend.model.dto.space.*;
 import com.yupi.yupicturebackend.model.entity.Space;
 import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.enums.SpaceLevelEnum;
+import com.yupi.yupicturebackend.model.vo.SpaceQuotaReconcileMetricsVO;
 import com.yupi.yupicturebackend.model.vo.SpaceVO;
 import com.yupi.yupicturebackend.service.SpaceService;
 import com.yupi.yupicturebackend.service.UserService;
@@ -47,6 +49,9 @@ public class SpaceController {
     @Resource
     private SpaceService spaceService;
 
+    @Resource
+    private SpaceQuotaReconciler spaceQuotaReconciler;
+
 
     @PostMapping("/add")
     public BaseResponse<Long> addSpace(@RequestBody SpaceAddRequest spaceAddRequest, HttpServletRequest request) {
@@ -214,4 +219,22 @@ public class SpaceController {
                 .collect(Collectors.toList());
         return ResultUtils.success(spaceLevelList);
     }
+
+    /**
+     * 立即触发一轮空间额度对账（管理员），本实例正在对账时返回 false
+     */
+    @PostMapping("/quota/reconcile")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> reconcileSpaceQuota() {
+        return ResultUtils.success(spaceQuotaReconciler.trigger());
+    }
+
+    /**
+     * 获取本实例最近一轮空间额度对账的指标（偏差空间数、修正空间数、偏差总量）
+     */
+    @GetMapping("/quota/reconcile/metrics")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<SpaceQuotaReconcileMetricsVO> getSpaceQuotaReconcileMetrics() {
+        return ResultUtils.success(spaceQuotaReconciler.getMetrics());
+    }
 }
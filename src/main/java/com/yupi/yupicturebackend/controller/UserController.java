@@ -12,9 +12,11 @@ import com.yupi.yupicturebackend.constant.UserConstant;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.cache.UserCache;
 import com.yupi.yupicturebackend.model.dto.user.*;
 import com.yupi.yupicturebackend.model.entity.User;
 import com.yupi.yupicturebackend.model.vo.LoginUserVO;
+import com.yupi.yupicturebackend.model.vo.UserCacheMetricsVO;
 import com.yupi.yupicturebackend.model.vo.UserVO;
 import com.yupi.yupicturebackend.service.UserService;
 import org.springframework.beans.BeanUtils;
@@ -32,6 +34,9 @@ public class UserController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private UserCache userCache;
+
     /**
      * 用户注册
      */
@@ -112,9 +117,10 @@ public class UserController {
      */
     @GetMapping("/get/vo")
     public BaseResponse<UserVO> getUserVOById(long id) {
-        BaseResponse<User> response = getUserById(id);
-        User user = response.getData();
-        return ResultUtils.success(userService.getUserVO(user));
+        ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
+        UserVO userVO = userService.getUserVOById(id);
+        ThrowUtils.throwIf(userVO == null, ErrorCode.NOT_FOUND_ERROR);
+        return ResultUtils.success(userVO);
     }
 
     /**
@@ -127,6 +133,7 @@ public class UserController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         boolean b = userService.removeById(deleteRequest.getId());
+        userCache.revokeSessions(deleteRequest.getId());
         return ResultUtils.success(b);
     }
 
@@ -139,10 +146,18 @@ public class UserController {
         if (userUpdateRequest == null || userUpdateRequest.getId() == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
+        User oldUser = userService.getById(userUpdateRequest.getId());
+        ThrowUtils.throwIf(oldUser == null, ErrorCode.NOT_FOUND_ERROR);
         User user = new User();
         BeanUtils.copyProperties(userUpdateRequest, user);
         boolean result = userService.updateById(user);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        if (user.getUserRole() != null && !user.getUserRole().equals(oldUser.getUserRole())) {
+            // 权限变化，已有的登录态失效，需要重新登录
+            userCache.revokeSessions(user.getId());
+        } else {
+            userCache.invalidate(user.getId());
+        }
         return ResultUtils.success(true);
     }
 
@@ -165,6 +180,15 @@ public class UserController {
         return ResultUtils.success(userVOPage);
     }
 
+    /**
+     * 获取本实例用户缓存的指标（命中率、缓存大小）
+     */
+    @GetMapping("/cache/metrics")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<UserCacheMetricsVO> getUserCacheMetrics() {
+        return ResultUtils.success(userCache.getMetrics());
+    }
+
     /**
      * 兑换会员
      */
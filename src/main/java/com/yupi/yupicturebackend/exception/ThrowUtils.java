@@ -28,7 +28,10 @@ public class ThrowUtils {
      * @param errorCode 错误码
      */
     public static void throwIf(boolean condition, ErrorCode errorCode) {
-        throwIf(condition, new BusinessException(errorCode));
+        // 条件成立时才创建异常，避免每次调用都填充异常栈
+        if (condition) {
+            throw new BusinessException(errorCode);
+        }
     }
 
     /**
@@ -39,7 +42,9 @@ public class ThrowUtils {
      * @param message 错误信息
      */
     public static void throwIf(boolean condition, ErrorCode errorCode, String message) {
-        throwIf(condition, new BusinessException(errorCode, message));
+        if (condition) {
+            throw new BusinessException(errorCode, message);
+        }
     }
 
 }
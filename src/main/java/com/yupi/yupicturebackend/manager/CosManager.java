@@ -2,17 +2,18 @@ package com.yupi.yupicturebackend.manager;
 
 import cn.hutool.core.io.FileUtil;
 import com.qcloud.cos.COSClient;
-import com.qcloud.cos.model.COSObject;
-import com.qcloud.cos.model.GetObjectRequest;
-import com.qcloud.cos.model.PutObjectRequest;
-import com.qcloud.cos.model.PutObjectResult;
+import com.qcloud.cos.model.*;
+import com.qcloud.cos.model.ciModel.common.ImageProcessRequest;
+import com.qcloud.cos.model.ciModel.persistence.CIUploadResult;
 import com.qcloud.cos.model.ciModel.persistence.PicOperations;
 import com.yupi.yupicturebackend.config.CosClientConfig;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.File;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Component
@@ -55,6 +56,149 @@ public class CosManager {
     public PutObjectResult putPictureObject(String key, File file) {
         PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
                 file);
+        putObjectRequest.setPicOperations(buildPicOperations(key, file.length()));
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 上传对象（附带图片信息，流式上传，不落本地临时文件）
+     *
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 输入流长度（必须准确，SDK 依赖它分块读取）
+     */
+    public PutObjectResult putPictureObject(String key, InputStream inputStream, long contentLength) {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(contentLength);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
+                inputStream, objectMetadata);
+        putObjectRequest.setPicOperations(buildPicOperations(key, contentLength));
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 上传对象（流式上传，不附带图片处理）
+     *
+     * @param key           唯一键
+     * @param inputStream   输入流
+     * @param contentLength 输入流长度
+     */
+    public PutObjectResult putObject(String key, InputStream inputStream, long contentLength) {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(contentLength);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(cosClientConfig.getBucket(), key,
+                inputStream, objectMetadata);
+        return cosClient.putObject(putObjectRequest);
+    }
+
+    /**
+     * 对已上传的图片进行处理（生成压缩图和缩略图，并获取原图信息）
+     *
+     * @param key      原图的唯一键
+     * @param fileSize 原图大小
+     */
+    public CIUploadResult processPictureObject(String key, long fileSize) {
+        ImageProcessRequest imageProcessRequest = new ImageProcessRequest(cosClientConfig.getBucket(), key);
+        imageProcessRequest.setPicOperations(buildPicOperations(key, fileSize));
+        return cosClient.processImage(imageProcessRequest);
+    }
+
+    /**
+     * 对已上传的图片生成指定宽度的缩略图（webp 格式，保存在原图所在目录）
+     *
+     * @param key   原图的唯一键
+     * @param width 缩略图宽度
+     */
+    public CIUploadResult processPictureRendition(String key, int width) {
+        PicOperations picOperations = new PicOperations();
+        PicOperations.Rule renditionRule = new PicOperations.Rule();
+        renditionRule.setFileId(FileUtil.mainName(key) + "_" + width + ".webp");
+        renditionRule.setBucket(cosClientConfig.getBucket());
+        // 缩放规则 /thumbnail/<Width>x（按宽度等比缩放）
+        renditionRule.setRule(String.format("imageMogr2/thumbnail/%sx/format/webp", width));
+        picOperations.setRules(Collections.singletonList(renditionRule));
+        ImageProcessRequest imageProcessRequest = new ImageProcessRequest(cosClientConfig.getBucket(), key);
+        imageProcessRequest.setPicOperations(picOperations);
+        return cosClient.processImage(imageProcessRequest);
+    }
+
+    /**
+     * 初始化分片上传
+     *
+     * @param key 唯一键
+     * @return 分片上传 id
+     */
+    public String initiateMultipartUpload(String key) {
+        InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(cosClientConfig.getBucket(), key);
+        return cosClient.initiateMultipartUpload(request).getUploadId();
+    }
+
+    /**
+     * 上传分片
+     *
+     * @param key         唯一键
+     * @param uploadId    分片上传 id
+     * @param partNumber  分片序号（从 1 开始）
+     * @param inputStream 分片内容
+     * @param partSize    分片大小
+     * @return 分片的 ETag，合并分片时使用
+     */
+    public PartETag uploadPart(String key, String uploadId, int partNumber, InputStream inputStream, long partSize) {
+        UploadPartRequest request = new UploadPartRequest();
+        request.setBucketName(cosClientConfig.getBucket());
+        request.setKey(key);
+        request.setUploadId(uploadId);
+        request.setPartNumber(partNumber);
+        request.setInputStream(inputStream);
+        request.setPartSize(partSize);
+        return cosClient.uploadPart(request).getPartETag();
+    }
+
+    /**
+     * 合并分片（附带图片信息）
+     *
+     * @param key      唯一键
+     * @param uploadId 分片上传 id
+     * @param partETags 所有分片的 ETag
+     * @param fileSize 合并后的文件大小
+     */
+    public CompleteMultipartUploadResult completePictureMultipartUpload(String key, String uploadId,
+                                                                        List<PartETag> partETags, long fileSize) {
+        CompleteMultipartUploadRequest request = new CompleteMultipartUploadRequest(cosClientConfig.getBucket(), key,
+                uploadId, partETags);
+        request.setPicOperations(buildPicOperations(key, fileSize));
+        return cosClient.completeMultipartUpload(request);
+    }
+
+    /**
+     * 合并分片（不附带图片处理）
+     *
+     * @param key       唯一键
+     * @param uploadId  分片上传 id
+     * @param partETags 所有分片的 ETag
+     */
+    public CompleteMultipartUploadResult completeMultipartUpload(String key, String uploadId, List<PartETag> partETags) {
+        return cosClient.completeMultipartUpload(new CompleteMultipartUploadRequest(cosClientConfig.getBucket(), key,
+                uploadId, partETags));
+    }
+
+    /**
+     * 取消分片上传，清理已上传的分片
+     *
+     * @param key      唯一键
+     * @param uploadId 分片上传 id
+     */
+    public void abortMultipartUpload(String key, String uploadId) {
+        cosClient.abortMultipartUpload(new AbortMultipartUploadRequest(cosClientConfig.getBucket(), key, uploadId));
+    }
+
+    /**
+     * 构造图片处理规则
+     *
+     * @param key      唯一键
+     * @param fileSize 原图大小
+     */
+    private PicOperations buildPicOperations(String key, long fileSize) {
         // 对图片进行处理（获取基本信息也被视作为一种图片的处理）
         PicOperations picOperations = new PicOperations();
         // 1 表示返回原图信息
@@ -69,7 +213,7 @@ public class CosManager {
         compressRule.setRule("imageMogr2/format/webp");
         rules.add(compressRule);
         // 2. 缩略图处理，仅对 > 20 KB 的图片生成缩略图
-        if (file.length() > 2 * 1024) {
+        if (fileSize > 2 * 1024) {
             PicOperations.Rule thumbnailRule = new PicOperations.Rule();
             // 拼接缩略图的路径
             String thumbnailKey = FileUtil.mainName(key) + "_thumbnail." + FileUtil.getSuffix(key);
@@ -81,8 +225,7 @@ public class CosManager {
         }
         // 构造处理参数
         picOperations.setRules(rules);
-        putObjectRequest.setPicOperations(picOperations);
-        return cosClient.putObject(putObjectRequest);
+        return picOperations;
     }
 
     /**
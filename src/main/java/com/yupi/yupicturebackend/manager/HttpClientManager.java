@@ -0,0 +1,268 @@
+package com.yupi.yupicturebackend.manager;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.config.HttpClientConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.*;
+
+/**
+ * 外部 HTTP 请求
+ * 所有对外请求共用一个连接池（同一域名的连续请求复用 keep-alive 连接），连接、读取超时可配置；
+ * 同一域名的并发请求数受限，超出的请求排队，不占用线程；接口均为异步，返回 CompletableFuture；
+ * 同步等待结果时有总的超时时间（包括排队时间）
+ */
+@Slf4j
+@Component
+public class HttpClientManager {
+
+    /**
+     * 部分网站拒绝非浏览器的请求，统一使用浏览器 User-Agent
+     */
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
+    /**
+     * 最多保留并发限制的域名数，批量导入会访问大量不同的图片域名
+     */
+    private static final long MAX_HOST_LIMITERS = 10_000L;
+
+    /**
+     * 域名的并发限制空闲多久后移除，远大于请求超时时间，移除时不会有正在执行的请求
+     */
+    private static final Duration HOST_LIMITER_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    @Resource
+    private HttpClientConfig httpClientConfig;
+
+    /**
+     * 执行响应回调的线程池
+     */
+    private ExecutorService httpExecutor;
+
+    private HttpClient httpClient;
+
+    /**
+     * 域名 => 并发限制
+     */
+    private final Cache<String, HostLimiter> hostLimiters = Caffeine.newBuilder()
+            .maximumSize(MAX_HOST_LIMITERS)
+            .expireAfterAccess(HOST_LIMITER_IDLE_TIMEOUT)
+            .build();
+
+    @PostConstruct
+    public void init() {
+        httpExecutor = Executors.newFixedThreadPool(httpClientConfig.getThreads(),
+                ThreadFactoryBuilder.create().setNamePrefix("http-client-").setDaemon(true).build());
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(httpClientConfig.getConnectTimeoutMillis()))
+                .executor(httpExecutor)
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        httpExecutor.shutdownNow();
+    }
+
+    /**
+     * 创建请求，已设置默认的读取超时时间和 User-Agent，可继续修改
+     *
+     * @param url 请求地址
+     */
+    public HttpRequest.Builder newRequest(String url) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "地址格式不正确");
+        }
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(httpClientConfig.getReadTimeoutMillis()))
+                .header("User-Agent", USER_AGENT);
+    }
+
+    /**
+     * 发送请求，同一域名并发数已满时排队
+     * 流式响应（如 InputStream）在收到响应头后即释放并发许可
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        // 被移除的并发限制仍由已提交的请求持有，请求结束时正常释放
+        HostLimiter hostLimiter = hostLimiters.get(StrUtil.nullToEmpty(request.uri().getHost()),
+                key -> new HostLimiter(httpClientConfig.getPerHostConcurrency(),
+                        httpClientConfig.getPerHostQueueCapacity()));
+        boolean accepted = hostLimiter.submit(() -> {
+            // 排队期间已被取消的请求不再发送
+            if (result.isDone()) {
+                hostLimiter.release();
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> responseFuture;
+            try {
+                responseFuture = httpClient.sendAsync(request, bodyHandler);
+            } catch (Exception e) {
+                hostLimiter.release();
+                result.completeExceptionally(e);
+                return;
+            }
+            responseFuture.whenComplete((response, e) -> {
+                hostLimiter.release();
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+        if (!accepted) {
+            result.completeExceptionally(new BusinessException(ErrorCode.OPERATION_ERROR, "外部请求繁忙，请稍后重试"));
+        }
+        return result;
+    }
+
+    /**
+     * HEAD 请求
+     */
+    public CompletableFuture<HttpResponse<Void>> headAsync(String url) {
+        return sendAsync(newRequest(url).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * GET 请求，响应体为字符串
+     */
+    public CompletableFuture<HttpResponse<String>> getStringAsync(String url) {
+        return sendAsync(newRequest(url).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * GET 请求，响应体为输入流，使用后需要关闭
+     */
+    public CompletableFuture<HttpResponse<InputStream>> getStreamAsync(String url) {
+        return sendAsync(newRequest(url).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * GET 请求，响应体写入文件
+     */
+    public CompletableFuture<HttpResponse<Path>> downloadAsync(String url, File file) {
+        return sendAsync(newRequest(url).GET().build(), HttpResponse.BodyHandlers.ofFile(file.toPath()));
+    }
+
+    /**
+     * 将表单参数编码为 application/x-www-form-urlencoded 请求体
+     */
+    public static HttpRequest.BodyPublisher ofForm(Map<String, Object> formData) {
+        StringJoiner joiner = new StringJoiner("&");
+        formData.forEach((key, value) -> joiner.add(URLEncoder.encode(key, StandardCharsets.UTF_8) + "="
+                + URLEncoder.encode(value == null ? "" : value.toString(), StandardCharsets.UTF_8)));
+        return HttpRequest.BodyPublishers.ofString(joiner.toString());
+    }
+
+    /**
+     * 在同步代码中等待请求结果，超过总的等待时间（包括排队时间）后取消请求
+     *
+     * @throws BusinessException 请求失败、超时或等待被中断
+     */
+    public <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(httpClientConfig.getAwaitTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "外部请求超时");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "请求被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            log.warn("外部请求失败", cause);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "外部请求失败");
+        }
+    }
+
+    /**
+     * 单个域名的并发限制，等待的请求保存在队列中，不占用线程
+     */
+    private static class HostLimiter {
+
+        private final int maxConcurrency;
+
+        private final int queueCapacity;
+
+        private final Deque<Runnable> waitingTasks = new ArrayDeque<>();
+
+        private int runningCount;
+
+        HostLimiter(int maxConcurrency, int queueCapacity) {
+            this.maxConcurrency = maxConcurrency;
+            this.queueCapacity = queueCapacity;
+        }
+
+        /**
+         * 提交请求，有空闲许可时立即执行，否则排队
+         *
+         * @return 队列已满时返回 false
+         */
+        boolean submit(Runnable task) {
+            synchronized (this) {
+                if (runningCount >= maxConcurrency) {
+                    if (waitingTasks.size() >= queueCapacity) {
+                        return false;
+                    }
+                    waitingTasks.addLast(task);
+                    return true;
+                }
+                runningCount++;
+            }
+            task.run();
+            return true;
+        }
+
+        /**
+         * 请求结束，许可直接交给下一个等待的请求
+         */
+        void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waitingTasks.pollFirst();
+                if (next == null) {
+                    runningCount--;
+                }
+            }
+            if (next != null) {
+                next.run();
+            }
+        }
+    }
+}
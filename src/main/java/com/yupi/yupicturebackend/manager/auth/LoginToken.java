@@ -0,0 +1,35 @@
+package com.yupi.yupicturebackend.manager.auth;
+
+import lombok.Data;
+
+/**
+ * 校验通过的登录令牌
+ */
+@Data
+public class LoginToken {
+
+    /**
+     * 令牌 id，用于吊销单个令牌
+     */
+    private String tokenId;
+
+    /**
+     * 用户 id
+     */
+    private Long userId;
+
+    /**
+     * 签发时的用户角色
+     */
+    private String userRole;
+
+    /**
+     * 签发时间（毫秒时间戳）
+     */
+    private long issuedAt;
+
+    /**
+     * 过期时间（毫秒时间戳）
+     */
+    private long expireAt;
+}
@@ -0,0 +1,144 @@
+package com.yupi.yupicturebackend.manager.auth;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.jwt.JWT;
+import cn.hutool.jwt.JWTValidator;
+import cn.hutool.jwt.RegisteredPayload;
+import cn.hutool.jwt.signers.JWTSigner;
+import cn.hutool.jwt.signers.JWTSignerUtil;
+import com.yupi.yupicturebackend.config.AuthConfig;
+import com.yupi.yupicturebackend.model.entity.User;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * 登录令牌（JWT，HMAC-SHA256 签名）
+ * 令牌中保存用户 id、角色和过期时间，校验签名、过期时间和吊销列表都在本机完成，不需要读取会话；
+ * 用户退出登录时吊销当前令牌，权限变化或被删除时吊销该用户之前签发的所有令牌（见 {@link TokenRevocationList}）
+ */
+@Component
+public class TokenManager {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final String ROLE_CLAIM = "role";
+
+    /**
+     * 毫秒精度的签发时间，标准的 iat 只精确到秒，不足以与吊销时间比较（同一秒内先吊销后重新登录）
+     */
+    private static final String ISSUED_AT_MILLIS_CLAIM = "iatMs";
+
+    /**
+     * 同一请求内校验通过的令牌，避免重复校验
+     */
+    private static final String LOGIN_TOKEN_ATTRIBUTE = TokenManager.class.getName() + ".loginToken";
+
+    @Resource
+    private AuthConfig authConfig;
+
+    @Resource
+    private TokenRevocationList tokenRevocationList;
+
+    private JWTSigner signer;
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (StrUtil.isBlank(authConfig.getTokenSecret())) {
+            throw new IllegalStateException("已开启令牌认证，但未配置 auth.token-secret");
+        }
+        signer = JWTSignerUtil.hs256(authConfig.getTokenSecret().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 是否使用令牌认证
+     */
+    public boolean isEnabled() {
+        return "token".equals(authConfig.getMode());
+    }
+
+    /**
+     * 签发令牌
+     */
+    public String createToken(User user) {
+        long now = System.currentTimeMillis();
+        return JWT.create()
+                .setJWTId(IdUtil.fastSimpleUUID())
+                .setSubject(String.valueOf(user.getId()))
+                .setPayload(ROLE_CLAIM, user.getUserRole())
+                .setPayload(ISSUED_AT_MILLIS_CLAIM, now)
+                .setIssuedAt(new Date(now))
+                .setExpiresAt(new Date(now + authConfig.getTokenExpireSeconds() * 1000L))
+                .sign(signer);
+    }
+
+    /**
+     * 获取并校验请求中的令牌
+     *
+     * @return 校验通过的令牌，没有令牌、签名错误、已过期或已吊销时为 null
+     */
+    public LoginToken getLoginToken(HttpServletRequest request) {
+        Object cached = request.getAttribute(LOGIN_TOKEN_ATTRIBUTE);
+        if (cached != null) {
+            return (LoginToken) cached;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        LoginToken loginToken = parseToken(authorization.substring(BEARER_PREFIX.length()).trim());
+        if (loginToken != null) {
+            request.setAttribute(LOGIN_TOKEN_ATTRIBUTE, loginToken);
+        }
+        return loginToken;
+    }
+
+    /**
+     * 吊销令牌
+     */
+    public void revokeToken(LoginToken loginToken) {
+        tokenRevocationList.revokeToken(loginToken.getTokenId());
+    }
+
+    private LoginToken parseToken(String token) {
+        JWT jwt;
+        try {
+            jwt = JWT.of(token);
+            // 1. 校验算法和签名，只接受本系统签发的令牌
+            JWTValidator.of(jwt).validateAlgorithm(signer);
+            // 2. 校验过期时间
+            JWTValidator.of(jwt).validateDate(new Date());
+        } catch (Exception e) {
+            return null;
+        }
+        Date issuedAt = jwt.getPayload().getClaimsJson().getDate(RegisteredPayload.ISSUED_AT);
+        Date expiresAt = jwt.getPayload().getClaimsJson().getDate(RegisteredPayload.EXPIRES_AT);
+        Object subject = jwt.getPayload(RegisteredPayload.SUBJECT);
+        Object tokenId = jwt.getPayload(RegisteredPayload.JWT_ID);
+        if (issuedAt == null || expiresAt == null || subject == null || tokenId == null) {
+            return null;
+        }
+        LoginToken loginToken = new LoginToken();
+        loginToken.setTokenId(tokenId.toString());
+        loginToken.setUserId(Long.valueOf(subject.toString()));
+        loginToken.setUserRole((String) jwt.getPayload(ROLE_CLAIM));
+        // 没有毫秒签发时间的令牌按 iat 所在秒的起点计算，同一秒内的吊销对其生效
+        Long issuedAtMillis = jwt.getPayload().getClaimsJson().getLong(ISSUED_AT_MILLIS_CLAIM);
+        loginToken.setIssuedAt(issuedAtMillis != null ? issuedAtMillis : issuedAt.getTime());
+        loginToken.setExpireAt(expiresAt.getTime());
+        // 3. 校验吊销列表
+        if (tokenRevocationList.isRevoked(loginToken)) {
+            return null;
+        }
+        return loginToken;
+    }
+}
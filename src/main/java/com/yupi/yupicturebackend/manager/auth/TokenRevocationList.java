@@ -0,0 +1,210 @@
+package com.yupi.yupicturebackend.manager.auth;
+
+import cn.hutool.bloomfilter.BitSetBloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.config.AuthConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌吊销列表
+ * 吊销记录保存在 Redis 有序集合中（成员为 "t:令牌 id" 或 "u:用户 id"，分数为吊销时间），
+ * 超过令牌有效期的记录不再需要，定期清理，集合始终很小。
+ * 各实例在本地维护吊销记录的布隆过滤器，绝大多数令牌不在其中，校验时不需要访问 Redis；
+ * 过滤器判断可能存在时再查询 Redis 确认（结果在本地缓存一段时间）。
+ * 新的吊销通过 Redis 发布订阅通知所有实例加入过滤器，各实例也会定期从 Redis 重建过滤器；
+ * 首次重建成功前过滤器为空，不能据此放行，每次校验都直接查询 Redis（Redis 不可用时校验失败）
+ */
+@Slf4j
+@Component
+public class TokenRevocationList {
+
+    private static final String REVOKED_KEY = "yupicture:auth:revoked";
+
+    /**
+     * 吊销通知频道，消息内容为吊销记录的成员
+     */
+    private static final String REVOKE_CHANNEL = "yupicture:auth:revoke";
+
+    /**
+     * 布隆过滤器的预期记录数，超过后误判率上升（误判只会多查询一次 Redis）
+     */
+    private static final int BLOOM_EXPECTED_SIZE = 100_000;
+
+    /**
+     * 布隆过滤器每条记录占用的位数和哈希函数个数，误判率约 1%
+     */
+    private static final int BLOOM_BITS_PER_ELEMENT = 10;
+
+    private static final int BLOOM_HASH_COUNT = 7;
+
+    @Resource
+    private AuthConfig authConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 布隆过滤器，重建时整体替换；加入记录和替换时加锁（位图不支持并发修改），查询不加锁
+     */
+    private volatile BitSetBloomFilter bloomFilter = newBloomFilter();
+
+    /**
+     * 布隆过滤器是否已从 Redis 成功重建过
+     */
+    private volatile boolean bloomFilterReady = false;
+
+    private final Object bloomLock = new Object();
+
+    /**
+     * 重建期间新加入的记录，替换前补充到新的过滤器中，只在重建期间不为 null
+     */
+    private Set<String> pendingMembers;
+
+    /**
+     * 成员 => 吊销时间（毫秒时间戳），未吊销时为空；只缓存布隆过滤器判断可能存在的成员
+     */
+    private Cache<String, Optional<Long>> confirmedCache;
+
+    @PostConstruct
+    public void init() {
+        confirmedCache = Caffeine.newBuilder()
+                .maximumSize(10000L)
+                .expireAfterWrite(authConfig.getTokenRevocationRefreshMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        if (!isEnabled()) {
+            return;
+        }
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String member = new String(message.getBody(), StandardCharsets.UTF_8);
+            addToBloomFilter(member);
+            confirmedCache.invalidate(member);
+        }, new ChannelTopic(REVOKE_CHANNEL));
+        rebuild();
+    }
+
+    /**
+     * 吊销单个令牌
+     */
+    public void revokeToken(String tokenId) {
+        revoke("t:" + tokenId);
+    }
+
+    /**
+     * 吊销用户在此之前签发的所有令牌
+     */
+    public void revokeUser(Long userId) {
+        revoke("u:" + userId);
+    }
+
+    /**
+     * 令牌是否已被吊销（单个令牌被吊销，或用户在令牌签发后被吊销）
+     * 签发时间与吊销时间都是毫秒时间戳，吊销后同一秒内重新登录签发的令牌不受影响
+     */
+    public boolean isRevoked(LoginToken loginToken) {
+        if (getRevokedAt("t:" + loginToken.getTokenId()) != null) {
+            return true;
+        }
+        Long userRevokedAt = getRevokedAt("u:" + loginToken.getUserId());
+        return userRevokedAt != null && loginToken.getIssuedAt() <= userRevokedAt;
+    }
+
+    /**
+     * 清理超过令牌有效期的记录，并从 Redis 重建布隆过滤器
+     */
+    @Scheduled(initialDelayString = "${auth.token-revocation-refresh-millis:60000}",
+            fixedDelayString = "${auth.token-revocation-refresh-millis:60000}")
+    public void rebuild() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (bloomLock) {
+            pendingMembers = new HashSet<>();
+        }
+        BitSetBloomFilter newBloomFilter = newBloomFilter();
+        try {
+            long expiredBefore = System.currentTimeMillis() - authConfig.getTokenExpireSeconds() * 1000L;
+            stringRedisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, 0, expiredBefore);
+            Set<String> members = stringRedisTemplate.opsForZSet().range(REVOKED_KEY, 0, -1);
+            if (members != null) {
+                members.forEach(newBloomFilter::add);
+                if (members.size() > BLOOM_EXPECTED_SIZE) {
+                    log.warn("令牌吊销记录数超过预期, 布隆过滤器误判率上升, 记录数 = {}", members.size());
+                }
+            }
+        } catch (Exception e) {
+            log.error("重建令牌吊销布隆过滤器失败", e);
+            newBloomFilter = null;
+        }
+        synchronized (bloomLock) {
+            if (newBloomFilter != null) {
+                pendingMembers.forEach(newBloomFilter::add);
+                bloomFilter = newBloomFilter;
+                bloomFilterReady = true;
+            }
+            pendingMembers = null;
+        }
+    }
+
+    private void revoke(String member) {
+        if (!isEnabled()) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().add(REVOKED_KEY, member, System.currentTimeMillis());
+        addToBloomFilter(member);
+        confirmedCache.invalidate(member);
+        stringRedisTemplate.convertAndSend(REVOKE_CHANNEL, member);
+    }
+
+    /**
+     * 获取吊销时间，布隆过滤器判断不存在时直接返回；过滤器尚未重建成功时直接查询 Redis
+     *
+     * @return 吊销时间（毫秒时间戳），未吊销时为 null
+     */
+    private Long getRevokedAt(String member) {
+        if (!bloomFilterReady) {
+            Double score = stringRedisTemplate.opsForZSet().score(REVOKED_KEY, member);
+            return score == null ? null : score.longValue();
+        }
+        if (!bloomFilter.contains(member)) {
+            return null;
+        }
+        return confirmedCache.get(member, key -> {
+            Double score = stringRedisTemplate.opsForZSet().score(REVOKED_KEY, key);
+            return Optional.ofNullable(score).map(Double::longValue);
+        }).orElse(null);
+    }
+
+    private boolean isEnabled() {
+        return "token".equals(authConfig.getMode());
+    }
+
+    private void addToBloomFilter(String member) {
+        synchronized (bloomLock) {
+            bloomFilter.add(member);
+            if (pendingMembers != null) {
+                pendingMembers.add(member);
+            }
+        }
+    }
+
+    private static BitSetBloomFilter newBloomFilter() {
+        return new BitSetBloomFilter(BLOOM_BITS_PER_ELEMENT, BLOOM_EXPECTED_SIZE, BLOOM_HASH_COUNT);
+    }
+}
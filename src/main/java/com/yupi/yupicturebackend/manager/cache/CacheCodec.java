@@ -0,0 +1,69 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.IOException;
+
+/**
+ * 缓存值的二进制编码（Smile，二进制的 JSON）
+ * 按声明的泛型类型编码和解码，解码结果直接是目标类型（如 Page&lt;PictureVO&gt;），不需要再转换；
+ * 重复的字段名和短字符串（分类、标签、用户名等）只写一次，之后写引用，不写空字段，比 JSON 字符串更小、解析更快。
+ * 新增字段可以兼容旧的缓存值，解码时忽略未知字段
+ *
+ * @param <T> 缓存值的类型
+ */
+public class CacheCodec<T> {
+
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build())
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final ObjectReader reader;
+
+    private final ObjectWriter writer;
+
+    private CacheCodec(TypeReference<T> typeReference) {
+        this.reader = SMILE_MAPPER.readerFor(typeReference);
+        this.writer = SMILE_MAPPER.writerFor(typeReference);
+    }
+
+    /**
+     * 创建指定类型的编码器，编码器线程安全，应作为常量复用
+     *
+     * @param typeReference 缓存值的类型
+     */
+    public static <T> CacheCodec<T> of(TypeReference<T> typeReference) {
+        return new CacheCodec<>(typeReference);
+    }
+
+    /**
+     * 编码
+     */
+    public byte[] encode(T value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存值编码失败", e);
+        }
+    }
+
+    /**
+     * 解码
+     */
+    public T decode(byte[] bytes) {
+        try {
+            return reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存值解码失败", e);
+        }
+    }
+}
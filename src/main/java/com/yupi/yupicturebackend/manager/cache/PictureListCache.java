@@ -0,0 +1,557 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.config.PictureListCacheConfig;
+import com.yupi.yupicturebackend.config.ThreadConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.process.PictureProcessedEvent;
+import com.yupi.yupicturebackend.model.dto.picture.PictureQueryRequest;
+import com.yupi.yupicturebackend.model.vo.PictureListCacheMetricsVO;
+import com.yupi.yupicturebackend.model.vo.PictureVO;
+import com.yupi.yupicturebackend.utils.VirtualThreadUtils;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 图片分页列表缓存
+ * 按范围（公共图库或某个空间）维护版本号，缓存 key 中带有版本号；图片新增、修改、审核、删除后递增所在范围的版本号，
+ * 旧版本的缓存不再被访问，自然过期，不需要逐个删除。本地 Caffeine 为一级缓存，Redis 为二级缓存；
+ * 各实例在本地缓存版本号，版本号递增后通过 Redis 发布订阅通知所有实例清除本地的版本号，
+ * 通知丢失时本地版本号也会在几秒后过期。
+ * <p>
+ * 防止热点 key 到期时大量请求同时查询数据库：
+ * 同一实例内相同 key 的并发查询合并为一次，多个实例之间通过 Redis 短锁只让一个实例查询，其他实例等待其写入 Redis；
+ * 临近新鲜期结束时按概率提前刷新（查询越慢、越接近到期，提前刷新的概率越大），过了新鲜期但未过期时返回旧结果，
+ * 刷新都在后台进行，请求不用等待。
+ * <p>
+ * Redis 中的缓存值使用二进制编码（见 {@link CacheCodec}），本地缓存直接保存解码后的对象，命中时不需要解析。
+ * 开启预序列化响应时，本地缓存的分页结果和公共图片详情同时保存序列化后的响应（见 {@link ResponseRenderer}），
+ * 公共图片详情与公共图库共用版本号
+ */
+@Slf4j
+@Component
+public class PictureListCache {
+
+    private static final String CACHE_KEY_PREFIX = "yupicture:pictureList:";
+
+    private static final String VERSION_KEY_PREFIX = "yupicture:pictureList:version:";
+
+    private static final String MUTEX_KEY_PREFIX = "yupicture:pictureList:mutex:";
+
+    /**
+     * 版本号变化的通知频道，消息内容为范围
+     */
+    private static final String INVALIDATE_CHANNEL = "yupicture:pictureList:invalidate";
+
+    /**
+     * 公共图库的范围
+     */
+    private static final String PUBLIC_SCOPE = "public";
+
+    /**
+     * 本地版本号的过期时间（秒），通知丢失时最多使用旧版本这么久
+     */
+    private static final int LOCAL_VERSION_EXPIRE_SECONDS = 5;
+
+    /**
+     * 提前刷新的系数，越大越早刷新
+     */
+    private static final double EARLY_REFRESH_BETA = 1.0;
+
+    /**
+     * 查询数据库的锁的租期（毫秒），未拿到锁的实例最多等待这么久，之后自行查询
+     */
+    private static final long MUTEX_MILLIS = 3000L;
+
+    /**
+     * 未拿到锁时查询 Redis 的间隔（毫秒）
+     */
+    private static final long MUTEX_POLL_MILLIS = 50L;
+
+    /**
+     * 等待同一实例内其他请求查询结果的最长时间（秒）
+     */
+    private static final int WAIT_TIMEOUT_SECONDS = 10;
+
+    /**
+     * 持有者标识一致时删除
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) "
+                    + "end "
+                    + "return 0", Long.class);
+
+    private static final CacheCodec<CachedPage> CACHED_PAGE_CODEC = CacheCodec.of(new TypeReference<CachedPage>() {
+    });
+
+    @Resource
+    private PictureListCacheConfig pictureListCacheConfig;
+
+    @Resource
+    private ThreadConfig threadConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private ResponseRenderer responseRenderer;
+
+    /**
+     * 范围 => 版本号
+     */
+    private Cache<String, Long> localVersionCache;
+
+    /**
+     * 缓存 key => 分页结果，取出后不能修改
+     */
+    private Cache<String, CachedPage> localCache;
+
+    /**
+     * 公共图库版本号:图片 id => 序列化后的图片详情响应
+     */
+    private Cache<String, RenderedResponse> renderedPictureCache;
+
+    /**
+     * 正在查询的 key，用于合并并发请求
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<CachedPage>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 正在后台刷新的 key
+     */
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 后台刷新的线程池，队列满时放弃刷新，下次访问时重试
+     */
+    private ThreadPoolExecutor refreshExecutor;
+
+    private final LongAdder localHitCount = new LongAdder();
+
+    private final LongAdder redisHitCount = new LongAdder();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    private final LongAdder storedCount = new LongAdder();
+
+    private final LongAdder storedBytes = new LongAdder();
+
+    private final AtomicLong maxPayloadBytes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        localVersionCache = Caffeine.newBuilder()
+                .maximumSize(10000L)
+                .expireAfterWrite(LOCAL_VERSION_EXPIRE_SECONDS, TimeUnit.SECONDS)
+                .build();
+        localCache = Caffeine.newBuilder()
+                .initialCapacity(1024)
+                .maximumSize(10000L)
+                .expireAfterWrite(getExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+        renderedPictureCache = Caffeine.newBuilder()
+                .maximumSize(10000L)
+                .expireAfterWrite(getExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+        refreshExecutor = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(100),
+                VirtualThreadUtils.newThreadFactory("picture-list-refresh-", threadConfig.isVirtual()),
+                new ThreadPoolExecutor.AbortPolicy());
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> localVersionCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 查询图片分页列表，缓存未命中时查询数据库并写入缓存
+     *
+     * @param pictureQueryRequest 查询条件（已补充审核状态等条件，调用方已校验空间权限）
+     * @param loader              查询数据库，可能在后台线程中执行，不能依赖当前请求
+     * @return 分页结果，不能修改
+     */
+    public Page<PictureVO> getPictureVOPage(PictureQueryRequest pictureQueryRequest, Supplier<Page<PictureVO>> loader) {
+        return getCachedPage(pictureQueryRequest, loader).getPage();
+    }
+
+    /**
+     * 查询图片分页列表，返回序列化后的响应，同一缓存值只序列化一次
+     *
+     * @see #getPictureVOPage(PictureQueryRequest, Supplier)
+     */
+    public RenderedResponse getRenderedPage(PictureQueryRequest pictureQueryRequest, Supplier<Page<PictureVO>> loader) {
+        CachedPage cachedPage = getCachedPage(pictureQueryRequest, loader);
+        RenderedResponse renderedResponse = cachedPage.getRendered();
+        if (renderedResponse == null) {
+            // 并发时可能重复序列化，结果相同
+            renderedResponse = responseRenderer.render(cachedPage.getPage());
+            cachedPage.setRendered(renderedResponse);
+        }
+        return renderedResponse;
+    }
+
+    /**
+     * 查询图片详情，返回序列化后的响应；公共图片缓存到公共图库的数据变化为止，空间图片不缓存
+     *
+     * @param pictureId 图片 id
+     * @param loader    查询数据库并校验权限
+     */
+    public RenderedResponse getRenderedPicture(long pictureId, Supplier<PictureVO> loader) {
+        // 先读版本号再查询，之后版本号变化时写入的也只是旧版本的缓存
+        String cacheKey = getVersion(PUBLIC_SCOPE) + ":" + pictureId;
+        RenderedResponse renderedResponse = renderedPictureCache.getIfPresent(cacheKey);
+        if (renderedResponse != null) {
+            return renderedResponse;
+        }
+        PictureVO pictureVO = loader.get();
+        renderedResponse = responseRenderer.render(pictureVO);
+        if (pictureVO.getSpaceId() == null) {
+            renderedPictureCache.put(cacheKey, renderedResponse);
+        }
+        return renderedResponse;
+    }
+
+    private CachedPage getCachedPage(PictureQueryRequest pictureQueryRequest, Supplier<Page<PictureVO>> loader) {
+        String scope = getScope(pictureQueryRequest.getSpaceId());
+        String queryHash = DigestUtils.md5DigestAsHex(
+                JSONUtil.toJsonStr(pictureQueryRequest).getBytes(StandardCharsets.UTF_8));
+        // 先读版本号再读缓存，之后版本号变化时写入的也只是旧版本的缓存
+        String cacheKey = CACHE_KEY_PREFIX + scope + ":" + getVersion(scope) + ":" + queryHash;
+        // 1. 查询本地缓存，未命中时查询 Redis
+        CachedPage cachedPage = localCache.getIfPresent(cacheKey);
+        if (cachedPage != null) {
+            localHitCount.increment();
+        } else {
+            cachedPage = readRedis(cacheKey);
+            if (cachedPage != null) {
+                redisHitCount.increment();
+                localCache.put(cacheKey, cachedPage);
+            }
+        }
+        // 2. 命中，已不新鲜或被选中提前刷新时，返回当前结果并在后台刷新
+        if (cachedPage != null) {
+            if (shouldRefresh(cachedPage)) {
+                refreshAsync(cacheKey, cachedPage, loader);
+            }
+            return cachedPage;
+        }
+        // 3. 未命中，合并并发请求后查询数据库
+        return load(cacheKey, loader);
+    }
+
+    /**
+     * 图片所在范围的数据已变化，递增版本号并通知所有实例
+     * 在事务中调用时，事务提交后才递增，避免在提交前用新版本号缓存旧数据
+     *
+     * @param spaceId 空间 id，公共图库为 null
+     */
+    public void invalidate(Long spaceId) {
+        String scope = getScope(spaceId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            doInvalidate(scope);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                doInvalidate(scope);
+            }
+        });
+    }
+
+    /**
+     * 获取缓存指标
+     */
+    public PictureListCacheMetricsVO getMetrics() {
+        PictureListCacheMetricsVO metricsVO = new PictureListCacheMetricsVO();
+        metricsVO.setLocalHitCount(localHitCount.sum());
+        metricsVO.setRedisHitCount(redisHitCount.sum());
+        metricsVO.setLoadCount(loadCount.sum());
+        metricsVO.setLocalSize(localCache.estimatedSize());
+        long count = storedCount.sum();
+        metricsVO.setStoredCount(count);
+        metricsVO.setAvgPayloadBytes(count == 0 ? 0 : storedBytes.sum() / count);
+        metricsVO.setMaxPayloadBytes(maxPayloadBytes.get());
+        return metricsVO;
+    }
+
+    /**
+     * 图片异步处理完成后，缩略图、主色调等信息已变化
+     */
+    @EventListener
+    public void onPictureProcessed(PictureProcessedEvent event) {
+        invalidate(event.getSpaceId());
+    }
+
+    /**
+     * 公共图库的列表和图片详情内嵌了作者信息，用户信息变化后递增公共图库的版本号；
+     * 空间只有所有者可以访问，空间列表中的作者信息最多在缓存过期后更新
+     */
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(null);
+    }
+
+    /**
+     * 是否需要刷新：过了新鲜期，或按概率提前刷新（XFetch：查询耗时越长、离新鲜期结束越近，概率越大）
+     */
+    private boolean shouldRefresh(CachedPage cachedPage) {
+        double random = ThreadLocalRandom.current().nextDouble();
+        long earlyMillis = (long) (-cachedPage.getLoadMillis() * EARLY_REFRESH_BETA * Math.log(random));
+        return System.currentTimeMillis() + earlyMillis >= cachedPage.getFreshUntil();
+    }
+
+    /**
+     * 未命中时查询，同一个 key 同时只有一个请求查询，其他请求等待其结果
+     */
+    private CachedPage load(String cacheKey, Supplier<Page<PictureVO>> loader) {
+        CompletableFuture<CachedPage> future = new CompletableFuture<>();
+        CompletableFuture<CachedPage> existing = inFlight.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            CachedPage cachedPage = loadWithMutex(cacheKey, loader);
+            future.complete(cachedPage);
+            return cachedPage;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, future);
+        }
+    }
+
+    /**
+     * 拿到 Redis 锁的实例查询数据库；未拿到锁时等待其他实例写入 Redis，等待超时后自行查询
+     */
+    private CachedPage loadWithMutex(String cacheKey, Supplier<Page<PictureVO>> loader) {
+        String mutexKey = MUTEX_KEY_PREFIX + cacheKey.substring(CACHE_KEY_PREFIX.length());
+        String owner = IdUtil.fastSimpleUUID();
+        boolean locked = Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(mutexKey, owner, MUTEX_MILLIS, TimeUnit.MILLISECONDS));
+        if (!locked) {
+            long deadline = System.currentTimeMillis() + MUTEX_MILLIS;
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(MUTEX_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查询被中断");
+                }
+                CachedPage cachedPage = readRedis(cacheKey);
+                if (cachedPage != null) {
+                    localCache.put(cacheKey, cachedPage);
+                    return cachedPage;
+                }
+            }
+            log.warn("等待其他实例查询图片列表超时, 自行查询, cacheKey = {}", cacheKey);
+        }
+        try {
+            return loadAndStore(cacheKey, loader);
+        } finally {
+            if (locked) {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(mutexKey), owner);
+            }
+        }
+    }
+
+    /**
+     * 后台刷新，同一个 key 同时只有一个刷新任务；其他实例已刷新时直接使用其结果，其他实例正在刷新时跳过
+     */
+    private void refreshAsync(String cacheKey, CachedPage current, Supplier<Page<PictureVO>> loader) {
+        if (!refreshingKeys.add(cacheKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    CachedPage latest = readRedis(cacheKey);
+                    if (latest != null && latest.getFreshUntil() > current.getFreshUntil()
+                            && latest.getFreshUntil() > System.currentTimeMillis()) {
+                        localCache.put(cacheKey, latest);
+                        return;
+                    }
+                    String mutexKey = MUTEX_KEY_PREFIX + cacheKey.substring(CACHE_KEY_PREFIX.length());
+                    String owner = IdUtil.fastSimpleUUID();
+                    if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                            .setIfAbsent(mutexKey, owner, MUTEX_MILLIS, TimeUnit.MILLISECONDS))) {
+                        return;
+                    }
+                    try {
+                        loadAndStore(cacheKey, loader);
+                    } finally {
+                        stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(mutexKey), owner);
+                    }
+                } catch (Exception e) {
+                    log.warn("图片列表缓存刷新失败, 继续使用旧结果, cacheKey = {}", cacheKey, e);
+                } finally {
+                    refreshingKeys.remove(cacheKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(cacheKey);
+        }
+    }
+
+    /**
+     * 查询数据库并写入缓存，记录查询耗时用于计算提前刷新的概率
+     */
+    private CachedPage loadAndStore(String cacheKey, Supplier<Page<PictureVO>> loader) {
+        long startMillis = System.currentTimeMillis();
+        Page<PictureVO> pictureVOPage = loader.get();
+        loadCount.increment();
+        long now = System.currentTimeMillis();
+        CachedPage cachedPage = new CachedPage();
+        cachedPage.setPage(pictureVOPage);
+        cachedPage.setLoadMillis(now - startMillis);
+        cachedPage.setFreshUntil(now + pictureListCacheConfig.getFreshSeconds() * 1000L);
+        byte[] payload = CACHED_PAGE_CODEC.encode(cachedPage);
+        cachedPage.setPayloadBytes(payload.length);
+        byte[] key = cacheKey.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(key, payload, Expiration.seconds(getExpireSeconds()), RedisStringCommands.SetOption.upsert()));
+        localCache.put(cacheKey, cachedPage);
+        storedCount.increment();
+        storedBytes.add(payload.length);
+        maxPayloadBytes.accumulateAndGet(payload.length, Math::max);
+        log.debug("写入图片列表缓存, cacheKey = {}, 条数 = {}, 大小 = {} 字节",
+                cacheKey, pictureVOPage.getRecords().size(), payload.length);
+        return cachedPage;
+    }
+
+    private CachedPage readRedis(String cacheKey) {
+        byte[] key = cacheKey.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = stringRedisTemplate.execute(
+                (RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+        if (payload == null) {
+            return null;
+        }
+        CachedPage cachedPage;
+        try {
+            cachedPage = CACHED_PAGE_CODEC.decode(payload);
+        } catch (IllegalStateException e) {
+            // 升级前写入的 JSON 缓存值无法解码，按未命中处理，重新查询后覆盖
+            log.warn("图片列表缓存值解码失败, 按未命中处理, cacheKey = {}", cacheKey, e);
+            return null;
+        }
+        cachedPage.setPayloadBytes(payload.length);
+        return cachedPage;
+    }
+
+    private static CachedPage await(CompletableFuture<CachedPage> future) {
+        try {
+            return future.get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查询被中断");
+        } catch (TimeoutException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "系统繁忙，请稍后重试");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查询失败");
+        }
+    }
+
+    private void doInvalidate(String scope) {
+        try {
+            stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + scope);
+            localVersionCache.invalidate(scope);
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, scope);
+        } catch (Exception e) {
+            // 缓存最多在过期时间后恢复一致
+            log.error("图片列表缓存失效失败, scope = {}", scope, e);
+        }
+    }
+
+    private long getVersion(String scope) {
+        return localVersionCache.get(scope, key -> {
+            String version = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + key);
+            return version == null ? 0L : Long.parseLong(version);
+        });
+    }
+
+    private long getExpireSeconds() {
+        return (long) pictureListCacheConfig.getFreshSeconds()
+                + pictureListCacheConfig.getStaleSeconds();
+    }
+
+    private static String getScope(Long spaceId) {
+        return spaceId == null ? PUBLIC_SCOPE : "space:" + spaceId;
+    }
+
+    /**
+     * 缓存的分页结果
+     */
+    @Data
+    public static class CachedPage {
+
+        /**
+         * 分页结果
+         */
+        private Page<PictureVO> page;
+
+        /**
+         * 新鲜期截止时间（毫秒时间戳），之后返回旧结果并在后台刷新
+         */
+        private long freshUntil;
+
+        /**
+         * 查询数据库的耗时（毫秒）
+         */
+        private long loadMillis;
+
+        /**
+         * 编码后的大小（字节），不参与编码
+         */
+        @JsonIgnore
+        private int payloadBytes;
+
+        /**
+         * 序列化后的响应，首次使用时生成，不参与编码
+         */
+        @JsonIgnore
+        private volatile RenderedResponse rendered;
+    }
+}
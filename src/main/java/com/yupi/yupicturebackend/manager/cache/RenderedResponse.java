@@ -0,0 +1,22 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 序列化后的响应（BaseResponse 的 UTF-8 JSON），取出后不能修改
+ */
+@Data
+@AllArgsConstructor
+public class RenderedResponse {
+
+    /**
+     * 响应体
+     */
+    private byte[] body;
+
+    /**
+     * 实体标签（响应体的摘要，带双引号）
+     */
+    private String etag;
+}
@@ -0,0 +1,70 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yupi.yupicturebackend.common.ResultUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 响应预序列化
+ * 将热点读接口的结果序列化为与 Spring MVC 相同的 BaseResponse JSON（同一个 ObjectMapper，Long 转字符串）并缓存，
+ * 命中时直接写入输出流，不再反序列化和序列化；GET 请求的 If-None-Match 与实体标签一致时直接返回 304
+ */
+@Component
+public class ResponseRenderer {
+
+    /**
+     * 浏览器可以缓存，每次使用前都要用实体标签确认是否变化，代理服务器不缓存
+     */
+    public static final String CACHE_CONTROL_REVALIDATE = "private, no-cache";
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 序列化为成功响应
+     *
+     * @param data 响应数据，序列化后不再读取
+     */
+    public RenderedResponse render(Object data) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(ResultUtils.success(data));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("响应序列化失败", e);
+        }
+        return new RenderedResponse(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+    }
+
+    /**
+     * 写入响应；GET、HEAD 请求带有相同的实体标签时返回 304，不写响应体
+     * POST 请求不判断条件请求（规范要求条件不满足时返回 412），也不返回实体标签
+     *
+     * @param cacheControl Cache-Control 响应头
+     */
+    public void write(RenderedResponse renderedResponse, String cacheControl,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        String method = request.getMethod();
+        if (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)) {
+            // 设置 ETag 响应头，条件满足时设置 304
+            if (new ServletWebRequest(request, response).checkNotModified(renderedResponse.getEtag())) {
+                return;
+            }
+        }
+        byte[] body = renderedResponse.getBody();
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,314 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import cn.hutool.core.collection.CollUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.yupi.yupicturebackend.config.UserCacheConfig;
+import com.yupi.yupicturebackend.manager.auth.TokenRevocationList;
+import com.yupi.yupicturebackend.mapper.UserMapper;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.UserCacheMetricsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户缓存（读穿透）
+ * 图片、空间的封装类需要关联查询作者信息，每个请求的登录校验也要查询当前用户，用户表是查询最频繁的表。
+ * 本地 Caffeine 为一级缓存（有条数上限），可选 Redis 为二级缓存；批量查询时一次取出所有未命中的用户（Redis 批量读取、数据库按 id 批量查询）。
+ * 缓存的是不含密码的用户实体，登录校验直接使用，封装类由其转换。
+ * 用户信息修改或删除后清除缓存，并通过 Redis 发布订阅通知所有实例清除本地缓存；
+ * 与修改并发的查询可能写入旧值，最多在过期时间后恢复。
+ * <p>
+ * 同时维护每个用户的登录态版本号：登录态中只保存用户 id 和登录时的版本号，权限变化后递增版本号，旧的登录态失效。
+ * 各实例在本地短暂缓存版本号，递增后同样通过发布订阅通知清除
+ */
+@Slf4j
+@Component
+public class UserCache {
+
+    private static final String CACHE_KEY_PREFIX = "yupicture:user:";
+
+    private static final String SESSION_VERSION_KEY_PREFIX = "yupicture:user:sessionVersion:";
+
+    /**
+     * 本地登录态版本号的过期时间（秒），通知丢失时旧的登录态最多还能使用这么久
+     */
+    private static final int SESSION_VERSION_EXPIRE_SECONDS = 30;
+
+    /**
+     * 用户信息变化的通知频道，消息内容为用户 id
+     */
+    private static final String INVALIDATE_CHANNEL = "yupicture:user:invalidate";
+
+    private static final CacheCodec<User> USER_CODEC = CacheCodec.of(new TypeReference<User>() {
+    });
+
+    @Resource
+    private UserCacheConfig userCacheConfig;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private TokenRevocationList tokenRevocationList;
+
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * 用户 id => 用户（不含密码），取出后不能修改
+     */
+    private Cache<Long, User> localCache;
+
+    /**
+     * 用户 id => 登录态版本号
+     */
+    private Cache<Long, Long> sessionVersionCache;
+
+    private final LongAdder redisHitCount = new LongAdder();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .initialCapacity(1024)
+                .maximumSize(userCacheConfig.getMaxSize())
+                .expireAfterWrite(userCacheConfig.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        sessionVersionCache = Caffeine.newBuilder()
+                .maximumSize(userCacheConfig.getMaxSize())
+                .expireAfterWrite(SESSION_VERSION_EXPIRE_SECONDS, TimeUnit.SECONDS)
+                .build();
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            Long userId = Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8));
+            localCache.invalidate(userId);
+            sessionVersionCache.invalidate(userId);
+        }, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 获取用户
+     *
+     * @return 用户（不含密码），不存在时为 null，不能修改
+     */
+    public User getUser(Long userId) {
+        if (userId == null || userId <= 0) {
+            return null;
+        }
+        return getUsers(Collections.singleton(userId)).get(userId);
+    }
+
+    /**
+     * 批量获取用户，未命中的用户一次查询
+     *
+     * @return 用户 id => 用户（不含密码），不存在的用户不在结果中，不能修改
+     */
+    public Map<Long, User> getUsers(Collection<Long> userIds) {
+        if (CollUtil.isEmpty(userIds)) {
+            return Collections.emptyMap();
+        }
+        Set<Long> userIdSet = new HashSet<>(userIds);
+        userIdSet.remove(null);
+        return localCache.getAll(userIdSet, this::loadAll);
+    }
+
+    /**
+     * 用户信息已修改或删除，清除缓存并通知所有实例，同时发布用户变化事件（图片详情等缓存内嵌了作者信息）
+     * 在事务中调用时，事务提交后才清除，避免在提交前重新缓存旧数据
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            doInvalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                doInvalidate(userId);
+            }
+        });
+    }
+
+    /**
+     * 获取用户当前的登录态版本号，登录态中的版本号小于该值时失效
+     */
+    public long getSessionVersion(Long userId) {
+        return sessionVersionCache.get(userId, key -> {
+            String version = stringRedisTemplate.opsForValue().get(SESSION_VERSION_KEY_PREFIX + key);
+            return version == null ? 0L : Long.parseLong(version);
+        });
+    }
+
+    /**
+     * 用户权限已变化或用户已删除，递增登录态版本号使已有的登录态失效（令牌认证时吊销已签发的令牌），同时清除缓存
+     * 在事务中调用时，事务提交后才执行
+     */
+    public void revokeSessions(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            doRevokeSessions(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                doRevokeSessions(userId);
+            }
+        });
+    }
+
+    /**
+     * 获取缓存指标
+     */
+    public UserCacheMetricsVO getMetrics() {
+        CacheStats stats = localCache.stats();
+        UserCacheMetricsVO metricsVO = new UserCacheMetricsVO();
+        metricsVO.setLocalHitCount(stats.hitCount());
+        metricsVO.setLocalMissCount(stats.missCount());
+        metricsVO.setLocalHitRate(stats.hitRate());
+        metricsVO.setRedisHitCount(redisHitCount.sum());
+        metricsVO.setLoadCount(loadCount.sum());
+        metricsVO.setLocalSize(localCache.estimatedSize());
+        return metricsVO;
+    }
+
+    /**
+     * 查询本地缓存未命中的用户，先查 Redis，再查数据库并写入 Redis
+     */
+    private Map<Long, User> loadAll(Set<? extends Long> userIds) {
+        Map<Long, User> userMap = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>(userIds);
+        // 1. 查询 Redis
+        if (userCacheConfig.isRedis()) {
+            missingIds = readRedis(missingIds, userMap);
+        }
+        if (missingIds.isEmpty()) {
+            return userMap;
+        }
+        // 2. 查询数据库，去掉密码后缓存
+        List<User> userList = userMapper.selectByIds(missingIds);
+        loadCount.add(missingIds.size());
+        for (User user : userList) {
+            user.setUserPassword(null);
+            userMap.put(user.getId(), user);
+        }
+        // 3. 写入 Redis
+        if (userCacheConfig.isRedis() && !userList.isEmpty()) {
+            writeRedis(userList);
+        }
+        return userMap;
+    }
+
+    /**
+     * 批量读取 Redis，命中的用户放入结果
+     *
+     * @return 未命中的用户 id
+     */
+    private List<Long> readRedis(List<Long> userIds, Map<Long, User> userMap) {
+        byte[][] keys = userIds.stream().map(UserCache::getCacheKey).toArray(byte[][]::new);
+        List<byte[]> payloads;
+        try {
+            payloads = stringRedisTemplate.execute(
+                    (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(keys));
+        } catch (Exception e) {
+            log.error("读取用户缓存失败, 查询数据库", e);
+            return userIds;
+        }
+        List<Long> missingIds = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            byte[] payload = payloads == null ? null : payloads.get(i);
+            if (payload == null) {
+                missingIds.add(userIds.get(i));
+                continue;
+            }
+            try {
+                userMap.put(userIds.get(i), USER_CODEC.decode(payload));
+            } catch (IllegalStateException e) {
+                log.warn("用户缓存值解码失败, 按未命中处理, userId = {}", userIds.get(i), e);
+                missingIds.add(userIds.get(i));
+                continue;
+            }
+            redisHitCount.increment();
+        }
+        return missingIds;
+    }
+
+    private void writeRedis(List<User> userList) {
+        Expiration expiration = Expiration.seconds(userCacheConfig.getExpireSeconds());
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (User user : userList) {
+                    connection.stringCommands().set(getCacheKey(user.getId()), USER_CODEC.encode(user),
+                            expiration, RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("写入用户缓存失败", e);
+        }
+    }
+
+    private void doRevokeSessions(Long userId) {
+        try {
+            stringRedisTemplate.opsForValue().increment(SESSION_VERSION_KEY_PREFIX + userId);
+        } catch (Exception e) {
+            log.error("递增登录态版本号失败, userId = {}", userId, e);
+        }
+        try {
+            tokenRevocationList.revokeUser(userId);
+        } catch (Exception e) {
+            log.error("吊销用户令牌失败, userId = {}", userId, e);
+        }
+        doInvalidate(userId);
+    }
+
+    private void doInvalidate(Long userId) {
+        localCache.invalidate(userId);
+        sessionVersionCache.invalidate(userId);
+        applicationEventPublisher.publishEvent(new UserChangedEvent(userId));
+        try {
+            if (userCacheConfig.isRedis()) {
+                stringRedisTemplate.delete(CACHE_KEY_PREFIX + userId);
+            }
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(userId));
+        } catch (Exception e) {
+            // 其他实例的缓存最多在过期时间后恢复一致
+            log.error("用户缓存失效失败, userId = {}", userId, e);
+        }
+    }
+
+    private static byte[] getCacheKey(Long userId) {
+        return (CACHE_KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8);
+    }
+}
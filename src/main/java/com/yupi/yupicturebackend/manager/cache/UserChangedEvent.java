@@ -0,0 +1,17 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 用户信息已修改或删除事件，用于清理内嵌了用户信息的缓存
+ */
+@Data
+@AllArgsConstructor
+public class UserChangedEvent {
+
+    /**
+     * 用户 id
+     */
+    private Long userId;
+}
@@ -0,0 +1,50 @@
+package com.yupi.yupicturebackend.manager.image;
+
+import lombok.Data;
+
+/**
+ * 图片处理结果
+ */
+@Data
+public class ImageProcessResult {
+
+    /**
+     * 原图宽度
+     */
+    private int width;
+
+    /**
+     * 原图高度
+     */
+    private int height;
+
+    /**
+     * 原图格式（jpeg / png / gif / bmp）
+     */
+    private String format;
+
+    /**
+     * 主色调，格式与数据万象一致，如 0x736246
+     */
+    private String color;
+
+    /**
+     * 主色板，格式见 {@link com.yupi.yupicturebackend.utils.ColorPaletteUtils}
+     */
+    private String palette;
+
+    /**
+     * 64 位感知哈希（pHash）
+     */
+    private Long hash;
+
+    /**
+     * 缩略图内容，不需要生成缩略图时为 null
+     */
+    private byte[] thumbnail;
+
+    /**
+     * 缩略图格式（带透明通道时为 png，否则为 jpeg）
+     */
+    private String thumbnailFormat;
+}
@@ -0,0 +1,20 @@
+package com.yupi.yupicturebackend.manager.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片处理引擎：解析图片信息、生成缩略图并计算主色调
+ */
+public interface ImageProcessor {
+
+    /**
+     * 处理图片
+     *
+     * @param inputStream     图片输入流（由调用方关闭）
+     * @param thumbnailWidth  缩略图最大宽度
+     * @param thumbnailHeight 缩略图最大高度，原图等比缩小到最大宽高以内，原图不超过最大宽高时不生成缩略图
+     * @return 处理结果，不支持的图片格式返回 null
+     */
+    ImageProcessResult process(InputStream inputStream, int thumbnailWidth, int thumbnailHeight) throws IOException;
+}
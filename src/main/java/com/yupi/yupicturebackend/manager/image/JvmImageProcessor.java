@@ -0,0 +1,322 @@
+package com.yupi.yupicturebackend.manager.image;
+
+import com.yupi.yupicturebackend.utils.ColorPaletteUtils;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * 纯 JVM 的图片处理引擎（基于 ImageIO），不依赖数据万象，可以在本机完成处理
+ * ImageIO 不支持 webp，遇到 webp 图片时返回 null
+ */
+@Component
+public class JvmImageProcessor implements ImageProcessor {
+
+    /**
+     * 主色调直方图每个颜色通道保留的位数，4 位即 16 x 16 x 16 个颜色区间
+     */
+    private static final int COLOR_BITS = 4;
+
+    /**
+     * 主色板中两个颜色的最小 RGB 距离，更接近的颜色合并为一个
+     */
+    private static final int MERGE_DISTANCE = 32;
+
+    /**
+     * 计算感知哈希时缩小到的边长
+     */
+    private static final int HASH_IMAGE_SIZE = 32;
+
+    /**
+     * 感知哈希取的低频系数边长，8 x 8 = 64 位
+     */
+    private static final int HASH_SIZE = 8;
+
+    /**
+     * DCT 余弦系数表：DCT_COS[u * 32 + x] = cos((2x + 1) * u * π / 64)
+     */
+    private static final double[] DCT_COS = new double[HASH_SIZE * HASH_IMAGE_SIZE];
+
+    static {
+        for (int u = 0; u < HASH_SIZE; u++) {
+            for (int x = 0; x < HASH_IMAGE_SIZE; x++) {
+                DCT_COS[u * HASH_IMAGE_SIZE + x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * HASH_IMAGE_SIZE));
+            }
+        }
+    }
+
+    @Override
+    public ImageProcessResult process(InputStream inputStream, int thumbnailWidth, int thumbnailHeight)
+            throws IOException {
+        ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream);
+        if (imageInputStream == null) {
+            return null;
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                // 1. 读取原图宽高，不需要解码像素
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // 2. 大图隔行隔列采样解码，解码结果不小于缩略图的 2 倍，足够生成缩略图和计算主色调
+                double scale = Math.min(thumbnailWidth * 1.0 / width, thumbnailHeight * 1.0 / height);
+                int subsampling = scale >= 1 ? 1 : Math.max(1, (int) (1 / (scale * 2)));
+                ImageReadParam readParam = reader.getDefaultReadParam();
+                readParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, readParam);
+
+                ImageProcessResult result = new ImageProcessResult();
+                result.setWidth(width);
+                result.setHeight(height);
+                result.setFormat(reader.getFormatName().toLowerCase());
+                boolean hasAlpha = image.getColorModel().hasAlpha();
+                int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+                // 3. 计算主色板，占比最高的颜色即主色调
+                int[] palette = getPalette(pixels, hasAlpha, ColorPaletteUtils.MAX_COLORS);
+                if (palette.length > 0) {
+                    int[] rgbs = new int[palette.length];
+                    int[] weights = new int[palette.length];
+                    for (int i = 0; i < palette.length; i++) {
+                        rgbs[i] = palette[i] & 0xFFFFFF;
+                        weights[i] = palette[i] >>> 24;
+                    }
+                    result.setColor(String.format("0x%06x", rgbs[0]));
+                    result.setPalette(ColorPaletteUtils.encode(rgbs, weights, palette.length));
+                }
+                // 4. 计算感知哈希，用于相似图片搜索
+                result.setHash(getPerceptualHash(pixels, image.getWidth(), image.getHeight()));
+                // 5. 生成缩略图（等比缩小到最大宽高以内，不放大）
+                if (scale < 1) {
+                    int dstWidth = Math.max(1, (int) Math.round(width * scale));
+                    int dstHeight = Math.max(1, (int) Math.round(height * scale));
+                    BufferedImage thumbnail = resize(pixels, image.getWidth(), image.getHeight(),
+                            dstWidth, dstHeight, hasAlpha);
+                    String thumbnailFormat = hasAlpha ? "png" : "jpeg";
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    ImageIO.write(thumbnail, thumbnailFormat, outputStream);
+                    result.setThumbnail(outputStream.toByteArray());
+                    result.setThumbnailFormat(thumbnailFormat);
+                }
+                return result;
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            imageInputStream.close();
+        }
+    }
+
+    /**
+     * 区域平均缩小图片：目标图片的每个像素取其覆盖的原图区域内所有像素的平均值
+     *
+     * @param pixels    原图像素（ARGB）
+     * @param width     原图宽度
+     * @param height    原图高度
+     * @param dstWidth  目标宽度（不大于原图宽度）
+     * @param dstHeight 目标高度（不大于原图高度）
+     * @param hasAlpha  是否保留透明通道
+     */
+    public static BufferedImage resize(int[] pixels, int width, int height, int dstWidth, int dstHeight,
+                                       boolean hasAlpha) {
+        int[] dstPixels = resizePixels(pixels, width, height, dstWidth, dstHeight);
+        BufferedImage dstImage = new BufferedImage(dstWidth, dstHeight,
+                hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        dstImage.setRGB(0, 0, dstWidth, dstHeight, dstPixels, 0, dstWidth);
+        return dstImage;
+    }
+
+    /**
+     * 区域平均缩小像素数组，参数同 {@link #resize}
+     *
+     * @return 目标像素（ARGB）
+     */
+    private static int[] resizePixels(int[] pixels, int width, int height, int dstWidth, int dstHeight) {
+        int[] dstPixels = new int[dstWidth * dstHeight];
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int y0 = (int) ((long) dy * height / dstHeight);
+            int y1 = Math.max(y0 + 1, (int) ((long) (dy + 1) * height / dstHeight));
+            for (int dx = 0; dx < dstWidth; dx++) {
+                int x0 = (int) ((long) dx * width / dstWidth);
+                int x1 = Math.max(x0 + 1, (int) ((long) (dx + 1) * width / dstWidth));
+                long a = 0, r = 0, g = 0, b = 0;
+                for (int y = y0; y < y1; y++) {
+                    int offset = y * width;
+                    for (int x = x0; x < x1; x++) {
+                        int argb = pixels[offset + x];
+                        a += argb >>> 24;
+                        r += (argb >> 16) & 0xFF;
+                        g += (argb >> 8) & 0xFF;
+                        b += argb & 0xFF;
+                    }
+                }
+                int count = (y1 - y0) * (x1 - x0);
+                dstPixels[dy * dstWidth + dx] = (int) (a / count) << 24 | (int) (r / count) << 16
+                        | (int) (g / count) << 8 | (int) (b / count);
+            }
+        }
+        return dstPixels;
+    }
+
+    /**
+     * 计算感知哈希（pHash）：缩小到 32 x 32 灰度图，做二维 DCT，取左上角 8 x 8 低频系数（去掉直流分量），
+     * 大于中位数的位置为 1，得到 64 位哈希；相似图片的哈希汉明距离小
+     *
+     * @param pixels 图片像素（ARGB）
+     * @param width  宽度
+     * @param height 高度
+     * @return 64 位感知哈希
+     */
+    public static long getPerceptualHash(int[] pixels, int width, int height) {
+        int size = HASH_IMAGE_SIZE;
+        // 1. 缩小并转为灰度（不足 32 像素的边不缩小，按最近邻补足）
+        int[] small = resizePixels(pixels, width, height, Math.min(size, width), Math.min(size, height));
+        int smallWidth = Math.min(size, width);
+        int smallHeight = Math.min(size, height);
+        double[] gray = new double[size * size];
+        for (int y = 0; y < size; y++) {
+            int sy = y * smallHeight / size;
+            for (int x = 0; x < size; x++) {
+                int argb = small[sy * smallWidth + x * smallWidth / size];
+                gray[y * size + x] = 0.299 * ((argb >> 16) & 0xFF) + 0.587 * ((argb >> 8) & 0xFF)
+                        + 0.114 * (argb & 0xFF);
+            }
+        }
+        // 2. 二维 DCT，只计算左上角 8 x 8：先对每一行求前 8 个系数，再对每一列求前 8 个系数
+        int hashSize = HASH_SIZE;
+        double[] rowDct = new double[size * hashSize];
+        for (int y = 0; y < size; y++) {
+            for (int u = 0; u < hashSize; u++) {
+                double sum = 0;
+                for (int x = 0; x < size; x++) {
+                    sum += gray[y * size + x] * DCT_COS[u * size + x];
+                }
+                rowDct[y * hashSize + u] = sum;
+            }
+        }
+        double[] dct = new double[hashSize * hashSize];
+        for (int v = 0; v < hashSize; v++) {
+            for (int u = 0; u < hashSize; u++) {
+                double sum = 0;
+                for (int y = 0; y < size; y++) {
+                    sum += rowDct[y * hashSize + u] * DCT_COS[v * size + y];
+                }
+                dct[v * hashSize + u] = sum;
+            }
+        }
+        // 3. 以除直流分量外的系数中位数为阈值生成哈希
+        double[] sorted = Arrays.copyOfRange(dct, 1, dct.length);
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+        long hash = 0;
+        for (int i = 0; i < dct.length; i++) {
+            hash <<= 1;
+            if (i > 0 && dct[i] > median) {
+                hash |= 1;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 提取主色板：把颜色量化到直方图区间，按像素数从多到少取区间内所有像素的平均色，忽略透明像素；
+     * 与已选颜色过于接近的区间并入已选颜色，避免主色板中出现几乎相同的颜色
+     *
+     * @param pixels    图片像素（ARGB）
+     * @param hasAlpha  是否有透明通道
+     * @param maxColors 最多提取的颜色数
+     * @return 每个元素为 占比（0 ~ 255） << 24 | RGB，按占比从高到低排列；图片完全透明时返回空数组
+     */
+    public static int[] getPalette(int[] pixels, boolean hasAlpha, int maxColors) {
+        int shift = 8 - COLOR_BITS;
+        int bucketCount = 1 << (COLOR_BITS * 3);
+        int[] counts = new int[bucketCount];
+        long[] redSums = new long[bucketCount];
+        long[] greenSums = new long[bucketCount];
+        long[] blueSums = new long[bucketCount];
+        int total = 0;
+        for (int argb : pixels) {
+            if (hasAlpha && (argb >>> 24) < 128) {
+                continue;
+            }
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+            int bucket = (r >> shift) << (COLOR_BITS * 2) | (g >> shift) << COLOR_BITS | (b >> shift);
+            counts[bucket]++;
+            redSums[bucket] += r;
+            greenSums[bucket] += g;
+            blueSums[bucket] += b;
+            total++;
+        }
+        if (total == 0) {
+            return new int[0];
+        }
+        // 按像素数从多到少依次选取区间
+        Integer[] buckets = new Integer[bucketCount];
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            buckets[bucket] = bucket;
+        }
+        Arrays.sort(buckets, (b1, b2) -> Integer.compare(counts[b2], counts[b1]));
+        int[] rgbs = new int[maxColors];
+        int[] selectedCounts = new int[maxColors];
+        int size = 0;
+        for (int bucket : buckets) {
+            int count = counts[bucket];
+            if (count == 0) {
+                break;
+            }
+            int rgb = (int) (redSums[bucket] / count) << 16 | (int) (greenSums[bucket] / count) << 8
+                    | (int) (blueSums[bucket] / count);
+            int nearest = -1;
+            for (int i = 0; i < size; i++) {
+                if (rgbDistanceSquare(rgbs[i], rgb) < MERGE_DISTANCE * MERGE_DISTANCE) {
+                    nearest = i;
+                    break;
+                }
+            }
+            if (nearest >= 0) {
+                selectedCounts[nearest] += count;
+            } else if (size < maxColors) {
+                rgbs[size] = rgb;
+                selectedCounts[size++] = count;
+            }
+        }
+        // 并入后占比可能变化，重新按占比排序
+        int[] palette = new int[size];
+        for (int i = 0; i < size; i++) {
+            int weight = (int) Math.round(selectedCounts[i] * 255.0 / total);
+            palette[i] = weight << 24 | rgbs[i];
+        }
+        for (int i = 1; i < size; i++) {
+            int entry = palette[i];
+            int j = i - 1;
+            while (j >= 0 && (palette[j] >>> 24) < (entry >>> 24)) {
+                palette[j + 1] = palette[j];
+                j--;
+            }
+            palette[j + 1] = entry;
+        }
+        return palette;
+    }
+
+    private static int rgbDistanceSquare(int rgb1, int rgb2) {
+        int dr = ((rgb1 >> 16) & 0xFF) - ((rgb2 >> 16) & 0xFF);
+        int dg = ((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF);
+        int db = (rgb1 & 0xFF) - (rgb2 & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+}
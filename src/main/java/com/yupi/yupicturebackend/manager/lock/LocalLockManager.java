@@ -0,0 +1,76 @@
+package com.yupi.yupicturebackend.manager.lock;
+
+import com.yupi.yupicturebackend.config.LockConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本机分段锁
+ * 固定数量的 ReentrantLock，key 按哈希映射到其中一个，内存占用固定；
+ * 不同 key 可能映射到同一把锁（只影响并发度，不影响正确性），锁可重入。
+ * 防护令牌取当前时间（微秒）与上一个令牌加一的较大值，所有 key 共用，重启后仍然递增
+ */
+@Component
+@ConditionalOnProperty(prefix = "lock", name = "type", havingValue = "local", matchIfMissing = true)
+public class LocalLockManager implements LockManager {
+
+    @Resource
+    private LockConfig lockConfig;
+
+    private ReentrantLock[] stripes;
+
+    private final AtomicLong lastFencingToken = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // 分段数取 2 的幂，用位运算取模
+        int stripeCount = Integer.highestOneBit(Math.max(1, lockConfig.getStripes() - 1)) << 1;
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public LockHandle tryLock(String key, long waitMillis, long leaseMillis) {
+        ReentrantLock lock = getStripe(key);
+        try {
+            if (!lock.tryLock(waitMillis, TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取锁被中断");
+        }
+        long fencingToken = lastFencingToken.updateAndGet(
+                last -> Math.max(last + 1, TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis())));
+        return new LockHandle() {
+            @Override
+            public long getFencingToken() {
+                return fencingToken;
+            }
+
+            @Override
+            public void close() {
+                lock.unlock();
+            }
+        };
+    }
+
+    private ReentrantLock getStripe(String key) {
+        // 打散哈希值的高位，避免相近的 key（如连续的用户 id）集中在少数分段
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return stripes[hash & (stripes.length - 1)];
+    }
+}
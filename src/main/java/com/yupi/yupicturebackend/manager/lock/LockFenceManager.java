@@ -0,0 +1,61 @@
+package com.yupi.yupicturebackend.manager.lock;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.mapper.LockFenceMapper;
+import com.yupi.yupicturebackend.model.entity.LockFence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 锁防护令牌校验
+ * 每个锁的 key 在数据库中记录已写入的最大令牌，以“令牌不小于记录值”为条件更新；
+ * 更新持有行锁直到事务提交，租期过期后拿到锁的新持有者写入后，旧持有者的写入会被拒绝
+ */
+@Slf4j
+@Component
+public class LockFenceManager {
+
+    @Resource
+    private LockFenceMapper lockFenceMapper;
+
+    /**
+     * 校验防护令牌，必须与受保护的写入在同一事务中调用
+     *
+     * @param key          锁的 key
+     * @param fencingToken 加锁时获得的防护令牌
+     * @throws BusinessException 已有更大的令牌写入，即锁已过期并被其他持有者获取
+     */
+    public void check(String key, long fencingToken) {
+        if (advance(key, fencingToken)) {
+            return;
+        }
+        if (lockFenceMapper.selectById(key) == null) {
+            LockFence lockFence = new LockFence();
+            lockFence.setLockKey(key);
+            lockFence.setFencingToken(fencingToken);
+            try {
+                lockFenceMapper.insert(lockFence);
+                return;
+            } catch (DuplicateKeyException e) {
+                // 其他持有者同时插入，重新比较
+                if (advance(key, fencingToken)) {
+                    return;
+                }
+            }
+        }
+        log.warn("锁已过期, 拒绝写入, key = {}, fencingToken = {}", key, fencingToken);
+        throw new BusinessException(ErrorCode.OPERATION_ERROR, "锁已过期，请稍后重试");
+    }
+
+    private boolean advance(String key, long fencingToken) {
+        return lockFenceMapper.update(null, new LambdaUpdateWrapper<LockFence>()
+                .eq(LockFence::getLockKey, key)
+                .le(LockFence::getFencingToken, fencingToken)
+                .set(LockFence::getFencingToken, fencingToken)) > 0;
+    }
+}
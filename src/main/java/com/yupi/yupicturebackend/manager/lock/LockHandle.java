@@ -0,0 +1,20 @@
+package com.yupi.yupicturebackend.manager.lock;
+
+/**
+ * 已获取的锁，使用 try-with-resources 释放
+ */
+public interface LockHandle extends AutoCloseable {
+
+    /**
+     * 防护令牌（fencing token），同一个 key 每次加锁单调递增
+     * 分布式锁的租期可能在临界区执行期间到期（如长时间 GC），此时其他实例可以拿到锁；
+     * 临界区的写入与 {@link LockFenceManager#check} 放在同一事务中，即可拒绝过期持有者的写入
+     */
+    long getFencingToken();
+
+    /**
+     * 释放锁，锁已过期或已被其他持有者获取时不做任何操作
+     */
+    @Override
+    void close();
+}
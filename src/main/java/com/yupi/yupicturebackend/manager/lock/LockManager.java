@@ -0,0 +1,55 @@
+package com.yupi.yupicturebackend.manager.lock;
+
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * 锁服务
+ * 用于按业务 key（如用户 id）互斥执行临界区，实现由 lock.type 选择：
+ * local（本机分段锁，单实例部署）或 redis（分布式锁，多实例部署）
+ */
+public interface LockManager {
+
+    /**
+     * 获取锁
+     *
+     * @param key         锁的 key
+     * @param waitMillis  最长等待时间（毫秒）
+     * @param leaseMillis 租期（毫秒），分布式锁到期后自动释放，防止持有锁的实例崩溃后无法释放；本机锁忽略该参数
+     * @return 锁，等待超时返回 null
+     */
+    LockHandle tryLock(String key, long waitMillis, long leaseMillis);
+
+    /**
+     * 加锁执行，等待超时时抛出业务异常
+     *
+     * @param key         锁的 key
+     * @param waitMillis  最长等待时间（毫秒）
+     * @param leaseMillis 租期（毫秒）
+     * @param action      临界区
+     * @return 临界区的返回值
+     */
+    default <T> T executeWithLock(String key, long waitMillis, long leaseMillis, Supplier<T> action) {
+        return executeWithLock(key, waitMillis, leaseMillis, fencingToken -> action.get());
+    }
+
+    /**
+     * 加锁执行，临界区接收防护令牌，用于写入时校验锁未过期
+     *
+     * @param key         锁的 key
+     * @param waitMillis  最长等待时间（毫秒）
+     * @param leaseMillis 租期（毫秒）
+     * @param action      临界区，参数为防护令牌
+     * @return 临界区的返回值
+     */
+    default <T> T executeWithLock(String key, long waitMillis, long leaseMillis, LongFunction<T> action) {
+        LockHandle lockHandle = tryLock(key, waitMillis, leaseMillis);
+        ThrowUtils.throwIf(lockHandle == null, ErrorCode.OPERATION_ERROR, "操作过于频繁，请稍后重试");
+        try (lockHandle) {
+            return action.apply(lockHandle.getFencingToken());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.yupi.yupicturebackend.manager.lock;
+
+import cn.hutool.core.util.IdUtil;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 分布式锁
+ * 加锁时用 SET NX PX 写入持有者标识并设置租期，同一脚本中自增该 key 的计数器作为防护令牌；
+ * 释放时校验持有者标识，不会误删租期到期后被其他实例获取的锁。
+ * 锁和计数器的 key 带相同的 hash tag，位于同一个槽，可用于 Redis Cluster。锁不可重入
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "lock", name = "type", havingValue = "redis")
+public class RedisLockManager implements LockManager {
+
+    private static final String LOCK_KEY_PREFIX = "yupicture:lock:";
+
+    private static final String FENCING_TOKEN_KEY_SUFFIX = ":fencingToken";
+
+    /**
+     * 计数器的过期时间（毫秒），令牌不小于 Redis 当前时间（微秒），计数器过期或丢失后令牌仍然递增
+     */
+    private static final long FENCING_TOKEN_EXPIRE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * 加锁成功返回防护令牌：max(计数器 + 1, 当前时间微秒数)，失败返回 0
+     */
+    private static final RedisScript<Long> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.replicate_commands then redis.replicate_commands() end "
+                    + "if not redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then "
+                    + "return 0 "
+                    + "end "
+                    + "local now = redis.call('time') "
+                    + "local floor = tonumber(now[1]) * 1000000 + tonumber(now[2]) "
+                    + "local token = redis.call('incr', KEYS[2]) "
+                    + "if token < floor then "
+                    + "token = floor "
+                    + "redis.call('set', KEYS[2], string.format('%.0f', floor)) "
+                    + "end "
+                    + "redis.call('pexpire', KEYS[2], ARGV[3]) "
+                    + "return token", Long.class);
+
+    /**
+     * 重试间隔上限（毫秒），从 10 毫秒开始逐次翻倍
+     */
+    private static final long MAX_RETRY_INTERVAL_MILLIS = 100L;
+
+    /**
+     * 持有者标识一致时删除
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) "
+                    + "end "
+                    + "return 0", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public LockHandle tryLock(String key, long waitMillis, long leaseMillis) {
+        // hash tag 保证锁和计数器在同一个槽
+        String lockKey = LOCK_KEY_PREFIX + "{" + key + "}";
+        String fencingTokenKey = lockKey + FENCING_TOKEN_KEY_SUFFIX;
+        String owner = IdUtil.fastSimpleUUID();
+        long deadline = System.currentTimeMillis() + waitMillis;
+        long retryInterval = 10L;
+        while (true) {
+            Long fencingToken = stringRedisTemplate.execute(LOCK_SCRIPT, Arrays.asList(lockKey, fencingTokenKey),
+                    owner, String.valueOf(leaseMillis), String.valueOf(FENCING_TOKEN_EXPIRE_MILLIS));
+            if (fencingToken != null && fencingToken > 0) {
+                return new LockHandle() {
+                    @Override
+                    public long getFencingToken() {
+                        return fencingToken;
+                    }
+
+                    @Override
+                    public void close() {
+                        Long deleted = stringRedisTemplate.execute(UNLOCK_SCRIPT,
+                                Collections.singletonList(lockKey), owner);
+                        if (deleted == null || deleted == 0) {
+                            log.warn("释放锁时锁已过期, key = {}, fencingToken = {}", key, fencingToken);
+                        }
+                    }
+                };
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            try {
+                Thread.sleep(Math.min(retryInterval, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取锁被中断");
+            }
+            retryInterval = Math.min(retryInterval * 2, MAX_RETRY_INTERVAL_MILLIS);
+        }
+    }
+}
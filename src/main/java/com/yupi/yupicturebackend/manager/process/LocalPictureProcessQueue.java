@@ -0,0 +1,52 @@
+package com.yupi.yupicturebackend.manager.process;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片异步处理队列（本机内存队列）
+ * 实例重启或队列已满时任务会丢失，图片保持处理中状态、仍可使用原图访问，由 {@link PictureProcessRecovery} 稍后重新提交
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "picture.upload", name = "process-queue", havingValue = "local", matchIfMissing = true)
+public class LocalPictureProcessQueue implements PictureProcessQueue {
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private PictureProcessor pictureProcessor;
+
+    private ThreadPoolExecutor processExecutor;
+
+    @PostConstruct
+    public void init() {
+        int threads = pictureUploadConfig.getProcessThreads();
+        // 队列满时丢弃任务，不在提交任务的请求线程中处理图片，丢弃的任务由定时恢复任务重新提交
+        processExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(pictureUploadConfig.getProcessQueueCapacity()),
+                ThreadFactoryBuilder.create().setNamePrefix("picture-process-").build(),
+                (task, executor) -> log.warn("图片处理队列已满, 任务稍后由定时恢复任务重新提交"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        processExecutor.shutdown();
+    }
+
+    @Override
+    public void submit(Long pictureId) {
+        processExecutor.execute(() -> pictureProcessor.process(pictureId));
+    }
+}
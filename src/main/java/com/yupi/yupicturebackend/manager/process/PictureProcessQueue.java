@@ -0,0 +1,15 @@
+package com.yupi.yupicturebackend.manager.process;
+
+/**
+ * 图片异步处理队列
+ * 图片上传后先以"处理中"状态入库，再提交到队列，由后台线程生成压缩图、缩略图和主色调
+ */
+public interface PictureProcessQueue {
+
+    /**
+     * 提交图片处理任务
+     *
+     * @param pictureId 图片 id（需要在图片入库、事务提交后再提交）
+     */
+    void submit(Long pictureId);
+}
@@ -0,0 +1,99 @@
+package com.yupi.yupicturebackend.manager.process;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.manager.lock.LockFenceManager;
+import com.yupi.yupicturebackend.manager.lock.LockHandle;
+import com.yupi.yupicturebackend.manager.lock.LockManager;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.enums.PictureProcessStatusEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 图片处理任务恢复
+ * 处理中的图片超过一定时间未完成时，认为任务已经丢失（本机队列在实例重启时丢失、队列已满时丢弃，提交到 Redis 失败等），
+ * 定时重新提交到处理队列。重新提交前更新图片的更新时间，同一张图片在下一个超时周期内不会再次提交；
+ * 处理器只处理仍处于处理中的图片，重复提交不会重复回写。多实例部署时通过锁保证同时只有一个实例检查
+ */
+@Slf4j
+@Component
+public class PictureProcessRecovery {
+
+    private static final String LOCK_KEY = "picture:process:recover";
+
+    /**
+     * 锁的租期（毫秒）
+     */
+    private static final long LOCK_LEASE_MILLIS = 60_000L;
+
+    /**
+     * 每轮最多重新提交的图片数，剩余的下一轮继续
+     */
+    private static final int RECOVER_BATCH_SIZE = 500;
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private PictureProcessQueue pictureProcessQueue;
+
+    @Resource
+    private LockManager lockManager;
+
+    @Resource
+    private LockFenceManager lockFenceManager;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 重新提交丢失的图片处理任务，启动后不久执行一次，之后定时执行
+     */
+    @Scheduled(initialDelay = 30_000L, fixedDelayString = "${picture.upload.process-recover-interval-millis:300000}")
+    public void recover() {
+        LockHandle lockHandle = lockManager.tryLock(LOCK_KEY, 0, LOCK_LEASE_MILLIS);
+        if (lockHandle == null) {
+            return;
+        }
+        try (lockHandle) {
+            Date staleBefore = new Date(System.currentTimeMillis() - pictureUploadConfig.getProcessStaleSeconds() * 1000L);
+            List<Long> pictureIds = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                            .select(Picture::getId)
+                            .eq(Picture::getProcessStatus, PictureProcessStatusEnum.PROCESSING.getValue())
+                            .lt(Picture::getUpdateTime, staleBefore)
+                            .orderByAsc(Picture::getUpdateTime)
+                            .last("limit " + RECOVER_BATCH_SIZE))
+                    .stream()
+                    .map(Picture::getId)
+                    .collect(Collectors.toList());
+            if (pictureIds.isEmpty()) {
+                return;
+            }
+            // 锁过期后其他实例可能已开始检查，令牌校验失败时不再提交
+            transactionTemplate.executeWithoutResult(status -> {
+                lockFenceManager.check(LOCK_KEY, lockHandle.getFencingToken());
+                pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                        .in(Picture::getId, pictureIds)
+                        .eq(Picture::getProcessStatus, PictureProcessStatusEnum.PROCESSING.getValue())
+                        .set(Picture::getUpdateTime, new Date()));
+            });
+            pictureIds.forEach(pictureProcessQueue::submit);
+            log.info("重新提交丢失的图片处理任务, 数量 = {}", pictureIds.size());
+        } catch (Exception e) {
+            log.error("恢复图片处理任务失败", e);
+        }
+    }
+}
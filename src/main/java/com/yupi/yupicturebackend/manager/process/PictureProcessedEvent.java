@@ -0,0 +1,22 @@
+package com.yupi.yupicturebackend.manager.process;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 图片异步处理完成事件，用于清理缓存
+ */
+@Data
+@AllArgsConstructor
+public class PictureProcessedEvent {
+
+    /**
+     * 图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 空间 id，公共图库为 null
+     */
+    private Long spaceId;
+}
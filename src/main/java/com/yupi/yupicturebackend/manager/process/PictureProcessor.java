@@ -0,0 +1,199 @@
+package com.yupi.yupicturebackend.manager.process;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.ciModel.persistence.CIUploadResult;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.image.ImageProcessResult;
+import com.yupi.yupicturebackend.manager.image.ImageProcessor;
+import com.yupi.yupicturebackend.manager.quota.SpaceUsageBuffer;
+import com.yupi.yupicturebackend.manager.upload.PictureUploadTemplate;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.enums.PictureProcessStatusEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * 图片异步处理器：生成压缩图和缩略图，获取宽高和主色调，并回写图片信息
+ */
+@Slf4j
+@Component
+public class PictureProcessor {
+
+    /**
+     * 本地处理引擎的配置值
+     */
+    public static final String LOCAL_ENGINE = "local";
+
+    /**
+     * 缩略图最大宽高
+     */
+    private static final int THUMBNAIL_SIZE = 256;
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private ImageProcessor imageProcessor;
+
+    @Resource
+    private CosClientConfig cosClientConfig;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private SpaceUsageBuffer spaceUsageBuffer;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * 处理图片，不抛出异常：处理失败时把图片标记为处理失败，图片仍可以使用原图访问
+     *
+     * @param pictureId 图片 id
+     */
+    public void process(Long pictureId) {
+        // 1. 只处理仍处于处理中的图片（可能已被删除、重新上传或被其他实例处理过）
+        Picture picture = pictureMapper.selectById(pictureId);
+        if (picture == null || picture.getProcessStatus() == null
+                || picture.getProcessStatus() != PictureProcessStatusEnum.PROCESSING.getValue()) {
+            return;
+        }
+        String originalUrl = picture.getUrl();
+        String uploadPath = StrUtil.removePrefix(originalUrl, cosClientConfig.getHost() + "/");
+        // 2. 对已上传的原图进行处理
+        UploadPictureResult uploadPictureResult;
+        try {
+            uploadPictureResult = processStoredPicture(uploadPath, picture.getName(), picture.getPicSize(), null);
+        } catch (Exception e) {
+            log.error("图片处理失败, pictureId = {}", pictureId, e);
+            pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                    .eq(Picture::getId, pictureId)
+                    .eq(Picture::getUrl, originalUrl)
+                    .set(Picture::getProcessStatus, PictureProcessStatusEnum.FAILED.getValue()));
+            return;
+        }
+        // 3. 回写图片信息，图片体积变化时同步修正空间额度
+        long sizeDelta = uploadPictureResult.getPicSize() - picture.getPicSize();
+        Boolean updated = transactionTemplate.execute(status -> {
+            int rows = pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                    .eq(Picture::getId, pictureId)
+                    // 处理期间图片被重新上传时，不覆盖新的图片信息
+                    .eq(Picture::getUrl, originalUrl)
+                    .eq(Picture::getProcessStatus, PictureProcessStatusEnum.PROCESSING.getValue())
+                    .set(Picture::getUrl, uploadPictureResult.getUrl())
+                    .set(Picture::getThumbnailUrl, uploadPictureResult.getThumbnailUrl())
+                    .set(Picture::getPicSize, uploadPictureResult.getPicSize())
+                    .set(Picture::getPicWidth, uploadPictureResult.getPicWidth())
+                    .set(Picture::getPicHeight, uploadPictureResult.getPicHeight())
+                    .set(Picture::getPicScale, uploadPictureResult.getPicScale())
+                    .set(Picture::getPicFormat, uploadPictureResult.getPicFormat())
+                    .set(Picture::getPicColor, uploadPictureResult.getPicColor())
+                    .set(Picture::getPicPalette, uploadPictureResult.getPicPalette())
+                    .set(Picture::getPicHash, uploadPictureResult.getPicHash())
+                    .set(Picture::getProcessStatus, PictureProcessStatusEnum.DONE.getValue()));
+            if (rows == 0) {
+                return false;
+            }
+            spaceUsageBuffer.add(picture.getSpaceId(), sizeDelta, 0);
+            return true;
+        });
+        if (Boolean.TRUE.equals(updated)) {
+            // 4. 通知清理缓存
+            applicationEventPublisher.publishEvent(new PictureProcessedEvent(pictureId, picture.getSpaceId()));
+        }
+    }
+
+    /**
+     * 处理已上传到对象存储的原图，按配置选择数据万象或本地处理引擎
+     *
+     * @param uploadPath       原图上传路径
+     * @param originalFilename 原始文件名
+     * @param picSize          原图大小
+     * @param source           原图内容（由调用方关闭），使用本地处理引擎时读取，为 null 时从对象存储下载
+     * @return 图片处理结果
+     */
+    public UploadPictureResult processStoredPicture(String uploadPath, String originalFilename, long picSize,
+                                                    InputStream source) throws Exception {
+        if (LOCAL_ENGINE.equals(pictureUploadConfig.getProcessEngine())) {
+            try {
+                UploadPictureResult uploadPictureResult = processByLocal(uploadPath, originalFilename, picSize, source);
+                if (uploadPictureResult != null) {
+                    return uploadPictureResult;
+                }
+            } catch (Exception e) {
+                log.warn("本地图片处理失败, 改用数据万象处理, uploadPath = {}", uploadPath, e);
+            }
+        }
+        CIUploadResult ciUploadResult = cosManager.processPictureObject(uploadPath, picSize);
+        return PictureUploadTemplate.parseResult(cosClientConfig.getHost(), originalFilename, uploadPath, picSize,
+                ciUploadResult);
+    }
+
+    /**
+     * 使用本地处理引擎处理原图：解析宽高、格式和主色调，生成缩略图并上传到原图所在目录
+     * 本地引擎不做 webp 压缩，图片地址仍然是原图
+     *
+     * @return 图片处理结果，本地引擎不支持该图片格式时返回 null
+     */
+    private UploadPictureResult processByLocal(String uploadPath, String originalFilename, long picSize,
+                                               InputStream source) throws Exception {
+        ImageProcessResult imageProcessResult;
+        if (source != null) {
+            imageProcessResult = imageProcessor.process(source, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+        } else {
+            try (COSObject cosObject = cosManager.getObject(uploadPath);
+                 InputStream inputStream = cosObject.getObjectContent()) {
+                imageProcessResult = imageProcessor.process(inputStream, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+            }
+        }
+        if (imageProcessResult == null) {
+            return null;
+        }
+        String host = cosClientConfig.getHost();
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        uploadPictureResult.setUrl(host + "/" + uploadPath);
+        uploadPictureResult.setThumbnailUrl(host + "/" + uploadPath);
+        // 与数据万象规则保持一致，仅对 > 2 KB 的图片生成缩略图
+        byte[] thumbnail = imageProcessResult.getThumbnail();
+        if (thumbnail != null && picSize > 2 * 1024) {
+            String thumbnailSuffix = "jpeg".equals(imageProcessResult.getThumbnailFormat()) ? "jpg" : "png";
+            String thumbnailKey = StrUtil.subBefore(uploadPath, "/", true) + "/"
+                    + FileUtil.mainName(uploadPath) + "_thumbnail." + thumbnailSuffix;
+            cosManager.putObject(thumbnailKey, new ByteArrayInputStream(thumbnail), thumbnail.length);
+            uploadPictureResult.setThumbnailUrl(host + "/" + thumbnailKey);
+        }
+        int picWidth = imageProcessResult.getWidth();
+        int picHeight = imageProcessResult.getHeight();
+        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
+        uploadPictureResult.setPicSize(picSize);
+        uploadPictureResult.setPicWidth(picWidth);
+        uploadPictureResult.setPicHeight(picHeight);
+        uploadPictureResult.setPicScale(NumberUtil.round(picWidth * 1.0 / picHeight, 2).doubleValue());
+        uploadPictureResult.setPicFormat(imageProcessResult.getFormat());
+        uploadPictureResult.setPicColor(imageProcessResult.getColor());
+        uploadPictureResult.setPicPalette(imageProcessResult.getPalette());
+        uploadPictureResult.setPicHash(imageProcessResult.getHash());
+        return uploadPictureResult;
+    }
+}
@@ -0,0 +1,182 @@
+package com.yupi.yupicturebackend.manager.process;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.qcloud.cos.model.COSObject;
+import com.qcloud.cos.model.ciModel.persistence.CIObject;
+import com.qcloud.cos.model.ciModel.persistence.CIUploadResult;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.image.ImageProcessResult;
+import com.yupi.yupicturebackend.manager.image.ImageProcessor;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.vo.PictureVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 多分辨率缩略图管理：首次访问某个宽度时生成并记录到图片的 renditions 字段
+ * 同一张图片同一宽度的并发请求只会生成一次，其他请求等待生成结果
+ */
+@Slf4j
+@Component
+public class PictureRenditionManager {
+
+    /**
+     * 按需生成缩略图的接口地址
+     */
+    private static final String RENDITION_API = "%s/picture/rendition?id=%s&width=%s";
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    @Resource
+    private CosClientConfig cosClientConfig;
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private ImageProcessor imageProcessor;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    /**
+     * 正在生成的缩略图，图片 id:宽度 => 生成结果
+     */
+    private final ConcurrentMap<String, CompletableFuture<String>> generatingRenditions = new ConcurrentHashMap<>();
+
+    /**
+     * 补全图片封装类的多分辨率缩略图：已生成的使用缩略图地址，不大于原图宽度的直接使用原图，
+     * 其余使用按需生成的接口地址
+     */
+    public void fillRenditions(PictureVO pictureVO) {
+        Map<Integer, String> renditions = new TreeMap<>();
+        if (pictureVO.getRenditions() != null) {
+            renditions.putAll(pictureVO.getRenditions());
+        }
+        Integer picWidth = pictureVO.getPicWidth();
+        for (Integer width : pictureUploadConfig.getRenditionWidths()) {
+            if (renditions.containsKey(width)) {
+                continue;
+            }
+            if (picWidth != null && picWidth <= width) {
+                renditions.put(width, pictureVO.getUrl());
+            } else {
+                renditions.put(width, String.format(RENDITION_API, contextPath, pictureVO.getId(), width));
+            }
+        }
+        pictureVO.setRenditions(renditions);
+    }
+
+    /**
+     * 获取指定宽度的缩略图地址，不存在时生成
+     *
+     * @param picture 图片
+     * @param width   缩略图宽度，必须是配置的宽度之一
+     * @return 缩略图地址
+     */
+    public String getRenditionUrl(Picture picture, int width) {
+        ThrowUtils.throwIf(!pictureUploadConfig.getRenditionWidths().contains(width), ErrorCode.PARAMS_ERROR,
+                "不支持的缩略图宽度");
+        PictureVO pictureVO = PictureVO.objToVo(picture);
+        if (pictureVO.getRenditions() != null && pictureVO.getRenditions().containsKey(width)) {
+            return pictureVO.getRenditions().get(width);
+        }
+        // 图片还在处理中（宽度未知）或原图不大于该宽度时，直接使用原图
+        Integer picWidth = picture.getPicWidth();
+        if (picWidth == null || picWidth <= width) {
+            return picture.getUrl();
+        }
+        // 同一张图片同一宽度只生成一次
+        String generatingKey = picture.getId() + ":" + width;
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> generatingFuture = generatingRenditions.putIfAbsent(generatingKey, future);
+        if (generatingFuture != null) {
+            try {
+                return generatingFuture.join();
+            } catch (Exception e) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "缩略图生成失败");
+            }
+        }
+        try {
+            String renditionUrl = generateRendition(picture, width);
+            future.complete(renditionUrl);
+            return renditionUrl;
+        } catch (Exception e) {
+            log.error("缩略图生成失败, pictureId = {}, width = {}", picture.getId(), width, e);
+            future.completeExceptionally(e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "缩略图生成失败");
+        } finally {
+            generatingRenditions.remove(generatingKey, future);
+        }
+    }
+
+    /**
+     * 生成缩略图并记录到图片中
+     */
+    private String generateRendition(Picture picture, int width) throws Exception {
+        String host = cosClientConfig.getHost();
+        String sourceKey = StrUtil.removePrefix(picture.getUrl(), host + "/");
+        String renditionKey = null;
+        if (PictureProcessor.LOCAL_ENGINE.equals(pictureUploadConfig.getProcessEngine())) {
+            renditionKey = generateRenditionByLocal(sourceKey, width);
+        }
+        // 数据万象生成（本地引擎不支持该图片格式时也使用数据万象）
+        if (renditionKey == null) {
+            CIUploadResult ciUploadResult = cosManager.processPictureRendition(sourceKey, width);
+            CIObject ciObject = ciUploadResult.getProcessResults().getObjectList().get(0);
+            renditionKey = ciObject.getKey();
+        }
+        String renditionUrl = host + "/" + renditionKey;
+        // 只修改对应宽度的字段，不同宽度并发生成时互不覆盖；图片已被重新上传时不记录
+        pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                .eq(Picture::getId, picture.getId())
+                .eq(Picture::getUrl, picture.getUrl())
+                .setSql("renditions = JSON_SET(IFNULL(renditions, '{}'), {0}, {1})",
+                        "$.\"" + width + "\"", renditionUrl));
+        return renditionUrl;
+    }
+
+    /**
+     * 使用本地处理引擎生成缩略图，上传到原图所在目录
+     *
+     * @return 缩略图的唯一键，本地引擎不支持该图片格式时返回 null
+     */
+    private String generateRenditionByLocal(String sourceKey, int width) throws Exception {
+        ImageProcessResult imageProcessResult;
+        try (COSObject cosObject = cosManager.getObject(sourceKey);
+             InputStream inputStream = cosObject.getObjectContent()) {
+            imageProcessResult = imageProcessor.process(inputStream, width, Integer.MAX_VALUE);
+        }
+        if (imageProcessResult == null || imageProcessResult.getThumbnail() == null) {
+            return null;
+        }
+        byte[] thumbnail = imageProcessResult.getThumbnail();
+        String suffix = "jpeg".equals(imageProcessResult.getThumbnailFormat()) ? "jpg" : "png";
+        String renditionKey = StrUtil.subBefore(sourceKey, "/", true) + "/"
+                + FileUtil.mainName(sourceKey) + "_" + width + "." + suffix;
+        cosManager.putObject(renditionKey, new ByteArrayInputStream(thumbnail), thumbnail.length);
+        return renditionKey;
+    }
+}
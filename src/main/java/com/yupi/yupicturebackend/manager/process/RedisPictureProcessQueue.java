@@ -0,0 +1,214 @@
+package com.yupi.yupicturebackend.manager.process;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.thread.ThreadUtil;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片异步处理队列（Redis Stream，多实例部署时使用）
+ * 所有实例属于同一个消费者组，每个任务只会被一个实例处理；处理完成后才确认消息，
+ * 实例重启后会先重新处理自己未确认的消息。消费者名称变化（如实例 ip 变化）或实例下线后，
+ * 其未确认的消息由其他实例定期认领（空闲超过 picture.upload.process-stale-seconds 的消息）
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "picture.upload", name = "process-queue", havingValue = "redis")
+public class RedisPictureProcessQueue implements PictureProcessQueue {
+
+    /**
+     * 任务队列的 Redis key
+     */
+    private static final String STREAM_KEY = "yupicture:pictureProcess";
+
+    /**
+     * 消费者组名称
+     */
+    private static final String GROUP_NAME = "picture-process";
+
+    /**
+     * 消息中图片 id 的字段
+     */
+    private static final String PICTURE_ID_FIELD = "pictureId";
+
+    /**
+     * 检查并认领空闲的未确认消息的间隔（毫秒）
+     */
+    private static final long CLAIM_INTERVAL_MILLIS = 60_000L;
+
+    /**
+     * 每次最多认领的消息数
+     */
+    private static final int CLAIM_BATCH_SIZE = 100;
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private PictureProcessor pictureProcessor;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 消费者名称，使用本机 ip 和端口区分实例，重启后保持不变以便重新处理未确认的消息
+     */
+    private Consumer consumer;
+
+    private ThreadPoolExecutor processExecutor;
+
+    private Thread pollThread;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        createGroupIfAbsent();
+        consumer = Consumer.from(GROUP_NAME, NetUtil.getLocalhostStr() + ":" + pictureUploadConfig.getProcessConsumerId());
+        int threads = pictureUploadConfig.getProcessThreads();
+        // 线程池满时由拉取线程直接处理，拉取速度自然降下来
+        processExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads),
+                ThreadFactoryBuilder.create().setNamePrefix("picture-process-").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        running = true;
+        pollThread = ThreadFactoryBuilder.create().setNamePrefix("picture-process-poll-").setDaemon(true).build()
+                .newThread(this::poll);
+        pollThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        pollThread.interrupt();
+        processExecutor.shutdown();
+    }
+
+    @Override
+    public void submit(Long pictureId) {
+        stringRedisTemplate.opsForStream().add(STREAM_KEY,
+                Collections.singletonMap(PICTURE_ID_FIELD, String.valueOf(pictureId)));
+    }
+
+    /**
+     * 循环拉取任务：先处理本实例未确认的消息，再处理新消息，并定期认领其他消费者长时间未确认的消息
+     */
+    private void poll() {
+        ReadOffset readOffset = ReadOffset.from("0");
+        int batchSize = pictureUploadConfig.getProcessThreads();
+        long nextClaimTime = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextClaimTime) {
+                    nextClaimTime = System.currentTimeMillis() + CLAIM_INTERVAL_MILLIS;
+                    claimIdleRecords();
+                }
+                List<MapRecord<String, Object, Object>> records = read(readOffset, batchSize);
+                if (CollUtil.isEmpty(records)) {
+                    // 未确认的消息处理完了，开始拉取新消息
+                    readOffset = ReadOffset.lastConsumed();
+                    continue;
+                }
+                for (MapRecord<String, Object, Object> record : records) {
+                    processExecutor.execute(() -> process(record.getId(), record.getValue().get(PICTURE_ID_FIELD)));
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("拉取图片处理任务失败", e);
+                ThreadUtil.sleep(1000);
+            }
+        }
+    }
+
+    /**
+     * 拉取消息
+     */
+    @SuppressWarnings("unchecked") // 只传入一个 StreamOffset，泛型可变参数不会造成堆污染
+    private List<MapRecord<String, Object, Object>> read(ReadOffset readOffset, int batchSize) {
+        return stringRedisTemplate.opsForStream().read(consumer,
+                StreamReadOptions.empty().count(batchSize).block(Duration.ofSeconds(2)),
+                StreamOffset.create(STREAM_KEY, readOffset));
+    }
+
+    /**
+     * 认领空闲时间超过阈值的未确认消息（原消费者已下线或改名），交给本实例处理
+     */
+    private void claimIdleRecords() {
+        Duration minIdleTime = Duration.ofSeconds(pictureUploadConfig.getProcessStaleSeconds());
+        PendingMessages pendingMessages = stringRedisTemplate.opsForStream()
+                .pending(STREAM_KEY, GROUP_NAME, Range.unbounded(), CLAIM_BATCH_SIZE);
+        RecordId[] idleRecordIds = pendingMessages.stream()
+                .filter(pendingMessage -> pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(minIdleTime) >= 0)
+                .map(PendingMessage::getId)
+                .toArray(RecordId[]::new);
+        if (idleRecordIds.length == 0) {
+            return;
+        }
+        // 认领时 Redis 会再次检查空闲时间，多个实例同时认领时只有一个成功
+        List<ByteRecord> records = stringRedisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xClaim(STREAM_KEY.getBytes(StandardCharsets.UTF_8), GROUP_NAME,
+                        consumer.getName(), minIdleTime, idleRecordIds));
+        if (CollUtil.isEmpty(records)) {
+            return;
+        }
+        log.info("认领空闲的图片处理任务, 数量 = {}", records.size());
+        for (ByteRecord record : records) {
+            MapRecord<String, String, String> stringRecord = record.deserialize(RedisSerializer.string());
+            processExecutor.execute(() -> process(stringRecord.getId(), stringRecord.getValue().get(PICTURE_ID_FIELD)));
+        }
+    }
+
+    /**
+     * 处理任务，处理器不会抛出异常，处理完成后确认并删除消息
+     */
+    private void process(RecordId recordId, Object pictureId) {
+        if (pictureId != null) {
+            pictureProcessor.process(Long.valueOf(pictureId.toString()));
+        }
+        stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, recordId);
+        stringRedisTemplate.opsForStream().delete(STREAM_KEY, recordId);
+    }
+
+    /**
+     * 创建消费者组（队列不存在时一并创建）
+     */
+    private void createGroupIfAbsent() {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(STREAM_KEY.getBytes(StandardCharsets.UTF_8), GROUP_NAME, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            // 消费者组已存在
+            log.info("图片处理队列消费者组已存在: {}", e.getMessage());
+        }
+    }
+}
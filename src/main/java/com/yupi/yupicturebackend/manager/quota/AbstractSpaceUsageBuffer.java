@@ -0,0 +1,107 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import cn.hutool.core.date.DateUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.mapper.SpaceMapper;
+import com.yupi.yupicturebackend.mapper.SpaceUsageFlushMapper;
+import com.yupi.yupicturebackend.model.entity.Space;
+import com.yupi.yupicturebackend.model.entity.SpaceUsageFlush;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * 空间用量缓冲的公共逻辑：事务提交后再累加，按批次写入空间表，批次号与增量在同一事务中记录，同一批次只写入一次
+ */
+@Slf4j
+public abstract class AbstractSpaceUsageBuffer implements SpaceUsageBuffer {
+
+    /**
+     * 刷新记录的保留天数，远大于批次的重试时间
+     */
+    private static final int FLUSH_RECORD_RETAIN_DAYS = 1;
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private SpaceUsageFlushMapper spaceUsageFlushMapper;
+
+    @Override
+    public void add(Long spaceId, long sizeDelta, long countDelta) {
+        if (spaceId == null || (sizeDelta == 0 && countDelta == 0)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            doAdd(spaceId, sizeDelta, countDelta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    doAdd(spaceId, sizeDelta, countDelta);
+                } catch (Exception e) {
+                    // 累加失败时空间用量偏差，由额度对账修正
+                    log.error("累加空间用量失败, spaceId = {}, sizeDelta = {}, countDelta = {}",
+                            spaceId, sizeDelta, countDelta, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 累加到缓冲中
+     */
+    protected abstract void doAdd(Long spaceId, long sizeDelta, long countDelta);
+
+    /**
+     * 清理过期的刷新记录
+     */
+    @Scheduled(fixedDelay = 3600_000L)
+    public void cleanFlushRecords() {
+        spaceUsageFlushMapper.delete(new LambdaQueryWrapper<SpaceUsageFlush>()
+                .lt(SpaceUsageFlush::getCreateTime, DateUtil.offsetDay(new Date(), -FLUSH_RECORD_RETAIN_DAYS)));
+    }
+
+    /**
+     * 在一个事务中记录批次号并将一批增量写入空间表；写入结果未知（如提交时连接断开）时可以用同一批次号重试
+     *
+     * @param batchId   批次号
+     * @param deltaList 增量列表，重试时必须与第一次相同
+     * @return 是否本次写入，批次号已存在（已写入过）时返回 false
+     */
+    protected boolean applyBatch(String batchId, Collection<SpaceUsageDelta> deltaList) {
+        SpaceUsageFlush flushRecord = new SpaceUsageFlush();
+        flushRecord.setId(batchId);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                spaceUsageFlushMapper.insert(flushRecord);
+                applyDeltas(deltaList);
+            });
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private void applyDeltas(Collection<SpaceUsageDelta> deltaList) {
+        for (SpaceUsageDelta delta : deltaList) {
+            spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                    .eq(Space::getId, delta.getSpaceId())
+                    .setSql("totalSize = totalSize + " + delta.getSizeDelta())
+                    .setSql("totalCount = totalCount + " + delta.getCountDelta()));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import cn.hutool.core.util.IdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 空间用量缓冲（本机内存，仅用于单实例部署，需要配置 space.quota.usage-buffer=local）
+ * 每个空间一组 LongAdder，并发累加时分散到不同的计数单元，互不竞争；
+ * 计数只增不清零，刷新时把"当前累计值 - 已写入值"作为一个批次写入。与 Redis 缓冲一样记录批次号，
+ * 写入结果未知时用同一批次号重试，不会重复写入。
+ * 实例关闭前会刷新一次，但增量只保存在内存中，实例崩溃时最多丢失一个刷新周期的增量（已预留的额度也不会释放），
+ * 依赖 {@link SpaceQuotaReconciler} 修正，修正前空间已用额度会有偏差
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "space.quota", name = "usage-buffer", havingValue = "local")
+public class LocalSpaceUsageBuffer extends AbstractSpaceUsageBuffer {
+
+    /**
+     * 空间 id => 用量计数
+     */
+    private final ConcurrentHashMap<Long, UsageCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 写入失败、等待重试的批次，只由刷新线程访问
+     */
+    private PendingBatch pendingBatch;
+
+    @Override
+    protected void doAdd(Long spaceId, long sizeDelta, long countDelta) {
+        UsageCounter counter = counters.computeIfAbsent(spaceId, key -> new UsageCounter());
+        counter.size.add(sizeDelta);
+        counter.count.add(countDelta);
+    }
+
+    @Override
+    public SpaceUsageDelta getPending(Long spaceId) {
+        UsageCounter counter = counters.get(spaceId);
+        if (counter == null) {
+            return new SpaceUsageDelta(spaceId, 0, 0);
+        }
+        return new SpaceUsageDelta(spaceId, counter.size.sum() - counter.flushedSize,
+                counter.count.sum() - counter.flushedCount);
+    }
+
+    /**
+     * 实例关闭前写入剩余的增量
+     */
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${space.quota.usage-flush-millis:1000}")
+    public synchronized void flush() {
+        // 1. 上次写入失败时重试同一批次，否则读取每个空间的累计值，和已写入值的差即为本批次的增量
+        if (pendingBatch == null) {
+            pendingBatch = collectBatch();
+            if (pendingBatch == null) {
+                return;
+            }
+        }
+        PendingBatch batch = pendingBatch;
+        // 2. 记录批次号并写入空间表，成功或已写入过时更新已写入值
+        try {
+            if (!applyBatch(batch.batchId, batch.deltaList)) {
+                log.info("空间用量批次已写入过, 跳过, batchId = {}", batch.batchId);
+            }
+        } catch (Exception e) {
+            log.error("空间用量写入失败, 下次重试, batchId = {}, 空间数 = {}", batch.batchId, batch.deltaList.size(), e);
+            return;
+        }
+        batch.totals.forEach((counter, total) -> {
+            counter.flushedSize = total[0];
+            counter.flushedCount = total[1];
+        });
+        pendingBatch = null;
+    }
+
+    /**
+     * 读取每个空间的累计值，和已写入值的差作为新的批次
+     *
+     * @return 没有增量时返回 null
+     */
+    private PendingBatch collectBatch() {
+        PendingBatch batch = new PendingBatch(IdUtil.fastSimpleUUID());
+        counters.forEach((spaceId, counter) -> {
+            long totalSize = counter.size.sum();
+            long totalCount = counter.count.sum();
+            if (totalSize == counter.flushedSize && totalCount == counter.flushedCount) {
+                return;
+            }
+            batch.deltaList.add(new SpaceUsageDelta(spaceId, totalSize - counter.flushedSize,
+                    totalCount - counter.flushedCount));
+            batch.totals.put(counter, new long[]{totalSize, totalCount});
+        });
+        return batch.deltaList.isEmpty() ? null : batch;
+    }
+
+    /**
+     * 一次刷新的批次
+     */
+    private static class PendingBatch {
+
+        final String batchId;
+
+        /**
+         * 本批次的增量
+         */
+        final List<SpaceUsageDelta> deltaList = new ArrayList<>();
+
+        /**
+         * 用量计数 => 本批次写入后的已写入值（大小、数量）
+         */
+        final Map<UsageCounter, long[]> totals = new IdentityHashMap<>();
+
+        PendingBatch(String batchId) {
+            this.batchId = batchId;
+        }
+    }
+
+    /**
+     * 单个空间的用量计数
+     */
+    private static class UsageCounter {
+
+        /**
+         * 已用大小的累计增量
+         */
+        final LongAdder size = new LongAdder();
+
+        /**
+         * 图片数量的累计增量
+         */
+        final LongAdder count = new LongAdder();
+
+        /**
+         * 已写入空间表的大小增量，只由刷新线程修改
+         */
+        volatile long flushedSize;
+
+        /**
+         * 已写入空间表的数量增量，只由刷新线程修改
+         */
+        volatile long flushedCount;
+    }
+}
@@ -0,0 +1,149 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import cn.hutool.core.util.IdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+
+/**
+ * 空间用量缓冲（Redis，多实例部署时使用）
+ * 所有实例把增量累加到同一个 Redis 哈希中。刷新时先把哈希原子地改名为一个新的批次，
+ * 再在一个事务中记录批次号并写入空间表，最后删除批次：
+ * 实例在写入前崩溃时，批次留在 Redis 中，超时后由任意实例重新写入；
+ * 在写入后、删除前崩溃时，重新写入会因批次号已存在而跳过。每个批次恰好写入一次。
+ * 默认使用该实现，多实例部署时必须使用
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "space.quota", name = "usage-buffer", havingValue = "redis", matchIfMissing = true)
+public class RedisSpaceUsageBuffer extends AbstractSpaceUsageBuffer {
+
+    /**
+     * 待刷新的增量，field 为 "空间 id:size" 或 "空间 id:count"
+     */
+    private static final String PENDING_KEY = "yupicture:spaceUsage:pending";
+
+    /**
+     * 刷新中的批次前缀，后接批次号
+     */
+    private static final String BATCH_KEY_PREFIX = "yupicture:spaceUsage:batch:";
+
+    /**
+     * 刷新中的批次集合，score 为批次创建时间
+     */
+    private static final String BATCH_SET_KEY = "yupicture:spaceUsage:batches";
+
+    private static final String SIZE_FIELD_SUFFIX = ":size";
+
+    private static final String COUNT_FIELD_SUFFIX = ":count";
+
+    /**
+     * 批次创建后超过该时间（毫秒）仍未删除，视为刷新的实例已崩溃，由其他实例重新写入
+     */
+    private static final long STALE_BATCH_MILLIS = 60_000L;
+
+    /**
+     * 待刷新的增量不为空时改名为新的批次并加入批次集合，返回 1；为空时返回 0
+     */
+    private static final RedisScript<Long> CREATE_BATCH_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then "
+                    + "return 0 "
+                    + "end "
+                    + "redis.call('rename', KEYS[1], KEYS[2]) "
+                    + "redis.call('zadd', KEYS[3], ARGV[1], KEYS[2]) "
+                    + "return 1", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    protected void doAdd(Long spaceId, long sizeDelta, long countDelta) {
+        if (sizeDelta != 0) {
+            stringRedisTemplate.opsForHash().increment(PENDING_KEY, spaceId + SIZE_FIELD_SUFFIX, sizeDelta);
+        }
+        if (countDelta != 0) {
+            stringRedisTemplate.opsForHash().increment(PENDING_KEY, spaceId + COUNT_FIELD_SUFFIX, countDelta);
+        }
+    }
+
+    @Override
+    public SpaceUsageDelta getPending(Long spaceId) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(PENDING_KEY,
+                Arrays.asList(spaceId + SIZE_FIELD_SUFFIX, spaceId + COUNT_FIELD_SUFFIX));
+        return new SpaceUsageDelta(spaceId, parseLong(values.get(0)), parseLong(values.get(1)));
+    }
+
+    /**
+     * 实例关闭前写入剩余的增量
+     */
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${space.quota.usage-flush-millis:1000}")
+    public synchronized void flush() {
+        try {
+            // 1. 重新写入其他实例崩溃后遗留的批次
+            Set<String> staleBatchKeys = stringRedisTemplate.opsForZSet().rangeByScore(BATCH_SET_KEY, 0,
+                    System.currentTimeMillis() - STALE_BATCH_MILLIS);
+            if (staleBatchKeys != null) {
+                staleBatchKeys.forEach(this::flushBatch);
+            }
+            // 2. 待刷新的增量改名为新的批次，之后的增量累加到新的哈希中
+            String batchKey = BATCH_KEY_PREFIX + IdUtil.fastSimpleUUID();
+            Long created = stringRedisTemplate.execute(CREATE_BATCH_SCRIPT,
+                    Arrays.asList(PENDING_KEY, batchKey, BATCH_SET_KEY), String.valueOf(System.currentTimeMillis()));
+            if (created != null && created == 1) {
+                flushBatch(batchKey);
+            }
+        } catch (Exception e) {
+            log.error("空间用量刷新失败", e);
+        }
+    }
+
+    /**
+     * 写入一个批次，写入成功或已写入过时删除批次，失败时保留，超时后重试
+     */
+    private void flushBatch(String batchKey) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(batchKey);
+        Map<Long, SpaceUsageDelta> deltaMap = new HashMap<>();
+        entries.forEach((field, value) -> {
+            String fieldStr = field.toString();
+            int index = fieldStr.lastIndexOf(':');
+            Long spaceId = Long.valueOf(fieldStr.substring(0, index));
+            SpaceUsageDelta delta = deltaMap.computeIfAbsent(spaceId, key -> new SpaceUsageDelta(key, 0, 0));
+            if (fieldStr.endsWith(SIZE_FIELD_SUFFIX)) {
+                delta.setSizeDelta(parseLong(value));
+            } else {
+                delta.setCountDelta(parseLong(value));
+            }
+        });
+        if (!deltaMap.isEmpty()) {
+            try {
+                // 批次号和增量在同一事务中写入，批次号已存在说明已写入过
+                if (!applyBatch(batchKey.substring(BATCH_KEY_PREFIX.length()), deltaMap.values())) {
+                    log.info("空间用量批次已写入过, 跳过, batchKey = {}", batchKey);
+                }
+            } catch (Exception e) {
+                log.error("空间用量批次写入失败, 超时后重试, batchKey = {}", batchKey, e);
+                return;
+            }
+        }
+        stringRedisTemplate.delete(batchKey);
+        stringRedisTemplate.opsForZSet().remove(BATCH_SET_KEY, batchKey);
+    }
+
+    private static long parseLong(Object value) {
+        return value == null ? 0L : Long.parseLong(value.toString());
+    }
+}
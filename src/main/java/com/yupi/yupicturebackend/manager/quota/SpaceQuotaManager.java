@@ -0,0 +1,156 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.mapper.SpaceMapper;
+import com.yupi.yupicturebackend.model.entity.Space;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+
+/**
+ * 空间额度管理
+ * 上传前用一条条件更新原子地预留额度（额度不足时更新不到行），不需要先查询再更新，也不会在上传期间持有行锁；
+ * 上传成功后按实际大小修正（少于预留的部分累加到空间用量缓冲，超出的部分再次条件更新），上传失败时释放预留的额度。
+ * 判断额度时加上缓冲中尚未写入空间表的增量。实例在预留后崩溃时预留的额度不会释放，由额度对账修正
+ */
+@Slf4j
+@Component
+public class SpaceQuotaManager {
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private SpaceUsageBuffer spaceUsageBuffer;
+
+    /**
+     * 预留额度
+     *
+     * @param spaceId 空间 id，为 null 时不限额度
+     * @param count   预留的图片数量
+     * @param size    预留的大小（字节），无法预知时传 0，此时只要求空间未满
+     * @return 预留结果
+     * @throws BusinessException 额度不足
+     */
+    public SpaceQuotaReservation reserve(Long spaceId, long count, long size) {
+        SpaceQuotaReservation reservation = new SpaceQuotaReservation();
+        reservation.setSpaceId(spaceId);
+        if (spaceId == null) {
+            return reservation;
+        }
+        SpaceUsageDelta pending = spaceUsageBuffer.getPending(spaceId);
+        int rows = spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                .eq(Space::getId, spaceId)
+                .apply("totalCount + {0} <= maxCount", pending.getCountDelta() + count)
+                .apply("totalSize + {0} <= maxSize", pending.getSizeDelta() + size)
+                .apply("totalSize + {0} < maxSize", pending.getSizeDelta())
+                .setSql("totalCount = totalCount + " + count)
+                .setSql("totalSize = totalSize + " + size));
+        if (rows == 0) {
+            // 预留失败时才查询空间，区分失败原因
+            Space space = spaceMapper.selectById(spaceId);
+            if (space == null) {
+                throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+            }
+            if (space.getTotalCount() + pending.getCountDelta() + count > space.getMaxCount()) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
+            }
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间大小不足");
+        }
+        reservation.setCount(count);
+        reservation.setSize(size);
+        return reservation;
+    }
+
+    /**
+     * 校验额度是否充足（只查询不预留），用于分片上传开始前提前失败
+     *
+     * @param spaceId 空间 id，为 null 时不限额度
+     * @param count   图片数量
+     * @param size    大小（字节）
+     * @throws BusinessException 额度不足
+     */
+    public void checkAvailable(Long spaceId, long count, long size) {
+        if (spaceId == null) {
+            return;
+        }
+        Space space = spaceMapper.selectById(spaceId);
+        if (space == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "空间不存在");
+        }
+        SpaceUsageDelta pending = spaceUsageBuffer.getPending(spaceId);
+        long totalCount = space.getTotalCount() + pending.getCountDelta();
+        long totalSize = space.getTotalSize() + pending.getSizeDelta();
+        if (totalCount + count > space.getMaxCount()) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
+        }
+        if (totalSize + size > space.getMaxSize() || totalSize >= space.getMaxSize()) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间大小不足");
+        }
+    }
+
+    /**
+     * 确认预留，按实际占用的大小修正空间已用大小
+     * 实际大小超过预留的大小时（如网络图片上传前无法得知大小），超出部分同样用条件更新预留，空间放不下时失败；
+     * 在保存图片的事务中调用时，事务提交后预留才算确认，事务回滚后仍可释放
+     *
+     * @param reservation 预留结果
+     * @param actualSize  实际占用的大小（重新上传时为新旧图片的大小差）
+     * @throws BusinessException 超出部分的额度不足
+     */
+    public void commit(SpaceQuotaReservation reservation, long actualSize) {
+        if (reservation.isSettled()) {
+            return;
+        }
+        long sizeDelta = actualSize - reservation.getSize();
+        if (sizeDelta > 0 && reservation.getSpaceId() != null) {
+            // 超出部分直接写入空间表，在事务中调用时随事务回滚，release 只需释放原来预留的额度
+            reserve(reservation.getSpaceId(), 0, sizeDelta);
+            sizeDelta = 0;
+        }
+        // 修正量在事务提交后才累加，事务回滚时由 release 释放预留的额度
+        spaceUsageBuffer.add(reservation.getSpaceId(), sizeDelta, 0);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reservation.setSettled(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    reservation.setSettled(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * 释放预留的额度，已确认的预留不做任何操作
+     *
+     * @param reservation 预留结果
+     */
+    public void release(SpaceQuotaReservation reservation) {
+        if (reservation == null || reservation.isSettled()) {
+            return;
+        }
+        reservation.setSettled(true);
+        if (reservation.getSpaceId() == null || (reservation.getCount() == 0 && reservation.getSize() == 0)) {
+            return;
+        }
+        // 和预留一样直接更新空间表，额度立即归还，不经过用量缓冲
+        try {
+            spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                    .eq(Space::getId, reservation.getSpaceId())
+                    .setSql("totalCount = totalCount - " + reservation.getCount())
+                    .setSql("totalSize = totalSize - " + reservation.getSize()));
+        } catch (Exception e) {
+            // 释放失败时额度偏大，由额度对账修正
+            log.error("释放空间额度失败, reservation = {}", reservation, e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.config.SpaceQuotaConfig;
+import com.yupi.yupicturebackend.manager.lock.LockFenceManager;
+import com.yupi.yupicturebackend.manager.lock.LockHandle;
+import com.yupi.yupicturebackend.manager.lock.LockManager;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.mapper.SpaceMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.Space;
+import com.yupi.yupicturebackend.model.vo.SpaceQuotaReconcileMetricsVO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 空间额度对账
+ * 按空间 id 分批（游标分页）汇总图片表中每个空间的图片数量和大小，与空间表中的已用额度（加上用量缓冲中尚未写入的增量）比较。
+ * 上传中的图片已预留额度但还没有图片记录，偏差可能只是暂时的，因此同一空间连续两轮偏差相同且空间表未变化时才修正；
+ * 修正时以读取到的已用额度为条件更新，期间空间有新的写入则放弃，下一轮重新比较。
+ * 每批之间暂停不少于该批的查询耗时，对账占用数据库的时间不超过一半；多实例部署时通过锁保证同时只有一个实例对账，
+ * 修正与锁的防护令牌校验在同一事务中，对账耗时超过租期、锁被其他实例获取后，本轮停止修正
+ */
+@Slf4j
+@Component
+public class SpaceQuotaReconciler {
+
+    private static final String LOCK_KEY = "space:quota:reconcile";
+
+    /**
+     * 锁的租期（毫秒）
+     */
+    private static final long LOCK_LEASE_MILLIS = 3600_000L;
+
+    @Resource
+    private SpaceQuotaConfig spaceQuotaConfig;
+
+    @Resource
+    private SpaceMapper spaceMapper;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private SpaceUsageBuffer spaceUsageBuffer;
+
+    @Resource
+    private LockManager lockManager;
+
+    @Resource
+    private LockFenceManager lockFenceManager;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 对账线程，不占用定时任务线程（用量缓冲的刷新也在定时任务线程中执行）
+     */
+    private ExecutorService reconcileExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * 上一轮发现的偏差，空间 id => 偏差，只在对账线程中访问
+     */
+    private Map<Long, QuotaDrift> lastDriftMap = new HashMap<>();
+
+    private volatile SpaceQuotaReconcileMetricsVO lastMetrics = new SpaceQuotaReconcileMetricsVO();
+
+    private final AtomicLong totalFixedSpaceCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        reconcileExecutor = Executors.newSingleThreadExecutor(
+                ThreadFactoryBuilder.create().setNamePrefix("space-quota-reconcile-").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        reconcileExecutor.shutdownNow();
+    }
+
+    /**
+     * 触发一轮对账，本实例正在对账时跳过
+     *
+     * @return 是否已触发
+     */
+    @Scheduled(initialDelayString = "${space.quota.reconcile-interval-millis:600000}",
+            fixedDelayString = "${space.quota.reconcile-interval-millis:600000}")
+    public boolean trigger() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        reconcileExecutor.execute(() -> {
+            try {
+                reconcile();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("空间额度对账失败", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 获取最近一轮的对账指标
+     */
+    public SpaceQuotaReconcileMetricsVO getMetrics() {
+        SpaceQuotaReconcileMetricsVO metricsVO = new SpaceQuotaReconcileMetricsVO();
+        SpaceQuotaReconcileMetricsVO last = lastMetrics;
+        metricsVO.setRunning(running.get());
+        metricsVO.setLastStartTime(last.getLastStartTime());
+        metricsVO.setLastFinishTime(last.getLastFinishTime());
+        metricsVO.setScannedSpaceCount(last.getScannedSpaceCount());
+        metricsVO.setDriftSpaceCount(last.getDriftSpaceCount());
+        metricsVO.setFixedSpaceCount(last.getFixedSpaceCount());
+        metricsVO.setSizeDrift(last.getSizeDrift());
+        metricsVO.setCountDrift(last.getCountDrift());
+        metricsVO.setTotalFixedSpaceCount(totalFixedSpaceCount.get());
+        return metricsVO;
+    }
+
+    private void reconcile() throws InterruptedException {
+        LockHandle lockHandle = lockManager.tryLock(LOCK_KEY, 0, LOCK_LEASE_MILLIS);
+        if (lockHandle == null) {
+            log.info("其他实例正在进行空间额度对账, 跳过");
+            return;
+        }
+        try (lockHandle) {
+            Date startTime = new Date();
+            long scannedSpaceCount = 0;
+            long fixedSpaceCount = 0;
+            long sizeDrift = 0;
+            long countDrift = 0;
+            Map<Long, QuotaDrift> driftMap = new HashMap<>();
+            long lastSpaceId = 0;
+            while (true) {
+                long chunkStartMillis = System.currentTimeMillis();
+                // 1. 按 id 游标查询一批空间
+                List<Space> spaceList = spaceMapper.selectList(new LambdaQueryWrapper<Space>()
+                        .select(Space::getId, Space::getTotalSize, Space::getTotalCount)
+                        .gt(Space::getId, lastSpaceId)
+                        .orderByAsc(Space::getId)
+                        .last("limit " + spaceQuotaConfig.getReconcileChunkSize()));
+                if (spaceList.isEmpty()) {
+                    break;
+                }
+                lastSpaceId = spaceList.get(spaceList.size() - 1).getId();
+                scannedSpaceCount += spaceList.size();
+                // 2. 汇总这批空间的图片数量和大小
+                Map<Long, long[]> actualMap = sumPictures(spaceList.stream().map(Space::getId)
+                        .collect(Collectors.toList()));
+                // 3. 逐个比较，连续两轮偏差相同的空间修正
+                for (Space space : spaceList) {
+                    long[] actual = actualMap.getOrDefault(space.getId(), new long[2]);
+                    SpaceUsageDelta pending = spaceUsageBuffer.getPending(space.getId());
+                    QuotaDrift drift = new QuotaDrift(space.getTotalSize(), space.getTotalCount(),
+                            space.getTotalSize() + pending.getSizeDelta() - actual[0],
+                            space.getTotalCount() + pending.getCountDelta() - actual[1]);
+                    if (drift.getSizeDrift() == 0 && drift.getCountDrift() == 0) {
+                        continue;
+                    }
+                    driftMap.put(space.getId(), drift);
+                    sizeDrift += Math.abs(drift.getSizeDrift());
+                    countDrift += Math.abs(drift.getCountDrift());
+                    if (drift.equals(lastDriftMap.get(space.getId())) && fix(space.getId(), drift, lockHandle.getFencingToken())) {
+                        fixedSpaceCount++;
+                        driftMap.remove(space.getId());
+                    }
+                }
+                // 4. 暂停，暂停时间不少于这批的查询耗时
+                long elapsedMillis = System.currentTimeMillis() - chunkStartMillis;
+                Thread.sleep(Math.max(spaceQuotaConfig.getReconcileChunkPauseMillis(), elapsedMillis));
+            }
+            lastDriftMap = driftMap;
+            totalFixedSpaceCount.addAndGet(fixedSpaceCount);
+            SpaceQuotaReconcileMetricsVO metricsVO = new SpaceQuotaReconcileMetricsVO();
+            metricsVO.setLastStartTime(startTime);
+            metricsVO.setLastFinishTime(new Date());
+            metricsVO.setScannedSpaceCount(scannedSpaceCount);
+            metricsVO.setDriftSpaceCount(driftMap.size() + fixedSpaceCount);
+            metricsVO.setFixedSpaceCount(fixedSpaceCount);
+            metricsVO.setSizeDrift(sizeDrift);
+            metricsVO.setCountDrift(countDrift);
+            lastMetrics = metricsVO;
+            log.info("空间额度对账完成, 检查空间数 = {}, 偏差空间数 = {}, 修正空间数 = {}, 大小偏差 = {}, 数量偏差 = {}",
+                    scannedSpaceCount, metricsVO.getDriftSpaceCount(), fixedSpaceCount, sizeDrift, countDrift);
+        }
+    }
+
+    /**
+     * 汇总空间的图片数量和大小
+     *
+     * @return 空间 id => [大小, 数量]，没有图片的空间不在结果中
+     */
+    private Map<Long, long[]> sumPictures(List<Long> spaceIdList) {
+        QueryWrapper<Picture> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("spaceId AS spaceId", "COUNT(*) AS totalCount", "SUM(picSize) AS totalSize")
+                .in("spaceId", spaceIdList)
+                .groupBy("spaceId");
+        Map<Long, long[]> actualMap = new HashMap<>();
+        for (Map<String, Object> result : pictureMapper.selectMaps(queryWrapper)) {
+            Object totalSize = result.get("totalSize");
+            actualMap.put(((Number) result.get("spaceId")).longValue(), new long[]{
+                    totalSize == null ? 0 : ((Number) totalSize).longValue(),
+                    ((Number) result.get("totalCount")).longValue()});
+        }
+        return actualMap;
+    }
+
+    /**
+     * 修正空间已用额度，以读取到的已用额度为条件，期间空间有新的写入时不修正；
+     * 锁已被其他实例获取时抛出业务异常，结束本轮对账
+     *
+     * @return 是否已修正
+     */
+    private boolean fix(Long spaceId, QuotaDrift drift, long fencingToken) {
+        Integer rows = transactionTemplate.execute(status -> {
+            lockFenceManager.check(LOCK_KEY, fencingToken);
+            return spaceMapper.update(null, new LambdaUpdateWrapper<Space>()
+                    .eq(Space::getId, spaceId)
+                    .eq(Space::getTotalSize, drift.getTotalSize())
+                    .eq(Space::getTotalCount, drift.getTotalCount())
+                    .set(Space::getTotalSize, drift.getTotalSize() - drift.getSizeDrift())
+                    .set(Space::getTotalCount, drift.getTotalCount() - drift.getCountDrift()));
+        });
+        if (rows != null && rows > 0) {
+            log.warn("修正空间已用额度, spaceId = {}, totalSize = {}, totalCount = {}, 大小偏差 = {}, 数量偏差 = {}",
+                    spaceId, drift.getTotalSize(), drift.getTotalCount(), drift.getSizeDrift(), drift.getCountDrift());
+        }
+        return rows != null && rows > 0;
+    }
+
+    /**
+     * 单个空间的额度偏差
+     */
+    @Data
+    @AllArgsConstructor
+    private static class QuotaDrift {
+
+        /**
+         * 空间表中的已用大小
+         */
+        private long totalSize;
+
+        /**
+         * 空间表中的图片数量
+         */
+        private long totalCount;
+
+        /**
+         * 已用大小偏差（实时已用大小 - 图片实际大小之和）
+         */
+        private long sizeDrift;
+
+        /**
+         * 图片数量偏差（实时图片数量 - 图片实际数量）
+         */
+        private long countDrift;
+    }
+}
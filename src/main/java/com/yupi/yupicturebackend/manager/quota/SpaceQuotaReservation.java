@@ -0,0 +1,31 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import lombok.Data;
+
+/**
+ * 空间额度预留
+ * 上传前预留的图片数量和大小，上传成功后在保存图片的事务中确认，失败时释放
+ */
+@Data
+public class SpaceQuotaReservation {
+
+    /**
+     * 空间 id，公共图库为 null（不限额度）
+     */
+    private Long spaceId;
+
+    /**
+     * 预留的图片数量（新增图片为 1，重新上传为 0）
+     */
+    private long count;
+
+    /**
+     * 预留的大小（字节），上传前无法得知大小时为 0
+     */
+    private long size;
+
+    /**
+     * 是否已确认或释放
+     */
+    private volatile boolean settled;
+}
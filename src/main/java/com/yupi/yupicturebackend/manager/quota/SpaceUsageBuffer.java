@@ -0,0 +1,32 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+/**
+ * 空间用量缓冲
+ * 删除图片、重新上传、异步处理等引起的空间用量变化先累加在缓冲中，定期批量写入空间表，
+ * 避免同一空间的并发写操作都去更新同一行；读取实时用量时需要加上缓冲中尚未写入的增量
+ */
+public interface SpaceUsageBuffer {
+
+    /**
+     * 累加空间用量
+     * 在事务中调用时，事务提交后才累加，事务回滚则丢弃
+     *
+     * @param spaceId    空间 id，为 null 时忽略
+     * @param sizeDelta  已用大小的增量（字节）
+     * @param countDelta 图片数量的增量
+     */
+    void add(Long spaceId, long sizeDelta, long countDelta);
+
+    /**
+     * 获取尚未写入空间表的增量
+     *
+     * @param spaceId 空间 id
+     * @return 增量，没有时各项为 0
+     */
+    SpaceUsageDelta getPending(Long spaceId);
+
+    /**
+     * 将缓冲中的增量写入空间表
+     */
+    void flush();
+}
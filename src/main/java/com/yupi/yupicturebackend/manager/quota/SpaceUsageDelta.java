@@ -0,0 +1,29 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 空间用量增量（尚未写入空间表的部分）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpaceUsageDelta {
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 已用大小的增量（字节）
+     */
+    private long sizeDelta;
+
+    /**
+     * 图片数量的增量
+     */
+    private long countDelta;
+}
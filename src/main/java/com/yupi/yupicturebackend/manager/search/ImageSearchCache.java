@@ -0,0 +1,192 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.api.imagesearch.ImageSearchApiFacade;
+import com.yupi.yupicturebackend.api.imagesearch.model.ImageSearchResult;
+import com.yupi.yupicturebackend.config.ImageSearchCacheConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.HttpClientManager;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * 以图搜图（百度）结果缓存
+ * 按图片地址的哈希缓存搜索结果，本地 Caffeine 为一级缓存，Redis 为二级缓存；
+ * 同一实例内相同图片的并发请求合并为一次外部调用；
+ * 结果过了新鲜期但未过期时直接返回旧结果，同时在后台刷新（多实例通过 Redis 锁保证只有一个实例刷新）
+ */
+@Slf4j
+@Component
+public class ImageSearchCache {
+
+    private static final String CACHE_KEY_PREFIX = "yupicture:imageSearch:";
+
+    private static final String REFRESH_LOCK_PREFIX = "yupicture:imageSearch:refresh:";
+
+    /**
+     * 等待外部调用结果的最长时间（秒），外部调用共三步，每步超时 5 秒
+     */
+    private static final int WAIT_TIMEOUT_SECONDS = 30;
+
+    @Resource
+    private ImageSearchCacheConfig imageSearchCacheConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private HttpClientManager httpClientManager;
+
+    /**
+     * 本地缓存，过期时间与 Redis 相同（新鲜期 + 可返回旧结果的时间）
+     */
+    private Cache<String, CachedResult> localCache;
+
+    /**
+     * 正在执行的外部调用，key 为缓存 key，用于合并并发请求
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<CachedResult>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(getExpireSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 以图搜图
+     *
+     * @param imageUrl 图片地址
+     * @return 搜索结果
+     */
+    public List<ImageSearchResult> searchImage(String imageUrl) {
+        String cacheKey = CACHE_KEY_PREFIX + DigestUtils.md5DigestAsHex(imageUrl.getBytes(StandardCharsets.UTF_8));
+        // 1. 查询本地缓存，未命中时查询 Redis
+        CachedResult cachedResult = localCache.getIfPresent(cacheKey);
+        if (cachedResult == null) {
+            String cachedValue = stringRedisTemplate.opsForValue().get(cacheKey);
+            if (cachedValue != null) {
+                cachedResult = JSONUtil.toBean(cachedValue, CachedResult.class);
+                localCache.put(cacheKey, cachedResult);
+            }
+        }
+        // 2. 命中且在新鲜期内，直接返回
+        if (cachedResult != null && cachedResult.getFreshUntil() > System.currentTimeMillis()) {
+            return cachedResult.getResultList();
+        }
+        // 3. 命中但已不新鲜，返回旧结果并在后台刷新
+        if (cachedResult != null) {
+            refreshAsync(cacheKey, imageUrl);
+            return cachedResult.getResultList();
+        }
+        // 4. 未命中，合并并发请求后等待外部调用结果
+        CompletableFuture<CachedResult> future = load(cacheKey, imageUrl);
+        try {
+            return future.get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS).getResultList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
+        } catch (TimeoutException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索超时");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException) {
+                throw (BusinessException) e.getCause();
+            }
+            log.error("以图搜图失败, imageUrl = {}", imageUrl, e.getCause());
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "搜索失败");
+        }
+    }
+
+    /**
+     * 后台刷新，其他实例正在刷新时跳过
+     */
+    private void refreshAsync(String cacheKey, String imageUrl) {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(REFRESH_LOCK_PREFIX + cacheKey, "1",
+                WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        load(cacheKey, imageUrl).whenComplete((result, e) -> {
+            if (e != null) {
+                log.warn("以图搜图缓存刷新失败, 继续使用旧结果, imageUrl = {}", imageUrl, e);
+            }
+        });
+    }
+
+    /**
+     * 执行外部调用并写入缓存，同一个 key 同时只有一个调用
+     */
+    private CompletableFuture<CachedResult> load(String cacheKey, String imageUrl) {
+        CompletableFuture<CachedResult> future = new CompletableFuture<>();
+        CompletableFuture<CachedResult> existing = inFlight.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            return existing;
+        }
+        // 外部调用是异步的，等待响应期间不占用线程
+        CompletableFuture<List<ImageSearchResult>> searchFuture;
+        try {
+            searchFuture = ImageSearchApiFacade.searchImage(httpClientManager, imageUrl);
+        } catch (Exception e) {
+            inFlight.remove(cacheKey, future);
+            future.completeExceptionally(e);
+            return future;
+        }
+        searchFuture.whenComplete((resultList, e) -> {
+            try {
+                if (e != null) {
+                    future.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+                    return;
+                }
+                CachedResult cachedResult = new CachedResult();
+                cachedResult.setResultList(resultList);
+                cachedResult.setFreshUntil(System.currentTimeMillis()
+                        + imageSearchCacheConfig.getFreshSeconds() * 1000L);
+                localCache.put(cacheKey, cachedResult);
+                stringRedisTemplate.opsForValue().set(cacheKey, JSONUtil.toJsonStr(cachedResult),
+                        getExpireSeconds(), TimeUnit.SECONDS);
+                future.complete(cachedResult);
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            } finally {
+                inFlight.remove(cacheKey, future);
+            }
+        });
+        return future;
+    }
+
+    private long getExpireSeconds() {
+        return (long) imageSearchCacheConfig.getFreshSeconds()
+                + imageSearchCacheConfig.getStaleSeconds();
+    }
+
+    /**
+     * 缓存的搜索结果
+     */
+    @Data
+    public static class CachedResult {
+
+        /**
+         * 搜索结果
+         */
+        private List<ImageSearchResult> resultList;
+
+        /**
+         * 新鲜期截止时间（毫秒时间戳），之后返回旧结果并在后台刷新
+         */
+        private long freshUntil;
+    }
+}
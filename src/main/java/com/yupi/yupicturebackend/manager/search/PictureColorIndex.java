@@ -0,0 +1,552 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.qcloud.cos.model.COSObject;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.image.JvmImageProcessor;
+import com.yupi.yupicturebackend.manager.process.PictureProcessedEvent;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.enums.PictureProcessStatusEnum;
+import com.yupi.yupicturebackend.utils.ColorPaletteUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 空间图片主色板索引
+ * 每个空间的图片主色板（最多 5 个颜色及占比）量化后保存在基本类型数组中，首次按颜色搜索时从数据库加载，
+ * 之后随图片上传、处理完成、删除增量更新。本地处理引擎在处理时直接提取主色板；数据万象处理的图片由本类在后台下载缩略图提取
+ * 并回写数据库，加载索引时也会为缺少主色板的历史图片补算，补算完成前使用主色调作为唯一颜色。
+ * 颜色距离使用 CIELAB 空间的 ΔE（CIE76），所有量化颜色的 Lab 值预先计算，查询时为每个目标颜色生成一张距离表，
+ * 打分时只需查表，不需要解析颜色字符串和全量排序，用大小为 k 的堆选出得分最低的图片。
+ * 索引只在当前实例内增量更新，其他实例的修改在索引过期重建后可见
+ */
+@Slf4j
+@Component
+public class PictureColorIndex {
+
+    /**
+     * 量化时每个颜色通道保留的位数，4 位即 16 x 16 x 16 个颜色，每张距离表只有 16 KB，打分时可以留在 L1 缓存中
+     */
+    private static final int QUANT_BITS = 4;
+
+    private static final int QUANT_COLORS = 1 << (QUANT_BITS * 3);
+
+    /**
+     * 空条目（主色板不足 5 个颜色时补齐），对应距离表的最后一项
+     */
+    private static final int EMPTY_COLOR = QUANT_COLORS;
+
+    /**
+     * 空条目的距离，远大于任意两个颜色的 ΔE
+     */
+    private static final float EMPTY_DISTANCE = 1000f;
+
+    /**
+     * 每张图片的索引条目数，与主色板最多保存的颜色数一致
+     */
+    private static final int STRIDE = 5;
+
+    /**
+     * 所有量化颜色（取区间中心）的 Lab 值，依次为 L、a、b
+     */
+    private static final float[] LAB_TABLE = new float[QUANT_COLORS * 3];
+
+    /**
+     * 占比系数表：占比 0 ~ 255 对应系数 1.5 ~ 0.5，占比越高的颜色匹配时距离打折越多
+     */
+    private static final float[] WEIGHT_FACTORS = new float[256];
+
+    /**
+     * 加载索引时最多补算主色板的图片数
+     */
+    private static final int BACKFILL_LIMIT = 1000;
+
+    static {
+        int shift = 8 - QUANT_BITS;
+        int half = 1 << (shift - 1);
+        int mask = (1 << QUANT_BITS) - 1;
+        for (int color = 0; color < QUANT_COLORS; color++) {
+            int r = (color >> (QUANT_BITS * 2) & mask) << shift | half;
+            int g = (color >> QUANT_BITS & mask) << shift | half;
+            int b = (color & mask) << shift | half;
+            System.arraycopy(rgbToLab(r, g, b), 0, LAB_TABLE, color * 3, 3);
+        }
+        for (int weight = 0; weight < 256; weight++) {
+            WEIGHT_FACTORS[weight] = 1.5f - weight / 255f;
+        }
+    }
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private CosClientConfig cosClientConfig;
+
+    /**
+     * 空间 id => 颜色索引
+     */
+    private final Cache<Long, SpaceColorIndex> spaceIndexCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(30, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 提取主色板的线程池，队列满时丢弃，下次加载索引时补算
+     */
+    private ThreadPoolExecutor paletteExecutor;
+
+    @PostConstruct
+    public void init() {
+        paletteExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(BACKFILL_LIMIT),
+                ThreadFactoryBuilder.create().setNamePrefix("picture-palette-").build(),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        paletteExecutor.shutdownNow();
+    }
+
+    /**
+     * 查询与目标颜色最接近的图片
+     * 图片得分 = Σ 目标颜色权重 × min(ΔE(目标颜色, 主色板颜色) × 占比系数)，占比越高的颜色系数越小，得分越低越相似
+     *
+     * @param spaceId 空间 id
+     * @param rgbs    目标颜色（packed RGB）
+     * @param weights 目标颜色的权重，与 rgbs 一一对应
+     * @param topK    返回数量
+     * @return 图片 id 列表，按得分从低到高排列
+     */
+    public List<Long> search(long spaceId, int[] rgbs, float[] weights, int topK) {
+        float[][] distanceTables = new float[rgbs.length][];
+        for (int i = 0; i < rgbs.length; i++) {
+            distanceTables[i] = buildDistanceTable(rgbs[i]);
+        }
+        return spaceIndexCache.get(spaceId, this::loadSpaceIndex).search(distanceTables, weights, topK);
+    }
+
+    /**
+     * 图片保存后更新索引：处理完成但没有主色板时（数据万象处理）在后台提取，处理中的图片等处理完成事件
+     */
+    public void onPictureSaved(Picture picture) {
+        if (picture.getSpaceId() == null) {
+            return;
+        }
+        put(picture.getSpaceId(), picture.getId(), picture.getPicColor(), picture.getPicPalette());
+        if (StrUtil.isBlank(picture.getPicPalette())
+                && Objects.equals(picture.getProcessStatus(), PictureProcessStatusEnum.DONE.getValue())) {
+            submitCompute(picture.getId());
+        }
+    }
+
+    /**
+     * 新增或更新图片颜色，空间索引尚未加载时忽略（加载时会从数据库读取）
+     *
+     * @param spaceId    空间 id，公共图库为 null
+     * @param pictureId  图片 id
+     * @param picColor   图片主色调
+     * @param picPalette 图片主色板，为空时使用主色调；两者都为空时从索引中移除
+     */
+    public void put(Long spaceId, Long pictureId, String picColor, String picPalette) {
+        if (spaceId == null) {
+            return;
+        }
+        SpaceColorIndex spaceIndex = spaceIndexCache.getIfPresent(spaceId);
+        if (spaceIndex == null) {
+            return;
+        }
+        int[] entries = toEntries(picColor, picPalette);
+        if (entries == null) {
+            spaceIndex.remove(pictureId);
+        } else {
+            spaceIndex.put(pictureId, entries);
+        }
+    }
+
+    /**
+     * 从索引中移除图片
+     *
+     * @param spaceId   空间 id，公共图库为 null
+     * @param pictureId 图片 id
+     */
+    public void remove(Long spaceId, Long pictureId) {
+        if (spaceId == null) {
+            return;
+        }
+        SpaceColorIndex spaceIndex = spaceIndexCache.getIfPresent(spaceId);
+        if (spaceIndex != null) {
+            spaceIndex.remove(pictureId);
+        }
+    }
+
+    /**
+     * 异步处理完成后主色调、主色板才写入数据库（数据万象处理时需要补算主色板），此时更新索引
+     */
+    @EventListener
+    public void onPictureProcessed(PictureProcessedEvent event) {
+        if (event.getSpaceId() == null) {
+            return;
+        }
+        submitCompute(event.getPictureId());
+    }
+
+    private void submitCompute(Long pictureId) {
+        paletteExecutor.execute(() -> {
+            try {
+                computePalette(pictureId);
+            } catch (Exception e) {
+                log.warn("提取图片主色板失败, pictureId = {}", pictureId, e);
+            }
+        });
+    }
+
+    /**
+     * 补算图片主色板：下载缩略图（没有缩略图时下载原图）解码后提取，回写数据库并更新索引
+     */
+    private void computePalette(Long pictureId) throws Exception {
+        Picture picture = pictureMapper.selectById(pictureId);
+        if (picture == null || picture.getSpaceId() == null) {
+            return;
+        }
+        String picPalette = picture.getPicPalette();
+        if (StrUtil.isBlank(picPalette)
+                && Objects.equals(picture.getProcessStatus(), PictureProcessStatusEnum.DONE.getValue())) {
+            String sourceUrl = StrUtil.blankToDefault(picture.getThumbnailUrl(), picture.getUrl());
+            String key = StrUtil.removePrefix(sourceUrl, cosClientConfig.getHost() + "/");
+            BufferedImage image;
+            try (COSObject cosObject = cosManager.getObject(key);
+                 InputStream inputStream = cosObject.getObjectContent()) {
+                image = ImageIO.read(inputStream);
+            }
+            // ImageIO 不支持 webp，这类图片继续使用主色调
+            if (image != null) {
+                int width = image.getWidth();
+                int height = image.getHeight();
+                int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+                int[] palette = JvmImageProcessor.getPalette(pixels, image.getColorModel().hasAlpha(),
+                        ColorPaletteUtils.MAX_COLORS);
+                if (palette.length > 0) {
+                    int[] rgbs = new int[palette.length];
+                    int[] weights = new int[palette.length];
+                    for (int i = 0; i < palette.length; i++) {
+                        rgbs[i] = palette[i] & 0xFFFFFF;
+                        weights[i] = palette[i] >>> 24;
+                    }
+                    picPalette = ColorPaletteUtils.encode(rgbs, weights, palette.length);
+                    // 计算期间图片被重新上传时不覆盖
+                    int rows = pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                            .eq(Picture::getId, pictureId)
+                            .eq(Picture::getUrl, picture.getUrl())
+                            .isNull(Picture::getPicPalette)
+                            .set(Picture::getPicPalette, picPalette));
+                    if (rows == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+        put(picture.getSpaceId(), pictureId, picture.getPicColor(), picPalette);
+    }
+
+    /**
+     * 解析颜色字符串（如 0xFF0000、#FF0000）为 packed RGB
+     *
+     * @return 解析失败时返回 null
+     */
+    public static Integer parseColor(String picColor) {
+        if (StrUtil.isBlank(picColor)) {
+            return null;
+        }
+        try {
+            return Integer.decode(picColor.trim()) & 0xFFFFFF;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private SpaceColorIndex loadSpaceIndex(Long spaceId) {
+        List<Picture> pictureList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getPicColor, Picture::getPicPalette)
+                .eq(Picture::getSpaceId, spaceId)
+                .isNotNull(Picture::getPicColor));
+        SpaceColorIndex spaceIndex = new SpaceColorIndex(pictureList.size());
+        for (Picture picture : pictureList) {
+            int[] entries = toEntries(picture.getPicColor(), picture.getPicPalette());
+            if (entries != null) {
+                spaceIndex.put(picture.getId(), entries);
+            }
+        }
+        // 为缺少主色板的历史图片补算
+        List<Picture> missingList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId)
+                .eq(Picture::getSpaceId, spaceId)
+                .isNull(Picture::getPicPalette)
+                .eq(Picture::getProcessStatus, PictureProcessStatusEnum.DONE.getValue())
+                .last("limit " + BACKFILL_LIMIT));
+        missingList.forEach(picture -> submitCompute(picture.getId()));
+        return spaceIndex;
+    }
+
+    /**
+     * 把主色板转换为索引条目：每个条目为 占比 << 16 | 量化颜色，不足 5 个时用空条目补齐
+     *
+     * @return 没有可用颜色时返回 null
+     */
+    private static int[] toEntries(String picColor, String picPalette) {
+        int[] palette = ColorPaletteUtils.decode(picPalette);
+        if (palette.length == 0) {
+            Integer rgb = parseColor(picColor);
+            if (rgb == null) {
+                return null;
+            }
+            palette = new int[]{255 << 24 | rgb};
+        }
+        int[] entries = new int[STRIDE];
+        Arrays.fill(entries, EMPTY_COLOR);
+        for (int i = 0; i < palette.length; i++) {
+            entries[i] = (palette[i] >>> 24) << 16 | quantize(palette[i]);
+        }
+        return entries;
+    }
+
+    /**
+     * 量化颜色：每个通道保留高 QUANT_BITS 位
+     */
+    private static int quantize(int rgb) {
+        int shift = 8 - QUANT_BITS;
+        return ((rgb >> 16) & 0xFF) >> shift << (QUANT_BITS * 2) | ((rgb >> 8) & 0xFF) >> shift << QUANT_BITS
+                | (rgb & 0xFF) >> shift;
+    }
+
+    /**
+     * 生成目标颜色到所有量化颜色的 ΔE 距离表，最后一项对应空条目
+     */
+    private static float[] buildDistanceTable(int rgb) {
+        float[] lab = rgbToLab((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+        float[] distanceTable = new float[QUANT_COLORS + 1];
+        for (int color = 0; color < QUANT_COLORS; color++) {
+            float dl = LAB_TABLE[color * 3] - lab[0];
+            float da = LAB_TABLE[color * 3 + 1] - lab[1];
+            float db = LAB_TABLE[color * 3 + 2] - lab[2];
+            distanceTable[color] = (float) Math.sqrt(dl * dl + da * da + db * db);
+        }
+        distanceTable[EMPTY_COLOR] = EMPTY_DISTANCE;
+        return distanceTable;
+    }
+
+    /**
+     * sRGB 转 CIELAB（D65 白点）
+     */
+    private static float[] rgbToLab(int red, int green, int blue) {
+        double r = linearize(red);
+        double g = linearize(green);
+        double b = linearize(blue);
+        double x = labF((r * 0.4124564 + g * 0.3575761 + b * 0.1804375) / 0.95047);
+        double y = labF(r * 0.2126729 + g * 0.7151522 + b * 0.0721750);
+        double z = labF((r * 0.0193339 + g * 0.1191920 + b * 0.9503041) / 1.08883);
+        return new float[]{(float) (116 * y - 16), (float) (500 * (x - y)), (float) (200 * (y - z))};
+    }
+
+    private static double linearize(int channel) {
+        double c = channel / 255.0;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    private static double labF(double t) {
+        return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+    }
+
+    /**
+     * 单个空间的颜色索引，图片 id、主色板颜色和占比系数保存在并行的基本类型数组中（每张图片 STRIDE 个条目），
+     * 删除时用最后一张图片填补空位
+     */
+    static class SpaceColorIndex {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * 图片 id => 数组下标
+         */
+        private final Map<Long, Integer> slots;
+
+        private long[] ids;
+
+        /**
+         * 主色板的量化颜色
+         */
+        private short[] colors;
+
+        /**
+         * 主色板颜色的占比系数
+         */
+        private float[] factors;
+
+        private int size;
+
+        SpaceColorIndex(int capacity) {
+            capacity = Math.max(16, capacity);
+            slots = new HashMap<>(capacity * 4 / 3 + 1);
+            ids = new long[capacity];
+            colors = new short[capacity * STRIDE];
+            factors = new float[capacity * STRIDE];
+        }
+
+        void put(long pictureId, int[] pictureEntries) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = slots.get(pictureId);
+                if (slot == null) {
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size * 2);
+                        colors = Arrays.copyOf(colors, size * 2 * STRIDE);
+                        factors = Arrays.copyOf(factors, size * 2 * STRIDE);
+                    }
+                    slot = size++;
+                    ids[slot] = pictureId;
+                    slots.put(pictureId, slot);
+                }
+                for (int i = 0; i < STRIDE; i++) {
+                    colors[slot * STRIDE + i] = (short) (pictureEntries[i] & 0xFFFF);
+                    factors[slot * STRIDE + i] = WEIGHT_FACTORS[pictureEntries[i] >>> 16];
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long pictureId) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = slots.remove(pictureId);
+                if (slot == null) {
+                    return;
+                }
+                int last = --size;
+                if (slot != last) {
+                    ids[slot] = ids[last];
+                    System.arraycopy(colors, last * STRIDE, colors, slot * STRIDE, STRIDE);
+                    System.arraycopy(factors, last * STRIDE, factors, slot * STRIDE, STRIDE);
+                    slots.put(ids[slot], slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * 逐个图片查表打分，用大根堆保留得分最低的 k 张图片
+         * 每张图片固定 STRIDE（5）个条目，展开计算最小值，避免内层循环和分支
+         */
+        List<Long> search(float[][] distanceTables, float[] weights, int topK) {
+            long[] heapIds;
+            float[] heapScores;
+            int heapSize = 0;
+            lock.readLock().lock();
+            try {
+                int k = Math.min(topK, size);
+                if (k == 0) {
+                    return Collections.emptyList();
+                }
+                heapIds = new long[k];
+                heapScores = new float[k];
+                short[] colors = this.colors;
+                float[] factors = this.factors;
+                for (int i = 0; i < size; i++) {
+                    int b = i * STRIDE;
+                    float score = 0;
+                    for (int j = 0; j < distanceTables.length; j++) {
+                        float[] table = distanceTables[j];
+                        float min = Math.min(
+                                Math.min(table[colors[b]] * factors[b], table[colors[b + 1]] * factors[b + 1]),
+                                Math.min(table[colors[b + 2]] * factors[b + 2], table[colors[b + 3]] * factors[b + 3]));
+                        score += weights[j] * Math.min(min, table[colors[b + 4]] * factors[b + 4]);
+                    }
+                    if (heapSize < k) {
+                        heapIds[heapSize] = ids[i];
+                        heapScores[heapSize] = score;
+                        siftUp(heapIds, heapScores, heapSize++);
+                    } else if (score < heapScores[0]) {
+                        heapIds[0] = ids[i];
+                        heapScores[0] = score;
+                        siftDown(heapIds, heapScores, heapSize);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            // 依次弹出堆顶（得分最高），倒序填充结果
+            Long[] result = new Long[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                result[i] = heapIds[0];
+                heapIds[0] = heapIds[i];
+                heapScores[0] = heapScores[i];
+                siftDown(heapIds, heapScores, i);
+            }
+            return Arrays.asList(result);
+        }
+
+        private static void siftUp(long[] heapIds, float[] heapScores, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heapScores[parent] >= heapScores[index]) {
+                    return;
+                }
+                swap(heapIds, heapScores, parent, index);
+                index = parent;
+            }
+        }
+
+        private static void siftDown(long[] heapIds, float[] heapScores, int heapSize) {
+            int index = 0;
+            while (true) {
+                int largest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < heapSize && heapScores[left] > heapScores[largest]) {
+                    largest = left;
+                }
+                if (right < heapSize && heapScores[right] > heapScores[largest]) {
+                    largest = right;
+                }
+                if (largest == index) {
+                    return;
+                }
+                swap(heapIds, heapScores, largest, index);
+                index = largest;
+            }
+        }
+
+        private static void swap(long[] heapIds, float[] heapScores, int i, int j) {
+            long id = heapIds[i];
+            heapIds[i] = heapIds[j];
+            heapIds[j] = id;
+            float score = heapScores[i];
+            heapScores[i] = heapScores[j];
+            heapScores[j] = score;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.qcloud.cos.model.COSObject;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.image.JvmImageProcessor;
+import com.yupi.yupicturebackend.manager.process.PictureProcessedEvent;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.enums.PictureProcessStatusEnum;
+import com.yupi.yupicturebackend.model.enums.PictureReviewStatusEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 图片感知哈希索引（相似图片搜索）
+ * 每个空间、以及公共图库（只包含审核通过的图片）各有一棵 BK 树，按感知哈希的汉明距离查询最相似的图片；
+ * 首次搜索时从数据库加载，之后随图片上传、处理完成、审核、编辑、删除增量更新。
+ * 本地处理引擎在处理时直接计算哈希；数据万象处理的图片由本类在后台下载缩略图计算哈希并回写数据库，
+ * 加载索引时也会为缺少哈希的历史图片补算。
+ * 索引只在当前实例内增量更新，其他实例的修改在索引过期重建后可见
+ */
+@Slf4j
+@Component
+public class PictureHashIndex {
+
+    /**
+     * 公共图库在缓存中的 key
+     */
+    private static final long PUBLIC_KEY = 0L;
+
+    /**
+     * 加载索引时最多补算哈希的图片数
+     */
+    private static final int BACKFILL_LIMIT = 1000;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private CosClientConfig cosClientConfig;
+
+    /**
+     * 空间 id（公共图库为 0） => BK 树
+     */
+    private final Cache<Long, BkTree> treeCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(30, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 计算哈希的线程池，队列满时丢弃，下次加载索引时补算
+     */
+    private ThreadPoolExecutor hashExecutor;
+
+    @PostConstruct
+    public void init() {
+        hashExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(BACKFILL_LIMIT),
+                ThreadFactoryBuilder.create().setNamePrefix("picture-hash-").build(),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hashExecutor.shutdownNow();
+    }
+
+    /**
+     * 查询与指定哈希最相似的图片
+     *
+     * @param spaceId     空间 id，公共图库为 null
+     * @param hash        感知哈希
+     * @param excludeId   排除的图片 id（通常是源图片自身）
+     * @param maxDistance 最大汉明距离
+     * @param topK        返回数量
+     * @return 图片 id 列表，按汉明距离从近到远排列
+     */
+    public List<Long> search(Long spaceId, long hash, long excludeId, int maxDistance, int topK) {
+        return treeCache.get(getKey(spaceId), this::loadTree).search(hash, excludeId, maxDistance, topK);
+    }
+
+    /**
+     * 图片保存后更新索引：已有哈希时直接加入，处理完成但没有哈希时在后台计算，处理中的图片等处理完成事件
+     */
+    public void onPictureSaved(Picture picture) {
+        if (picture.getPicHash() != null) {
+            put(picture.getSpaceId(), picture.getId(), picture.getPicHash(), picture.getReviewStatus());
+        } else if (Objects.equals(picture.getProcessStatus(), PictureProcessStatusEnum.DONE.getValue())) {
+            submitCompute(picture.getId());
+        }
+    }
+
+    /**
+     * 新增或更新图片哈希，索引尚未加载时忽略（加载时会从数据库读取）
+     *
+     * @param spaceId      空间 id，公共图库为 null
+     * @param pictureId    图片 id
+     * @param picHash      感知哈希，为空时从索引中移除
+     * @param reviewStatus 审核状态，公共图库只保留审核通过的图片
+     */
+    public void put(Long spaceId, Long pictureId, Long picHash, Integer reviewStatus) {
+        BkTree tree = treeCache.getIfPresent(getKey(spaceId));
+        if (tree == null) {
+            return;
+        }
+        boolean visible = spaceId != null
+                || (reviewStatus != null && reviewStatus == PictureReviewStatusEnum.PASS.getValue());
+        if (picHash == null || !visible) {
+            tree.remove(pictureId);
+        } else {
+            tree.put(pictureId, picHash);
+        }
+    }
+
+    /**
+     * 从索引中移除图片
+     *
+     * @param spaceId   空间 id，公共图库为 null
+     * @param pictureId 图片 id
+     */
+    public void remove(Long spaceId, Long pictureId) {
+        BkTree tree = treeCache.getIfPresent(getKey(spaceId));
+        if (tree != null) {
+            tree.remove(pictureId);
+        }
+    }
+
+    /**
+     * 异步处理完成后哈希才写入数据库（数据万象处理时需要补算），此时更新索引
+     */
+    @EventListener
+    public void onPictureProcessed(PictureProcessedEvent event) {
+        submitCompute(event.getPictureId());
+    }
+
+    private void submitCompute(Long pictureId) {
+        hashExecutor.execute(() -> {
+            try {
+                computeHash(pictureId);
+            } catch (Exception e) {
+                log.warn("计算图片感知哈希失败, pictureId = {}", pictureId, e);
+            }
+        });
+    }
+
+    /**
+     * 补算图片哈希：下载缩略图（没有缩略图时下载原图）解码后计算，回写数据库并加入索引
+     */
+    private void computeHash(Long pictureId) throws Exception {
+        Picture picture = pictureMapper.selectById(pictureId);
+        if (picture == null || !Objects.equals(picture.getProcessStatus(), PictureProcessStatusEnum.DONE.getValue())) {
+            return;
+        }
+        Long picHash = picture.getPicHash();
+        if (picHash == null) {
+            String sourceUrl = StrUtil.blankToDefault(picture.getThumbnailUrl(), picture.getUrl());
+            String key = StrUtil.removePrefix(sourceUrl, cosClientConfig.getHost() + "/");
+            BufferedImage image;
+            try (COSObject cosObject = cosManager.getObject(key);
+                 InputStream inputStream = cosObject.getObjectContent()) {
+                image = ImageIO.read(inputStream);
+            }
+            // ImageIO 不支持 webp，这类图片不参与相似图片搜索
+            if (image == null) {
+                return;
+            }
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+            picHash = JvmImageProcessor.getPerceptualHash(pixels, width, height);
+            // 计算期间图片被重新上传时不覆盖
+            int rows = pictureMapper.update(null, new LambdaUpdateWrapper<Picture>()
+                    .eq(Picture::getId, pictureId)
+                    .eq(Picture::getUrl, picture.getUrl())
+                    .isNull(Picture::getPicHash)
+                    .set(Picture::getPicHash, picHash));
+            if (rows == 0) {
+                return;
+            }
+        }
+        put(picture.getSpaceId(), pictureId, picHash, picture.getReviewStatus());
+    }
+
+    private BkTree loadTree(Long key) {
+        boolean isPublic = key == PUBLIC_KEY;
+        LambdaQueryWrapper<Picture> queryWrapper = new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId, Picture::getPicHash)
+                .isNotNull(Picture::getPicHash);
+        if (isPublic) {
+            queryWrapper.isNull(Picture::getSpaceId)
+                    .eq(Picture::getReviewStatus, PictureReviewStatusEnum.PASS.getValue());
+        } else {
+            queryWrapper.eq(Picture::getSpaceId, key);
+        }
+        BkTree tree = new BkTree();
+        for (Picture picture : pictureMapper.selectList(queryWrapper)) {
+            tree.put(picture.getId(), picture.getPicHash());
+        }
+        // 为缺少哈希的历史图片补算
+        List<Picture> missingList = pictureMapper.selectList(new LambdaQueryWrapper<Picture>()
+                .select(Picture::getId)
+                .isNull(Picture::getPicHash)
+                .eq(Picture::getProcessStatus, PictureProcessStatusEnum.DONE.getValue())
+                .isNull(isPublic, Picture::getSpaceId)
+                .eq(!isPublic, Picture::getSpaceId, key)
+                .last("limit " + BACKFILL_LIMIT));
+        missingList.forEach(picture -> submitCompute(picture.getId()));
+        return tree;
+    }
+
+    private static long getKey(Long spaceId) {
+        return spaceId == null ? PUBLIC_KEY : spaceId;
+    }
+
+    /**
+     * BK 树：每个节点的子节点按与该节点的汉明距离区分，查询半径为 r 时只需访问距离在 [d - r, d + r] 内的子节点。
+     * 哈希相同的图片共用一个节点；删除图片时节点保留用于路由，索引过期重建时清理
+     */
+    static class BkTree {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * 图片 id => 哈希，删除和更新时定位节点
+         */
+        private final Map<Long, Long> hashes = new HashMap<>();
+
+        private Node root;
+
+        void put(long pictureId, long hash) {
+            lock.writeLock().lock();
+            try {
+                Long oldHash = hashes.put(pictureId, hash);
+                if (oldHash != null) {
+                    if (oldHash == hash) {
+                        return;
+                    }
+                    findNode(oldHash).removeId(pictureId);
+                }
+                if (root == null) {
+                    root = new Node(hash);
+                    root.addId(pictureId);
+                    return;
+                }
+                Node node = root;
+                while (true) {
+                    int distance = Long.bitCount(node.hash ^ hash);
+                    if (distance == 0) {
+                        node.addId(pictureId);
+                        return;
+                    }
+                    Node child = node.getChild(distance);
+                    if (child == null) {
+                        child = new Node(hash);
+                        child.addId(pictureId);
+                        node.addChild(distance, child);
+                        return;
+                    }
+                    node = child;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long pictureId) {
+            lock.writeLock().lock();
+            try {
+                Long hash = hashes.remove(pictureId);
+                if (hash != null) {
+                    findNode(hash).removeId(pictureId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * 查询最近的 k 个图片，结果满 k 个后以第 k 近的距离作为新的查询半径，进一步剪枝
+         */
+        List<Long> search(long hash, long excludeId, int maxDistance, int topK) {
+            // 大根堆：[距离, 图片 id]
+            PriorityQueue<long[]> heap = new PriorityQueue<>(topK + 1,
+                    (a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(b[1], a[1]));
+            lock.readLock().lock();
+            try {
+                if (root == null) {
+                    return Collections.emptyList();
+                }
+                int radius = maxDistance;
+                Deque<Node> stack = new ArrayDeque<>();
+                stack.push(root);
+                while (!stack.isEmpty()) {
+                    Node node = stack.pop();
+                    int distance = Long.bitCount(node.hash ^ hash);
+                    if (distance <= radius) {
+                        for (int i = 0; i < node.idCount; i++) {
+                            if (node.ids[i] == excludeId) {
+                                continue;
+                            }
+                            heap.offer(new long[]{distance, node.ids[i]});
+                            if (heap.size() > topK) {
+                                heap.poll();
+                            }
+                        }
+                        if (heap.size() == topK) {
+                            radius = (int) Math.min(radius, heap.peek()[0]);
+                        }
+                    }
+                    for (int i = 0; i < node.childCount; i++) {
+                        int childDistance = node.childDistances[i];
+                        if (childDistance >= distance - radius && childDistance <= distance + radius) {
+                            stack.push(node.children[i]);
+                        }
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            Long[] result = new Long[heap.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = heap.poll()[1];
+            }
+            return Arrays.asList(result);
+        }
+
+        private Node findNode(long hash) {
+            Node node = root;
+            while (true) {
+                int distance = Long.bitCount(node.hash ^ hash);
+                if (distance == 0) {
+                    return node;
+                }
+                node = node.getChild(distance);
+            }
+        }
+    }
+
+    /**
+     * BK 树节点，子节点和图片 id 都用数组保存，节省内存
+     */
+    static class Node {
+
+        private final long hash;
+
+        private long[] ids = new long[1];
+
+        private int idCount;
+
+        private byte[] childDistances = new byte[0];
+
+        private Node[] children = new Node[0];
+
+        private int childCount;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+
+        void addId(long pictureId) {
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, idCount * 2);
+            }
+            ids[idCount++] = pictureId;
+        }
+
+        void removeId(long pictureId) {
+            for (int i = 0; i < idCount; i++) {
+                if (ids[i] == pictureId) {
+                    ids[i] = ids[--idCount];
+                    return;
+                }
+            }
+        }
+
+        Node getChild(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (childDistances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            if (childCount == children.length) {
+                int capacity = Math.max(4, childCount * 2);
+                childDistances = Arrays.copyOf(childDistances, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            childDistances[childCount] = (byte) distance;
+            children[childCount++] = child;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.qcloud.cos.model.CompleteMultipartUploadResult;
+import com.qcloud.cos.model.PartETag;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.utils.ImageFormatUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片上传图片
+ * 分片进度保存在 Redis 中；分片在请求线程内流式上传到对象存储，上传成功后才返回，同时上传的分片数有上限（背压）。
+ * 未完成的上传记录在 Redis 有序集合中（分数为过期时间），会话过期后由定时任务取消对象存储中的分片上传，清理已上传的分片
+ */
+@Slf4j
+@Service
+public class ChunkPictureUpload {
+
+    /**
+     * 分片上传会话的 Redis key
+     */
+    private static final String SESSION_KEY = "yupicture:chunkUpload:%s";
+
+    /**
+     * 会话信息在 Hash 中的字段
+     */
+    private static final String SESSION_FIELD = "session";
+
+    /**
+     * 分片 ETag 在 Hash 中的字段前缀
+     */
+    private static final String PART_FIELD_PREFIX = "part:";
+
+    /**
+     * 未完成的分片上传，分片上传 id => 过期时间（毫秒时间戳）
+     */
+    private static final String ACTIVE_UPLOAD_KEY = "yupicture:chunkUpload:active";
+
+    /**
+     * 未完成的分片上传的上传路径，分片上传 id => 上传路径（会话过期后取消上传时使用）
+     */
+    private static final String ACTIVE_UPLOAD_PATH_KEY = "yupicture:chunkUpload:activePath";
+
+    /**
+     * 每轮最多清理的过期上传数
+     */
+    private static final int ABORT_BATCH_SIZE = 100;
+
+    /**
+     * 等待上传许可的最长时间（秒），超时后提示客户端稍后重传
+     */
+    private static final long PERMIT_TIMEOUT_SECONDS = 30L;
+
+    @Resource
+    private CosClientConfig cosClientConfig;
+
+    @Resource
+    private CosManager cosManager;
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 上传许可，限制同时上传到对象存储的分片数
+     */
+    private Semaphore partUploadPermits;
+
+    @PostConstruct
+    public void init() {
+        partUploadPermits = new Semaphore(pictureUploadConfig.getChunkUploadConcurrency());
+    }
+
+    /**
+     * 初始化分片上传
+     *
+     * @param session          会话信息（需要填充文件名、文件大小和上传用户等信息）
+     * @param uploadPathPrefix 上传文件的路径前缀
+     * @return 填充了分片上传 id 和分片信息的会话
+     */
+    public PictureChunkUploadSession initiate(PictureChunkUploadSession session, String uploadPathPrefix) {
+        // 1. 校验文件
+        String fileName = session.getFileName();
+        Long fileSize = session.getFileSize();
+        ThrowUtils.throwIf(StrUtil.isBlank(fileName), ErrorCode.PARAMS_ERROR, "文件名不能为空");
+        ThrowUtils.throwIf(fileSize == null || fileSize <= 0, ErrorCode.PARAMS_ERROR, "文件大小错误");
+        ThrowUtils.throwIf(fileSize > pictureUploadConfig.getChunkMaxFileSize(), ErrorCode.PARAMS_ERROR,
+                String.format("文件大小不能超过 %sM", pictureUploadConfig.getChunkMaxFileSize() / 1024 / 1024));
+        String fileSuffix = FileUtil.getSuffix(fileName);
+        final List<String> ALLOW_FORMAT_LIST = Arrays.asList("jpeg", "jpg", "png", "webp");
+        ThrowUtils.throwIf(!ALLOW_FORMAT_LIST.contains(fileSuffix), ErrorCode.PARAMS_ERROR, "文件类型错误");
+
+        // 2. 计算上传地址和分片信息
+        String uploadFilename = String.format("%s_%s.%s",
+                DateUtil.formatDate(new Date()), RandomUtil.randomString(16), fileSuffix);
+        String uploadPath = String.format("/%s/%s", uploadPathPrefix, uploadFilename);
+        long partSize = pictureUploadConfig.getChunkPartSize();
+        int partCount = (int) ((fileSize + partSize - 1) / partSize);
+
+        // 3. 在对象存储中初始化分片上传
+        String uploadId;
+        try {
+            uploadId = cosManager.initiateMultipartUpload(uploadPath);
+        } catch (Exception e) {
+            log.error("初始化分片上传失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        }
+        session.setUploadId(uploadId);
+        session.setUploadPath(uploadPath);
+        session.setPartSize(partSize);
+        session.setPartCount(partCount);
+
+        // 4. 保存会话
+        String sessionKey = getSessionKey(uploadId);
+        stringRedisTemplate.opsForHash().put(ACTIVE_UPLOAD_PATH_KEY, uploadId, uploadPath);
+        stringRedisTemplate.opsForHash().put(sessionKey, SESSION_FIELD, JSONUtil.toJsonStr(session));
+        touchSession(uploadId);
+        return session;
+    }
+
+    /**
+     * 获取分片上传会话
+     *
+     * @param uploadId 分片上传 id
+     * @return 会话，不存在或已过期返回 null
+     */
+    public PictureChunkUploadSession getSession(String uploadId) {
+        if (StrUtil.isBlank(uploadId)) {
+            return null;
+        }
+        Object sessionJson = stringRedisTemplate.opsForHash().get(getSessionKey(uploadId), SESSION_FIELD);
+        if (sessionJson == null) {
+            return null;
+        }
+        return JSONUtil.toBean(sessionJson.toString(), PictureChunkUploadSession.class);
+    }
+
+    /**
+     * 获取已上传成功的分片序号（升序）
+     */
+    public List<Integer> getUploadedPartNumbers(PictureChunkUploadSession session) {
+        List<Integer> partNumbers = new ArrayList<>(getUploadedParts(session).keySet());
+        Collections.sort(partNumbers);
+        return partNumbers;
+    }
+
+    /**
+     * 上传分片
+     * 分片内容在请求线程内流式写入对象存储，返回时分片已保存并记录进度；失败时抛出异常，客户端重传该分片即可
+     *
+     * @param session       分片上传会话
+     * @param partNumber    分片序号（从 1 开始）
+     * @param multipartFile 分片内容
+     */
+    public void uploadPart(PictureChunkUploadSession session, Integer partNumber, MultipartFile multipartFile) {
+        // 1. 校验分片
+        int partCount = session.getPartCount();
+        ThrowUtils.throwIf(partNumber == null || partNumber < 1 || partNumber > partCount,
+                ErrorCode.PARAMS_ERROR, "分片序号错误");
+        ThrowUtils.throwIf(multipartFile == null, ErrorCode.PARAMS_ERROR, "分片不能为空");
+        long partSize = session.getPartSize();
+        long expectedSize = partNumber < partCount ? partSize : session.getFileSize() - partSize * (partCount - 1);
+        ThrowUtils.throwIf(multipartFile.getSize() != expectedSize, ErrorCode.PARAMS_ERROR, "分片大小错误");
+
+        // 2. 获取上传许可
+        boolean acquired;
+        try {
+            acquired = partUploadPermits.tryAcquire(PERMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "上传被中断，请重传该分片");
+        }
+        ThrowUtils.throwIf(!acquired, ErrorCode.OPERATION_ERROR, "上传繁忙，请稍后重传该分片");
+
+        // 3. 流式上传分片
+        PartETag partETag;
+        try (InputStream inputStream = new BufferedInputStream(multipartFile.getInputStream())) {
+            // 第一个分片包含文件头，校验图片格式
+            if (partNumber == 1) {
+                ThrowUtils.throwIf(ImageFormatUtils.sniffFormat(inputStream) == null, ErrorCode.PARAMS_ERROR, "文件类型错误");
+            }
+            partETag = cosManager.uploadPart(session.getUploadPath(), session.getUploadId(), partNumber,
+                    inputStream, expectedSize);
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("分片上传失败, uploadId = {}, partNumber = {}", session.getUploadId(), partNumber, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "分片上传失败，请重传该分片");
+        } finally {
+            partUploadPermits.release();
+        }
+
+        // 4. 记录进度
+        stringRedisTemplate.opsForHash().put(getSessionKey(session.getUploadId()),
+                PART_FIELD_PREFIX + partNumber, partETag.getETag());
+        touchSession(session.getUploadId());
+    }
+
+    /**
+     * 合并分片并获取图片信息
+     *
+     * @param session 分片上传会话
+     * @return 上传图片后解析出的结果
+     */
+    public UploadPictureResult complete(PictureChunkUploadSession session) {
+        // 1. 校验所有分片都已上传
+        Map<Integer, String> uploadedParts = getUploadedParts(session);
+        List<PartETag> partETags = new ArrayList<>();
+        for (int partNumber = 1; partNumber <= session.getPartCount(); partNumber++) {
+            String eTag = uploadedParts.get(partNumber);
+            ThrowUtils.throwIf(eTag == null, ErrorCode.OPERATION_ERROR, "分片 " + partNumber + " 未上传完成");
+            partETags.add(new PartETag(partNumber, eTag));
+        }
+        // 2. 合并分片，同时生成压缩图和缩略图（异步处理时只合并原图）
+        try {
+            UploadPictureResult uploadPictureResult;
+            if (pictureUploadConfig.isAsyncProcess()) {
+                cosManager.completeMultipartUpload(session.getUploadPath(), session.getUploadId(), partETags);
+                uploadPictureResult = PictureUploadTemplate.buildProcessingResult(cosClientConfig.getHost(),
+                        session.getFileName(), session.getUploadPath(), session.getFileSize(), null);
+            } else {
+                CompleteMultipartUploadResult result = cosManager.completePictureMultipartUpload(session.getUploadPath(),
+                        session.getUploadId(), partETags, session.getFileSize());
+                uploadPictureResult = PictureUploadTemplate.parseResult(cosClientConfig.getHost(),
+                        session.getFileName(), session.getUploadPath(), session.getFileSize(), result.getCiUploadResult());
+            }
+            removeSession(session.getUploadId());
+            return uploadPictureResult;
+        } catch (Exception e) {
+            log.error("合并分片失败, uploadId = {}", session.getUploadId(), e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        }
+    }
+
+    /**
+     * 取消分片上传
+     *
+     * @param session 分片上传会话
+     */
+    public void abort(PictureChunkUploadSession session) {
+        try {
+            cosManager.abortMultipartUpload(session.getUploadPath(), session.getUploadId());
+        } catch (Exception e) {
+            log.error("取消分片上传失败, uploadId = {}", session.getUploadId(), e);
+        }
+        removeSession(session.getUploadId());
+    }
+
+    /**
+     * 取消会话已过期的分片上传，清理对象存储中已上传的分片
+     * 多实例同时执行时，从有序集合中移除成功的实例负责取消
+     */
+    @Scheduled(initialDelay = 60_000L, fixedDelay = 600_000L)
+    public void abortExpiredUploads() {
+        Set<String> uploadIds;
+        try {
+            uploadIds = stringRedisTemplate.opsForZSet().rangeByScore(ACTIVE_UPLOAD_KEY, 0,
+                    System.currentTimeMillis(), 0, ABORT_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("查询过期的分片上传失败", e);
+            return;
+        }
+        if (uploadIds == null) {
+            return;
+        }
+        for (String uploadId : uploadIds) {
+            Long removed = stringRedisTemplate.opsForZSet().remove(ACTIVE_UPLOAD_KEY, uploadId);
+            if (removed == null || removed == 0) {
+                continue;
+            }
+            Object uploadPath = stringRedisTemplate.opsForHash().get(ACTIVE_UPLOAD_PATH_KEY, uploadId);
+            if (uploadPath != null) {
+                try {
+                    cosManager.abortMultipartUpload(uploadPath.toString(), uploadId);
+                } catch (Exception e) {
+                    log.warn("取消过期的分片上传失败, uploadId = {}", uploadId, e);
+                }
+            }
+            stringRedisTemplate.opsForHash().delete(ACTIVE_UPLOAD_PATH_KEY, uploadId);
+        }
+    }
+
+    /**
+     * 获取已上传的分片，分片序号 => ETag
+     */
+    private Map<Integer, String> getUploadedParts(PictureChunkUploadSession session) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(getSessionKey(session.getUploadId()));
+        Map<Integer, String> uploadedParts = new HashMap<>();
+        entries.forEach((field, value) -> {
+            String fieldName = field.toString();
+            if (fieldName.startsWith(PART_FIELD_PREFIX)) {
+                uploadedParts.put(Integer.parseInt(fieldName.substring(PART_FIELD_PREFIX.length())), value.toString());
+            }
+        });
+        return uploadedParts;
+    }
+
+    /**
+     * 延长会话的过期时间
+     */
+    private void touchSession(String uploadId) {
+        int expireHours = pictureUploadConfig.getChunkSessionExpireHours();
+        stringRedisTemplate.expire(getSessionKey(uploadId), expireHours, TimeUnit.HOURS);
+        stringRedisTemplate.opsForZSet().add(ACTIVE_UPLOAD_KEY, uploadId,
+                System.currentTimeMillis() + TimeUnit.HOURS.toMillis(expireHours));
+    }
+
+    /**
+     * 上传已完成或已取消，删除会话
+     */
+    private void removeSession(String uploadId) {
+        stringRedisTemplate.delete(getSessionKey(uploadId));
+        stringRedisTemplate.opsForZSet().remove(ACTIVE_UPLOAD_KEY, uploadId);
+        stringRedisTemplate.opsForHash().delete(ACTIVE_UPLOAD_PATH_KEY, uploadId);
+    }
+
+    private static String getSessionKey(String uploadId) {
+        return String.format(SESSION_KEY, uploadId);
+    }
+}
@@ -1,6 +1,7 @@
 package com.yupi.yupicturebackend.manager.upload;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
 import org.springframework.stereotype.Service;
@@ -8,6 +9,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -40,4 +42,19 @@ public class FilePictureUpload extends PictureUploadTemplate {
         MultipartFile multipartFile = (MultipartFile) inputSource;
         multipartFile.transferTo(file);
     }
+
+    @Override
+    protected UploadPictureStream openPictureStream(Object inputSource) throws Exception {
+        MultipartFile multipartFile = (MultipartFile) inputSource;
+        return new UploadPictureStream(multipartFile.getInputStream(), multipartFile.getSize());
+    }
+
+    @Override
+    protected String computeContentHash(Object inputSource) throws Exception {
+        MultipartFile multipartFile = (MultipartFile) inputSource;
+        // 表单文件已经由容器保存在本地, 可以重复读取
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            return DigestUtil.sha256Hex(inputStream);
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 分片上传会话，保存在 Redis 中，服务重启后客户端仍可继续上传
+ */
+@Data
+public class PictureChunkUploadSession implements Serializable {
+
+    /**
+     * 分片上传 id（对象存储返回）
+     */
+    private String uploadId;
+
+    /**
+     * 对象存储中的上传路径
+     */
+    private String uploadPath;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 分片大小（字节）
+     */
+    private Long partSize;
+
+    /**
+     * 分片总数
+     */
+    private Integer partCount;
+
+    /**
+     * 发起上传的用户 id
+     */
+    private Long userId;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long pictureId;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    private static final long serialVersionUID = 1L;
+}
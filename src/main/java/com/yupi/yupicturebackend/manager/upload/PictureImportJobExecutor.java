@@ -0,0 +1,593 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.http.HttpStatus;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.config.ThreadConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.HttpClientManager;
+import com.yupi.yupicturebackend.model.dto.picture.PictureUploadRequest;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.PictureImportItem;
+import com.yupi.yupicturebackend.model.entity.PictureImportJob;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.enums.PictureImportStatusEnum;
+import com.yupi.yupicturebackend.model.vo.PictureBatchUploadMetricsVO;
+import com.yupi.yupicturebackend.service.PictureImportItemService;
+import com.yupi.yupicturebackend.service.PictureImportJobService;
+import com.yupi.yupicturebackend.service.PictureService;
+import com.yupi.yupicturebackend.service.UserService;
+import com.yupi.yupicturebackend.utils.VirtualThreadUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 批量导入图片任务执行器
+ * 任务由 {@link PictureImportJobScheduler} 从数据库拉取后交给本执行器，在独立的有界线程池中执行；
+ * 首次执行时抓取图片地址并保存为任务明细，之后并发下载、上传明细中的图片，同一图片域名的并发数受限，单张图片超时后中断；
+ * 每张图片的结果由图片线程立即写入明细，实例崩溃后由其他实例从未完成的明细接着执行
+ */
+@Slf4j
+@Component
+public class PictureImportJobExecutor {
+
+    /**
+     * 必应图片搜索结果页，每页最多 35 张
+     */
+    private static final String BING_FETCH_URL = "https://cn.bing.com/images/async?q=%s&first=%d&count=35&mmasync=1";
+
+    /**
+     * 抓取的图片地址数量为计划导入数量的倍数，部分图片失败时用后面的地址补足
+     */
+    private static final double CANDIDATE_RATIO = 1.5;
+
+    /**
+     * 心跳间隔（毫秒）
+     */
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 10_000L;
+
+    /**
+     * 失败原因最大长度
+     */
+    private static final int MAX_MESSAGE_LENGTH = 512;
+
+    /**
+     * 最多保留的图片域名并发许可数
+     */
+    private static final long MAX_HOST_SEMAPHORES = 10_000L;
+
+    /**
+     * 图片域名的并发许可空闲多久后移除，远大于单张图片的超时时间，移除时不会有正在上传的图片
+     */
+    private static final Duration HOST_SEMAPHORE_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private ThreadConfig threadConfig;
+
+    @Resource
+    private PictureService pictureService;
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private PictureImportJobService pictureImportJobService;
+
+    @Resource
+    private PictureImportItemService pictureImportItemService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private HttpClientManager httpClientManager;
+
+    /**
+     * 当前实例 id，拉取任务时写入任务，心跳时校验任务仍归当前实例执行
+     */
+    private final String executorId = NetUtil.getLocalhostStr() + ":" + IdUtil.fastSimpleUUID();
+
+    /**
+     * 执行任务（抓取图片地址、调度图片上传）的线程池
+     */
+    private ThreadPoolExecutor jobExecutor;
+
+    /**
+     * 下载、上传单张图片的线程池，所有任务共享
+     */
+    private ThreadPoolExecutor itemExecutor;
+
+    /**
+     * 每个图片域名的并发许可，所有任务共享
+     */
+    private final Cache<String, Semaphore> hostSemaphores = Caffeine.newBuilder()
+            .maximumSize(MAX_HOST_SEMAPHORES)
+            .expireAfterAccess(HOST_SEMAPHORE_IDLE_TIMEOUT)
+            .build();
+
+    @PostConstruct
+    public void init() {
+        // 调度器只在有空闲线程时拉取任务，不使用队列；开启虚拟线程时线程数仍然有限，用于限制并发
+        int jobThreads = pictureUploadConfig.getBatchJobThreads();
+        jobExecutor = new ThreadPoolExecutor(jobThreads, jobThreads, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                VirtualThreadUtils.newThreadFactory("picture-import-job-", threadConfig.isVirtual()),
+                new ThreadPoolExecutor.AbortPolicy());
+        // 每个任务同时提交的图片数不超过图片线程数，队列容量足够容纳所有任务提交的图片，不会拒绝
+        int itemThreads = pictureUploadConfig.getBatchItemThreads();
+        itemExecutor = new ThreadPoolExecutor(itemThreads, itemThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(itemThreads * jobThreads),
+                VirtualThreadUtils.newThreadFactory("picture-import-item-", threadConfig.isVirtual()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 未完成的任务停止心跳，超时后由其他实例接着执行
+        jobExecutor.shutdownNow();
+        itemExecutor.shutdownNow();
+    }
+
+    public String getExecutorId() {
+        return executorId;
+    }
+
+    /**
+     * 是否有空闲的任务线程
+     */
+    public boolean hasCapacity() {
+        return jobExecutor.getActiveCount() < jobExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * 执行已被当前实例拉取的任务
+     *
+     * @param pictureImportJob 任务
+     * @return 是否提交成功，失败时任务需要放回等待状态
+     */
+    public boolean execute(PictureImportJob pictureImportJob) {
+        try {
+            jobExecutor.execute(() -> runJob(pictureImportJob));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取线程池指标
+     */
+    public PictureBatchUploadMetricsVO getMetrics() {
+        PictureBatchUploadMetricsVO metricsVO = new PictureBatchUploadMetricsVO();
+        metricsVO.setJobActiveCount(jobExecutor.getActiveCount());
+        metricsVO.setJobQueueSize(jobExecutor.getQueue().size());
+        metricsVO.setItemActiveCount(itemExecutor.getActiveCount());
+        metricsVO.setItemQueueSize(itemExecutor.getQueue().size());
+        metricsVO.setItemCompletedCount(itemExecutor.getCompletedTaskCount());
+        return metricsVO;
+    }
+
+    /**
+     * 执行任务：首次执行时抓取图片地址，之后并发上传未完成的明细，直到成功数量达到计划数量或明细用完
+     */
+    private void runJob(PictureImportJob pictureImportJob) {
+        Long jobId = pictureImportJob.getId();
+        // 正在上传的明细，图片线程真正结束后才移除
+        List<RunningItem> runningItems = new ArrayList<>();
+        try {
+            User loginUser = userService.getById(pictureImportJob.getUserId());
+            if (loginUser == null) {
+                throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "创建任务的用户不存在");
+            }
+            // 1. 首次执行时抓取图片地址，和任务的抓取数量在同一个事务中保存
+            if (pictureImportJob.getTotal() == 0) {
+                List<String> urls = fetchBingPictureUrls(pictureImportJob.getSearchText(),
+                        (int) Math.ceil(pictureImportJob.getCount() * CANDIDATE_RATIO));
+                if (urls.isEmpty()) {
+                    throw new BusinessException(ErrorCode.OPERATION_ERROR, "未抓取到图片");
+                }
+                saveItems(jobId, urls);
+            }
+            long lastHeartbeatTime = System.currentTimeMillis();
+            // 2. 加载未完成的明细，以明细为准重新统计成功、失败数量（上次执行时可能未来得及更新）
+            List<PictureImportItem> pendingItems = pictureImportItemService.lambdaQuery()
+                    .eq(PictureImportItem::getJobId, jobId)
+                    .in(PictureImportItem::getStatus, PictureImportStatusEnum.WAITING.getValue(),
+                            PictureImportStatusEnum.RUNNING.getValue())
+                    .orderByAsc(PictureImportItem::getItemIndex)
+                    .list();
+            int successCount = countItems(jobId, PictureImportStatusEnum.SUCCEED);
+            int failCount = countItems(jobId, PictureImportStatusEnum.FAILED);
+            pictureImportJobService.update(new LambdaUpdateWrapper<PictureImportJob>()
+                    .eq(PictureImportJob::getId, jobId)
+                    .set(PictureImportJob::getSuccessCount, successCount)
+                    .set(PictureImportJob::getFailCount, failCount));
+            // 3. 并发上传，域名并发数已满的明细留到下一轮，其他图片上传结束或其他任务释放许可后再提交
+            BlockingQueue<RunningItem> doneItems = new LinkedBlockingQueue<>();
+            long itemTimeoutMillis = TimeUnit.SECONDS.toMillis(pictureUploadConfig.getBatchItemTimeoutSeconds());
+            int count = pictureImportJob.getCount();
+            String namePrefix = pictureImportJob.getNamePrefix();
+            Deque<PictureImportItem> itemQueue = new ArrayDeque<>(pendingItems);
+            while (true) {
+                submitItems(itemQueue, runningItems, count - successCount, itemTimeoutMillis, namePrefix,
+                        loginUser, doneItems);
+                if (runningItems.isEmpty() && (itemQueue.isEmpty() || successCount >= count)) {
+                    break;
+                }
+                // 4. 定期刷新心跳，任务已被其他实例接管时放弃执行
+                if (System.currentTimeMillis() - lastHeartbeatTime >= HEARTBEAT_INTERVAL_MILLIS) {
+                    if (!heartbeat(jobId)) {
+                        log.warn("批量导入任务已被其他实例接管, 放弃执行, jobId = {}", jobId);
+                        abandonRunningItems(runningItems);
+                        return;
+                    }
+                    lastHeartbeatTime = System.currentTimeMillis();
+                }
+                // 5. 等待图片线程结束，结果已由图片线程写入明细
+                RunningItem doneItem = doneItems.poll(1, TimeUnit.SECONDS);
+                if (doneItem != null) {
+                    runningItems.remove(doneItem);
+                    if (doneItem.pictureId != null) {
+                        successCount++;
+                    }
+                    continue;
+                }
+                // 6. 中断超时的图片：已开始执行的等图片线程结束后再释放许可和统计，避免放弃后图片仍然入库
+                long now = System.currentTimeMillis();
+                Iterator<RunningItem> iterator = runningItems.iterator();
+                while (iterator.hasNext()) {
+                    RunningItem runningItem = iterator.next();
+                    if (runningItem.timedOut || runningItem.deadline >= now) {
+                        continue;
+                    }
+                    runningItem.timedOut = true;
+                    PictureImportItem item = runningItem.item;
+                    log.warn("批量导入图片超时, jobId = {}, itemIndex = {}", jobId, item.getItemIndex());
+                    if (runningItem.abandon()) {
+                        iterator.remove();
+                        finishItem(item, null, "图片导入超时");
+                    }
+                }
+            }
+            // 7. 结束任务，图片地址用完仍未达到计划数量时记录原因
+            String message = successCount < count ? String.format("可用图片不足, 实际导入 %d 张", successCount) : null;
+            finishJob(jobId, PictureImportStatusEnum.SUCCEED, message);
+        } catch (InterruptedException e) {
+            // 实例关闭，不结束任务，心跳超时后由其他实例接着执行
+            abandonRunningItems(runningItems);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("批量导入任务失败, jobId = {}", jobId, e);
+            abandonRunningItems(runningItems);
+            finishJob(jobId, PictureImportStatusEnum.FAILED,
+                    e instanceof BusinessException ? e.getMessage() : "任务执行失败");
+        }
+    }
+
+    /**
+     * 按顺序提交待上传的明细，同时上传的图片数不超过图片线程数，也不超过还差的数量；
+     * 域名并发数已满的明细不等待，留在队列中下一轮再提交，任务线程不会阻塞，心跳和超时检查照常进行
+     *
+     * @param itemQueue    待上传的明细
+     * @param runningItems 正在上传的明细
+     * @param remaining    还差的成功数量
+     */
+    private void submitItems(Deque<PictureImportItem> itemQueue, List<RunningItem> runningItems, int remaining,
+                             long itemTimeoutMillis, String namePrefix, User loginUser,
+                             BlockingQueue<RunningItem> doneItems) {
+        int maxRunning = pictureUploadConfig.getBatchItemThreads();
+        List<PictureImportItem> skippedItems = new ArrayList<>();
+        while (!itemQueue.isEmpty() && runningItems.size() < maxRunning && runningItems.size() < remaining) {
+            PictureImportItem item = itemQueue.poll();
+            Semaphore hostSemaphore = getHostSemaphore(item.getUrl());
+            if (!hostSemaphore.tryAcquire()) {
+                skippedItems.add(item);
+                continue;
+            }
+            boolean submitted = false;
+            try {
+                // 先标记为执行中，实例崩溃后接着执行时据此检查图片是否已经导入
+                pictureImportItemService.update(new LambdaUpdateWrapper<PictureImportItem>()
+                        .eq(PictureImportItem::getId, item.getId())
+                        .set(PictureImportItem::getStatus, PictureImportStatusEnum.RUNNING.getValue()));
+                RunningItem runningItem = new RunningItem(item, hostSemaphore,
+                        System.currentTimeMillis() + itemTimeoutMillis);
+                runningItem.future = itemExecutor.submit(
+                        () -> importItem(runningItem, namePrefix, loginUser, doneItems));
+                runningItems.add(runningItem);
+                submitted = true;
+            } finally {
+                // 提交成功后许可由图片线程（或放弃执行的任务线程）释放
+                if (!submitted) {
+                    hostSemaphore.release();
+                }
+            }
+        }
+        // 跳过的明细放回队首，保持原来的顺序
+        for (int i = skippedItems.size() - 1; i >= 0; i--) {
+            itemQueue.addFirst(skippedItems.get(i));
+        }
+    }
+
+    /**
+     * 导入单张图片（在图片线程中执行），结果写入明细后通知任务线程
+     */
+    private void importItem(RunningItem runningItem, String namePrefix, User loginUser,
+                            BlockingQueue<RunningItem> doneItems) {
+        // 任务线程已放弃时不再执行，许可由任务线程释放
+        if (!runningItem.started.compareAndSet(false, true)) {
+            return;
+        }
+        PictureImportItem item = runningItem.item;
+        try {
+            Long pictureId = null;
+            String message = null;
+            try {
+                // 设置图片名称，序号与明细一致，重新执行时不会变化
+                String picName = namePrefix + item.getItemIndex();
+                // 上次执行时已开始的明细，图片可能已经入库但未来得及写入明细，已入库时不再重复导入
+                if (PictureImportStatusEnum.RUNNING.getValue() == item.getStatus()) {
+                    pictureId = findImportedPictureId(item, picName, loginUser);
+                }
+                if (pictureId == null) {
+                    PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+                    pictureUploadRequest.setPicName(picName);
+                    pictureId = pictureService.uploadPicture(item.getUrl(), pictureUploadRequest, loginUser).getId();
+                }
+            } catch (Exception e) {
+                log.warn("批量导入图片失败, jobId = {}, itemIndex = {}", item.getJobId(), item.getItemIndex(), e);
+                message = runningItem.timedOut ? "图片导入超时"
+                        : e instanceof BusinessException ? e.getMessage() : "图片导入失败";
+            }
+            // 清除超时中断标记，保证结果能写入数据库
+            Thread.interrupted();
+            try {
+                finishItem(item, pictureId, message);
+            } catch (Exception e) {
+                // 明细仍为执行中，接着执行时按图片名称检查是否已经导入
+                log.error("记录批量导入明细结果失败, jobId = {}, itemIndex = {}", item.getJobId(), item.getItemIndex(), e);
+            }
+            runningItem.pictureId = pictureId;
+        } finally {
+            runningItem.hostSemaphore.release();
+            doneItems.add(runningItem);
+        }
+    }
+
+    /**
+     * 查询上次执行时已导入的图片：同一用户、同一名称，且在明细标记为执行中之后创建
+     */
+    private Long findImportedPictureId(PictureImportItem item, String picName, User loginUser) {
+        Picture picture = pictureService.lambdaQuery()
+                .select(Picture::getId)
+                .eq(Picture::getUserId, loginUser.getId())
+                .isNull(Picture::getSpaceId)
+                .eq(Picture::getName, picName)
+                .ge(Picture::getCreateTime, item.getUpdateTime())
+                .orderByAsc(Picture::getId)
+                .last("limit 1")
+                .one();
+        return picture == null ? null : picture.getId();
+    }
+
+    /**
+     * 保存任务明细，并记录抓取到的图片数量
+     */
+    private void saveItems(Long jobId, List<String> urls) {
+        List<PictureImportItem> items = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            PictureImportItem item = new PictureImportItem();
+            item.setJobId(jobId);
+            item.setItemIndex(i + 1);
+            item.setUrl(urls.get(i));
+            item.setStatus(PictureImportStatusEnum.WAITING.getValue());
+            items.add(item);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // 清理上次执行残留的明细（理论上不存在，明细和抓取数量在同一事务中保存）
+            pictureImportItemService.lambdaUpdate().eq(PictureImportItem::getJobId, jobId).remove();
+            pictureImportItemService.saveBatch(items);
+            boolean result = pictureImportJobService.update(new LambdaUpdateWrapper<PictureImportJob>()
+                    .eq(PictureImportJob::getId, jobId)
+                    .eq(PictureImportJob::getExecutorId, executorId)
+                    .set(PictureImportJob::getTotal, items.size()));
+            if (!result) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "任务已被其他实例接管");
+            }
+        });
+    }
+
+    /**
+     * 记录明细的导入结果，并累加任务的成功或失败数量
+     */
+    private void finishItem(PictureImportItem item, Long pictureId, String message) {
+        boolean success = pictureId != null;
+        PictureImportStatusEnum status = success ? PictureImportStatusEnum.SUCCEED : PictureImportStatusEnum.FAILED;
+        pictureImportItemService.update(new LambdaUpdateWrapper<PictureImportItem>()
+                .eq(PictureImportItem::getId, item.getId())
+                .set(PictureImportItem::getStatus, status.getValue())
+                .set(PictureImportItem::getPictureId, pictureId)
+                .set(PictureImportItem::getMessage, StrUtil.maxLength(message, MAX_MESSAGE_LENGTH - 3)));
+        pictureImportJobService.update(new LambdaUpdateWrapper<PictureImportJob>()
+                .eq(PictureImportJob::getId, item.getJobId())
+                .setSql(success ? "successCount = successCount + 1" : "failCount = failCount + 1"));
+    }
+
+    /**
+     * 结束任务，只有任务仍归当前实例执行时才更新
+     */
+    private void finishJob(Long jobId, PictureImportStatusEnum status, String message) {
+        pictureImportJobService.update(new LambdaUpdateWrapper<PictureImportJob>()
+                .eq(PictureImportJob::getId, jobId)
+                .eq(PictureImportJob::getExecutorId, executorId)
+                .eq(PictureImportJob::getStatus, PictureImportStatusEnum.RUNNING.getValue())
+                .set(PictureImportJob::getStatus, status.getValue())
+                .set(PictureImportJob::getMessage, StrUtil.maxLength(message, MAX_MESSAGE_LENGTH - 3))
+                .set(PictureImportJob::getFinishTime, new Date()));
+    }
+
+    /**
+     * 刷新心跳
+     *
+     * @return 任务是否仍归当前实例执行
+     */
+    private boolean heartbeat(Long jobId) {
+        return pictureImportJobService.update(new LambdaUpdateWrapper<PictureImportJob>()
+                .eq(PictureImportJob::getId, jobId)
+                .eq(PictureImportJob::getExecutorId, executorId)
+                .eq(PictureImportJob::getStatus, PictureImportStatusEnum.RUNNING.getValue())
+                .set(PictureImportJob::getHeartbeatTime, new Date()));
+    }
+
+    private int countItems(Long jobId, PictureImportStatusEnum status) {
+        return Math.toIntExact(pictureImportItemService.lambdaQuery()
+                .eq(PictureImportItem::getJobId, jobId)
+                .eq(PictureImportItem::getStatus, status.getValue())
+                .count());
+    }
+
+    /**
+     * 放弃正在上传的明细：未开始的不再执行，已开始的中断后由图片线程写入结果
+     */
+    private static void abandonRunningItems(List<RunningItem> runningItems) {
+        runningItems.forEach(RunningItem::abandon);
+    }
+
+    /**
+     * 从必应图片搜索结果页分页抓取图片地址
+     *
+     * @param searchText 搜索词
+     * @param maxCount   最多抓取的数量
+     * @return 去重后的图片地址列表（已去掉 url 参数）
+     */
+    private List<String> fetchBingPictureUrls(String searchText, int maxCount) {
+        Set<String> fileUrlSet = new LinkedHashSet<>();
+        int first = 0;
+        while (fileUrlSet.size() < maxCount) {
+            // 1. 拼接要抓取的 url, first 为本页第一张图片的偏移量
+            String fetchUrl = String.format(BING_FETCH_URL, URLUtil.encodeAll(searchText), first);
+            HttpResponse<String> httpResponse = httpClientManager.await(httpClientManager.getStringAsync(fetchUrl));
+            if (httpResponse.statusCode() != HttpStatus.HTTP_OK) {
+                log.error("获取页面失败, status = {}", httpResponse.statusCode());
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面失败");
+            }
+            Document document = Jsoup.parse(httpResponse.body(), fetchUrl);
+            // 2. 解析内容, 找外层元素 class = dgControl 中的 img 元素
+            Element div = document.getElementsByClass("dgControl").first();
+            if (ObjUtil.isEmpty(div)) {
+                break;
+            }
+            int sizeBefore = fileUrlSet.size();
+            int pageSize = 0;
+            for (Element imgElement : div.select("img")) {
+                String fileUrl = imgElement.attr("src");
+                if (StrUtil.isBlank(fileUrl)) {
+                    continue;
+                }
+                pageSize++;
+                // 3. 处理图片地址, 防止转义和对象存储冲突的问题(去掉 url 中的参数)
+                int questionMarkIndex = fileUrl.indexOf("?");
+                if (questionMarkIndex > -1) {
+                    fileUrl = fileUrl.substring(0, questionMarkIndex);
+                }
+                if (fileUrlSet.size() < maxCount) {
+                    fileUrlSet.add(fileUrl);
+                }
+            }
+            // 4. 本页没有新的图片地址时说明已到末尾
+            if (pageSize == 0 || fileUrlSet.size() == sizeBefore) {
+                break;
+            }
+            first += pageSize;
+        }
+        return new ArrayList<>(fileUrlSet);
+    }
+
+    /**
+     * 获取图片域名的并发许可
+     */
+    private Semaphore getHostSemaphore(String url) {
+        String host;
+        try {
+            host = StrUtil.nullToEmpty(URLUtil.url(url).getHost());
+        } catch (Exception e) {
+            // 地址格式错误，上传时会校验失败
+            host = "";
+        }
+        return hostSemaphores.get(host, key -> new Semaphore(pictureUploadConfig.getBatchPerHostConcurrency()));
+    }
+
+    /**
+     * 正在上传的明细
+     */
+    private static class RunningItem {
+
+        private final PictureImportItem item;
+
+        private final Semaphore hostSemaphore;
+
+        /**
+         * 超时时间
+         */
+        private final long deadline;
+
+        /**
+         * 图片线程开始执行或任务线程放弃，二者只有一方能成功，成功的一方负责释放域名并发许可
+         */
+        private final AtomicBoolean started = new AtomicBoolean(false);
+
+        private Future<?> future;
+
+        private volatile boolean timedOut;
+
+        /**
+         * 导入成功的图片 id
+         */
+        private volatile Long pictureId;
+
+        private RunningItem(PictureImportItem item, Semaphore hostSemaphore, long deadline) {
+            this.item = item;
+            this.hostSemaphore = hostSemaphore;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 放弃执行
+         *
+         * @return 是否在开始执行前放弃（已释放许可）；否则已中断图片线程，等待其结束
+         */
+        private boolean abandon() {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                hostSemaphore.release();
+                return true;
+            }
+            future.cancel(true);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import cn.hutool.core.date.DateUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.model.entity.PictureImportJob;
+import com.yupi.yupicturebackend.model.enums.PictureImportStatusEnum;
+import com.yupi.yupicturebackend.service.PictureImportJobService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Date;
+
+/**
+ * 批量导入图片任务调度器
+ * 定时拉取等待中的任务，以及心跳超时（执行实例崩溃）的执行中任务，通过条件更新抢占后交给执行器；
+ * 多个实例同时拉取同一个任务时只有一个实例能抢占成功
+ */
+@Slf4j
+@Component
+public class PictureImportJobScheduler {
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private PictureImportJobService pictureImportJobService;
+
+    @Resource
+    private PictureImportJobExecutor pictureImportJobExecutor;
+
+    /**
+     * 拉取任务，直到没有空闲的任务线程或没有可执行的任务
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void pollJobs() {
+        while (pictureImportJobExecutor.hasCapacity()) {
+            Date staleTime = DateUtil.offsetSecond(new Date(),
+                    -pictureUploadConfig.getBatchJobHeartbeatTimeoutSeconds());
+            // 1. 查询可执行的任务：等待中，或执行中但心跳超时（先创建的先执行）
+            PictureImportJob pictureImportJob = pictureImportJobService.getOne(new LambdaQueryWrapper<PictureImportJob>()
+                    .and(wrapper -> wrapper.eq(PictureImportJob::getStatus, PictureImportStatusEnum.WAITING.getValue())
+                            .or(running -> running.eq(PictureImportJob::getStatus, PictureImportStatusEnum.RUNNING.getValue())
+                                    .lt(PictureImportJob::getHeartbeatTime, staleTime)))
+                    .orderByAsc(PictureImportJob::getId)
+                    .last("limit 1"));
+            if (pictureImportJob == null) {
+                return;
+            }
+            // 2. 抢占任务，条件与查询条件相同，被其他实例抢先时更新失败
+            Date now = new Date();
+            boolean claimed = pictureImportJobService.update(new LambdaUpdateWrapper<PictureImportJob>()
+                    .eq(PictureImportJob::getId, pictureImportJob.getId())
+                    .and(wrapper -> wrapper.eq(PictureImportJob::getStatus, PictureImportStatusEnum.WAITING.getValue())
+                            .or(running -> running.eq(PictureImportJob::getStatus, PictureImportStatusEnum.RUNNING.getValue())
+                                    .lt(PictureImportJob::getHeartbeatTime, staleTime)))
+                    .set(PictureImportJob::getStatus, PictureImportStatusEnum.RUNNING.getValue())
+                    .set(PictureImportJob::getExecutorId, pictureImportJobExecutor.getExecutorId())
+                    .set(PictureImportJob::getHeartbeatTime, now)
+                    .set(pictureImportJob.getStartTime() == null, PictureImportJob::getStartTime, now));
+            if (!claimed) {
+                continue;
+            }
+            if (pictureImportJob.getStatus() == PictureImportStatusEnum.RUNNING.getValue()) {
+                log.info("接管心跳超时的批量导入任务, jobId = {}, 原执行实例 = {}",
+                        pictureImportJob.getId(), pictureImportJob.getExecutorId());
+            }
+            // 3. 交给执行器，线程已满时放回等待状态
+            if (!pictureImportJobExecutor.execute(pictureImportJob)) {
+                pictureImportJobService.update(new LambdaUpdateWrapper<PictureImportJob>()
+                        .eq(PictureImportJob::getId, pictureImportJob.getId())
+                        .eq(PictureImportJob::getExecutorId, pictureImportJobExecutor.getExecutorId())
+                        .set(PictureImportJob::getStatus, PictureImportStatusEnum.WAITING.getValue()));
+                return;
+            }
+        }
+    }
+}
@@ -3,22 +3,39 @@ package com.yupi.yupicturebackend.manager.upload;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.HexUtil;
 import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.qcloud.cos.model.PutObjectResult;
 import com.qcloud.cos.model.ciModel.persistence.CIObject;
+import com.qcloud.cos.model.ciModel.persistence.CIUploadResult;
 import com.qcloud.cos.model.ciModel.persistence.ImageInfo;
 import com.qcloud.cos.model.ciModel.persistence.ProcessResults;
 import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
 import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.process.PictureProcessor;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
 import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.enums.PictureProcessStatusEnum;
+import com.yupi.yupicturebackend.utils.ImageFormatUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.DigestInputStream;
 import java.util.Date;
 import java.util.List;
 
@@ -32,6 +49,15 @@ public abstract class PictureUploadTemplate {
     @Resource
     private CosManager cosManager;
 
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Resource
+    private PictureMapper pictureMapper;
+
+    @Resource
+    private PictureProcessor pictureProcessor;
+
     /**
      *
      * @param inputSource 输入源
@@ -54,35 +80,49 @@ public abstract class PictureUploadTemplate {
 
         String uploadPath = String.format("/%s/%s", uploadPathPrefix,uploadFilename);
 
+        // 3. 流式上传：能拿到文件大小时，直接把输入流写入对象存储，不落本地临时文件
+        // 同步使用本地引擎处理时需要读取完整图片，仍然使用临时文件
+        if (pictureUploadConfig.isStreaming() && !isProcessLocally()) {
+            UploadPictureResult uploadPictureResult = uploadPictureByStream(inputSource, originalFilename, uploadPath);
+            if (uploadPictureResult != null) {
+                return uploadPictureResult;
+            }
+        }
+
         File file = null;
         try {
-            // 3. 创建临时文件
+            // 4. 创建临时文件
             file = File.createTempFile(uploadPath, null);
 
-            // 4. 处理文件来源
+            // 5. 处理文件来源
             processFile(inputSource, file);
 
-            // 5. 上传文件到对象存储
-            PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, file);
-
-            // 6. 获取图片信息对象
-            ImageInfo imageInfo = putObjectResult.getCiUploadResult().getOriginalInfo().getImageInfo();
-
-            ProcessResults processResults = putObjectResult.getCiUploadResult().getProcessResults();
-            List<CIObject> objectList = processResults.getObjectList();
-            if (CollUtil.isNotEmpty(objectList)) {
-                CIObject compressedCiObject = objectList.get(0);
-
-                CIObject thumbnailCiObject = compressedCiObject;
+            // 6. 内容相同的图片已经上传过，直接复用
+            String contentHash = pictureUploadConfig.isDeduplicate() ? DigestUtil.sha256Hex(file) : null;
+            UploadPictureResult uploadedResult = getUploadedPictureResult(contentHash, originalFilename);
+            if (uploadedResult != null) {
+                return uploadedResult;
+            }
 
-                if (objectList.size() > 1) {
-                    thumbnailCiObject = objectList.get(1);
+            // 7. 上传文件到对象存储并封装返回结果，异步处理时只上传原图
+            UploadPictureResult uploadPictureResult;
+            if (pictureUploadConfig.isAsyncProcess()) {
+                cosManager.putObject(uploadPath, file);
+                uploadPictureResult = buildProcessingResult(cosClientConfig.getHost(), originalFilename, uploadPath,
+                        FileUtil.size(file), ImageFormatUtils.sniffFormat(file));
+            } else if (isProcessLocally()) {
+                cosManager.putObject(uploadPath, file);
+                try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+                    uploadPictureResult = pictureProcessor.processStoredPicture(uploadPath, originalFilename,
+                            FileUtil.size(file), inputStream);
                 }
-
-                return buildResult(originalFilename, compressedCiObject, thumbnailCiObject, imageInfo);
+            } else {
+                PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, file);
+                uploadPictureResult = parseResult(cosClientConfig.getHost(), originalFilename,
+                        uploadPath, FileUtil.size(file), putObjectResult.getCiUploadResult());
             }
-            // 7. 封装返回结果
-            return buildResult(originalFilename, file, uploadPath,  imageInfo);
+            uploadPictureResult.setContentHash(contentHash);
+            return uploadPictureResult;
         } catch (Exception e) {
             log.error("图片上传到对象存储失败 " , e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
@@ -91,15 +131,189 @@ public abstract class PictureUploadTemplate {
             deleteTempFile(file);
         }
     }
+
+    /**
+     * 流式上传图片，边读边校验文件头
+     *
+     * @return 上传结果，输入源不支持流式上传（如无法得知文件大小）时返回 null
+     */
+    private UploadPictureResult uploadPictureByStream(Object inputSource, String originalFilename, String uploadPath) {
+        UploadPictureStream pictureStream = null;
+        try {
+            pictureStream = openPictureStream(inputSource);
+            if (pictureStream == null) {
+                return null;
+            }
+            // 预读文件头校验图片格式，读取后流会重置，不影响后续上传
+            InputStream inputStream = new BufferedInputStream(pictureStream.getInputStream());
+            String format = ImageFormatUtils.sniffFormat(inputStream);
+            ThrowUtils.throwIf(format == null, ErrorCode.PARAMS_ERROR, "文件类型错误");
+            pictureStream.setInputStream(inputStream);
+            long contentLength = pictureStream.getContentLength();
+
+            // 计算内容哈希，内容相同的图片已经上传过则直接复用（未开启去重时不计算）
+            // 输入源可以重复读取时（如表单文件）上传前单独计算；否则（如网络流）在上传时边读边算
+            String contentHash = null;
+            DigestInputStream digestInputStream = null;
+            if (pictureUploadConfig.isDeduplicate()) {
+                contentHash = computeContentHash(inputSource);
+                if (contentHash == null) {
+                    digestInputStream = new DigestInputStream(inputStream, DigestUtil.digester(DigestAlgorithm.SHA256).getDigest()) {
+                        @Override
+                        public boolean markSupported() {
+                            // 禁止对象存储 SDK 重置本流（重读的字节会重复计入哈希），SDK 会自行缓冲以便重试
+                            return false;
+                        }
+                    };
+                    inputStream = digestInputStream;
+                }
+            }
+            UploadPictureResult uploadedResult = getUploadedPictureResult(contentHash, originalFilename);
+            if (uploadedResult != null) {
+                return uploadedResult;
+            }
+
+            UploadPictureResult uploadPictureResult;
+            if (pictureUploadConfig.isAsyncProcess()) {
+                cosManager.putObject(uploadPath, inputStream, contentLength);
+                uploadPictureResult = buildProcessingResult(cosClientConfig.getHost(), originalFilename, uploadPath,
+                        contentLength, format);
+            } else {
+                PutObjectResult putObjectResult = cosManager.putPictureObject(uploadPath, inputStream, contentLength);
+                uploadPictureResult = parseResult(cosClientConfig.getHost(), originalFilename,
+                        uploadPath, contentLength, putObjectResult.getCiUploadResult());
+            }
+            if (digestInputStream != null) {
+                contentHash = HexUtil.encodeHexStr(digestInputStream.getMessageDigest().digest());
+                // 上传后才得知内容已存在：异步处理时只上传了原图，删除后复用已上传的图片；
+                // 同步处理时压缩图和缩略图已经生成，保留本次上传的文件
+                if (pictureUploadConfig.isAsyncProcess()) {
+                    uploadedResult = getUploadedPictureResult(contentHash, originalFilename);
+                    if (uploadedResult != null) {
+                        cosManager.deleteObject(uploadPath);
+                        return uploadedResult;
+                    }
+                }
+            }
+            uploadPictureResult.setContentHash(contentHash);
+            return uploadPictureResult;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("图片流式上传到对象存储失败 " , e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传失败");
+        } finally {
+            IoUtil.close(pictureStream);
+        }
+    }
+
+    /**
+     * 是否在上传时同步使用本地引擎处理图片
+     */
+    private boolean isProcessLocally() {
+        return !pictureUploadConfig.isAsyncProcess()
+                && PictureProcessor.LOCAL_ENGINE.equals(pictureUploadConfig.getProcessEngine());
+    }
+
+    /**
+     * 根据内容哈希查找已经上传过的图片，复用其对象存储中的原图、压缩图和缩略图
+     *
+     * @param contentHash      图片内容的 SHA-256，为空时不查找
+     * @param originalFilename 本次上传的原始文件名
+     * @return 已上传图片的解析结果，未上传过或未开启去重时返回 null
+     */
+    private UploadPictureResult getUploadedPictureResult(String contentHash, String originalFilename) {
+        if (!pictureUploadConfig.isDeduplicate() || contentHash == null) {
+            return null;
+        }
+        // 只复用已经处理完成的图片，处理中的图片还没有压缩图和缩略图
+        Picture picture = pictureMapper.selectOne(new LambdaQueryWrapper<Picture>()
+                .eq(Picture::getContentHash, contentHash)
+                .eq(Picture::getProcessStatus, PictureProcessStatusEnum.DONE.getValue())
+                .last("limit 1"));
+        if (picture == null) {
+            return null;
+        }
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        uploadPictureResult.setUrl(picture.getUrl());
+        uploadPictureResult.setThumbnailUrl(picture.getThumbnailUrl());
+        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
+        uploadPictureResult.setPicSize(picture.getPicSize());
+        uploadPictureResult.setPicWidth(picture.getPicWidth());
+        uploadPictureResult.setPicHeight(picture.getPicHeight());
+        uploadPictureResult.setPicScale(picture.getPicScale());
+        uploadPictureResult.setPicFormat(picture.getPicFormat());
+        uploadPictureResult.setPicColor(picture.getPicColor());
+        uploadPictureResult.setPicPalette(picture.getPicPalette());
+        uploadPictureResult.setPicHash(picture.getPicHash());
+        uploadPictureResult.setContentHash(contentHash);
+        uploadPictureResult.setRenditions(picture.getRenditions());
+        uploadPictureResult.setReusedPictureId(picture.getId());
+        log.info("图片内容已存在, 复用已上传的图片, contentHash = {}", contentHash);
+        return uploadPictureResult;
+    }
+
+    /**
+     * 封装待处理图片的返回结果：只有原图地址和大小，压缩图、缩略图、宽高和主色调由异步处理补全
+     *
+     * @param host             对象存储访问域名
+     * @param originalFilename 原始文件名
+     * @param uploadPath       上传路径
+     * @param picSize          原图大小
+     * @param picFormat        原图格式，为空时使用文件后缀
+     */
+    static UploadPictureResult buildProcessingResult(String host, String originalFilename, String uploadPath,
+                                                     long picSize, String picFormat) {
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        uploadPictureResult.setUrl(host + "/" + uploadPath);
+        // 缩略图生成前先使用原图
+        uploadPictureResult.setThumbnailUrl(host + "/" + uploadPath);
+        uploadPictureResult.setPicName(FileUtil.mainName(originalFilename));
+        uploadPictureResult.setPicSize(picSize);
+        uploadPictureResult.setPicFormat(picFormat != null ? picFormat : FileUtil.getSuffix(originalFilename));
+        uploadPictureResult.setProcessStatus(PictureProcessStatusEnum.PROCESSING.getValue());
+        return uploadPictureResult;
+    }
+
+    /**
+     * 解析对象存储的图片处理结果
+     *
+     * @param host             对象存储访问域名
+     * @param originalFilename 原始文件名
+     * @param uploadPath       上传路径
+     * @param picSize          原图大小
+     * @param ciUploadResult   对象存储返回的图片处理结果
+     */
+    public static UploadPictureResult parseResult(String host, String originalFilename, String uploadPath, long picSize,
+                                           CIUploadResult ciUploadResult) {
+        // 获取图片信息对象
+        ImageInfo imageInfo = ciUploadResult.getOriginalInfo().getImageInfo();
+
+        ProcessResults processResults = ciUploadResult.getProcessResults();
+        List<CIObject> objectList = processResults.getObjectList();
+        if (CollUtil.isNotEmpty(objectList)) {
+            CIObject compressedCiObject = objectList.get(0);
+
+            CIObject thumbnailCiObject = compressedCiObject;
+
+            if (objectList.size() > 1) {
+                thumbnailCiObject = objectList.get(1);
+            }
+
+            return buildResult(host, originalFilename, compressedCiObject, thumbnailCiObject, imageInfo);
+        }
+        return buildResult(host, originalFilename, picSize, uploadPath, imageInfo);
+    }
     /**
      * 封装返回结果
+     * @param host 对象存储访问域名
      * @param originalFilename
      * @param compressedCiObject
      * @param thumbnailCiObject
      * @param imageInfo 对象存储返回的图片信息
      * @return
      */
-    private UploadPictureResult buildResult(String originalFilename, CIObject compressedCiObject,CIObject thumbnailCiObject,ImageInfo imageInfo) {
+    private static UploadPictureResult buildResult(String host, String originalFilename, CIObject compressedCiObject,CIObject thumbnailCiObject,ImageInfo imageInfo) {
         UploadPictureResult uploadPictureResult = new UploadPictureResult();
         int picWidth = compressedCiObject.getWidth();
         int picHeight = compressedCiObject.getHeight();
@@ -113,25 +327,26 @@ public abstract class PictureUploadTemplate {
         uploadPictureResult.setPicColor(imageInfo.getAve());
 
 
-        uploadPictureResult.setUrl(cosClientConfig.getHost() + "/" + compressedCiObject.getKey());
-        uploadPictureResult.setThumbnailUrl(cosClientConfig.getHost() + "/" + thumbnailCiObject.getKey());
+        uploadPictureResult.setUrl(host + "/" + compressedCiObject.getKey());
+        uploadPictureResult.setThumbnailUrl(host + "/" + thumbnailCiObject.getKey());
         return uploadPictureResult;
     }
 
     /**
      * 封装返回结果
+     * @param host 对象存储访问域名
      * @param originalFilename
-     * @param file
+     * @param picSize 原图大小
      * @param uploadPath
      * @param imageInfo 对象存储返回的图片信息
      * @return
      */
-    private UploadPictureResult buildResult(String originalFilename, File file, String uploadPath, ImageInfo imageInfo) {
+    private static UploadPictureResult buildResult(String host, String originalFilename, long picSize, String uploadPath, ImageInfo imageInfo) {
         // 封装返回结果
         UploadPictureResult uploadPictureResult = new UploadPictureResult();
-        uploadPictureResult.setUrl( cosClientConfig.getHost() + "/" + uploadPath);
+        uploadPictureResult.setUrl(host + "/" + uploadPath);
         uploadPictureResult.setPicName(originalFilename);
-        uploadPictureResult.setPicSize(FileUtil.size(file));
+        uploadPictureResult.setPicSize(picSize);
         int picWidth = imageInfo.getWidth();
         int picHeight = imageInfo.getHeight();
         double picScale = NumberUtil.round(picWidth * 1.0/picHeight, 2).doubleValue();
@@ -171,5 +386,23 @@ public abstract class PictureUploadTemplate {
      */
     protected abstract void processFile(Object inputSource, File file) throws Exception;
 
+    /**
+     * 打开输入源的输入流（用于流式上传）
+     *
+     * @return 长度已知的输入流，不支持流式上传时返回 null
+     */
+    protected UploadPictureStream openPictureStream(Object inputSource) throws Exception {
+        return null;
+    }
+
+    /**
+     * 计算输入源内容的 SHA-256（用于流式上传前去重）
+     *
+     * @return 输入源不能重复读取时返回 null，由流式上传边读边计算（开启去重时才会调用）
+     */
+    protected String computeContentHash(Object inputSource) throws Exception {
+        return null;
+    }
+
 
 }
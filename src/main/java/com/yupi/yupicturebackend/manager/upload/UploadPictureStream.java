@@ -0,0 +1,33 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 待上传的图片输入流（长度已知）
+ */
+@Data
+@AllArgsConstructor
+public class UploadPictureStream implements Closeable {
+
+    /**
+     * 图片输入流
+     */
+    private InputStream inputStream;
+
+    /**
+     * 图片大小（字节）
+     */
+    private long contentLength;
+
+    @Override
+    public void close() throws IOException {
+        if (inputStream != null) {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.yupi.yupicturebackend.mapper;
+
+import com.yupi.yupicturebackend.model.entity.LockFence;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【lock_fence(锁防护令牌)】的数据库操作Mapper
+* @Entity com.yupi.yupicturebackend.model.entity.LockFence
+*/
+public interface LockFenceMapper extends BaseMapper<LockFence> {
+
+}
@@ -0,0 +1,12 @@
+package com.yupi.yupicturebackend.mapper;
+
+import com.yupi.yupicturebackend.model.entity.PictureImportItem;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【picture_import_item(批量导入图片明细)】的数据库操作Mapper
+* @Entity com.yupi.yupicturebackend.model.entity.PictureImportItem
+*/
+public interface PictureImportItemMapper extends BaseMapper<PictureImportItem> {
+
+}
@@ -0,0 +1,12 @@
+package com.yupi.yupicturebackend.mapper;
+
+import com.yupi.yupicturebackend.model.entity.PictureImportJob;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【picture_import_job(批量导入图片任务)】的数据库操作Mapper
+* @Entity com.yupi.yupicturebackend.model.entity.PictureImportJob
+*/
+public interface PictureImportJobMapper extends BaseMapper<PictureImportJob> {
+
+}
@@ -0,0 +1,12 @@
+package com.yupi.yupicturebackend.mapper;
+
+import com.yupi.yupicturebackend.model.entity.SpaceUsageFlush;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【space_usage_flush(空间用量刷新记录)】的数据库操作Mapper
+* @Entity com.yupi.yupicturebackend.model.entity.SpaceUsageFlush
+*/
+public interface SpaceUsageFlushMapper extends BaseMapper<SpaceUsageFlush> {
+
+}
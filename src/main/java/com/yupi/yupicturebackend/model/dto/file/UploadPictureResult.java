@@ -40,4 +40,28 @@ public class UploadPictureResult {
      * 图片颜色
      */
     private String picColor;
+    /**
+     * 图片主色板
+     */
+    private String picPalette;
+    /**
+     * 图片感知哈希
+     */
+    private Long picHash;
+    /**
+     * 图片内容 SHA-256
+     */
+    private String contentHash;
+    /**
+     * 处理状态，为处理中时需要异步生成压缩图、缩略图和主色调
+     */
+    private Integer processStatus;
+    /**
+     * 多分辨率缩略图（JSON 对象，宽度 => 地址）
+     */
+    private String renditions;
+    /**
+     * 按内容去重复用的已上传图片 id，未复用时为空
+     */
+    private Long reusedPictureId;
 }
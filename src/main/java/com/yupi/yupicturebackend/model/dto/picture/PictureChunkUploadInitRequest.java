@@ -0,0 +1,39 @@
+package com.yupi.yupicturebackend.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 分片上传图片初始化请求
+ */
+@Data
+public class PictureChunkUploadInitRequest implements Serializable {
+
+    /**
+     * 图片 id（用于修改）
+     */
+    private Long id;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 图片名称
+     */
+    private String picName;
+
+    /**
+     * 空间 id
+     */
+    private Long spaceId;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,24 @@
+package com.yupi.yupicturebackend.model.dto.picture;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 分片上传图片请求（上传分片 / 查询进度 / 合并分片）
+ */
+@Data
+public class PictureChunkUploadRequest implements Serializable {
+
+    /**
+     * 分片上传 id
+     */
+    private String uploadId;
+
+    /**
+     * 分片序号（从 1 开始，仅上传分片时需要）
+     */
+    private Integer partNumber;
+
+    private static final long serialVersionUID = 1L;
+}
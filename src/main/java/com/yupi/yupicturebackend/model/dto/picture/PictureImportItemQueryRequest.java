@@ -0,0 +1,27 @@
+package com.yupi.yupicturebackend.model.dto.picture;
+
+import com.yupi.yupicturebackend.common.PageRequest;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+
+/**
+ * 查询批量导入图片明细请求
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class PictureImportItemQueryRequest extends PageRequest implements Serializable {
+
+    /**
+     * 任务 id
+     */
+    private Long jobId;
+
+    /**
+     * 导入状态：0-等待中; 1-执行中; 2-成功; 3-失败
+     */
+    private Integer status;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,37 @@
+package com.yupi.yupicturebackend.model.dto.picture;
+
+import com.yupi.yupicturebackend.common.PageRequest;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+
+/**
+ * 查询批量导入图片任务请求
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class PictureImportJobQueryRequest extends PageRequest implements Serializable {
+
+    /**
+     * id
+     */
+    private Long id;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 搜索词
+     */
+    private String searchText;
+
+    /**
+     * 任务状态：0-等待中; 1-执行中; 2-成功; 3-失败
+     */
+    private Integer status;
+
+    private static final long serialVersionUID = 1L;
+}
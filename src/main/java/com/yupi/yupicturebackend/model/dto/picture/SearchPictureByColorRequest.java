@@ -3,6 +3,7 @@ package com.yupi.yupicturebackend.model.dto.picture;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * 按照颜色搜索图片请求
@@ -15,6 +16,16 @@ public class SearchPictureByColorRequest implements Serializable {
      */
     private String picColor;
 
+    /**
+     * 多个目标颜色（最多 5 个），不为空时忽略 picColor
+     */
+    private List<String> picColorList;
+
+    /**
+     * 目标颜色的权重，与 picColorList 一一对应，为空时各颜色权重相同
+     */
+    private List<Double> weightList;
+
     /**
      * 空间 id
      */
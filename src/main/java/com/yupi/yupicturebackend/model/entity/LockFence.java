@@ -0,0 +1,34 @@
+package com.yupi.yupicturebackend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 锁防护令牌
+ * @TableName lock_fence
+ */
+@TableName(value ="lock_fence")
+@Data
+public class LockFence implements Serializable {
+    /**
+     * 锁的 key
+     */
+    @TableId(type = IdType.INPUT)
+    private String lockKey;
+
+    /**
+     * 已写入的最大防护令牌
+     */
+    private Long fencingToken;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -91,6 +91,31 @@ public class Picture implements Serializable {
      */
     private String picColor;
 
+    /**
+     * 图片主色板（最多 5 个颜色及占比，格式见 ColorPaletteUtils）
+     */
+    private String picPalette;
+
+    /**
+     * 图片感知哈希（64 位 pHash，用于相似图片搜索）
+     */
+    private Long picHash;
+
+    /**
+     * 图片内容 SHA-256（用于去重）
+     */
+    private String contentHash;
+
+    /**
+     * 处理状态：0-处理中; 1-处理完成; 2-处理失败
+     */
+    private Integer processStatus;
+
+    /**
+     * 多分辨率缩略图（JSON 对象，宽度 => 地址），按需生成
+     */
+    private String renditions;
+
     /**
      * 创建时间
      */
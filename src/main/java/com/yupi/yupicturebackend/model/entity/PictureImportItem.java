@@ -0,0 +1,64 @@
+package com.yupi.yupicturebackend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 批量导入图片明细
+ * @TableName picture_import_item
+ */
+@TableName(value ="picture_import_item")
+@Data
+public class PictureImportItem implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 任务 id
+     */
+    private Long jobId;
+
+    /**
+     * 序号（从 1 开始）
+     */
+    private Integer itemIndex;
+
+    /**
+     * 图片地址
+     */
+    private String url;
+
+    /**
+     * 导入状态：0-等待中; 1-执行中; 2-成功; 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 导入成功的图片 id
+     */
+    private Long pictureId;
+
+    /**
+     * 导入失败原因
+     */
+    private String message;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,105 @@
+package com.yupi.yupicturebackend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 批量导入图片任务
+ * @TableName picture_import_job
+ */
+@TableName(value ="picture_import_job")
+@Data
+public class PictureImportJob implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 搜索词
+     */
+    private String searchText;
+
+    /**
+     * 图片名称前缀
+     */
+    private String namePrefix;
+
+    /**
+     * 计划导入数量
+     */
+    private Integer count;
+
+    /**
+     * 任务状态：0-等待中; 1-执行中; 2-成功; 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 抓取到的图片数量
+     */
+    private Integer total;
+
+    /**
+     * 导入成功数量
+     */
+    private Integer successCount;
+
+    /**
+     * 导入失败数量
+     */
+    private Integer failCount;
+
+    /**
+     * 任务失败原因
+     */
+    private String message;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 执行实例 id
+     */
+    private String executorId;
+
+    /**
+     * 执行实例的心跳时间，长时间未更新视为实例崩溃，由其他实例接着执行
+     */
+    private Date heartbeatTime;
+
+    /**
+     * 开始执行时间
+     */
+    private Date startTime;
+
+    /**
+     * 结束时间
+     */
+    private Date finishTime;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    /**
+     * 是否删除
+     */
+    @TableLogic
+    private Integer isDelete;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
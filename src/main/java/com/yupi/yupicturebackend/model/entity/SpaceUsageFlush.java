@@ -0,0 +1,29 @@
+package com.yupi.yupicturebackend.model.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 空间用量刷新记录
+ * @TableName space_usage_flush
+ */
+@TableName(value ="space_usage_flush")
+@Data
+public class SpaceUsageFlush implements Serializable {
+    /**
+     * 批次号
+     */
+    @TableId(type = IdType.INPUT)
+    private String id;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,43 @@
+package com.yupi.yupicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 批量导入图片状态枚举类（任务和任务中的每张图片共用）
+ */
+@Getter
+public enum PictureImportStatusEnum {
+
+    WAITING("等待中", 0),
+    RUNNING("执行中", 1),
+    SUCCEED("成功", 2),
+    FAILED("失败", 3);
+
+    private final String text;
+
+    private final int value;
+
+    PictureImportStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的 value
+     * @return 枚举值
+     */
+    public static PictureImportStatusEnum getEnumByValue(Integer value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (PictureImportStatusEnum pictureImportStatusEnum : PictureImportStatusEnum.values()) {
+            if (pictureImportStatusEnum.value == value) {
+                return pictureImportStatusEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.yupi.yupicturebackend.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 图片处理状态枚举类（压缩图、缩略图和主色调的生成状态）
+ */
+@Getter
+public enum PictureProcessStatusEnum {
+
+    PROCESSING("处理中", 0),
+    DONE("处理完成", 1),
+    FAILED("处理失败", 2);
+
+    private final String text;
+
+    private final int value;
+
+    PictureProcessStatusEnum(String text, int value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的 value
+     * @return 枚举值
+     */
+    public static PictureProcessStatusEnum getEnumByValue(Integer value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (PictureProcessStatusEnum pictureProcessStatusEnum : PictureProcessStatusEnum.values()) {
+            if (pictureProcessStatusEnum.value == value) {
+                return pictureProcessStatusEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -56,5 +56,10 @@ public class LoginUserVO implements Serializable {
      */
     private Date updateTime;
 
+    /**
+     * 登录令牌（令牌认证时返回，之后的请求放在 Authorization: Bearer 请求头中）
+     */
+    private String token;
+
     private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 批量导入图片线程池指标
+ */
+@Data
+public class PictureBatchUploadMetricsVO implements Serializable {
+
+    /**
+     * 正在执行的任务数
+     */
+    private Integer jobActiveCount;
+
+    /**
+     * 排队等待执行的任务数
+     */
+    private Integer jobQueueSize;
+
+    /**
+     * 正在下载、上传的图片数
+     */
+    private Integer itemActiveCount;
+
+    /**
+     * 排队等待下载、上传的图片数
+     */
+    private Integer itemQueueSize;
+
+    /**
+     * 已处理完成的图片数（自实例启动）
+     */
+    private Long itemCompletedCount;
+
+    private static final long serialVersionUID = 1L;
+}
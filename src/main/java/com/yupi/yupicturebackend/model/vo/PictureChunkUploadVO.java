@@ -0,0 +1,35 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 分片上传进度
+ */
+@Data
+public class PictureChunkUploadVO implements Serializable {
+
+    /**
+     * 分片上传 id
+     */
+    private String uploadId;
+
+    /**
+     * 分片大小（字节），除最后一片外每片都必须是该大小
+     */
+    private Long partSize;
+
+    /**
+     * 分片总数
+     */
+    private Integer partCount;
+
+    /**
+     * 已上传成功的分片序号，断点续传时跳过这些分片
+     */
+    private List<Integer> uploadedPartNumbers;
+
+    private static final long serialVersionUID = 1L;
+}
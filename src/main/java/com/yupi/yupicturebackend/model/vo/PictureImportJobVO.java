@@ -0,0 +1,117 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import cn.hutool.core.util.NumberUtil;
+import com.yupi.yupicturebackend.model.entity.PictureImportJob;
+import lombok.Data;
+import org.springframework.beans.BeanUtils;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 批量导入图片任务
+ */
+@Data
+public class PictureImportJobVO implements Serializable {
+
+    /**
+     * id
+     */
+    private Long id;
+
+    /**
+     * 搜索词
+     */
+    private String searchText;
+
+    /**
+     * 图片名称前缀
+     */
+    private String namePrefix;
+
+    /**
+     * 计划导入数量
+     */
+    private Integer count;
+
+    /**
+     * 任务状态：0-等待中; 1-执行中; 2-成功; 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 抓取到的图片数量
+     */
+    private Integer total;
+
+    /**
+     * 导入成功数量
+     */
+    private Integer successCount;
+
+    /**
+     * 导入失败数量
+     */
+    private Integer failCount;
+
+    /**
+     * 失败率（失败数量 / 已处理数量）
+     */
+    private Double failRate;
+
+    /**
+     * 吞吐量（每分钟处理的图片数量）
+     */
+    private Double throughput;
+
+    /**
+     * 任务失败原因
+     */
+    private String message;
+
+    /**
+     * 创建用户 id
+     */
+    private Long userId;
+
+    /**
+     * 开始执行时间
+     */
+    private Date startTime;
+
+    /**
+     * 结束时间
+     */
+    private Date finishTime;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对象转封装类
+     */
+    public static PictureImportJobVO objToVo(PictureImportJob pictureImportJob) {
+        if (pictureImportJob == null) {
+            return null;
+        }
+        PictureImportJobVO pictureImportJobVO = new PictureImportJobVO();
+        BeanUtils.copyProperties(pictureImportJob, pictureImportJobVO);
+        // 计算失败率和吞吐量
+        int processedCount = pictureImportJob.getSuccessCount() + pictureImportJob.getFailCount();
+        if (processedCount > 0) {
+            pictureImportJobVO.setFailRate(NumberUtil.round(pictureImportJob.getFailCount() * 1.0 / processedCount, 4)
+                    .doubleValue());
+        }
+        Date startTime = pictureImportJob.getStartTime();
+        if (startTime != null && processedCount > 0) {
+            Date endTime = pictureImportJob.getFinishTime() != null ? pictureImportJob.getFinishTime() : new Date();
+            long costMillis = Math.max(1000L, endTime.getTime() - startTime.getTime());
+            pictureImportJobVO.setThroughput(NumberUtil.round(processedCount * 60000.0 / costMillis, 2).doubleValue());
+        }
+        return pictureImportJobVO;
+    }
+}
@@ -0,0 +1,49 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 图片分页列表缓存指标（自实例启动）
+ */
+@Data
+public class PictureListCacheMetricsVO implements Serializable {
+
+    /**
+     * 本地缓存命中次数
+     */
+    private Long localHitCount;
+
+    /**
+     * Redis 缓存命中次数
+     */
+    private Long redisHitCount;
+
+    /**
+     * 查询数据库的次数（包括后台刷新）
+     */
+    private Long loadCount;
+
+    /**
+     * 本地缓存条数
+     */
+    private Long localSize;
+
+    /**
+     * 写入 Redis 的缓存条数
+     */
+    private Long storedCount;
+
+    /**
+     * 写入 Redis 的缓存平均大小（字节）
+     */
+    private Long avgPayloadBytes;
+
+    /**
+     * 写入 Redis 的缓存最大大小（字节）
+     */
+    private Long maxPayloadBytes;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -1,5 +1,7 @@
 package com.yupi.yupicturebackend.model.vo;
 
+import cn.hutool.core.lang.TypeReference;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.yupi.yupicturebackend.model.entity.Picture;
 import lombok.Data;
@@ -8,6 +10,8 @@ import org.springframework.beans.BeanUtils;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Data
 public class PictureVO implements Serializable {
@@ -31,6 +35,15 @@ public class PictureVO implements Serializable {
      * 图片颜色
      */
     private String picColor;
+    /**
+     * 处理状态：0-处理中; 1-处理完成; 2-处理失败
+     */
+    private Integer processStatus;
+    /**
+     * 多分辨率缩略图，宽度 => 地址，类似 srcset，客户端按展示宽度选择最小的可用图片
+     * 尚未生成的宽度对应按需生成的接口地址
+     */
+    private Map<Integer, String> renditions;
     /**
      * 简介
      */
@@ -99,6 +112,7 @@ public class PictureVO implements Serializable {
         BeanUtils.copyProperties(pictureVO, picture);
         // 类型不同，需要转换
         picture.setTags(JSONUtil.toJsonStr(pictureVO.getTags()));
+        picture.setRenditions(JSONUtil.toJsonStr(pictureVO.getRenditions()));
         return picture;
     }
     /**
@@ -112,6 +126,11 @@ public class PictureVO implements Serializable {
         BeanUtils.copyProperties(picture, pictureVO);
         // 类型不同，需要转换
         pictureVO.setTags(JSONUtil.toList(picture.getTags(), String.class));
+        if (StrUtil.isNotBlank(picture.getRenditions())) {
+            pictureVO.setRenditions(JSONUtil.toBean(picture.getRenditions(),
+                    new TypeReference<TreeMap<Integer, String>>() {
+                    }, false));
+        }
         return pictureVO;
     }
 }
@@ -0,0 +1,60 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 空间额度对账指标（最近一轮）
+ */
+@Data
+public class SpaceQuotaReconcileMetricsVO implements Serializable {
+
+    /**
+     * 本实例是否正在对账
+     */
+    private Boolean running;
+
+    /**
+     * 最近一轮开始时间
+     */
+    private Date lastStartTime;
+
+    /**
+     * 最近一轮结束时间
+     */
+    private Date lastFinishTime;
+
+    /**
+     * 最近一轮检查的空间数
+     */
+    private Long scannedSpaceCount;
+
+    /**
+     * 最近一轮存在偏差的空间数
+     */
+    private Long driftSpaceCount;
+
+    /**
+     * 最近一轮修正的空间数（连续两轮偏差相同才修正）
+     */
+    private Long fixedSpaceCount;
+
+    /**
+     * 最近一轮已用大小偏差的绝对值之和（字节）
+     */
+    private Long sizeDrift;
+
+    /**
+     * 最近一轮图片数量偏差的绝对值之和
+     */
+    private Long countDrift;
+
+    /**
+     * 累计修正的空间数（自实例启动）
+     */
+    private Long totalFixedSpaceCount;
+
+    private static final long serialVersionUID = 1L;
+}
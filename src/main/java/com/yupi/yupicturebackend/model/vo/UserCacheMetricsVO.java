@@ -0,0 +1,44 @@
+package com.yupi.yupicturebackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 用户缓存指标（自实例启动）
+ */
+@Data
+public class UserCacheMetricsVO implements Serializable {
+
+    /**
+     * 本地缓存命中次数
+     */
+    private Long localHitCount;
+
+    /**
+     * 本地缓存未命中次数
+     */
+    private Long localMissCount;
+
+    /**
+     * 本地缓存命中率
+     */
+    private Double localHitRate;
+
+    /**
+     * Redis 缓存命中次数
+     */
+    private Long redisHitCount;
+
+    /**
+     * 从数据库查询的用户数
+     */
+    private Long loadCount;
+
+    /**
+     * 本地缓存条数
+     */
+    private Long localSize;
+
+    private static final long serialVersionUID = 1L;
+}
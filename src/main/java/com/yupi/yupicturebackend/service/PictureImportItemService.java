@@ -0,0 +1,20 @@
+package com.yupi.yupicturebackend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.yupi.yupicturebackend.model.dto.picture.PictureImportItemQueryRequest;
+import com.yupi.yupicturebackend.model.entity.PictureImportItem;
+
+/**
+* @description 针对表【picture_import_item(批量导入图片明细)】的数据库操作Service
+*/
+public interface PictureImportItemService extends IService<PictureImportItem> {
+
+    /**
+     * 获取查询对象
+     *
+     * @param pictureImportItemQueryRequest
+     * @return
+     */
+    QueryWrapper<PictureImportItem> getQueryWrapper(PictureImportItemQueryRequest pictureImportItemQueryRequest);
+}
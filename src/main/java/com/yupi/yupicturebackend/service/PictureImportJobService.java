@@ -0,0 +1,41 @@
+package com.yupi.yupicturebackend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.yupi.yupicturebackend.model.dto.picture.PictureImportJobQueryRequest;
+import com.yupi.yupicturebackend.model.dto.picture.PictureUploadByBatchRequest;
+import com.yupi.yupicturebackend.model.entity.PictureImportJob;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.PictureImportJobVO;
+
+/**
+* @description 针对表【picture_import_job(批量导入图片任务)】的数据库操作Service
+*/
+public interface PictureImportJobService extends IService<PictureImportJob> {
+
+    /**
+     * 创建批量导入图片任务，由调度器异步执行
+     *
+     * @param pictureUploadByBatchRequest
+     * @param loginUser
+     * @return 任务 id
+     */
+    long addImportJob(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser);
+
+    /**
+     * 获取任务封装类（分页）
+     *
+     * @param pictureImportJobPage
+     * @return
+     */
+    Page<PictureImportJobVO> getImportJobVOPage(Page<PictureImportJob> pictureImportJobPage);
+
+    /**
+     * 获取查询对象
+     *
+     * @param pictureImportJobQueryRequest
+     * @return
+     */
+    QueryWrapper<PictureImportJob> getQueryWrapper(PictureImportJobQueryRequest pictureImportJobQueryRequest);
+}
@@ -6,6 +6,7 @@ import com.yupi.yupicturebackend.model.dto.picture.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.PictureChunkUploadVO;
 import com.yupi.yupicturebackend.model.vo.PictureVO;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,6 +37,50 @@ public interface PictureService extends IService<Picture> {
      * @return
      */
     PictureVO uploadPicture(Object inputSource, PictureUploadRequest pictureUploadRequest, User loginUser);
+
+    /**
+     * 初始化分片上传
+     *
+     * @param pictureChunkUploadInitRequest
+     * @param loginUser
+     * @return 分片上传进度
+     */
+    PictureChunkUploadVO initPictureChunkUpload(PictureChunkUploadInitRequest pictureChunkUploadInitRequest, User loginUser);
+
+    /**
+     * 上传分片
+     *
+     * @param pictureChunkUploadRequest
+     * @param multipartFile
+     * @param loginUser
+     */
+    void uploadPictureChunk(PictureChunkUploadRequest pictureChunkUploadRequest, MultipartFile multipartFile, User loginUser);
+
+    /**
+     * 获取分片上传进度（用于断点续传）
+     *
+     * @param uploadId
+     * @param loginUser
+     * @return 分片上传进度
+     */
+    PictureChunkUploadVO getPictureChunkUpload(String uploadId, User loginUser);
+
+    /**
+     * 合并分片, 保存图片
+     *
+     * @param uploadId
+     * @param loginUser
+     * @return 图片信息
+     */
+    PictureVO completePictureChunkUpload(String uploadId, User loginUser);
+
+    /**
+     * 取消分片上传
+     *
+     * @param uploadId
+     * @param loginUser
+     */
+    void abortPictureChunkUpload(String uploadId, User loginUser);
     /**
      * 获取查询条件
      *
@@ -74,14 +119,6 @@ public interface PictureService extends IService<Picture> {
      * @param loginUser
      */
     void fillReviewParams(Picture picture, User loginUser);
-    /**
-     * 批量抓取和创建图片
-     *
-     * @param pictureUploadByBatchRequest
-     * @param loginUser
-     * @return 成功创建的图片数
-     */
-    Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser);
     /**
      * 删除图片
      *
@@ -111,8 +148,38 @@ public interface PictureService extends IService<Picture> {
      */
     void checkPictureAuth(User loginUser, Picture picture);
 
+    /**
+     * 获取指定宽度的缩略图地址，不存在时生成
+     *
+     * @param picture 图片
+     * @param width   缩略图宽度
+     * @return 缩略图地址
+     */
+    String getPictureRenditionUrl(Picture picture, int width);
+
     List<PictureVO> searchPictureByColor(Long spaceId, String picColor, User loginUser);
 
+    /**
+     * 多颜色搜图，按主色板与目标颜色的 CIELAB 距离排序
+     *
+     * @param spaceId      空间 id
+     * @param picColorList 目标颜色列表
+     * @param weightList   目标颜色的权重，为空时各颜色权重相同
+     * @param loginUser    登录用户
+     * @return 最相似的图片
+     */
+    List<PictureVO> searchPictureByPalette(Long spaceId, List<String> picColorList, List<Double> weightList,
+                                           User loginUser);
+
+    /**
+     * 相似图片搜索，按感知哈希在源图片所在空间（或公共图库）中查找
+     *
+     * @param pictureId 源图片 id
+     * @param loginUser 登录用户
+     * @return 最相似的图片
+     */
+    List<PictureVO> searchSimilarPicture(long pictureId, User loginUser);
+
 /**
  * 批量编辑图片的方法
  * 使用@Transactional注解确保在发生异常时进行事务回滚
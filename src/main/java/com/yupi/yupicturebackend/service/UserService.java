@@ -8,7 +8,9 @@ import com.yupi.yupicturebackend.model.vo.LoginUserVO;
 import com.yupi.yupicturebackend.model.vo.UserVO;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author 李鱼皮
@@ -53,6 +55,14 @@ public interface UserService extends IService<User> {
      */
     User getLoginUser(HttpServletRequest request);
 
+    /**
+     * 获取当前登录用户的角色（令牌认证时直接从令牌中读取，不查询用户信息）
+     *
+     * @param request
+     * @return 用户角色
+     */
+    String getLoginUserRole(HttpServletRequest request);
+
     /**
      * 获得脱敏后的登录用户信息
      *
@@ -77,6 +87,22 @@ public interface UserService extends IService<User> {
      */
     List<UserVO> getUserVOList(List<User> userList);
 
+    /**
+     * 根据 id 获得脱敏后的用户信息（读缓存）
+     *
+     * @param userId 用户 id
+     * @return 脱敏后的用户信息，用户不存在时为 null
+     */
+    UserVO getUserVOById(Long userId);
+
+    /**
+     * 根据 id 批量获得脱敏后的用户信息（读缓存，未命中的用户一次查询）
+     *
+     * @param userIds 用户 id
+     * @return 用户 id => 脱敏后的用户信息，不存在的用户不在结果中
+     */
+    Map<Long, UserVO> getUserVOMap(Collection<Long> userIds);
+
     /**
      * 用户注销
      *
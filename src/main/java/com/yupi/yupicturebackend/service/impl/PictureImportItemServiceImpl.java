@@ -0,0 +1,40 @@
+package com.yupi.yupicturebackend.service.impl;
+
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.yupi.yupicturebackend.mapper.PictureImportItemMapper;
+import com.yupi.yupicturebackend.model.dto.picture.PictureImportItemQueryRequest;
+import com.yupi.yupicturebackend.model.entity.PictureImportItem;
+import com.yupi.yupicturebackend.service.PictureImportItemService;
+import org.springframework.stereotype.Service;
+
+/**
+* @description 针对表【picture_import_item(批量导入图片明细)】的数据库操作Service实现
+*/
+@Service
+public class PictureImportItemServiceImpl extends ServiceImpl<PictureImportItemMapper, PictureImportItem>
+    implements PictureImportItemService {
+
+    @Override
+    public QueryWrapper<PictureImportItem> getQueryWrapper(PictureImportItemQueryRequest pictureImportItemQueryRequest) {
+        QueryWrapper<PictureImportItem> queryWrapper = new QueryWrapper<>();
+        if (pictureImportItemQueryRequest == null) {
+            return queryWrapper;
+        }
+        Long jobId = pictureImportItemQueryRequest.getJobId();
+        Integer status = pictureImportItemQueryRequest.getStatus();
+        String sortField = pictureImportItemQueryRequest.getSortField();
+        String sortOrder = pictureImportItemQueryRequest.getSortOrder();
+        queryWrapper.eq(ObjUtil.isNotEmpty(jobId), "jobId", jobId);
+        queryWrapper.eq(ObjUtil.isNotEmpty(status), "status", status);
+        // 默认按序号排序
+        if (StrUtil.isNotEmpty(sortField)) {
+            queryWrapper.orderBy(true, "ascend".equals(sortOrder), sortField);
+        } else {
+            queryWrapper.orderByAsc("itemIndex");
+        }
+        return queryWrapper;
+    }
+}
@@ -0,0 +1,99 @@
+package com.yupi.yupicturebackend.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.mapper.PictureImportJobMapper;
+import com.yupi.yupicturebackend.model.dto.picture.PictureImportJobQueryRequest;
+import com.yupi.yupicturebackend.model.dto.picture.PictureUploadByBatchRequest;
+import com.yupi.yupicturebackend.model.entity.PictureImportJob;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.enums.PictureImportStatusEnum;
+import com.yupi.yupicturebackend.model.vo.PictureImportJobVO;
+import com.yupi.yupicturebackend.service.PictureImportJobService;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+* @description 针对表【picture_import_job(批量导入图片任务)】的数据库操作Service实现
+*/
+@Service
+public class PictureImportJobServiceImpl extends ServiceImpl<PictureImportJobMapper, PictureImportJob>
+    implements PictureImportJobService {
+
+    @Resource
+    private PictureUploadConfig pictureUploadConfig;
+
+    @Override
+    public long addImportJob(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser) {
+        ThrowUtils.throwIf(pictureUploadByBatchRequest == null, ErrorCode.PARAMS_ERROR);
+        // 1. 校验参数
+        String searchText = pictureUploadByBatchRequest.getSearchText();
+        Integer count = pictureUploadByBatchRequest.getCount();
+        ThrowUtils.throwIf(StrUtil.isBlank(searchText), ErrorCode.PARAMS_ERROR, "搜索词不能为空");
+        ThrowUtils.throwIf(searchText.length() > 256, ErrorCode.PARAMS_ERROR, "搜索词过长");
+        ThrowUtils.throwIf(count == null || count <= 0, ErrorCode.PARAMS_ERROR, "抓取数量不合法");
+        int maxCount = pictureUploadConfig.getBatchMaxCount();
+        ThrowUtils.throwIf(count > maxCount, ErrorCode.PARAMS_ERROR, "最多抓取 " + maxCount + " 条");
+        String namePrefix = pictureUploadByBatchRequest.getNamePrefix();
+        if (StrUtil.isBlank(namePrefix)) {
+            namePrefix = searchText;
+        }
+        // 2. 保存任务，由调度器拉取执行
+        PictureImportJob pictureImportJob = new PictureImportJob();
+        pictureImportJob.setSearchText(searchText);
+        pictureImportJob.setNamePrefix(namePrefix);
+        pictureImportJob.setCount(count);
+        pictureImportJob.setStatus(PictureImportStatusEnum.WAITING.getValue());
+        pictureImportJob.setTotal(0);
+        pictureImportJob.setSuccessCount(0);
+        pictureImportJob.setFailCount(0);
+        pictureImportJob.setUserId(loginUser.getId());
+        boolean result = this.save(pictureImportJob);
+        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "创建任务失败");
+        return pictureImportJob.getId();
+    }
+
+    @Override
+    public Page<PictureImportJobVO> getImportJobVOPage(Page<PictureImportJob> pictureImportJobPage) {
+        List<PictureImportJob> pictureImportJobList = pictureImportJobPage.getRecords();
+        Page<PictureImportJobVO> pictureImportJobVOPage = new Page<>(pictureImportJobPage.getCurrent(),
+                pictureImportJobPage.getSize(), pictureImportJobPage.getTotal());
+        if (CollUtil.isEmpty(pictureImportJobList)) {
+            return pictureImportJobVOPage;
+        }
+        pictureImportJobVOPage.setRecords(pictureImportJobList.stream()
+                .map(PictureImportJobVO::objToVo)
+                .collect(Collectors.toList()));
+        return pictureImportJobVOPage;
+    }
+
+    @Override
+    public QueryWrapper<PictureImportJob> getQueryWrapper(PictureImportJobQueryRequest pictureImportJobQueryRequest) {
+        QueryWrapper<PictureImportJob> queryWrapper = new QueryWrapper<>();
+        if (pictureImportJobQueryRequest == null) {
+            return queryWrapper;
+        }
+        Long id = pictureImportJobQueryRequest.getId();
+        Long userId = pictureImportJobQueryRequest.getUserId();
+        String searchText = pictureImportJobQueryRequest.getSearchText();
+        Integer status = pictureImportJobQueryRequest.getStatus();
+        String sortField = pictureImportJobQueryRequest.getSortField();
+        String sortOrder = pictureImportJobQueryRequest.getSortOrder();
+        queryWrapper.eq(ObjUtil.isNotEmpty(id), "id", id);
+        queryWrapper.eq(ObjUtil.isNotEmpty(userId), "userId", userId);
+        queryWrapper.like(StrUtil.isNotBlank(searchText), "searchText", searchText);
+        queryWrapper.eq(ObjUtil.isNotEmpty(status), "status", status);
+        queryWrapper.orderBy(StrUtil.isNotEmpty(sortField), "ascend".equals(sortOrder), sortField);
+        return queryWrapper;
+    }
+}
@@ -5,14 +5,26 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.config.CosClientConfig;
 import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.process.PictureProcessQueue;
+import com.yupi.yupicturebackend.manager.cache.PictureListCache;
+import com.yupi.yupicturebackend.manager.quota.SpaceQuotaManager;
+import com.yupi.yupicturebackend.manager.quota.SpaceUsageBuffer;
+import com.yupi.yupicturebackend.manager.quota.SpaceQuotaReservation;
+import com.yupi.yupicturebackend.manager.process.PictureRenditionManager;
+import com.yupi.yupicturebackend.manager.search.PictureColorIndex;
+import com.yupi.yupicturebackend.manager.search.PictureHashIndex;
+import com.yupi.yupicturebackend.manager.upload.ChunkPictureUpload;
 import com.yupi.yupicturebackend.manager.upload.FilePictureUpload;
+import com.yupi.yupicturebackend.manager.upload.PictureChunkUploadSession;
 import com.yupi.yupicturebackend.manager.upload.PictureUploadTemplate;
 import com.yupi.yupicturebackend.manager.upload.UrlPictureUpload;
 import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
@@ -20,29 +32,27 @@ import com.yupi.yupicturebackend.model.dto.picture.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
 import com.yupi.yupicturebackend.model.entity.Space;
 import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.enums.PictureProcessStatusEnum;
 import com.yupi.yupicturebackend.model.enums.PictureReviewStatusEnum;
+import com.yupi.yupicturebackend.model.vo.PictureChunkUploadVO;
 import com.yupi.yupicturebackend.model.vo.PictureVO;
 import com.yupi.yupicturebackend.model.vo.UserVO;
 import com.yupi.yupicturebackend.service.PictureService;
 import com.yupi.yupicturebackend.mapper.PictureMapper;
 import com.yupi.yupicturebackend.service.SpaceService;
 import com.yupi.yupicturebackend.service.UserService;
-import com.yupi.yupicturebackend.utils.ColorSimilarUtils;
+import com.yupi.yupicturebackend.utils.ColorPaletteUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
-import java.awt.*;
-import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -57,6 +67,11 @@ import java.util.stream.Collectors;
 public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         implements PictureService {
 
+    /**
+     * 相似图片的最大感知哈希汉明距离（64 位中不同的位数）
+     */
+    private static final int SIMILAR_MAX_DISTANCE = 16;
+
     // 6. 引入 FileManager 对象
     // @Resource
     // private FileManager fileManager;
@@ -64,20 +79,55 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     @Resource
     private UserService userService;
 
+    /**
+     * 当前服务的代理，内部调用 @Async 方法时需要经过代理才会异步执行
+     */
+    @Lazy
+    @Resource
+    private PictureService pictureService;
+
     @Resource
     private FilePictureUpload filePictureUpload;
 
     @Resource
     private UrlPictureUpload urlPictureUpload;
+
+    @Resource
+    private ChunkPictureUpload chunkPictureUpload;
+
+    @Resource
+    private PictureProcessQueue pictureProcessQueue;
+
+    @Resource
+    private PictureRenditionManager pictureRenditionManager;
+
+    @Resource
+    private PictureColorIndex pictureColorIndex;
+
+    @Resource
+    private PictureHashIndex pictureHashIndex;
+
     @Resource
     private CosManager cosManager;
 
+    @Resource
+    private CosClientConfig cosClientConfig;
+
     @Resource
     private SpaceService spaceService;
 
     @Resource
     private TransactionTemplate transactionTemplate;
 
+    @Resource
+    private SpaceQuotaManager spaceQuotaManager;
+
+    @Resource
+    private SpaceUsageBuffer spaceUsageBuffer;
+
+    @Resource
+    private PictureListCache pictureListCache;
+
 
     /**
      * 验证数据
@@ -115,6 +165,60 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 1. 校验参数, 用户未登录, 抛出没有权限的异常
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
 
+        // 校验空间和图片权限, 获取图片最终所属的空间 id
+        Long spaceId = checkUploadAuth(pictureUploadRequest, loginUser);
+        Long pictureId = pictureUploadRequest.getId();
+
+        // 7. 定义上传文件的前缀 public/登录用户 ID
+        String uploadPathPrefix = getUploadPathPrefix(spaceId, loginUser);
+        // 8. 上传图片, 上传图片 API 需要的参数(原始文件 + 文件前缀), 获取上传文件结果对象,
+        PictureUploadTemplate pictureUploadTemplate = filePictureUpload;
+        if (inputSource instanceof String) {
+            pictureUploadTemplate = urlPictureUpload;
+        }
+
+        // 上传前原子地预留空间额度, 表单文件按文件大小预留, 网络图片上传前无法得知大小,
+        // 保存时按实际大小补充预留, 空间放不下时保存失败
+        long reserveSize = inputSource instanceof MultipartFile ? ((MultipartFile) inputSource).getSize() : 0;
+        SpaceQuotaReservation reservation = spaceQuotaManager.reserve(spaceId, pictureId == null ? 1 : 0, reserveSize);
+        UploadPictureResult uploadPictureResult = null;
+        try {
+            uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix);
+            // UploadPictureResult uploadPictureResult = fileManager.uploadPicture(multipartFile, uploadPathPrefix);
+
+            PictureVO pictureVO = savePicture(uploadPictureResult, pictureUploadRequest.getPicName(), pictureId,
+                    spaceId, loginUser, reservation);
+            if (pictureVO == null) {
+                // 复用的图片在保存前已被删除, 文件可能已被清理, 重新上传（已删除的图片不会再被复用）
+                uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix);
+                pictureVO = savePicture(uploadPictureResult, pictureUploadRequest.getPicName(), pictureId,
+                        spaceId, loginUser, reservation);
+                ThrowUtils.throwIf(pictureVO == null, ErrorCode.OPERATION_ERROR, "图片上传失败, 请重试");
+            }
+            return pictureVO;
+        } catch (RuntimeException e) {
+            // 上传或保存失败, 释放预留的额度
+            spaceQuotaManager.release(reservation);
+            if (uploadPictureResult != null) {
+                // 已上传但保存失败, 通过代理异步清理文件, 仍被其他图片引用（按内容去重复用）的文件不会删除
+                Picture uploadedPicture = new Picture();
+                uploadedPicture.setUrl(uploadPictureResult.getUrl());
+                uploadedPicture.setThumbnailUrl(uploadPictureResult.getThumbnailUrl());
+                uploadedPicture.setRenditions(uploadPictureResult.getRenditions());
+                pictureService.clearPictureFile(uploadedPicture);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 校验上传权限（空间是否存在、是否有权修改原图片），额度在上传前预留
+     *
+     * @param pictureUploadRequest
+     * @param loginUser
+     * @return 图片最终所属的空间 id, 公共图库返回 null
+     */
+    private Long checkUploadAuth(PictureUploadRequest pictureUploadRequest, User loginUser) {
         // 校验空间是否存在
         Long spaceId = pictureUploadRequest.getSpaceId();
         if (spaceId != null) {
@@ -124,20 +228,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             if (!loginUser.getId().equals(space.getUserId())) {
                 throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间权限");
             }
-
-            if (space.getTotalCount() >= space.getMaxCount()) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间条数不足");
-            }
-            if (space.getTotalSize() >= space.getMaxSize()) {
-                throw new BusinessException(ErrorCode.OPERATION_ERROR, "空间大小不足");
-            }
         }
         // 2. 判断是新增图片, 还是更新图片, 所以先判断图片是否存在
-        Long pictureId = null;
-        if (pictureUploadRequest != null) {
-            // 3. 如果传入的请求不为空, 才获取请求中的图片 ID
-            pictureId = pictureUploadRequest.getId();
-        }
+        Long pictureId = pictureUploadRequest.getId();
 
         // 4. 图片 ID 不为空, 查数据库中是否有对应的图片 ID
         if (pictureId != null) {
@@ -161,35 +254,41 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
                 }
             }
         }
+        return spaceId;
+    }
 
-        // 7. 定义上传文件的前缀 public/登录用户 ID
-        // String uploadPathPrefix = String.format("public/%s", loginUser.getId());
-        // 根据用户划分前缀, 当前的图片文件上传到公共图库, 因此前缀定义为 public
-        String uploadPathPrefix;
+    /**
+     * 获取上传文件的路径前缀
+     * 公共图库按用户划分前缀 public/用户 id, 私有空间按空间划分前缀 space/空间 id
+     */
+    private String getUploadPathPrefix(Long spaceId, User loginUser) {
         if (spaceId == null) {
-            uploadPathPrefix = String.format("public/%s", loginUser.getId());
-        } else {
-            uploadPathPrefix = String.format("space/%s", spaceId);
+            return String.format("public/%s", loginUser.getId());
         }
-        // 8. 上传图片, 上传图片 API 需要的参数(原始文件 + 文件前缀), 获取上传文件结果对象,
-        PictureUploadTemplate pictureUploadTemplate = filePictureUpload;
-        if (inputSource instanceof String) {
-            pictureUploadTemplate = urlPictureUpload;
-        }
-
-        UploadPictureResult uploadPictureResult = pictureUploadTemplate.uploadPicture(inputSource, uploadPathPrefix);
-        // UploadPictureResult uploadPictureResult = fileManager.uploadPicture(multipartFile, uploadPathPrefix);
+        return String.format("space/%s", spaceId);
+    }
 
+    /**
+     * 保存上传后的图片信息, 并按实际大小确认预留的空间额度
+     *
+     * @param uploadPictureResult 上传图片后解析出的结果
+     * @param picName             用户指定的图片名称, 为空则使用解析出的名称
+     * @param pictureId           图片 id, 不为空表示更新图片
+     * @param spaceId             空间 id
+     * @param loginUser           登录用户
+     * @param reservation         上传前预留的空间额度
+     * @return 保存后的图片, 按内容去重复用的图片在保存前已被删除时返回 null（未保存, 额度仍为预留状态）
+     */
+    private PictureVO savePicture(UploadPictureResult uploadPictureResult, String picName, Long pictureId,
+                                  Long spaceId, User loginUser, SpaceQuotaReservation reservation) {
         // 9. 构造要入库的图片信息(样板代码)
         Picture picture = new Picture();
         picture.setUrl(uploadPictureResult.getUrl());
         picture.setThumbnailUrl(uploadPictureResult.getThumbnailUrl());
-        String picName = uploadPictureResult.getPicName();
         picture.setSpaceId(spaceId);
-        if (pictureUploadRequest != null && StrUtil.isNotBlank(pictureUploadRequest.getPicName())) {
-            // 图片更新请求不为空, 并且图片更新请求中的图片名称属性不为空, 以更新请求的图片名称, 代替图片解析结果的名称
-            // pictureUploadRequest 的 PicName 属性是允许用户传递的
-            picName = pictureUploadRequest.getPicName();
+        if (StrUtil.isBlank(picName)) {
+            // 用户未指定图片名称时, 使用图片解析结果的名称
+            picName = uploadPictureResult.getPicName();
         }
         picture.setName(picName);
         picture.setPicSize(uploadPictureResult.getPicSize());
@@ -198,6 +297,14 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         picture.setPicScale(uploadPictureResult.getPicScale());
         picture.setPicFormat(uploadPictureResult.getPicFormat());
         picture.setPicColor(uploadPictureResult.getPicColor());
+        picture.setPicPalette(uploadPictureResult.getPicPalette());
+        picture.setPicHash(uploadPictureResult.getPicHash());
+        picture.setContentHash(uploadPictureResult.getContentHash());
+        // 未指定处理状态表示上传时已同步处理完成
+        Integer processStatus = uploadPictureResult.getProcessStatus();
+        picture.setProcessStatus(processStatus != null ? processStatus : PictureProcessStatusEnum.DONE.getValue());
+        // 重新上传时清空旧图片的多分辨率缩略图
+        picture.setRenditions(StrUtil.blankToDefault(uploadPictureResult.getRenditions(), "{}"));
         // 从当前登录用户中获取 userId
         picture.setUserId(loginUser.getId());
         // fillReviewParams( picture, loginUser);
@@ -209,30 +316,169 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             picture.setId(pictureId);
             picture.setEditTime(new Date());
         }
-        // 更新事务
-        Long finalSpaceId = spaceId;
-        transactionTemplate.execute(status -> {
-            boolean result = this.saveOrUpdate(picture);
-            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败");
-            if (finalSpaceId != null) {
-                boolean update = spaceService.lambdaUpdate()
-                        .eq(Space::getId, finalSpaceId)
-                        .setSql("totalSize = totalSize + " + picture.getPicSize())
-                        .setSql("totalCount = totalCount + 1")
-                        .update();
-                ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
+        // 12. 在同一个事务中保存图片并确认额度, 利用 MyBatis 框架的 API，根据实体对象 picture 是否存在 ID 值, 来决定是执行插入操作还是更新操作
+        boolean saved = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            // 复用其他图片的文件时锁定该图片, 确认未被删除: 删除图片需要等待本事务提交, 之后异步清理文件时能查到本图片的引用;
+            // 已被删除时其文件可能正在清理, 不能复用
+            Long reusedPictureId = uploadPictureResult.getReusedPictureId();
+            if (reusedPictureId != null) {
+                Picture reusedPicture = this.getOne(new LambdaQueryWrapper<Picture>()
+                        .eq(Picture::getId, reusedPictureId)
+                        .last("for update"));
+                if (reusedPicture == null || !picture.getUrl().equals(reusedPicture.getUrl())) {
+                    return false;
+                }
             }
-            return picture;
-        });
+            // 重新上传时额度只增加新旧图片的大小差
+            long oldSize = 0;
+            if (pictureId != null) {
+                Picture oldPicture = this.getById(pictureId);
+                ThrowUtils.throwIf(oldPicture == null, ErrorCode.NOT_FOUND_ERROR, "图片不存在");
+                oldSize = oldPicture.getPicSize() == null ? 0 : oldPicture.getPicSize();
+            }
+            boolean result = this.saveOrUpdate(picture);
+            // 13. result 返回 false, 表示数据库不存在该图片, 不能调用图片上传(更新)接口
+            ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败, 数据库操作失败");
+            spaceQuotaManager.commit(reservation, picture.getPicSize() - oldSize);
+            pictureListCache.invalidate(spaceId);
+            return true;
+        }));
+        if (!saved) {
+            log.info("复用的图片已被删除, 重新上传, pictureId = {}", uploadPictureResult.getReusedPictureId());
+            return null;
+        }
+
+        // 14. 更新空间颜色索引, 异步处理时主色调在处理完成后更新
+        pictureColorIndex.onPictureSaved(picture);
+        pictureHashIndex.onPictureSaved(picture);
+
+        // 15. 图片入库后再提交异步处理任务, 生成压缩图、缩略图和主色调
+        if (picture.getProcessStatus() == PictureProcessStatusEnum.PROCESSING.getValue()) {
+            pictureProcessQueue.submit(picture.getId());
+        }
+
+        // 16. 对数据进行脱敏, 并返回
+        PictureVO pictureVO = PictureVO.objToVo(picture);
+        pictureRenditionManager.fillRenditions(pictureVO);
+        return pictureVO;
+    }
+
+    /**
+     * 初始化分片上传
+     *
+     * @param pictureChunkUploadInitRequest
+     * @param loginUser
+     * @return 分片上传进度
+     */
+    @Override
+    public PictureChunkUploadVO initPictureChunkUpload(PictureChunkUploadInitRequest pictureChunkUploadInitRequest, User loginUser) {
+        ThrowUtils.throwIf(pictureChunkUploadInitRequest == null, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        // 复用普通上传的权限校验, 额度在合并分片前预留, 这里只提前校验
+        PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+        BeanUtils.copyProperties(pictureChunkUploadInitRequest, pictureUploadRequest);
+        Long spaceId = checkUploadAuth(pictureUploadRequest, loginUser);
+        Long fileSize = pictureChunkUploadInitRequest.getFileSize();
+        spaceQuotaManager.checkAvailable(spaceId, pictureChunkUploadInitRequest.getId() == null ? 1 : 0,
+                fileSize == null ? 0 : fileSize);
+
+        PictureChunkUploadSession session = new PictureChunkUploadSession();
+        session.setFileName(pictureChunkUploadInitRequest.getFileName());
+        session.setFileSize(pictureChunkUploadInitRequest.getFileSize());
+        session.setUserId(loginUser.getId());
+        session.setSpaceId(spaceId);
+        session.setPictureId(pictureChunkUploadInitRequest.getId());
+        session.setPicName(pictureChunkUploadInitRequest.getPicName());
+        session = chunkPictureUpload.initiate(session, getUploadPathPrefix(spaceId, loginUser));
+        return getPictureChunkUploadVO(session);
+    }
+
+    /**
+     * 上传分片
+     *
+     * @param pictureChunkUploadRequest
+     * @param multipartFile
+     * @param loginUser
+     */
+    @Override
+    public void uploadPictureChunk(PictureChunkUploadRequest pictureChunkUploadRequest, MultipartFile multipartFile, User loginUser) {
+        ThrowUtils.throwIf(pictureChunkUploadRequest == null, ErrorCode.PARAMS_ERROR);
+        PictureChunkUploadSession session = getChunkUploadSession(pictureChunkUploadRequest.getUploadId(), loginUser);
+        chunkPictureUpload.uploadPart(session, pictureChunkUploadRequest.getPartNumber(), multipartFile);
+    }
+
+    /**
+     * 获取分片上传进度（用于断点续传）
+     *
+     * @param uploadId
+     * @param loginUser
+     * @return 分片上传进度
+     */
+    @Override
+    public PictureChunkUploadVO getPictureChunkUpload(String uploadId, User loginUser) {
+        PictureChunkUploadSession session = getChunkUploadSession(uploadId, loginUser);
+        return getPictureChunkUploadVO(session);
+    }
 
-        // 12. 利用 MyBatis 框架的 API，根据实体对象 picture 是否存在 ID 值, 来决定是执行插入操作还是更新操作
-        boolean result = this.saveOrUpdate(picture);
+    /**
+     * 合并分片, 保存图片
+     *
+     * @param uploadId
+     * @param loginUser
+     * @return 图片信息
+     */
+    @Override
+    public PictureVO completePictureChunkUpload(String uploadId, User loginUser) {
+        PictureChunkUploadSession session = getChunkUploadSession(uploadId, loginUser);
+        // 上传期间空间可能发生变化, 合并前重新校验, 并在合并前预留额度
+        PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
+        pictureUploadRequest.setId(session.getPictureId());
+        pictureUploadRequest.setSpaceId(session.getSpaceId());
+        Long spaceId = checkUploadAuth(pictureUploadRequest, loginUser);
+
+        SpaceQuotaReservation reservation = spaceQuotaManager.reserve(spaceId, session.getPictureId() == null ? 1 : 0,
+                session.getFileSize() == null ? 0 : session.getFileSize());
+        try {
+            UploadPictureResult uploadPictureResult = chunkPictureUpload.complete(session);
+            return savePicture(uploadPictureResult, session.getPicName(), session.getPictureId(), spaceId, loginUser,
+                    reservation);
+        } catch (RuntimeException e) {
+            spaceQuotaManager.release(reservation);
+            throw e;
+        }
+    }
+
+    /**
+     * 取消分片上传
+     *
+     * @param uploadId
+     * @param loginUser
+     */
+    @Override
+    public void abortPictureChunkUpload(String uploadId, User loginUser) {
+        PictureChunkUploadSession session = getChunkUploadSession(uploadId, loginUser);
+        chunkPictureUpload.abort(session);
+    }
 
-        // 13. result 返回 false, 表示数据库不存在该图片, 不能调用图片上传(更新)接口
-        ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR, "图片上传失败, 数据库操作失败");
+    /**
+     * 获取分片上传会话, 仅发起上传的用户本人可以操作
+     */
+    private PictureChunkUploadSession getChunkUploadSession(String uploadId, User loginUser) {
+        ThrowUtils.throwIf(StrUtil.isBlank(uploadId), ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        PictureChunkUploadSession session = chunkPictureUpload.getSession(uploadId);
+        ThrowUtils.throwIf(session == null, ErrorCode.NOT_FOUND_ERROR, "上传任务不存在或已过期");
+        ThrowUtils.throwIf(!loginUser.getId().equals(session.getUserId()), ErrorCode.NO_AUTH_ERROR);
+        return session;
+    }
 
-        // 14. 对数据进行脱敏, 并返回
-        return PictureVO.objToVo(picture);
+    private PictureChunkUploadVO getPictureChunkUploadVO(PictureChunkUploadSession session) {
+        PictureChunkUploadVO pictureChunkUploadVO = new PictureChunkUploadVO();
+        pictureChunkUploadVO.setUploadId(session.getUploadId());
+        pictureChunkUploadVO.setPartSize(session.getPartSize());
+        pictureChunkUploadVO.setPartCount(session.getPartCount());
+        pictureChunkUploadVO.setUploadedPartNumbers(chunkPictureUpload.getUploadedPartNumbers(session));
+        return pictureChunkUploadVO;
     }
 
     /**
@@ -320,11 +566,11 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     public PictureVO getPictureVO(Picture picture, HttpServletRequest request) {
         // 对象转封装类
         PictureVO pictureVO = PictureVO.objToVo(picture);
+        pictureRenditionManager.fillRenditions(pictureVO);
         // 关联查询用户信息
         Long userId = picture.getUserId();
         if (userId != null && userId > 0) {
-            User user = userService.getById(userId);
-            UserVO userVO = userService.getUserVO(user);
+            UserVO userVO = userService.getUserVOById(userId);
             pictureVO.setUser(userVO);
         }
         return pictureVO;
@@ -360,27 +606,16 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         Set<Long> userIdSet = pictureList.stream().map(Picture::getUserId).collect(Collectors.toSet());
         // .map(Picture::getUserId) 取出封装图片列表中, 所有用户的 Id, 并将这些 id 收集为一个新的 Set 集合
 
-        // 6. 将一个用户列表, 按照用户 ID 分组, Map<userId, 具有相同 userId 的用户列表>
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
-        // userService.listByIds(userIdSet): 根据 userIdSet 查询出对应的用户列表,  返回值是一个List<User>，包含所有匹配的User 对象
-        // Collectors.groupingBy() : 收集器, 对流中的 User 对象进行分组
-        // User::getId : 一个方法引用, 表示以 User 对象的 id 属性作为分组依据。
+        // 6. 批量获取用户信息, Map<userId, 脱敏后的用户信息>
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(userIdSet);
+        // userService.getUserVOMap(userIdSet): 先读用户缓存, 未命中的用户一次查询数据库, 不存在的用户不在结果中
 
         // 7. 填充图片封装对象 pictureVO 中, 关于作者信息的属性 user
         // 遍历封装的图片列表
         pictureVOList.forEach(pictureVO -> {
-            // 获取当前图片的用户ID
-            Long userId = pictureVO.getUserId();
-            // 初始化用户对象为 null
-            User user = null;
-            // 检查 Map<userId, List<User>> 中是否存在该 userId 对应的用户列表
-            if (userIdUserListMap.containsKey(userId)) {
-                // 如果存在，获取该 userId 对应的用户列表，并取第一个用户对象
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            // 将用户对象转换为 UserVO，并设置到当前 pictureVO 的 user 属性中
-            pictureVO.setUser(userService.getUserVO(user));
+            // 获取当前图片的用户信息（用户不存在时为 null），并设置到当前 pictureVO 的 user 属性中
+            pictureVO.setUser(userIdUserVOMap.get(pictureVO.getUserId()));
+            pictureRenditionManager.fillRenditions(pictureVO);
         });
 
         // 8. 将处理好的图片封装列表, 重新赋值给分页对象的具体值
@@ -430,7 +665,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 10. 因为 mybatis 的 updateById() 会根据 id 更新有值的属性, 以 oldPicture 为更新对象, 会重新更新所有字段的值
         boolean result = this.updateById(newPicture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
-
+        pictureListCache.invalidate(oldPicture.getSpaceId());
+        // 公共图库的相似图片索引只包含审核通过的图片
+        pictureHashIndex.put(oldPicture.getSpaceId(), id, oldPicture.getPicHash(), reviewStatus);
     }
 
     /**
@@ -453,105 +690,6 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         }
     }
 
-    /**
-     * 批量抓取和创建图片
-     *
-     * @param pictureUploadByBatchRequest
-     * @param loginUser
-     * @return 成功创建的图片数
-     */
-    @Override
-    public Integer uploadPictureByBatch(PictureUploadByBatchRequest pictureUploadByBatchRequest, User loginUser) {
-        // 1. 获取参数 pictureUploadByBatchRequest.allget
-        String searchText = pictureUploadByBatchRequest.getSearchText();
-        Integer count = pictureUploadByBatchRequest.getCount();
-        String namePrefix = pictureUploadByBatchRequest.getNamePrefix();
-        if (StrUtil.isBlank(namePrefix)) {
-            namePrefix = searchText;
-        }
-
-        // 2. 校验参数
-        ThrowUtils.throwIf(count > 30, ErrorCode.PARAMS_ERROR, "最多抓取 30 条");
-
-        // 3. 抓取内容
-        // 4. 拼接要抓取的 url, 其中参数 q=%s 是可以动态修改的, 考虑把关键词 searchText 赋值给 q 参数
-        String fetchUrl = String.format("https://cn.bing.com/images/async?q=%s&mmasync=1", searchText);
-
-        Document document;
-        try {
-            // 5. 提供 Jsoup 获取 url 参数对应的页面文档
-            document = Jsoup.connect(fetchUrl).get();
-            // Jsoup.connect(fetchUrl) 根据 url 连接页面
-            // get() 获取该页面文档, 需要捕获异常
-        } catch (IOException e) {
-            // 6. 打印日志并修改抛出的异常
-            log.error("获取页面失败");
-            // 这里捕获的是 get 抛出的异常, 并不是我们的操作错误, 因此修改抛出的异常为我们自定义的业务异常
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取页面失败");
-        }
-
-        // 7. 解析内容
-        // 获取到的 document 是整个页面的 HTML 内容; 现在需要从中提取所有图片元素, 并获取它们的类名（class）和 ID, 以便准确定位对应的图片元素
-
-        // 8. 先获取外层的元素
-        Element div = document.getElementsByClass("dgControl").first();
-
-        // 9. 判断外层元素是否存在, 存在则继续获取内层的图片
-        if (ObjUtil.isEmpty(div)) {
-            throw new BusinessException(ErrorCode.OPERATION_ERROR, "获取元素失败");
-        }
-        // 10. 获取内层元素, 找外层元素 class = dgControl 中, 内层 class =  img.ming 的元素
-        Elements imgElementList = div.select("img");
-        // 这些内层元素有多个, 返回的应该是一个数组
-
-        // 11. 遍历数组元素 imgElementList, 依次上传图片
-        int uploadCount = 0;
-        // 记录上传图片的数量, 因为有一些图片可能上传失败, 导致实际的抓取数与定义的抓取数不同
-        for (Element imgElement : imgElementList) {
-            // 12. 获取每个元素的 src 属性, 其实就是图片元素的 url
-            String fileUrl = imgElement.attr("src");
-            if (StrUtil.isBlank(fileUrl)) {
-                // 13. 某个元素无法获取, 因此打印错误的图片 url , 结束对该元素的遍历(无需执行后续上传操作)
-                log.info("当前链接为空, 已跳过: {}", fileUrl);
-                continue;
-            }
-            // 14. 处理图片地址, 防止转义和对象存储冲突的问题(去掉 url 中的参数, 也就是 url 中 ? 后面的部分)
-            int questionMarkIndex = fileUrl.indexOf("?");
-            // 获取 url 中 ? 的下标
-            if (questionMarkIndex > -1) {
-                // 截取 url 中 ? 前面的部分
-                fileUrl = fileUrl.substring(0, questionMarkIndex);
-            }
-            // 15. 构造上传图片方法的参数
-            PictureUploadRequest pictureUploadRequest = new PictureUploadRequest();
-            if (StrUtil.isNotBlank(namePrefix)) {
-                // 设置图片名称，序号连续递增
-                pictureUploadRequest.setPicName(namePrefix + (uploadCount + 1));
-            }
-
-
-            // 18. 捕获上传图片操作可能抛出的异常
-            try {
-                // 16. 上传图片, 其中 loginUser 参数是作为该批量抓取方法的参数传进来的
-                PictureVO pictureVO = this.uploadPicture(fileUrl, pictureUploadRequest, loginUser);
-
-                // 17. 打印日志: 上传图片返回的结果对象中, 内置的 id
-                log.info("图片上传成功, id = {}", pictureVO.getId());
-
-                uploadCount++;
-            } catch (Exception e) {
-                log.error("图片上传失败", e);
-                continue;
-                // 使用 continue, uploadCount++ 的操作不会被执行
-            }
-
-            if (uploadCount >= count) {
-                break;
-            }
-        }
-        return uploadCount;
-    }
-
     /**
      * 删除图片
      *
@@ -573,19 +711,16 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             boolean result = this.removeById(pictureId);
             ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
 
-            Long spaceId = oldPicture.getSpaceId();
-            if (spaceId != null) {
-                boolean update = spaceService.lambdaUpdate()
-                        .eq(Space::getId, spaceId)
-                        .setSql("totalSize = totalSize - " + oldPicture.getPicSize())
-                        .setSql("totalCount = totalCount - 1")
-                        .update();
-                ThrowUtils.throwIf(!update, ErrorCode.OPERATION_ERROR, "额度更新失败");
-            }
+            // 释放额度，事务提交后累加到空间用量缓冲
+            spaceUsageBuffer.add(oldPicture.getSpaceId(), -oldPicture.getPicSize(), -1);
+            pictureListCache.invalidate(oldPicture.getSpaceId());
             return true;
         });
 
-        this.clearPictureFile(oldPicture);
+        pictureColorIndex.remove(oldPicture.getSpaceId(), pictureId);
+        pictureHashIndex.remove(oldPicture.getSpaceId(), pictureId);
+        // 通过代理调用，异步清理文件
+        pictureService.clearPictureFile(oldPicture);
 
     }
 
@@ -617,6 +752,9 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         // 操作数据库
         boolean result = this.updateById(picture);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        pictureListCache.invalidate(oldPicture.getSpaceId());
+        // 编辑后需要重新审核的图片暂时从公共图库的相似图片索引中移除
+        pictureHashIndex.put(oldPicture.getSpaceId(), id, oldPicture.getPicHash(), picture.getReviewStatus());
     }
 
 
@@ -630,11 +768,15 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
     public void clearPictureFile(Picture oldPicture) {
 
         String pictureUrl = oldPicture.getUrl();
-        long count = this.lambdaQuery()
+        // 调用时图片已经（逻辑）删除，查询不到自身；按内容去重的图片共用原图、缩略图和多分辨率缩略图（由原图地址生成），
+        // 仍有其他图片引用原图或缩略图时都不能删除；复用文件的图片保存时会锁定被复用的图片，
+        // 被复用的图片删除（本方法调用前）必然在其提交之后，这里一定能查到它的引用
+        long count = this.count(new LambdaQueryWrapper<Picture>()
                 .eq(Picture::getUrl, pictureUrl)
-                .count();
+                .or(StrUtil.isNotBlank(oldPicture.getThumbnailUrl()))
+                .eq(StrUtil.isNotBlank(oldPicture.getThumbnailUrl()), Picture::getThumbnailUrl, oldPicture.getThumbnailUrl()));
 
-        if (count > 1) {
+        if (count > 0) {
             return;
         }
 
@@ -644,6 +786,29 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         if (StrUtil.isNotBlank(thumbnailUrl)) {
             cosManager.deleteObject(thumbnailUrl);
         }
+
+        // 清理多分辨率缩略图
+        String renditions = oldPicture.getRenditions();
+        if (StrUtil.isNotBlank(renditions)) {
+            String hostPrefix = cosClientConfig.getHost() + "/";
+            JSONUtil.parseObj(renditions).values().stream()
+                    .map(String::valueOf)
+                    .filter(renditionUrl -> !renditionUrl.equals(pictureUrl))
+                    .forEach(renditionUrl -> cosManager.deleteObject(StrUtil.removePrefix(renditionUrl, hostPrefix)));
+        }
+    }
+
+    /**
+     * 获取指定宽度的缩略图地址，不存在时生成
+     *
+     * @param picture 图片
+     * @param width   缩略图宽度
+     * @return 缩略图地址
+     */
+    @Override
+    public String getPictureRenditionUrl(Picture picture, int width) {
+        ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
+        return pictureRenditionManager.getRenditionUrl(picture, width);
     }
 
     /**
@@ -685,9 +850,30 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
      */
     @Override
     public List<PictureVO> searchPictureByColor(Long spaceId, String picColor, User loginUser) {
+        ThrowUtils.throwIf(StrUtil.isBlank(picColor), ErrorCode.PARAMS_ERROR);
+        return this.searchPictureByPalette(spaceId, Collections.singletonList(picColor), null, loginUser);
+    }
 
-        // 参数校验：检查spaceId和picColor是否为空或无效
-        ThrowUtils.throwIf(spaceId == null || StrUtil.isBlank(picColor), ErrorCode.PARAMS_ERROR);
+    /**
+     * 多颜色搜图
+     * 根据多个带权重的目标颜色，在指定空间中搜索主色板最接近的图片
+     *
+     * @param spaceId      空间ID，用于指定搜索范围
+     * @param picColorList 目标颜色列表，十六进制格式字符串，如"#FFFFFF"，最多 5 个
+     * @param weightList   目标颜色的权重，与颜色一一对应，为空时各颜色权重相同
+     * @param loginUser    执行搜索操作的用户对象
+     * @return 返回匹配的图片VO对象列表，按颜色相似度降序排列，最多返回12条记录
+     */
+    @Override
+    public List<PictureVO> searchPictureByPalette(Long spaceId, List<String> picColorList, List<Double> weightList,
+                                                  User loginUser) {
+
+        // 参数校验：检查spaceId和颜色列表是否为空或无效
+        ThrowUtils.throwIf(spaceId == null || CollUtil.isEmpty(picColorList), ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(picColorList.size() > ColorPaletteUtils.MAX_COLORS, ErrorCode.PARAMS_ERROR,
+                "最多指定 " + ColorPaletteUtils.MAX_COLORS + " 个颜色");
+        ThrowUtils.throwIf(CollUtil.isNotEmpty(weightList) && weightList.size() != picColorList.size(),
+                ErrorCode.PARAMS_ERROR, "颜色和权重数量不一致");
         // 参数校验：检查登录用户是否存在
         ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
 
@@ -699,46 +885,76 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "没有空间访问权限");
         }
 
-        // 查询指定空间中所有颜色值不为null的图片
-        List<Picture> pictureList = this.lambdaQuery()
-                .eq(Picture::getSpaceId, spaceId)
-                .isNotNull(Picture::getPicColor)
-                .list();
+        // 将目标颜色字符串转换为 packed RGB, 权重归一化
+        int[] targetColors = new int[picColorList.size()];
+        float[] targetWeights = new float[picColorList.size()];
+        double weightSum = 0;
+        for (int i = 0; i < picColorList.size(); i++) {
+            Integer targetColor = PictureColorIndex.parseColor(picColorList.get(i));
+            ThrowUtils.throwIf(targetColor == null, ErrorCode.PARAMS_ERROR, "颜色格式错误");
+            targetColors[i] = targetColor;
+            double weight = CollUtil.isEmpty(weightList) ? 1 : ObjUtil.defaultIfNull(weightList.get(i), 0d);
+            ThrowUtils.throwIf(weight < 0, ErrorCode.PARAMS_ERROR, "权重不能为负数");
+            weightSum += weight;
+            targetWeights[i] = (float) weight;
+        }
+        ThrowUtils.throwIf(weightSum <= 0, ErrorCode.PARAMS_ERROR, "权重之和必须大于 0");
+        for (int i = 0; i < targetWeights.length; i++) {
+            targetWeights[i] /= (float) weightSum;
+        }
 
-        // 如果没有找到任何图片，返回空列表
-        if (CollUtil.isEmpty(pictureList)) {
+        // 从空间颜色索引中取出颜色最接近的 12 张图片
+        List<Long> pictureIdList = pictureColorIndex.search(spaceId, targetColors, targetWeights, 12);
+        if (CollUtil.isEmpty(pictureIdList)) {
             return Collections.emptyList();
         }
 
-        // 将目标颜色字符串转换为Color对象
-        Color targetColor = Color.decode(picColor);
-
-        // 对图片进行排序：按颜色相似度降序排列
-        List<Picture> sortedPictures = pictureList.stream()
-                .sorted(Comparator.comparingDouble(picture -> {
-
-                    String hexColor = picture.getPicColor();
-
-                    // 如果图片颜色为空，将其排在最后
-                    if (StrUtil.isBlank(hexColor)) {
-                        return Double.MAX_VALUE;
-                    }
-                    // 将图片颜色字符串转换为Color对象
-                    Color pictureColor = Color.decode(hexColor);
-
-                    // 计算颜色相似度并返回负值（因为要降序排列）
-                    return -ColorSimilarUtils.calculateSimilarity(targetColor, pictureColor);
-                }))
-
-                // 只取前12个结果
-                .limit(12)
+        // 按索引返回的顺序组装结果, 跳过索引更新前已被删除的图片
+        Map<Long, Picture> pictureMap = this.listByIds(pictureIdList).stream()
+                .collect(Collectors.toMap(Picture::getId, picture -> picture));
+        return pictureIdList.stream()
+                .map(pictureMap::get)
+                .filter(Objects::nonNull)
+                .map(PictureVO::objToVo)
                 .collect(Collectors.toList());
+    }
 
+    /**
+     * 相似图片搜索（以图搜图）
+     * 在源图片所在的空间（或公共图库）中，按感知哈希的汉明距离查找最相似的图片
+     *
+     * @param pictureId 源图片 id
+     * @param loginUser 执行搜索操作的用户对象
+     * @return 返回相似图片VO对象列表，按相似度降序排列，最多返回12条记录
+     */
+    @Override
+    public List<PictureVO> searchSimilarPicture(long pictureId, User loginUser) {
+        ThrowUtils.throwIf(pictureId <= 0, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NO_AUTH_ERROR);
+        Picture picture = this.getById(pictureId);
+        ThrowUtils.throwIf(picture == null, ErrorCode.NOT_FOUND_ERROR);
+        // 私有空间的图片仅空间所有者可以搜索, 公共图库未审核通过的图片仅本人或管理员可以搜索
+        if (picture.getSpaceId() != null
+                || !Objects.equals(picture.getReviewStatus(), PictureReviewStatusEnum.PASS.getValue())) {
+            checkPictureAuth(loginUser, picture);
+        }
+        ThrowUtils.throwIf(picture.getPicHash() == null, ErrorCode.OPERATION_ERROR, "图片特征尚未生成, 请稍后再试");
 
-        // 将Picture对象列表转换为PictureVO对象列表并返回
-        return sortedPictures.stream()
+        // 从图片所在空间的哈希索引中取出最相似的 12 张图片
+        List<Long> pictureIdList = pictureHashIndex.search(picture.getSpaceId(), picture.getPicHash(), pictureId,
+                SIMILAR_MAX_DISTANCE, 12);
+        if (CollUtil.isEmpty(pictureIdList)) {
+            return Collections.emptyList();
+        }
+        Map<Long, Picture> pictureMap = this.listByIds(pictureIdList).stream()
+                .collect(Collectors.toMap(Picture::getId, p -> p));
+        List<PictureVO> pictureVOList = pictureIdList.stream()
+                .map(pictureMap::get)
+                .filter(Objects::nonNull)
                 .map(PictureVO::objToVo)
                 .collect(Collectors.toList());
+        pictureVOList.forEach(pictureRenditionManager::fillRenditions);
+        return pictureVOList;
     }
 
     /**
@@ -800,6 +1016,7 @@ public class PictureServiceImpl extends ServiceImpl<PictureMapper, Picture>
         boolean result = this.updateBatchById(pictureList);
         // 校验更新结果，如果更新失败则抛出操作异常
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        pictureListCache.invalidate(spaceId);
     }
 
     /**
@@ -8,6 +8,8 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.quota.SpaceUsageBuffer;
+import com.yupi.yupicturebackend.manager.quota.SpaceUsageDelta;
 import com.yupi.yupicturebackend.mapper.SpaceMapper;
 import com.yupi.yupicturebackend.model.dto.space.analyze.*;
 import com.yupi.yupicturebackend.model.entity.Picture;
@@ -38,6 +40,9 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space> imp
     @Resource
     private PictureService pictureService;
 
+    @Resource
+    private SpaceUsageBuffer spaceUsageBuffer;
+
 
 
     @Override
@@ -79,15 +84,20 @@ public class SpaceAnalyzeServiceImpl extends ServiceImpl<SpaceMapper, Space> imp
             spaceService.checkSpaceAuth(loginUser, space);
 
 
+            // 实时用量 = 空间表中的用量 + 用量缓冲中尚未写入的增量
+            SpaceUsageDelta pending = spaceUsageBuffer.getPending(spaceId);
+            long usedSize = space.getTotalSize() + pending.getSizeDelta();
+            long usedCount = space.getTotalCount() + pending.getCountDelta();
+
             SpaceUsageAnalyzeResponse response = new SpaceUsageAnalyzeResponse();
-            response.setUsedSize(space.getTotalSize());
+            response.setUsedSize(usedSize);
             response.setMaxSize(space.getMaxSize());
 
-            double sizeUsageRatio = NumberUtil.round(space.getTotalSize() * 100.0 / space.getMaxSize(), 2).doubleValue();
+            double sizeUsageRatio = NumberUtil.round(usedSize * 100.0 / space.getMaxSize(), 2).doubleValue();
             response.setSizeUsageRatio(sizeUsageRatio);
-            response.setUsedCount(space.getTotalCount());
+            response.setUsedCount(usedCount);
             response.setMaxCount(space.getMaxCount());
-            double countUsageRatio = NumberUtil.round(space.getTotalCount() * 100.0 / space.getMaxCount(), 2).doubleValue();
+            double countUsageRatio = NumberUtil.round(usedCount * 100.0 / space.getMaxCount(), 2).doubleValue();
             response.setCountUsageRatio(countUsageRatio);
             return response;
         }
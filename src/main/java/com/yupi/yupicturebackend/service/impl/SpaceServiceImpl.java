@@ -9,6 +9,8 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
 import com.yupi.yupicturebackend.exception.ThrowUtils;
+import com.yupi.yupicturebackend.manager.lock.LockFenceManager;
+import com.yupi.yupicturebackend.manager.lock.LockManager;
 import com.yupi.yupicturebackend.model.dto.space.SpaceAddRequest;
 import com.yupi.yupicturebackend.model.dto.space.SpaceQueryRequest;
 import com.yupi.yupicturebackend.model.entity.Picture;
@@ -46,6 +48,12 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
     @Resource
     private TransactionTemplate transactionTemplate;
 
+    @Resource
+    private LockManager lockManager;
+
+    @Resource
+    private LockFenceManager lockFenceManager;
+
     // 为了方便部署，注释掉分表
 //    @Resource
 //    @Lazy
@@ -77,20 +85,21 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限创建指定级别的空间");
         }
         //创建空间 事务保证只能创建一个
-        String lock = String.valueOf(userId).intern();
-        synchronized (lock) {
-            Long newSpaceId = transactionTemplate.execute(status -> {
-                boolean exists = this.lambdaQuery().eq(Space::getUserId, userId).exists();
-                ThrowUtils.throwIf(exists, ErrorCode.OPERATION_ERROR, "每个用户仅能有一个私有空间");
+        String lockKey = "space:add:" + userId;
+        Long newSpaceId = lockManager.executeWithLock(lockKey, 5000L, 10000L,
+                fencingToken -> transactionTemplate.execute(status -> {
+                    // 锁过期后其他请求可能已进入临界区，令牌校验持有行锁，保证两个请求不会同时通过存在性检查
+                    lockFenceManager.check(lockKey, fencingToken);
+                    boolean exists = this.lambdaQuery().eq(Space::getUserId, userId).exists();
+                    ThrowUtils.throwIf(exists, ErrorCode.OPERATION_ERROR, "每个用户仅能有一个私有空间");
 
-                boolean result = this.save(space);
-                ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+                    boolean result = this.save(space);
+                    ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
 
-                return space.getId();
-            });
+                    return space.getId();
+                }));
 
-            return Optional.ofNullable(newSpaceId).orElse(-1L);
-        }
+        return Optional.ofNullable(newSpaceId).orElse(-1L);
     }
     /**
      *
@@ -133,8 +142,7 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 关联查询用户信息
         Long userId = space.getUserId();
         if (userId != null && userId > 0) {
-            User user = userService.getById(userId);
-            UserVO userVO = userService.getUserVO(user);
+            UserVO userVO = userService.getUserVOById(userId);
             spaceVO.setUser(userVO);
         }
         return spaceVO;
@@ -158,18 +166,10 @@ public class SpaceServiceImpl extends ServiceImpl<SpaceMapper, Space>
         // 1. 关联查询用户信息
         //获取用户id
         Set<Long> userIdSet = spaceList.stream().map(Space::getUserId).collect(Collectors.toSet());
-        //获取用户信息
-        Map<Long, List<User>> userIdUserListMap = userService.listByIds(userIdSet).stream()
-                .collect(Collectors.groupingBy(User::getId));
+        //获取用户信息（读缓存）
+        Map<Long, UserVO> userIdUserVOMap = userService.getUserVOMap(userIdSet);
         //填充用户信息
-        spaceVOList.forEach(spaceVO -> {
-            Long userId = spaceVO.getUserId();
-            User user = null;
-            if (userIdUserListMap.containsKey(userId)) {
-                user = userIdUserListMap.get(userId).get(0);
-            }
-            spaceVO.setUser(userService.getUserVO(user));
-        });
+        spaceVOList.forEach(spaceVO -> spaceVO.setUser(userIdUserVOMap.get(spaceVO.getUserId())));
         //list -> VO
         spaceVOPage.setRecords(spaceVOList);
         return spaceVOPage;
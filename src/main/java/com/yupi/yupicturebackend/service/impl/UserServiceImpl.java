@@ -14,6 +14,10 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yupi.yupicturebackend.constant.UserConstant;
 import com.yupi.yupicturebackend.exception.BusinessException;
 import com.yupi.yupicturebackend.exception.ErrorCode;
+import com.yupi.yupicturebackend.manager.auth.LoginToken;
+import com.yupi.yupicturebackend.manager.auth.TokenManager;
+import com.yupi.yupicturebackend.manager.cache.UserCache;
+import com.yupi.yupicturebackend.manager.lock.LockManager;
 import com.yupi.yupicturebackend.model.dto.user.UserQueryRequest;
 import com.yupi.yupicturebackend.model.dto.user.VipCode;
 import com.yupi.yupicturebackend.model.entity.User;
@@ -32,12 +36,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -51,6 +59,15 @@ import java.util.stream.Collectors;
 public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         implements UserService {
 
+    @Autowired
+    private LockManager lockManager;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private TokenManager tokenManager;
+
     /**
      * 用户注册
      *
@@ -74,26 +91,29 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (!userPassword.equals(checkPassword)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "两次输入的密码不一致");
         }
-        // 2. 检查用户账号是否和数据库中已有的重复
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("userAccount", userAccount);
-        long count = this.baseMapper.selectCount(queryWrapper);
-        if (count > 0) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "账号重复");
-        }
-        // 3. 密码一定要加密
-        String encryptPassword = getEncryptPassword(userPassword);
-        // 4. 插入数据到数据库中
-        User user = new User();
-        user.setUserAccount(userAccount);
-        user.setUserPassword(encryptPassword);
-        user.setUserName("用户昵称");
-        user.setUserRole(UserRoleEnum.USER.getValue());
-        boolean saveResult = this.save(user);
-        if (!saveResult) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "注册失败，数据库错误");
-        }
-        return user.getId();
+        // 同一账号的并发注册串行执行，避免同时通过重复校验后插入时违反唯一索引
+        return lockManager.executeWithLock("user:register:" + userAccount, 5000L, 10000L, () -> {
+            // 2. 检查用户账号是否和数据库中已有的重复
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("userAccount", userAccount);
+            long count = this.baseMapper.selectCount(queryWrapper);
+            if (count > 0) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "账号重复");
+            }
+            // 3. 密码一定要加密
+            String encryptPassword = getEncryptPassword(userPassword);
+            // 4. 插入数据到数据库中
+            User user = new User();
+            user.setUserAccount(userAccount);
+            user.setUserPassword(encryptPassword);
+            user.setUserName("用户昵称");
+            user.setUserRole(UserRoleEnum.USER.getValue());
+            boolean saveResult = this.save(user);
+            if (!saveResult) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "注册失败，数据库错误");
+            }
+            return user.getId();
+        });
     }
 
     @Override
@@ -120,8 +140,14 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
             log.info("user login failed, userAccount cannot match userPassword");
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户不存在或者密码错误");
         }
-        // 4. 保存用户的登录态
-        request.getSession().setAttribute(UserConstant.USER_LOGIN_STATE, user);
+        // 4. 令牌认证时签发令牌，不创建会话
+        if (tokenManager.isEnabled()) {
+            LoginUserVO loginUserVO = this.getLoginUserVO(user);
+            loginUserVO.setToken(tokenManager.createToken(user));
+            return loginUserVO;
+        }
+        // 5. 保存用户的登录态（只保存用户 id 和登录态版本号，用户信息从缓存中获取）
+        request.getSession().setAttribute(UserConstant.USER_LOGIN_STATE, buildLoginState(user.getId()));
 
         return this.getLoginUserVO(user);
     }
@@ -141,21 +167,78 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
 
     @Override
     public User getLoginUser(HttpServletRequest request) {
-        // 判断是否已经登录
-        Object userObj = request.getSession().getAttribute(UserConstant.USER_LOGIN_STATE);
-        User currentUser = (User) userObj;
-        if (currentUser == null || currentUser.getId() == null) {
+        if (tokenManager.isEnabled()) {
+            LoginToken loginToken = getLoginToken(request);
+            // 查询最新的用户信息（读缓存）
+            User currentUser = userCache.getUser(loginToken.getUserId());
+            if (currentUser == null) {
+                throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
+            }
+            return currentUser;
+        }
+        // 判断是否已经登录（未登录时不创建会话）
+        HttpSession session = request.getSession(false);
+        Object loginState = session == null ? null : session.getAttribute(UserConstant.USER_LOGIN_STATE);
+        if (loginState == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
-        // 从数据库中查询（追求性能的话可以注释，直接返回上述结果）
-        Long userId = currentUser.getId();
-        currentUser = this.getById(userId);
+        long userId;
+        long sessionVersion;
+        if (loginState instanceof User) {
+            // 旧版本保存的完整用户信息，按版本号 0 校验，之后替换为新格式
+            userId = ((User) loginState).getId();
+            sessionVersion = 0L;
+        } else {
+            String[] parts = loginState.toString().split(":");
+            if (parts.length != 2) {
+                throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
+            }
+            userId = Long.parseLong(parts[0]);
+            sessionVersion = Long.parseLong(parts[1]);
+        }
+        // 权限变化后旧的登录态失效
+        if (sessionVersion < userCache.getSessionVersion(userId)) {
+            session.removeAttribute(UserConstant.USER_LOGIN_STATE);
+            throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
+        }
+        // 查询最新的用户信息（读缓存，用户信息修改或删除后缓存失效）
+        User currentUser = userCache.getUser(userId);
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
         }
+        if (loginState instanceof User) {
+            session.setAttribute(UserConstant.USER_LOGIN_STATE, userId + ":" + sessionVersion);
+        }
         return currentUser;
     }
 
+    @Override
+    public String getLoginUserRole(HttpServletRequest request) {
+        // 令牌中的角色在权限变化时随令牌一起吊销，可以直接使用
+        if (tokenManager.isEnabled()) {
+            return getLoginToken(request).getUserRole();
+        }
+        return getLoginUser(request).getUserRole();
+    }
+
+    /**
+     * 获取校验通过的登录令牌
+     */
+    private LoginToken getLoginToken(HttpServletRequest request) {
+        LoginToken loginToken = tokenManager.getLoginToken(request);
+        if (loginToken == null) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN_ERROR);
+        }
+        return loginToken;
+    }
+
+    /**
+     * 生成登录态：用户 id 和当前的登录态版本号
+     */
+    private String buildLoginState(Long userId) {
+        return userId + ":" + userCache.getSessionVersion(userId);
+    }
+
     /**
      * 获取脱敏类的用户信息
      *
@@ -204,8 +287,29 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public UserVO getUserVOById(Long userId) {
+        return getUserVO(userCache.getUser(userId));
+    }
+
+    @Override
+    public Map<Long, UserVO> getUserVOMap(Collection<Long> userIds) {
+        Map<Long, UserVO> userVOMap = new HashMap<>();
+        userCache.getUsers(userIds).forEach((userId, user) -> userVOMap.put(userId, getUserVO(user)));
+        return userVOMap;
+    }
+
     @Override
     public boolean userLogout(HttpServletRequest request) {
+        // 令牌认证时吊销当前令牌
+        if (tokenManager.isEnabled()) {
+            LoginToken loginToken = tokenManager.getLoginToken(request);
+            if (loginToken == null) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "未登录");
+            }
+            tokenManager.revokeToken(loginToken);
+            return true;
+        }
         // 判断是否已经登录
         Object userObj = request.getSession().getAttribute(UserConstant.USER_LOGIN_STATE);
         if (userObj == null) {
@@ -345,6 +449,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (!updated) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "开通会员失败，操作数据库失败");
         }
+        userCache.invalidate(user.getId());
     }
 
     // endregion ------- 以下代码为用户兑换会员功能 --------
@@ -0,0 +1,69 @@
+package com.yupi.yupicturebackend.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 工具类：图片主色板的编码和解码
+ * 主色板按占比从高到低保存最多 5 个颜色，每个颜色编码为 8 位十六进制 RRGGBBWW（WW 为占比 0 ~ 255），直接拼接，
+ * 如 ff0000807f7f7f40 表示红色占 50%，灰色占 25%
+ */
+public class ColorPaletteUtils {
+
+    /**
+     * 主色板最多保存的颜色数
+     */
+    public static final int MAX_COLORS = 5;
+
+    /**
+     * 每个颜色编码后的长度
+     */
+    private static final int ENTRY_LENGTH = 8;
+
+    private ColorPaletteUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 编码主色板
+     *
+     * @param rgbs    颜色（packed RGB），按占比从高到低排列
+     * @param weights 占比（0 ~ 255）
+     * @param count   颜色数
+     * @return 编码后的字符串，没有颜色时返回 null
+     */
+    public static String encode(int[] rgbs, int[] weights, int count) {
+        count = Math.min(count, MAX_COLORS);
+        if (count <= 0) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(count * ENTRY_LENGTH);
+        for (int i = 0; i < count; i++) {
+            sb.append(String.format("%06x%02x", rgbs[i] & 0xFFFFFF, Math.max(0, Math.min(255, weights[i]))));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解码主色板
+     *
+     * @param palette 编码后的字符串
+     * @return 每个元素为 占比 << 24 | RGB，格式错误时返回空数组
+     */
+    public static int[] decode(String palette) {
+        if (StrUtil.isBlank(palette) || palette.length() % ENTRY_LENGTH != 0) {
+            return new int[0];
+        }
+        int count = Math.min(palette.length() / ENTRY_LENGTH, MAX_COLORS);
+        int[] entries = new int[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                entries[i] = Integer.parseUnsignedInt(palette.substring(i * ENTRY_LENGTH, (i + 1) * ENTRY_LENGTH), 16);
+                // RRGGBBWW => WW << 24 | RRGGBB
+                entries[i] = entries[i] << 24 | entries[i] >>> 8;
+            }
+        } catch (NumberFormatException e) {
+            return new int[0];
+        }
+        return entries;
+    }
+}
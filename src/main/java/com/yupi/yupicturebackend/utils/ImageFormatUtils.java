@@ -0,0 +1,89 @@
+package com.yupi.yupicturebackend.utils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片格式工具类：根据文件头（魔数）识别图片格式
+ */
+public class ImageFormatUtils {
+
+    /**
+     * 识别图片格式至少需要读取的文件头字节数
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private ImageFormatUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 根据文件头识别图片格式
+     *
+     * @param header 文件头字节
+     * @param length 有效字节数
+     * @return 图片格式（jpeg / png / webp），无法识别返回 null
+     */
+    public static String detectFormat(byte[] header, int length) {
+        if (header == null || length < 3) {
+            return null;
+        }
+        // JPEG: FF D8 FF
+        if ((header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpeg";
+        }
+        // PNG: 89 50 4E 47 0D 0A 1A 0A
+        if (length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G'
+                && header[4] == 0x0D && header[5] == 0x0A && header[6] == 0x1A && header[7] == 0x0A) {
+            return "png";
+        }
+        // WEBP: RIFF....WEBP
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "webp";
+        }
+        return null;
+    }
+
+    /**
+     * 预读输入流的文件头并识别图片格式，读取后会将流重置到起始位置
+     *
+     * @param inputStream 支持 mark/reset 的输入流
+     * @return 图片格式，无法识别返回 null
+     */
+    public static String sniffFormat(InputStream inputStream) throws IOException {
+        if (!inputStream.markSupported()) {
+            throw new IllegalArgumentException("输入流不支持 mark/reset");
+        }
+        byte[] header = new byte[HEADER_LENGTH];
+        inputStream.mark(HEADER_LENGTH);
+        int length = 0;
+        try {
+            while (length < HEADER_LENGTH) {
+                int read = inputStream.read(header, length, HEADER_LENGTH - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+        } finally {
+            inputStream.reset();
+        }
+        return detectFormat(header, length);
+    }
+
+    /**
+     * 读取文件头并识别图片格式
+     *
+     * @param file 图片文件
+     * @return 图片格式，无法识别返回 null
+     */
+    public static String sniffFormat(File file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            return sniffFormat(inputStream);
+        }
+    }
+}
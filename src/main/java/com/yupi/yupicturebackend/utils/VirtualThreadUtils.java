@@ -0,0 +1,70 @@
+package com.yupi.yupicturebackend.utils;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 工具类：虚拟线程（JDK 21）
+ * 项目以 Java 11 编译，通过反射调用虚拟线程相关接口，运行在 JDK 21 以下时不可用
+ */
+public class VirtualThreadUtils {
+
+    private VirtualThreadUtils() {
+        // 工具类不需要实例化
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 创建线程工厂
+     *
+     * @param namePrefix 线程名前缀
+     * @param virtual    是否使用虚拟线程，JDK 不支持时抛出异常
+     * @return 线程工厂
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix, boolean virtual) {
+        if (!virtual) {
+            return ThreadFactoryBuilder.create().setNamePrefix(namePrefix).build();
+        }
+        try {
+            // Thread.ofVirtual().name(namePrefix, 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("当前 JDK 不支持虚拟线程，需要 JDK 21 及以上", e);
+        }
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的线程池
+     *
+     * @param namePrefix 线程名前缀
+     * @return 线程池
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix, true);
+        try {
+            // Executors.newThreadPerTaskExecutor(threadFactory)
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("当前 JDK 不支持虚拟线程，需要 JDK 21 及以上", e);
+        }
+    }
+}
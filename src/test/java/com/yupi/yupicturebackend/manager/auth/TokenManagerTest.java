@@ -0,0 +1,165 @@
+package com.yupi.yupicturebackend.manager.auth;
+
+import cn.hutool.core.codec.Base64;
+import com.yupi.yupicturebackend.config.AuthConfig;
+import com.yupi.yupicturebackend.model.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 登录令牌单元测试（不启动 Spring 容器）
+ */
+class TokenManagerTest {
+
+    private static final String SECRET = "test-secret-0123456789abcdef";
+
+    private AuthConfig authConfig;
+
+    private TokenRevocationList tokenRevocationList;
+
+    private TokenManager tokenManager;
+
+    @BeforeEach
+    void setUp() {
+        authConfig = new AuthConfig();
+        authConfig.setMode("token");
+        authConfig.setTokenSecret(SECRET);
+        tokenRevocationList = mock(TokenRevocationList.class);
+        tokenManager = newTokenManager(authConfig);
+    }
+
+    @Test
+    void validTokenIsAccepted() {
+        String token = tokenManager.createToken(buildUser());
+
+        LoginToken loginToken = tokenManager.getLoginToken(buildRequest(token));
+
+        assertNotNull(loginToken);
+        assertEquals(1L, loginToken.getUserId());
+        assertEquals("admin", loginToken.getUserRole());
+        assertNotNull(loginToken.getTokenId());
+        assertTrue(loginToken.getExpireAt() > loginToken.getIssuedAt());
+    }
+
+    @Test
+    void issuedAtKeepsMillisecondPrecision() {
+        long before = System.currentTimeMillis();
+        String token = tokenManager.createToken(buildUser());
+        long after = System.currentTimeMillis();
+
+        LoginToken loginToken = tokenManager.getLoginToken(buildRequest(token));
+
+        assertNotNull(loginToken);
+        // 标准 iat 只精确到秒，截断后会早于签发前的时间
+        assertTrue(loginToken.getIssuedAt() >= before);
+        assertTrue(loginToken.getIssuedAt() <= after);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String[] parts = tokenManager.createToken(buildUser()).split("\\.");
+        // 修改载荷中的角色，签名不变
+        String payload = Base64.decodeStr(parts[1]).replace("\"admin\"", "\"root\"");
+        String tampered = parts[0] + "." + Base64.encodeUrlSafe(payload) + "." + parts[2];
+
+        assertNull(tokenManager.getLoginToken(buildRequest(tampered)));
+    }
+
+    @Test
+    void tokenSignedWithOtherSecretIsRejected() {
+        AuthConfig otherConfig = new AuthConfig();
+        otherConfig.setMode("token");
+        otherConfig.setTokenSecret("other-secret-0123456789abcdef");
+        String token = newTokenManager(otherConfig).createToken(buildUser());
+
+        assertNull(tokenManager.getLoginToken(buildRequest(token)));
+    }
+
+    @Test
+    void unsignedTokenIsRejected() {
+        String payload = Base64.decodeStr(tokenManager.createToken(buildUser()).split("\\.")[1]);
+        String header = "{\"alg\":\"none\",\"typ\":\"JWT\"}";
+        String token = encode(header) + "." + encode(payload) + ".";
+
+        assertNull(tokenManager.getLoginToken(buildRequest(token)));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        authConfig.setTokenExpireSeconds(-60L);
+        String token = tokenManager.createToken(buildUser());
+
+        assertNull(tokenManager.getLoginToken(buildRequest(token)));
+    }
+
+    @Test
+    void revokedTokenIsRejected() {
+        when(tokenRevocationList.isRevoked(any())).thenReturn(true);
+        String token = tokenManager.createToken(buildUser());
+
+        assertNull(tokenManager.getLoginToken(buildRequest(token)));
+    }
+
+    @Test
+    void malformedOrMissingTokenIsRejected() {
+        assertNull(tokenManager.getLoginToken(new MockHttpServletRequest()));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Basic dXNlcjpwYXNz");
+        assertNull(tokenManager.getLoginToken(request));
+        assertNull(tokenManager.getLoginToken(buildRequest("not-a-token")));
+    }
+
+    @Test
+    void validatedTokenIsReusedWithinRequest() {
+        MockHttpServletRequest request = buildRequest(tokenManager.createToken(buildUser()));
+
+        LoginToken loginToken = tokenManager.getLoginToken(request);
+
+        assertSame(loginToken, tokenManager.getLoginToken(request));
+        verify(tokenRevocationList, times(1)).isRevoked(any());
+    }
+
+    @Test
+    void initRequiresSecretInTokenMode() {
+        AuthConfig config = new AuthConfig();
+        config.setMode("token");
+        TokenManager manager = new TokenManager();
+        ReflectionTestUtils.setField(manager, "authConfig", config);
+
+        assertThrows(IllegalStateException.class, manager::init);
+    }
+
+    private TokenManager newTokenManager(AuthConfig config) {
+        TokenManager manager = new TokenManager();
+        ReflectionTestUtils.setField(manager, "authConfig", config);
+        ReflectionTestUtils.setField(manager, "tokenRevocationList", tokenRevocationList);
+        manager.init();
+        return manager;
+    }
+
+    private static User buildUser() {
+        User user = new User();
+        user.setId(1L);
+        user.setUserRole("admin");
+        return user;
+    }
+
+    private static MockHttpServletRequest buildRequest(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+
+    private static String encode(String json) {
+        return Base64.encodeUrlSafe(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
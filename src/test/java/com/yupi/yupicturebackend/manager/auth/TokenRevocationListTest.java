@@ -0,0 +1,96 @@
+package com.yupi.yupicturebackend.manager.auth;
+
+import com.yupi.yupicturebackend.config.AuthConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 令牌吊销列表单元测试（不启动 Spring 容器）
+ */
+class TokenRevocationListTest {
+
+    private static final String REVOKED_KEY = "yupicture:auth:revoked";
+
+    private TokenRevocationList tokenRevocationList;
+
+    private ZSetOperations<String, String> zSetOperations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        AuthConfig authConfig = new AuthConfig();
+        authConfig.setMode("token");
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        zSetOperations = mock(ZSetOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        tokenRevocationList = new TokenRevocationList();
+        ReflectionTestUtils.setField(tokenRevocationList, "authConfig", authConfig);
+        ReflectionTestUtils.setField(tokenRevocationList, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(tokenRevocationList, "redisMessageListenerContainer",
+                mock(RedisMessageListenerContainer.class));
+    }
+
+    @Test
+    void checksRedisDirectlyUntilFirstSuccessfulRebuild() {
+        // 启动时 Redis 不可用，布隆过滤器为空
+        when(zSetOperations.range(REVOKED_KEY, 0, -1)).thenThrow(new RedisConnectionFailureException("down"));
+        tokenRevocationList.init();
+        when(zSetOperations.score(REVOKED_KEY, "t:revoked")).thenReturn(1000.0);
+
+        assertTrue(tokenRevocationList.isRevoked(buildLoginToken("revoked")));
+    }
+
+    @Test
+    void rejectsWhenRedisUnavailableBeforeFirstSuccessfulRebuild() {
+        when(zSetOperations.range(REVOKED_KEY, 0, -1)).thenThrow(new RedisConnectionFailureException("down"));
+        tokenRevocationList.init();
+        when(zSetOperations.score(eq(REVOKED_KEY), anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThrows(RedisConnectionFailureException.class,
+                () -> tokenRevocationList.isRevoked(buildLoginToken("any")));
+    }
+
+    @Test
+    void skipsRedisForUnknownTokensAfterRebuild() {
+        when(zSetOperations.range(REVOKED_KEY, 0, -1)).thenReturn(Collections.singleton("t:revoked"));
+        when(zSetOperations.score(REVOKED_KEY, "t:revoked")).thenReturn(1000.0);
+        tokenRevocationList.init();
+
+        assertTrue(tokenRevocationList.isRevoked(buildLoginToken("revoked")));
+        assertFalse(tokenRevocationList.isRevoked(buildLoginToken("valid")));
+        verify(zSetOperations, never()).score(REVOKED_KEY, "t:valid");
+    }
+
+    @Test
+    void userRevocationOnlyAffectsTokensIssuedBefore() {
+        when(zSetOperations.range(REVOKED_KEY, 0, -1)).thenReturn(Collections.singleton("u:1"));
+        when(zSetOperations.score(REVOKED_KEY, "u:1")).thenReturn(2500.0);
+        tokenRevocationList.init();
+
+        // 吊销前签发的令牌失效，同一秒内吊销后重新登录签发的令牌有效
+        assertTrue(tokenRevocationList.isRevoked(buildLoginToken("before")));
+        LoginToken reissued = buildLoginToken("after");
+        reissued.setIssuedAt(2600L);
+        assertFalse(tokenRevocationList.isRevoked(reissued));
+    }
+
+    private static LoginToken buildLoginToken(String tokenId) {
+        LoginToken loginToken = new LoginToken();
+        loginToken.setTokenId(tokenId);
+        loginToken.setUserId(1L);
+        loginToken.setIssuedAt(2000L);
+        loginToken.setExpireAt(Long.MAX_VALUE);
+        return loginToken;
+    }
+}
@@ -0,0 +1,133 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.yupi.yupicturebackend.model.vo.PictureVO;
+import com.yupi.yupicturebackend.model.vo.UserVO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值编码基准测试：Smile 二进制编码与原来的 Hutool JSON 字符串对比
+ * 编码、解码耗时由 JMH 统计；写入 Redis 的字节数在初始化时输出（JSON 按 UTF-8 计算）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheCodecBenchmark {
+
+    private static final CacheCodec<PictureListCache.CachedPage> CACHED_PAGE_CODEC =
+            CacheCodec.of(new TypeReference<PictureListCache.CachedPage>() {
+            });
+
+    /**
+     * 每页图片数
+     */
+    @Param({"12", "50"})
+    private int pageSize;
+
+    private PictureListCache.CachedPage cachedPage;
+
+    private byte[] smileBytes;
+
+    private String jsonString;
+
+    @Setup
+    public void setUp() {
+        cachedPage = buildCachedPage(pageSize);
+        smileBytes = CACHED_PAGE_CODEC.encode(cachedPage);
+        jsonString = JSONUtil.toJsonStr(cachedPage.getPage());
+        // 压测进程的输出编码不确定，只输出 ASCII
+        System.out.printf("Redis payload bytes: smile = %d, json = %d%n",
+                smileBytes.length, jsonString.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Benchmark
+    public byte[] encodeSmile() {
+        return CACHED_PAGE_CODEC.encode(cachedPage);
+    }
+
+    @Benchmark
+    public PictureListCache.CachedPage decodeSmile() {
+        return CACHED_PAGE_CODEC.decode(smileBytes);
+    }
+
+    /**
+     * 原实现：缓存 JSON 字符串
+     */
+    @Benchmark
+    public byte[] encodeJson() {
+        return JSONUtil.toJsonStr(cachedPage.getPage()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 原实现：解析为 Page，记录为 JSONObject，使用时还需要再转换
+     */
+    @Benchmark
+    public Page<?> decodeJson() {
+        return JSONUtil.toBean(jsonString, Page.class);
+    }
+
+    private static PictureListCache.CachedPage buildCachedPage(int size) {
+        UserVO userVO = new UserVO();
+        userVO.setId(1L);
+        userVO.setUserAccount("user1");
+        userVO.setUserName("用户1");
+        userVO.setUserAvatar("https://cos.example.com/avatar/1.png");
+        userVO.setUserProfile("喜欢拍风景");
+        userVO.setUserRole("user");
+        userVO.setCreateTime(new Date(1_600_000_000_000L));
+        List<String> categories = Arrays.asList("风景", "人物", "动物", "建筑");
+        List<PictureVO> records = new ArrayList<>();
+        Random random = new Random(42);
+        for (long i = 0; i < size; i++) {
+            PictureVO pictureVO = new PictureVO();
+            pictureVO.setId(1_800_000_000_000_000_000L + i);
+            pictureVO.setUrl("https://cos.example.com/public/1/2024-01-01_" + i + ".webp");
+            pictureVO.setThumbnailUrl("https://cos.example.com/public/1/2024-01-01_" + i + "_thumbnail.jpeg");
+            pictureVO.setName("picture" + i);
+            pictureVO.setIntroduction("图片简介 " + i);
+            pictureVO.setCategory(categories.get(random.nextInt(categories.size())));
+            pictureVO.setTags(Arrays.asList("热门", categories.get(random.nextInt(categories.size()))));
+            Map<Integer, String> renditions = new TreeMap<>();
+            for (int width : new int[]{128, 256, 512, 1024}) {
+                renditions.put(width, "https://cos.example.com/public/1/2024-01-01_" + i + "_" + width + ".webp");
+            }
+            pictureVO.setRenditions(renditions);
+            pictureVO.setPicColor(String.format("0x%06x", random.nextInt(0x1000000)));
+            pictureVO.setProcessStatus(1);
+            pictureVO.setPicSize(100_000L + random.nextInt(1_000_000));
+            pictureVO.setPicWidth(1920);
+            pictureVO.setPicHeight(1080);
+            pictureVO.setPicScale(1.78);
+            pictureVO.setPicFormat("webp");
+            pictureVO.setUserId(1L);
+            pictureVO.setCreateTime(new Date(1_700_000_000_000L + i * 1000));
+            pictureVO.setEditTime(new Date(1_700_000_000_000L + i * 1000));
+            pictureVO.setUpdateTime(new Date(1_700_000_000_000L + i * 1000));
+            pictureVO.setUser(userVO);
+            records.add(pictureVO);
+        }
+        Page<PictureVO> page = new Page<>(1, size, 1000);
+        page.setRecords(records);
+        PictureListCache.CachedPage cachedPage = new PictureListCache.CachedPage();
+        cachedPage.setPage(page);
+        cachedPage.setFreshUntil(System.currentTimeMillis() + 60_000L);
+        cachedPage.setLoadMillis(35);
+        return cachedPage;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
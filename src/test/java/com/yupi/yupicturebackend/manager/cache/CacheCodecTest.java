@@ -0,0 +1,119 @@
+package com.yupi.yupicturebackend.manager.cache;
+
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.PictureVO;
+import com.yupi.yupicturebackend.model.vo.UserVO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存值编码单元测试
+ */
+class CacheCodecTest {
+
+    private static final CacheCodec<PictureListCache.CachedPage> CACHED_PAGE_CODEC =
+            CacheCodec.of(new TypeReference<PictureListCache.CachedPage>() {
+            });
+
+    private static final CacheCodec<User> USER_CODEC = CacheCodec.of(new TypeReference<User>() {
+    });
+
+    @Test
+    void cachedPageRoundTrip() {
+        PictureListCache.CachedPage cachedPage = buildCachedPage(20);
+        cachedPage.setPayloadBytes(123);
+
+        PictureListCache.CachedPage decoded = CACHED_PAGE_CODEC.decode(CACHED_PAGE_CODEC.encode(cachedPage));
+
+        assertEquals(cachedPage.getFreshUntil(), decoded.getFreshUntil());
+        assertEquals(cachedPage.getLoadMillis(), decoded.getLoadMillis());
+        // 不参与编码的字段
+        assertEquals(0, decoded.getPayloadBytes());
+        Page<PictureVO> page = decoded.getPage();
+        assertEquals(1, page.getCurrent());
+        assertEquals(20, page.getSize());
+        assertEquals(100, page.getTotal());
+        // 泛型按声明类型解码，不是 Map
+        PictureVO pictureVO = page.getRecords().get(3);
+        assertEquals(cachedPage.getPage().getRecords(), page.getRecords());
+        assertEquals("https://cos.example.com/public/1/3_256.webp", pictureVO.getRenditions().get(256));
+        assertEquals(Arrays.asList("风景", "旅行"), pictureVO.getTags());
+        assertEquals(new Date(1_700_000_000_000L), pictureVO.getCreateTime());
+        assertEquals("user1", pictureVO.getUser().getUserName());
+    }
+
+    @Test
+    void encodedValueIsSmallerThanJson() {
+        PictureListCache.CachedPage cachedPage = buildCachedPage(20);
+
+        byte[] bytes = CACHED_PAGE_CODEC.encode(cachedPage);
+
+        assertTrue(bytes.length < JSONUtil.toJsonStr(cachedPage.getPage()).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void nullFieldsAndUnknownFieldsAreTolerated() {
+        User user = new User();
+        user.setId(1L);
+        user.setUserName("user1");
+
+        User decoded = USER_CODEC.decode(USER_CODEC.encode(user));
+
+        assertEquals(user, decoded);
+        assertNull(decoded.getUserAvatar());
+
+        // 旧版本写入的缓存值带有已删除的字段
+        CacheCodec<Map<String, Object>> mapCodec = CacheCodec.of(new TypeReference<Map<String, Object>>() {
+        });
+        Map<String, Object> oldValue = new HashMap<>();
+        oldValue.put("id", 2L);
+        oldValue.put("removedField", "value");
+        assertEquals(2L, USER_CODEC.decode(mapCodec.encode(oldValue)).getId());
+    }
+
+    @Test
+    void decodeMalformedBytesThrows() {
+        assertThrows(IllegalStateException.class,
+                () -> USER_CODEC.decode("{\"id\":1}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static PictureListCache.CachedPage buildCachedPage(int size) {
+        UserVO userVO = new UserVO();
+        userVO.setId(1L);
+        userVO.setUserName("user1");
+        userVO.setUserRole("user");
+        List<PictureVO> records = new ArrayList<>();
+        for (long i = 0; i < size; i++) {
+            PictureVO pictureVO = new PictureVO();
+            pictureVO.setId(i);
+            pictureVO.setUrl("https://cos.example.com/public/1/" + i + ".webp");
+            pictureVO.setName("picture" + i);
+            pictureVO.setCategory("风景");
+            pictureVO.setTags(Arrays.asList("风景", "旅行"));
+            pictureVO.setRenditions(Collections.singletonMap(256, "https://cos.example.com/public/1/" + i + "_256.webp"));
+            pictureVO.setPicSize(1024L * i);
+            pictureVO.setPicWidth(800);
+            pictureVO.setPicHeight(600);
+            pictureVO.setPicScale(1.33);
+            pictureVO.setPicFormat("webp");
+            pictureVO.setUserId(1L);
+            pictureVO.setCreateTime(new Date(1_700_000_000_000L));
+            pictureVO.setUser(userVO);
+            records.add(pictureVO);
+        }
+        Page<PictureVO> page = new Page<>(1, size, 100);
+        page.setRecords(records);
+        PictureListCache.CachedPage cachedPage = new PictureListCache.CachedPage();
+        cachedPage.setPage(page);
+        cachedPage.setFreshUntil(1_700_000_060_000L);
+        cachedPage.setLoadMillis(35);
+        return cachedPage;
+    }
+}
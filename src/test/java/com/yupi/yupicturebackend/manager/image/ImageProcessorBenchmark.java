@@ -0,0 +1,131 @@
+package com.yupi.yupicturebackend.manager.image;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机图片处理引擎基准测试：解码和缩放的吞吐量，megabytes 一项为每秒处理的原图大小（MB/s）
+ * 数据万象的处理耗时包含网络往返，只能在线上对比；这里的结果用于评估本机引擎所需的处理线程数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ImageProcessorBenchmark {
+
+    /**
+     * 缩略图最大宽高，与图片处理器一致
+     */
+    private static final int THUMBNAIL_SIZE = 256;
+
+    /**
+     * 原图尺寸（宽 x 高）
+     */
+    @Param({"1024x768", "4000x3000"})
+    private String dimension;
+
+    @Param({"jpeg", "png"})
+    private String format;
+
+    private final JvmImageProcessor imageProcessor = new JvmImageProcessor();
+
+    private byte[] content;
+
+    private int width;
+
+    private int height;
+
+    private int[] pixels;
+
+    /**
+     * 每次调用处理的原图大小，按秒统计即为 MB/s
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class ProcessedBytes {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = dimension.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        BufferedImage image = render(width, height);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, format, outputStream);
+        content = outputStream.toByteArray();
+        pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
+    /**
+     * 完整解码原图（不采样），作为对照
+     */
+    @Benchmark
+    public BufferedImage decodeFull(ProcessedBytes processedBytes) throws IOException {
+        processedBytes.megabytes += content.length / 1048576.0;
+        return ImageIO.read(new ByteArrayInputStream(content));
+    }
+
+    /**
+     * 本机引擎完整处理：采样解码、主色板、感知哈希和缩略图
+     */
+    @Benchmark
+    public ImageProcessResult process(ProcessedBytes processedBytes) throws IOException {
+        processedBytes.megabytes += content.length / 1048576.0;
+        return imageProcessor.process(new ByteArrayInputStream(content), THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+    }
+
+    /**
+     * 区域平均缩放已解码的像素
+     */
+    @Benchmark
+    public BufferedImage resize() {
+        double scale = Math.min(THUMBNAIL_SIZE * 1.0 / width, THUMBNAIL_SIZE * 1.0 / height);
+        return JvmImageProcessor.resize(pixels, width, height,
+                (int) Math.round(width * scale), (int) Math.round(height * scale), false);
+    }
+
+    /**
+     * 生成带渐变和色块的图片，避免纯色图片压缩率过高
+     */
+    private static BufferedImage render(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+            graphics.fillRect(0, 0, width, height);
+            Random random = new Random(42);
+            for (int i = 0; i < 200; i++) {
+                graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+                graphics.fillOval(random.nextInt(width), random.nextInt(height), width / 10, height / 10);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ImageProcessorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,95 @@
+package com.yupi.yupicturebackend.manager.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JVM 图片处理单元测试
+ */
+class JvmImageProcessorTest {
+
+    /**
+     * 缩放、调整亮度、加噪声后哈希距离的上限
+     */
+    private static final int NEAR_DISTANCE = 10;
+
+    /**
+     * 不同图片哈希距离的下限，与相似图片搜索的最大距离一致
+     */
+    private static final int FAR_DISTANCE = 16;
+
+    @Test
+    void perceptualHashIsStableForResizedImage() {
+        long hash = JvmImageProcessor.getPerceptualHash(render(512, 384, 0), 512, 384);
+
+        assertEquals(hash, JvmImageProcessor.getPerceptualHash(render(512, 384, 0), 512, 384));
+        assertTrue(distance(hash, JvmImageProcessor.getPerceptualHash(render(200, 150, 0), 200, 150)) <= NEAR_DISTANCE);
+    }
+
+    @Test
+    void perceptualHashIsCloseForBrightenedAndNoisyImage() {
+        long hash = JvmImageProcessor.getPerceptualHash(render(256, 256, 0), 256, 256);
+
+        assertTrue(distance(hash, JvmImageProcessor.getPerceptualHash(render(256, 256, 30), 256, 256)) <= NEAR_DISTANCE);
+        int[] noisy = render(256, 256, 0);
+        Random random = new Random(42);
+        for (int i = 0; i < noisy.length; i++) {
+            int delta = random.nextInt(17) - 8;
+            noisy[i] = gray(((noisy[i] & 0xFF) + delta));
+        }
+        assertTrue(distance(hash, JvmImageProcessor.getPerceptualHash(noisy, 256, 256)) <= NEAR_DISTANCE);
+    }
+
+    @Test
+    void perceptualHashIsFarForDifferentImage() {
+        long hash = JvmImageProcessor.getPerceptualHash(render(256, 256, 0), 256, 256);
+        int[] mirrored = render(256, 256, 0);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 128; x++) {
+                int tmp = mirrored[y * 256 + x];
+                mirrored[y * 256 + x] = mirrored[y * 256 + 255 - x];
+                mirrored[y * 256 + 255 - x] = tmp;
+            }
+        }
+
+        assertTrue(distance(hash, JvmImageProcessor.getPerceptualHash(mirrored, 256, 256)) > FAR_DISTANCE);
+    }
+
+    @Test
+    void perceptualHashSupportsTinyImage() {
+        int[] pixels = render(8, 4, 0);
+
+        long hash = JvmImageProcessor.getPerceptualHash(pixels, 8, 4);
+
+        assertEquals(hash, JvmImageProcessor.getPerceptualHash(pixels, 8, 4));
+    }
+
+    /**
+     * 绘制灰度图：左上到右下的渐变叠加偏右上的亮斑
+     */
+    private static int[] render(int width, int height, int brightness) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double fx = (double) x / width;
+                double fy = (double) y / height;
+                double spot = Math.exp(-((fx - 0.75) * (fx - 0.75) + (fy - 0.3) * (fy - 0.3)) * 20);
+                pixels[y * width + x] = gray((int) (40 + 80 * (fx + fy) / 2 + 100 * spot) + brightness);
+            }
+        }
+        return pixels;
+    }
+
+    private static int gray(int value) {
+        value = Math.max(0, Math.min(255, value));
+        return 0xFF000000 | value << 16 | value << 8 | value;
+    }
+
+    private static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,116 @@
+package com.yupi.yupicturebackend.manager.lock;
+
+import com.yupi.yupicturebackend.config.LockConfig;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本机分段锁单元测试
+ */
+class LocalLockManagerTest {
+
+    private LocalLockManager lockManager;
+
+    @BeforeEach
+    void setUp() {
+        lockManager = new LocalLockManager();
+        LockConfig lockConfig = new LockConfig();
+        lockConfig.setStripes(16);
+        ReflectionTestUtils.setField(lockManager, "lockConfig", lockConfig);
+        lockManager.init();
+    }
+
+    @Test
+    void executeWithLockIsMutuallyExclusive() throws Exception {
+        int threads = 8;
+        int rounds = 2000;
+        AtomicInteger inside = new AtomicInteger();
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < rounds; i++) {
+                        lockManager.executeWithLock("user:1", 10_000, 0, () -> {
+                            assertEquals(1, inside.incrementAndGet());
+                            counter[0]++;
+                            inside.decrementAndGet();
+                            return null;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * rounds, counter[0]);
+    }
+
+    @Test
+    void tryLockReturnsNullWhenHeldByAnotherThread() throws Exception {
+        LockHandle lockHandle = lockManager.tryLock("user:1", 0, 0);
+        assertNotNull(lockHandle);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            long start = System.nanoTime();
+            assertNull(executor.submit(() -> lockManager.tryLock("user:1", 50, 0)).get(10, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+            lockHandle.close();
+            LockHandle otherHandle = executor.submit(() -> lockManager.tryLock("user:1", 0, 0)).get(10, TimeUnit.SECONDS);
+            assertNotNull(otherHandle);
+            // 由获取锁的线程释放
+            executor.submit(otherHandle::close).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fencingTokenIncreasesAcrossAcquisitions() {
+        long last = 0;
+        for (int i = 0; i < 100; i++) {
+            try (LockHandle lockHandle = lockManager.tryLock("user:" + (i % 3), 0, 0)) {
+                assertTrue(lockHandle.getFencingToken() > last);
+                last = lockHandle.getFencingToken();
+            }
+        }
+        // 以当前时间为下限，重启后不会小于重启前的令牌
+        assertTrue(last >= TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()) - TimeUnit.SECONDS.toMicros(60));
+    }
+
+    @Test
+    void lockIsReentrant() {
+        String result = lockManager.executeWithLock("user:1", 0, 0,
+                () -> lockManager.executeWithLock("user:1", 0, 0, () -> "ok"));
+
+        assertEquals("ok", result);
+    }
+
+    @Test
+    void executeWithLockThrowsBusinessExceptionOnTimeout() throws Exception {
+        try (LockHandle ignored = lockManager.tryLock("user:1", 0, 0)) {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> executor.submit(
+                        () -> lockManager.executeWithLock("user:1", 0, 0, () -> null)).get(10, TimeUnit.SECONDS));
+                assertInstanceOf(BusinessException.class, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
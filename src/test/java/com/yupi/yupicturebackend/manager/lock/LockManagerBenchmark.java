@@ -0,0 +1,73 @@
+package com.yupi.yupicturebackend.manager.lock;
+
+import com.yupi.yupicturebackend.config.LockConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁竞争基准测试：本机分段锁与原来的 synchronized (String.intern()) 对比
+ * keyCount 为 1 时所有线程竞争同一个用户的锁，较大时模拟不同用户并发创建空间；
+ * Redis 分布式锁的耗时以网络往返为主，需要连接真实的 Redis 测量
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LockManagerBenchmark {
+
+    /**
+     * 临界区内的计算量（JMH 的 CPU 时间单位）
+     */
+    private static final long CRITICAL_SECTION_TOKENS = 100;
+
+    /**
+     * 参与竞争的不同 key（用户）数
+     */
+    @Param({"1", "1024", "100000"})
+    private int keyCount;
+
+    private LocalLockManager lockManager;
+
+    @Setup
+    public void setUp() {
+        lockManager = new LocalLockManager();
+        ReflectionTestUtils.setField(lockManager, "lockConfig", new LockConfig());
+        lockManager.init();
+    }
+
+    @Benchmark
+    public Object stripedLock() {
+        long userId = ThreadLocalRandom.current().nextInt(keyCount);
+        return lockManager.executeWithLock(String.valueOf(userId), 10_000, 30_000, () -> {
+            Blackhole.consumeCPU(CRITICAL_SECTION_TOKENS);
+            return userId;
+        });
+    }
+
+    /**
+     * 原实现：以用户 id 字符串的常量池对象作为锁
+     */
+    @Benchmark
+    public Object internLock() {
+        long userId = ThreadLocalRandom.current().nextInt(keyCount);
+        String lock = String.valueOf(userId).intern();
+        synchronized (lock) {
+            Blackhole.consumeCPU(CRITICAL_SECTION_TOKENS);
+            return userId;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LockManagerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
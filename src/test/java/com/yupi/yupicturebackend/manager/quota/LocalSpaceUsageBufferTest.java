@@ -0,0 +1,98 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.yupi.yupicturebackend.mapper.SpaceMapper;
+import com.yupi.yupicturebackend.mapper.SpaceUsageFlushMapper;
+import com.yupi.yupicturebackend.model.entity.Space;
+import com.yupi.yupicturebackend.model.entity.SpaceUsageFlush;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 本机空间用量缓冲单元测试（不启动 Spring 容器）
+ */
+class LocalSpaceUsageBufferTest {
+
+    private LocalSpaceUsageBuffer spaceUsageBuffer;
+
+    private SpaceMapper spaceMapper;
+
+    private SpaceUsageFlushMapper spaceUsageFlushMapper;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Space.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        spaceUsageBuffer = new LocalSpaceUsageBuffer();
+        spaceMapper = mock(SpaceMapper.class);
+        spaceUsageFlushMapper = mock(SpaceUsageFlushMapper.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        ReflectionTestUtils.setField(spaceUsageBuffer, "spaceMapper", spaceMapper);
+        ReflectionTestUtils.setField(spaceUsageBuffer, "spaceUsageFlushMapper", spaceUsageFlushMapper);
+        ReflectionTestUtils.setField(spaceUsageBuffer, "transactionTemplate", transactionTemplate);
+    }
+
+    @Test
+    void flushWritesPendingDeltasOnce() {
+        spaceUsageBuffer.add(1L, 100, 1);
+        spaceUsageBuffer.add(1L, 50, 1);
+        assertEquals(150, spaceUsageBuffer.getPending(1L).getSizeDelta());
+
+        spaceUsageBuffer.flush();
+        spaceUsageBuffer.flush();
+
+        verify(spaceUsageFlushMapper, times(1)).insert(any(SpaceUsageFlush.class));
+        verify(spaceMapper, times(1)).update(any(), any());
+        assertEquals(0, spaceUsageBuffer.getPending(1L).getSizeDelta());
+        assertEquals(0, spaceUsageBuffer.getPending(1L).getCountDelta());
+    }
+
+    @Test
+    void flushRetriesFailedBatchWithSameBatchId() {
+        // 第一次提交结果未知（如连接断开），重试时批次号已存在，说明已写入过
+        when(spaceUsageFlushMapper.insert(any(SpaceUsageFlush.class)))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenThrow(new DuplicateKeyException("duplicate batch"))
+                .thenReturn(1);
+        spaceUsageBuffer.add(1L, 100, 1);
+
+        spaceUsageBuffer.flush();
+        assertEquals(100, spaceUsageBuffer.getPending(1L).getSizeDelta());
+        // 重试前新增的增量不加入失败的批次
+        spaceUsageBuffer.add(1L, 30, 0);
+        spaceUsageBuffer.flush();
+        assertEquals(30, spaceUsageBuffer.getPending(1L).getSizeDelta());
+        spaceUsageBuffer.flush();
+
+        ArgumentCaptor<SpaceUsageFlush> captor = ArgumentCaptor.forClass(SpaceUsageFlush.class);
+        verify(spaceUsageFlushMapper, times(3)).insert(captor.capture());
+        List<SpaceUsageFlush> records = captor.getAllValues();
+        assertEquals(records.get(0).getId(), records.get(1).getId());
+        assertNotEquals(records.get(1).getId(), records.get(2).getId());
+        assertEquals(0, spaceUsageBuffer.getPending(1L).getSizeDelta());
+    }
+}
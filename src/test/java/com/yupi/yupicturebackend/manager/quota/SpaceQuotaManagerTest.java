@@ -0,0 +1,96 @@
+package com.yupi.yupicturebackend.manager.quota;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.yupi.yupicturebackend.exception.BusinessException;
+import com.yupi.yupicturebackend.mapper.SpaceMapper;
+import com.yupi.yupicturebackend.model.entity.Space;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 空间额度管理单元测试（不启动 Spring 容器）
+ */
+class SpaceQuotaManagerTest {
+
+    private static final long SPACE_ID = 1L;
+
+    private SpaceQuotaManager spaceQuotaManager;
+
+    private SpaceMapper spaceMapper;
+
+    private SpaceUsageBuffer spaceUsageBuffer;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Space.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        spaceQuotaManager = new SpaceQuotaManager();
+        spaceMapper = mock(SpaceMapper.class);
+        spaceUsageBuffer = mock(SpaceUsageBuffer.class);
+        when(spaceUsageBuffer.getPending(anyLong())).thenReturn(new SpaceUsageDelta());
+        ReflectionTestUtils.setField(spaceQuotaManager, "spaceMapper", spaceMapper);
+        ReflectionTestUtils.setField(spaceQuotaManager, "spaceUsageBuffer", spaceUsageBuffer);
+    }
+
+    @Test
+    void commitBuffersUnusedReservation() {
+        SpaceQuotaReservation reservation = reservation(1000);
+
+        spaceQuotaManager.commit(reservation, 600);
+
+        verify(spaceUsageBuffer).add(SPACE_ID, -400, 0);
+        verify(spaceMapper, never()).update(any(), any());
+        assertTrue(reservation.isSettled());
+    }
+
+    @Test
+    void commitReservesSizeBeyondReservation() {
+        // 网络图片上传前预留 0 字节
+        SpaceQuotaReservation reservation = reservation(0);
+        when(spaceMapper.update(any(), any())).thenReturn(1);
+
+        spaceQuotaManager.commit(reservation, 600);
+
+        verify(spaceMapper).update(isNull(), any());
+        verify(spaceUsageBuffer).add(SPACE_ID, 0, 0);
+        assertTrue(reservation.isSettled());
+    }
+
+    @Test
+    void commitFailsWhenSizeBeyondReservationDoesNotFit() {
+        SpaceQuotaReservation reservation = reservation(0);
+        when(spaceMapper.update(any(), any())).thenReturn(0);
+        Space space = new Space();
+        space.setTotalCount(1L);
+        space.setMaxCount(100L);
+        space.setTotalSize(900L);
+        space.setMaxSize(1000L);
+        when(spaceMapper.selectById(SPACE_ID)).thenReturn(space);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> spaceQuotaManager.commit(reservation, 600));
+
+        assertEquals("空间大小不足", e.getMessage());
+        verify(spaceUsageBuffer, never()).add(any(), anyLong(), anyLong());
+        assertFalse(reservation.isSettled());
+    }
+
+    private static SpaceQuotaReservation reservation(long size) {
+        SpaceQuotaReservation reservation = new SpaceQuotaReservation();
+        reservation.setSpaceId(SPACE_ID);
+        reservation.setCount(1);
+        reservation.setSize(size);
+        return reservation;
+    }
+}
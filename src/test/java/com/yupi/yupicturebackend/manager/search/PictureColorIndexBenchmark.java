@@ -0,0 +1,120 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.utils.ColorPaletteUtils;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 以色搜图基准测试：空间颜色索引与原来的全量解码排序（Color.decode + 相似度排序）对比
+ * 索引在预热前已加载，只测量单次查询的耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PictureColorIndexBenchmark {
+
+    private static final long SPACE_ID = 1L;
+
+    private static final int TOP_K = 12;
+
+    /**
+     * 空间内的图片数，旗舰版空间最多 10000 张
+     */
+    @Param({"1000", "10000"})
+    private int pictureCount;
+
+    private List<Picture> pictureList;
+
+    private PictureColorIndex pictureColorIndex;
+
+    private int targetRgb;
+
+    private String targetColor;
+
+    @Setup
+    public void setUp() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Picture.class);
+        Random random = new Random(42);
+        pictureList = new ArrayList<>(pictureCount);
+        for (long id = 1; id <= pictureCount; id++) {
+            int[] rgbs = new int[ColorPaletteUtils.MAX_COLORS];
+            int[] weights = new int[ColorPaletteUtils.MAX_COLORS];
+            for (int i = 0; i < rgbs.length; i++) {
+                rgbs[i] = random.nextInt(0x1000000);
+                weights[i] = 255 / rgbs.length;
+            }
+            Picture picture = new Picture();
+            picture.setId(id);
+            picture.setPicColor(String.format("0x%06x", rgbs[0]));
+            picture.setPicPalette(ColorPaletteUtils.encode(rgbs, weights, rgbs.length));
+            pictureList.add(picture);
+        }
+        targetRgb = 0x3366CC;
+        targetColor = "0x3366CC";
+
+        PictureMapper pictureMapper = mock(PictureMapper.class, withSettings().stubOnly());
+        // 第二次查询为补算主色板，全部图片都有主色板
+        when(pictureMapper.selectList(any())).thenReturn(pictureList, Collections.emptyList());
+        pictureColorIndex = new PictureColorIndex();
+        ReflectionTestUtils.setField(pictureColorIndex, "pictureMapper", pictureMapper);
+        // 加载空间索引
+        pictureColorIndex.search(SPACE_ID, new int[]{targetRgb}, new float[]{1f}, TOP_K);
+    }
+
+    @Benchmark
+    public List<Long> index() {
+        return pictureColorIndex.search(SPACE_ID, new int[]{targetRgb}, new float[]{1f}, TOP_K);
+    }
+
+    /**
+     * 原实现：每次比较都解码颜色字符串，对全部图片排序后取前 12 个
+     */
+    @Benchmark
+    public List<Long> streamSort() {
+        Color target = Color.decode(targetColor);
+        return pictureList.stream()
+                .sorted(Comparator.comparingDouble(picture ->
+                        -calculateSimilarity(target, Color.decode(picture.getPicColor()))))
+                .limit(TOP_K)
+                .map(Picture::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 原实现的颜色相似度：RGB 欧氏距离归一化到 0 ~ 1，1 为完全相同
+     */
+    private static double calculateSimilarity(Color color1, Color color2) {
+        double distance = Math.sqrt(Math.pow(color1.getRed() - color2.getRed(), 2)
+                + Math.pow(color1.getGreen() - color2.getGreen(), 2)
+                + Math.pow(color1.getBlue() - color2.getBlue(), 2));
+        return 1 - distance / Math.sqrt(3 * Math.pow(255, 2));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PictureColorIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,156 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 空间图片主色板索引单元测试
+ */
+class PictureColorIndexTest {
+
+    /**
+     * 量化颜色数（每个通道 4 位），距离表最后一项对应空条目
+     */
+    private static final int QUANT_COLORS = 1 << 12;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Picture.class);
+    }
+
+    @Test
+    void searchReturnsTopKInAscendingScoreOrder() {
+        PictureColorIndex.SpaceColorIndex spaceIndex = new PictureColorIndex.SpaceColorIndex(0);
+        // 图片 i 只有一个颜色 i，距离表中颜色 i 的距离为打乱后的值
+        List<Integer> distances = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            distances.add(i);
+        }
+        Collections.shuffle(distances, new Random(42));
+        float[] table = newDistanceTable();
+        for (int i = 0; i < 100; i++) {
+            table[i] = distances.get(i);
+            spaceIndex.put(i, singleColorEntries(i));
+        }
+
+        List<Long> result = spaceIndex.search(new float[][]{table}, new float[]{1f}, 10);
+
+        List<Long> expected = bruteForce(table, 100, 10);
+        assertEquals(expected, result);
+    }
+
+    @Test
+    void searchReturnsAllWhenTopKExceedsSize() {
+        PictureColorIndex.SpaceColorIndex spaceIndex = new PictureColorIndex.SpaceColorIndex(0);
+        float[] table = newDistanceTable();
+        table[1] = 3;
+        table[2] = 1;
+        table[3] = 2;
+        for (int i = 1; i <= 3; i++) {
+            spaceIndex.put(i, singleColorEntries(i));
+        }
+
+        assertEquals(Arrays.asList(2L, 3L, 1L), spaceIndex.search(new float[][]{table}, new float[]{1f}, 10));
+        assertTrue(new PictureColorIndex.SpaceColorIndex(0)
+                .search(new float[][]{table}, new float[]{1f}, 10).isEmpty());
+    }
+
+    @Test
+    void removeFillsSlotWithLastPicture() {
+        PictureColorIndex.SpaceColorIndex spaceIndex = new PictureColorIndex.SpaceColorIndex(0);
+        float[] table = newDistanceTable();
+        // 超过初始容量，验证扩容后的下标
+        for (int i = 0; i < 40; i++) {
+            table[i] = i;
+            spaceIndex.put(i, singleColorEntries(i));
+        }
+        // 删除中间、最后一张和不存在的图片
+        spaceIndex.remove(5);
+        spaceIndex.remove(39);
+        spaceIndex.remove(1000);
+        // 被移动到空位的图片仍然可以更新和删除
+        spaceIndex.put(38, singleColorEntries(0));
+        spaceIndex.remove(0);
+
+        List<Long> result = spaceIndex.search(new float[][]{table}, new float[]{1f}, 100);
+
+        Set<Long> expectedIds = new HashSet<>();
+        for (long i = 1; i < 39; i++) {
+            expectedIds.add(i);
+        }
+        expectedIds.remove(5L);
+        assertEquals(expectedIds, new HashSet<>(result));
+        assertEquals(expectedIds.size(), result.size());
+        // 图片 38 更新为颜色 0，距离最小
+        assertEquals(38L, result.get(0));
+        assertEquals(1L, result.get(1));
+    }
+
+    @Test
+    void searchRanksClosestColorFirst() {
+        PictureMapper pictureMapper = mock(PictureMapper.class);
+        when(pictureMapper.selectList(any())).thenReturn(Arrays.asList(
+                buildPicture(1L, "0x0000FF", null),
+                buildPicture(2L, "0xFF0000", null),
+                buildPicture(3L, "0xCC3333", null),
+                buildPicture(4L, "0xEE1111", null)), Collections.emptyList());
+        PictureColorIndex pictureColorIndex = new PictureColorIndex();
+        ReflectionTestUtils.setField(pictureColorIndex, "pictureMapper", pictureMapper);
+
+        List<Long> result = pictureColorIndex.search(1L, new int[]{0xFF0000}, new float[]{1f}, 4);
+
+        assertEquals(Arrays.asList(2L, 4L, 3L, 1L), result);
+
+        // 增量更新：图片 1 改为红色后排在最前，删除图片 2
+        pictureColorIndex.put(1L, 1L, "0xFF0000", null);
+        pictureColorIndex.remove(1L, 2L);
+        assertEquals(Arrays.asList(1L, 4L), pictureColorIndex.search(1L, new int[]{0xFF0000}, new float[]{1f}, 2));
+    }
+
+    private static float[] newDistanceTable() {
+        float[] table = new float[QUANT_COLORS + 1];
+        Arrays.fill(table, 10_000f);
+        return table;
+    }
+
+    /**
+     * 只有一个颜色（占比 100%）的索引条目，其余为空条目
+     */
+    private static int[] singleColorEntries(int quantizedColor) {
+        int[] entries = new int[5];
+        Arrays.fill(entries, QUANT_COLORS);
+        entries[0] = 255 << 16 | quantizedColor;
+        return entries;
+    }
+
+    private static List<Long> bruteForce(float[] table, int count, int topK) {
+        return java.util.stream.LongStream.range(0, count).boxed()
+                .sorted(Comparator.comparingDouble(id -> table[id.intValue()]))
+                .limit(topK)
+                .collect(Collectors.toList());
+    }
+
+    private static Picture buildPicture(Long id, String picColor, String picPalette) {
+        Picture picture = new Picture();
+        picture.setId(id);
+        picture.setPicColor(picColor);
+        picture.setPicPalette(picPalette);
+        return picture;
+    }
+}
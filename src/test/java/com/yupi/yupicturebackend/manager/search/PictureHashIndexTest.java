@@ -0,0 +1,85 @@
+package com.yupi.yupicturebackend.manager.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 感知哈希 BK 树索引单元测试
+ */
+class PictureHashIndexTest {
+
+    @Test
+    void searchMatchesBruteForce() {
+        PictureHashIndex.BkTree tree = new PictureHashIndex.BkTree();
+        Map<Long, Long> hashes = new HashMap<>();
+        Random random = new Random(42);
+        long base = random.nextLong();
+        for (long id = 1; id <= 2000; id++) {
+            // 一部分图片在基准哈希附近，覆盖相同哈希共用节点和小半径命中的情况
+            long hash = id % 3 == 0 ? flipBits(base, random.nextInt(12), random) : random.nextLong();
+            hashes.put(id, hash);
+            tree.put(id, hash);
+        }
+
+        for (int round = 0; round < 50; round++) {
+            long query = round % 2 == 0 ? flipBits(base, random.nextInt(6), random) : random.nextLong();
+            long excludeId = 1 + random.nextInt(2000);
+            int maxDistance = random.nextInt(20);
+            int topK = 1 + random.nextInt(30);
+            assertEquals(bruteForce(hashes, query, excludeId, maxDistance, topK),
+                    tree.search(query, excludeId, maxDistance, topK));
+        }
+    }
+
+    @Test
+    void putUpdatesAndRemoveDeletesPicture() {
+        PictureHashIndex.BkTree tree = new PictureHashIndex.BkTree();
+        assertTrue(tree.search(0L, -1L, 64, 10).isEmpty());
+
+        tree.put(1L, 0L);
+        tree.put(2L, 0b1L);
+        tree.put(3L, 0b11L);
+        tree.put(4L, 0L);
+        assertEquals(Arrays.asList(1L, 4L, 2L, 3L), tree.search(0L, -1L, 64, 10));
+        // 排除自身
+        assertEquals(Arrays.asList(4L, 2L), tree.search(0L, 1L, 64, 2));
+
+        // 重复写入相同哈希不重复收录
+        tree.put(4L, 0L);
+        assertEquals(Arrays.asList(1L, 4L), tree.search(0L, -1L, 0, 10));
+
+        // 更新哈希后从原节点移除
+        tree.put(1L, 0b111L);
+        assertEquals(Arrays.asList(4L, 2L, 3L, 1L), tree.search(0L, -1L, 64, 10));
+
+        // 删除根节点上的图片，节点保留用于路由，子节点仍可查询
+        tree.remove(4L);
+        tree.remove(4L);
+        assertEquals(Arrays.asList(2L, 3L), tree.search(0L, -1L, 2, 10));
+        tree.remove(100L);
+        assertEquals(Arrays.asList(2L, 3L, 1L), tree.search(0L, -1L, 64, 10));
+    }
+
+    private static long flipBits(long hash, int bits, Random random) {
+        for (int i = 0; i < bits; i++) {
+            hash ^= 1L << random.nextInt(64);
+        }
+        return hash;
+    }
+
+    private static List<Long> bruteForce(Map<Long, Long> hashes, long query, long excludeId, int maxDistance, int topK) {
+        return hashes.entrySet().stream()
+                .filter(entry -> entry.getKey() != excludeId)
+                .filter(entry -> Long.bitCount(entry.getValue() ^ query) <= maxDistance)
+                .sorted(Comparator.<Map.Entry<Long, Long>>comparingInt(entry -> Long.bitCount(entry.getValue() ^ query))
+                        .thenComparing(Map.Entry::getKey))
+                .limit(topK)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
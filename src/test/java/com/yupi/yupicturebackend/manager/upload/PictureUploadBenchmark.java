@@ -0,0 +1,130 @@
+package com.yupi.yupicturebackend.manager.upload;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.qcloud.cos.COSClient;
+import com.qcloud.cos.model.PutObjectRequest;
+import com.qcloud.cos.model.PutObjectResult;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.config.PictureUploadConfig;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 图片上传基准测试：流式上传与临时文件上传的吞吐量和耗时分布（SampleTime 模式输出 p99）
+ * 对象存储客户端替换为读完请求内容即返回的桩，只测量本机的读写和哈希开销；
+ * 临时文件写入 java.io.tmpdir，结果与该目录所在磁盘（或 tmpfs）有关
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class PictureUploadBenchmark {
+
+    /**
+     * 图片大小（KB），表单上传最大 8 MB
+     */
+    @Param({"512", "4096"})
+    private int sizeKb;
+
+    /**
+     * 是否按内容哈希去重
+     */
+    @Param({"true", "false"})
+    private boolean deduplicate;
+
+    private MockMultipartFile multipartFile;
+
+    private FilePictureUpload streamingUpload;
+
+    private FilePictureUpload tempFileUpload;
+
+    @Setup
+    public void setUp() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Picture.class);
+        byte[] content = new byte[sizeKb * 1024];
+        new Random(42).nextBytes(content);
+        // PNG 文件头
+        byte[] header = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+        System.arraycopy(header, 0, content, 0, header.length);
+        multipartFile = new MockMultipartFile("file", "picture.png", "image/png", content);
+        streamingUpload = buildUpload(true);
+        tempFileUpload = buildUpload(false);
+    }
+
+    @Benchmark
+    public UploadPictureResult streaming() {
+        return streamingUpload.uploadPicture(multipartFile, "public/1");
+    }
+
+    @Benchmark
+    public UploadPictureResult tempFile() {
+        return tempFileUpload.uploadPicture(multipartFile, "public/1");
+    }
+
+    private FilePictureUpload buildUpload(boolean streaming) {
+        PictureUploadConfig pictureUploadConfig = new PictureUploadConfig();
+        pictureUploadConfig.setStreaming(streaming);
+        pictureUploadConfig.setDeduplicate(deduplicate);
+        pictureUploadConfig.setAsyncProcess(true);
+        CosClientConfig cosClientConfig = new CosClientConfig();
+        cosClientConfig.setHost("https://cos.example.com");
+        cosClientConfig.setBucket("bucket");
+        // 只保留桩，不记录调用，避免长时间运行时内存增长
+        COSClient cosClient = mock(COSClient.class, withSettings().stubOnly());
+        when(cosClient.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            try (InputStream inputStream = request.getFile() != null
+                    ? new FileInputStream(request.getFile()) : request.getInputStream()) {
+                drain(inputStream);
+            }
+            return new PutObjectResult();
+        });
+        CosManager cosManager = new CosManager();
+        ReflectionTestUtils.setField(cosManager, "cosClientConfig", cosClientConfig);
+        ReflectionTestUtils.setField(cosManager, "cosClient", cosClient);
+
+        FilePictureUpload upload = new FilePictureUpload();
+        ReflectionTestUtils.setField(upload, "cosClientConfig", cosClientConfig);
+        ReflectionTestUtils.setField(upload, "cosManager", cosManager);
+        ReflectionTestUtils.setField(upload, "pictureUploadConfig", pictureUploadConfig);
+        ReflectionTestUtils.setField(upload, "pictureMapper", mock(PictureMapper.class, withSettings().stubOnly()));
+        return upload;
+    }
+
+    /**
+     * 模拟对象存储 SDK 读取请求内容
+     */
+    private static void drain(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (inputStream.read(buffer) >= 0) {
+            // 丢弃读取的内容
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PictureUploadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,146 @@
+package com.yupi.yupicturebackend.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.yupi.yupicturebackend.config.CosClientConfig;
+import com.yupi.yupicturebackend.manager.CosManager;
+import com.yupi.yupicturebackend.manager.cache.PictureListCache;
+import com.yupi.yupicturebackend.manager.process.PictureProcessQueue;
+import com.yupi.yupicturebackend.manager.process.PictureRenditionManager;
+import com.yupi.yupicturebackend.manager.quota.SpaceQuotaManager;
+import com.yupi.yupicturebackend.manager.search.PictureColorIndex;
+import com.yupi.yupicturebackend.manager.search.PictureHashIndex;
+import com.yupi.yupicturebackend.manager.upload.FilePictureUpload;
+import com.yupi.yupicturebackend.mapper.PictureMapper;
+import com.yupi.yupicturebackend.model.dto.file.UploadPictureResult;
+import com.yupi.yupicturebackend.model.dto.picture.PictureUploadRequest;
+import com.yupi.yupicturebackend.model.entity.Picture;
+import com.yupi.yupicturebackend.model.entity.User;
+import com.yupi.yupicturebackend.model.vo.PictureVO;
+import com.yupi.yupicturebackend.service.PictureService;
+import com.yupi.yupicturebackend.service.UserService;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 图片服务单元测试（不启动 Spring 容器）
+ */
+class PictureServiceImplTest {
+
+    private static final String HOST = "https://cos.example.com";
+
+    private PictureServiceImpl pictureService;
+
+    private PictureMapper pictureMapper;
+
+    private CosManager cosManager;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Picture.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        pictureService = new PictureServiceImpl();
+        pictureMapper = mock(PictureMapper.class);
+        cosManager = mock(CosManager.class);
+        CosClientConfig cosClientConfig = new CosClientConfig();
+        cosClientConfig.setHost(HOST);
+        ReflectionTestUtils.setField(pictureService, "baseMapper", pictureMapper);
+        ReflectionTestUtils.setField(pictureService, "cosManager", cosManager);
+        ReflectionTestUtils.setField(pictureService, "cosClientConfig", cosClientConfig);
+    }
+
+    @Test
+    void clearPictureFileKeepsFilesSharedWithDeduplicatedPicture() {
+        // 两张按内容去重的图片共用文件，删除其中一张后另一张仍然引用
+        when(pictureMapper.selectCount(any())).thenReturn(1L);
+
+        pictureService.clearPictureFile(buildDeduplicatedPicture());
+
+        verify(cosManager, never()).deleteObject(anyString());
+    }
+
+    @Test
+    void clearPictureFileDeletesFilesWhenNoLongerReferenced() {
+        when(pictureMapper.selectCount(any())).thenReturn(0L);
+
+        pictureService.clearPictureFile(buildDeduplicatedPicture());
+
+        verify(cosManager).deleteObject(HOST + "//public/1/a.webp");
+        verify(cosManager).deleteObject(HOST + "//public/1/a_thumbnail.png");
+        verify(cosManager).deleteObject("/public/1/a_256.webp");
+    }
+
+    @Test
+    void uploadPictureReuploadsWhenReusedPictureWasDeleted() {
+        FilePictureUpload filePictureUpload = mock(FilePictureUpload.class);
+        SpaceQuotaManager spaceQuotaManager = mock(SpaceQuotaManager.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        ReflectionTestUtils.setField(pictureService, "filePictureUpload", filePictureUpload);
+        ReflectionTestUtils.setField(pictureService, "spaceQuotaManager", spaceQuotaManager);
+        ReflectionTestUtils.setField(pictureService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(pictureService, "userService", mock(UserService.class));
+        ReflectionTestUtils.setField(pictureService, "pictureService", mock(PictureService.class));
+        ReflectionTestUtils.setField(pictureService, "pictureListCache", mock(PictureListCache.class));
+        ReflectionTestUtils.setField(pictureService, "pictureColorIndex", mock(PictureColorIndex.class));
+        ReflectionTestUtils.setField(pictureService, "pictureHashIndex", mock(PictureHashIndex.class));
+        ReflectionTestUtils.setField(pictureService, "pictureProcessQueue", mock(PictureProcessQueue.class));
+        ReflectionTestUtils.setField(pictureService, "pictureRenditionManager", mock(PictureRenditionManager.class));
+
+        // 第一次上传复用了已有图片，保存前该图片被删除（锁定时查不到）
+        UploadPictureResult reusedResult = buildUploadPictureResult(HOST + "//public/1/a.webp");
+        reusedResult.setReusedPictureId(10L);
+        UploadPictureResult uploadedResult = buildUploadPictureResult(HOST + "//public/2/b.webp");
+        when(filePictureUpload.uploadPicture(any(), anyString())).thenReturn(reusedResult, uploadedResult);
+        when(pictureMapper.selectOne(any(), anyBoolean())).thenReturn(null);
+        when(pictureMapper.insertOrUpdate(any(Picture.class))).thenReturn(true);
+        User loginUser = new User();
+        loginUser.setId(2L);
+
+        PictureVO pictureVO = pictureService.uploadPicture(
+                new MockMultipartFile("file", "b.webp", "image/webp", new byte[]{1}),
+                new PictureUploadRequest(), loginUser);
+
+        assertEquals(HOST + "//public/2/b.webp", pictureVO.getUrl());
+        verify(filePictureUpload, times(2)).uploadPicture(any(), anyString());
+        verify(pictureMapper, times(1)).insertOrUpdate(any(Picture.class));
+        verify(spaceQuotaManager, times(1)).commit(any(), anyLong());
+    }
+
+    private static UploadPictureResult buildUploadPictureResult(String url) {
+        UploadPictureResult uploadPictureResult = new UploadPictureResult();
+        uploadPictureResult.setUrl(url);
+        uploadPictureResult.setPicName("b");
+        uploadPictureResult.setPicSize(100L);
+        return uploadPictureResult;
+    }
+
+    private static Picture buildDeduplicatedPicture() {
+        Picture picture = new Picture();
+        picture.setId(1L);
+        picture.setUrl(HOST + "//public/1/a.webp");
+        picture.setThumbnailUrl(HOST + "//public/1/a_thumbnail.png");
+        picture.setContentHash("hash");
+        picture.setRenditions("{\"256\":\"" + HOST + "//public/1/a_256.webp\"}");
+        return picture;
+    }
+}
@@ -0,0 +1,67 @@
+package com.yupi.yupicturebackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 主色板编解码单元测试
+ */
+class ColorPaletteUtilsTest {
+
+    @Test
+    void encodeThenDecodeKeepsColorsAndWeights() {
+        int[] rgbs = {0xFF0000, 0x00FF00, 0x0000FF};
+        int[] weights = {128, 96, 31};
+
+        String palette = ColorPaletteUtils.encode(rgbs, weights, 3);
+
+        assertEquals("ff000080" + "00ff0060" + "0000ff1f", palette);
+        int[] entries = ColorPaletteUtils.decode(palette);
+        assertEquals(3, entries.length);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(rgbs[i], entries[i] & 0xFFFFFF);
+            assertEquals(weights[i], entries[i] >>> 24);
+        }
+    }
+
+    @Test
+    void encodeClampsWeightsAndIgnoresAlpha() {
+        String palette = ColorPaletteUtils.encode(new int[]{0xFF123456, 0x654321}, new int[]{300, -1}, 2);
+
+        assertEquals("123456ff65432100", palette);
+    }
+
+    @Test
+    void encodeKeepsAtMostMaxColors() {
+        int[] rgbs = {1, 2, 3, 4, 5, 6, 7};
+        int[] weights = {1, 1, 1, 1, 1, 1, 1};
+
+        String palette = ColorPaletteUtils.encode(rgbs, weights, rgbs.length);
+
+        assertEquals(ColorPaletteUtils.MAX_COLORS * 8, palette.length());
+        assertEquals(ColorPaletteUtils.MAX_COLORS, ColorPaletteUtils.decode(palette).length);
+    }
+
+    @Test
+    void encodeReturnsNullWithoutColors() {
+        assertNull(ColorPaletteUtils.encode(new int[0], new int[0], 0));
+    }
+
+    @Test
+    void decodeReturnsEmptyForMalformedPalette() {
+        assertArrayEquals(new int[0], ColorPaletteUtils.decode(null));
+        assertArrayEquals(new int[0], ColorPaletteUtils.decode(""));
+        assertArrayEquals(new int[0], ColorPaletteUtils.decode("ff0000"));
+        assertArrayEquals(new int[0], ColorPaletteUtils.decode("ff00zz80"));
+    }
+
+    @Test
+    void decodeKeepsFullWeightAsUnsigned() {
+        int[] entries = ColorPaletteUtils.decode("ffffffff");
+
+        assertEquals(1, entries.length);
+        assertEquals(255, entries[0] >>> 24);
+        assertEquals(0xFFFFFF, entries[0] & 0xFFFFFF);
+    }
+}